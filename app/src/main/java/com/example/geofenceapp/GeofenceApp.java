@@ -0,0 +1,123 @@
+package com.example.geofenceapp;
+
+import android.app.Application;
+import android.os.Build;
+import android.os.StrictMode;
+import android.util.Log;
+
+import com.example.geofenceapp.service.CheckInScheduler;
+import com.example.geofenceapp.service.DatabaseHelper;
+import com.example.geofenceapp.service.MetricsFiles;
+import com.example.geofenceapp.service.SyncScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class GeofenceApp extends Application {
+    // Shared so the sync and the UI use one connection pool and one catalog
+    private DatabaseHelper databaseHelper;
+    private SyncScheduler syncScheduler;
+    private CheckInScheduler checkInScheduler;
+    // One thread for every trace write, so a writer closed by one activity finishes before
+    // the next one appends to the same file
+    private ExecutorService traceExecutor;
+    // Appends the metrics to today's file every few minutes, off the main thread
+    private static final long METRICS_DUMP_MINUTES = 5;
+    private ScheduledExecutorService metricsExecutor;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Debug builds crash on main-thread disk or network access so
+        // regressions show up during development instead of as jank
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                    .detectLeakedSqlLiteObjects()
+                    .detectLeakedClosableObjects()
+                    .penaltyLog()
+                    .build());
+        }
+
+        getSyncScheduler().schedulePeriodic();
+        getMetricsExecutor().scheduleWithFixedDelay(this::dumpMetrics, METRICS_DUMP_MINUTES,
+                METRICS_DUMP_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized DatabaseHelper getDatabaseHelper() {
+        if (databaseHelper == null) {
+            databaseHelper = new DatabaseHelper(this);
+        }
+        return databaseHelper;
+    }
+
+    public synchronized SyncScheduler getSyncScheduler() {
+        if (syncScheduler == null) {
+            syncScheduler = new SyncScheduler(this, getDatabaseHelper());
+        }
+        return syncScheduler;
+    }
+
+    public synchronized CheckInScheduler getCheckInScheduler() {
+        if (checkInScheduler == null) {
+            checkInScheduler = new CheckInScheduler(this, getDatabaseHelper());
+        }
+        return checkInScheduler;
+    }
+
+    public synchronized ExecutorService getTraceExecutor() {
+        if (traceExecutor == null) {
+            traceExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(() -> {
+                    android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, "trace-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return traceExecutor;
+    }
+
+    public synchronized ScheduledExecutorService getMetricsExecutor() {
+        if (metricsExecutor == null) {
+            metricsExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(() -> {
+                    android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, "metrics-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return metricsExecutor;
+    }
+
+    // Does disk I/O: run it on the metrics executor. Returns the file, or null if it failed.
+    public File dumpMetrics() {
+        Map<String, String> device = new LinkedHashMap<>();
+        device.put("manufacturer", Build.MANUFACTURER);
+        device.put("model", Build.MODEL);
+        device.put("sdk", String.valueOf(Build.VERSION.SDK_INT));
+        device.put("app", BuildConfig.VERSION_NAME);
+        try {
+            return MetricsFiles.dump(this, device);
+        } catch (IOException e) {
+            Log.w("METRICS", "Could not write metrics", e);
+            return null;
+        }
+    }
+}
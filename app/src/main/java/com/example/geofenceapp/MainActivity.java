@@ -5,55 +5,103 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import android.Manifest;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
-import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.geofenceapp.geo.FixFilter;
+import com.example.geofenceapp.geo.GeoMath;
+import com.example.geofenceapp.geo.GeofenceEngine;
+import com.example.geofenceapp.geo.LocationSamplingPolicy;
+import com.example.geofenceapp.geo.PolygonFence;
+import com.example.geofenceapp.geo.RadarFrame;
+import com.example.geofenceapp.geo.TphSpatialIndex;
+import com.example.geofenceapp.geo.TraceWriter;
+import com.example.geofenceapp.metrics.Counter;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+import com.example.geofenceapp.service.CheckIn;
+import com.example.geofenceapp.service.CheckInScheduler;
 import com.example.geofenceapp.service.DatabaseHelper;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
+import com.example.geofenceapp.service.EstateSyncStatus;
+import com.example.geofenceapp.service.PrefixIndex;
+import com.example.geofenceapp.service.SyncRunner;
+import com.example.geofenceapp.service.SyncScheduler;
+import com.example.geofenceapp.service.SyncStatus;
+import com.example.geofenceapp.service.TphRepository;
+import com.example.geofenceapp.service.TphSnapshot;
+import com.example.geofenceapp.service.TraceFiles;
+
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public class MainActivity extends AppCompatActivity implements LocationListener {
-    private Button btnSync, btnShowAll, btnCheckGeofence;
+    private Button btnSync, btnShowAll, btnCheckGeofence, btnNearestTPH;
     private TextView progressText, textGeofenceStatus, textDistanceInfo, textLocationInfo;
     private LinearLayout progressContainer, dropdownContainer, geofenceStatusCard;
     private ProgressBar progressBar;
-    private Spinner spinnerKodeBlok, spinnerTPH;
+    private TphPickerView pickerKodeBlok, pickerTPH;
+    private RadarView radarView;
     private DatabaseHelper dbHelper;
+    private TphRepository repository;
+    private SyncScheduler syncScheduler;
+    private CheckInScheduler checkInScheduler;
+    private final SyncRunner.Listener syncListener = this::onSyncStatus;
+    // Whether this screen has shown the current sync as running
+    private boolean syncing = false;
+
+    // In-flight queries, cancelled when a newer selection makes them stale
+    private TphRepository.Task kodeBlokTask, tphTask, locationTask;
 
-    private ArrayAdapter<String> kodeBlokAdapter, tphAdapter;
-    private List<String> kodeBlokList, tphList;
+    private PrefixIndexAdapter kodeBlokAdapter, tphAdapter;
 
     private LocationManager locationManager;
     private Location currentLocation;
     private double tphLatitude = 0.0;
     private double tphLongitude = 0.0;
+    private double tphRadius = GEOFENCE_RADIUS;
+    // Boundary of the selected TPH's block, null when the server has not sent one
+    private PolygonFence tphBlock;
     private boolean tphLocationSet = false;
 
-    private static final String API_URL = "http://10.100.1.26:3005/api/TPH/GetItemByCompanyLocation?Company=A06&Location=21";
+    // Re-registers location updates as the distance to the nearest fence changes
+    private final LocationSamplingPolicy samplingPolicy = new LocationSamplingPolicy();
+    // Only fixes that pass it reach currentLocation, already smoothed
+    private final FixFilter fixFilter = new FixFilter();
+    // Raw fixes, fence selections, checks and transitions, for replaying field complaints;
+    // null until opened on the trace executor
+    private TraceWriter trace;
+    private Executor traceExecutor;
+    private final int[] nearestId = new int[1];
+    private final double[] nearestDistance = new double[1];
+
+    // Spatial index over all synced TPH points, rebuilt in the background when data changes
+    private volatile TphPoints tphPoints;
+    private String pendingTPHSelection;
+
     private static final int PERMISSION_REQUEST_CODE = 1001;
-    private static final double GEOFENCE_RADIUS = 30.0; // 30 meters
+    private static final double GEOFENCE_RADIUS = 30.0; // 30 meters, unless the TPH has its own
+
+    private static final Counter FIXES = Metrics.counter("geo.fixes");
+    private static final Counter FIXES_REJECTED = Metrics.counter("geo.fixesRejected");
+    private static final Counter TRANSITIONS = Metrics.counter("geo.transitions");
+    // From the fix being taken by the receiver to the engine having decided on it, which
+    // includes delivery to the main thread; and the engine's own share of that
+    private static final Histogram FIX_TO_DECISION = Metrics.histogram("geo.fixToDecision");
+    private static final Histogram DECISION_TIME = Metrics.histogram("geo.decision");
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -63,23 +111,50 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         // Initialize views
         initializeViews();
 
-        dbHelper = new DatabaseHelper(this);
+        GeofenceApp app = (GeofenceApp) getApplication();
+        dbHelper = app.getDatabaseHelper();
+        repository = new TphRepository(dbHelper);
+        syncScheduler = app.getSyncScheduler();
+        checkInScheduler = app.getCheckInScheduler();
+        traceExecutor = app.getTraceExecutor();
+        openTrace();
         locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
 
         // Initialize lists and adapters
-        setupSpinners();
+        setupPickers();
 
         // Set click listeners
         setupClickListeners();
 
         // Check permissions and setup UI
         checkPermissionsAndSetupUI();
+
+        // Also picks up a sync that is already running, e.g. the overnight one
+        syncScheduler.addListener(syncListener);
+    }
+
+    private void openTrace() {
+        traceExecutor.execute(() -> {
+            try {
+                TraceWriter writer = TraceFiles.openToday(this, traceExecutor);
+                runOnUiThread(() -> {
+                    if (isDestroyed()) {
+                        writer.close();
+                    } else {
+                        trace = writer;
+                    }
+                });
+            } catch (IOException e) {
+                Log.w("TRACE", "Trace recording disabled", e);
+            }
+        });
     }
 
     private void initializeViews() {
         btnSync = findViewById(R.id.btnSync);
         btnShowAll = findViewById(R.id.btnShowAll);
         btnCheckGeofence = findViewById(R.id.btnCheckGeofence);
+        btnNearestTPH = findViewById(R.id.btnNearestTPH);
         progressContainer = findViewById(R.id.progressContainer);
         dropdownContainer = findViewById(R.id.dropdownContainer);
         geofenceStatusCard = findViewById(R.id.geofenceStatusCard);
@@ -88,61 +163,53 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         textGeofenceStatus = findViewById(R.id.textGeofenceStatus);
         textDistanceInfo = findViewById(R.id.textDistanceInfo);
         textLocationInfo = findViewById(R.id.textLocationInfo);
-        spinnerKodeBlok = findViewById(R.id.spinnerKodeBlok);
-        spinnerTPH = findViewById(R.id.spinnerTPH);
+        pickerKodeBlok = findViewById(R.id.pickerKodeBlok);
+        pickerTPH = findViewById(R.id.pickerTPH);
+        radarView = findViewById(R.id.radarView);
     }
 
-    private void setupSpinners() {
-        kodeBlokList = new ArrayList<>();
-        tphList = new ArrayList<>();
+    private void setupPickers() {
+        kodeBlokAdapter = new PrefixIndexAdapter(this);
+        pickerKodeBlok.setAdapter(kodeBlokAdapter);
 
-        kodeBlokAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, kodeBlokList);
-        kodeBlokAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        spinnerKodeBlok.setAdapter(kodeBlokAdapter);
-
-        tphAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, tphList);
-        tphAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        spinnerTPH.setAdapter(tphAdapter);
+        tphAdapter = new PrefixIndexAdapter(this);
+        pickerTPH.setAdapter(tphAdapter);
     }
 
     private void setupClickListeners() {
         btnSync.setOnClickListener(v -> syncData());
+        if (BuildConfig.DEBUG) {
+            btnSync.setOnLongClickListener(v -> {
+                startActivity(new Intent(this, MetricsActivity.class));
+                return true;
+            });
+        }
         btnShowAll.setOnClickListener(v -> showAllData());
         btnCheckGeofence.setOnClickListener(v -> checkGeofenceStatus());
+        btnNearestTPH.setOnClickListener(v -> findNearestTPH());
 
-        // Spinner listeners
-        spinnerKodeBlok.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+        // Picker listeners
+        pickerKodeBlok.setOnPickListener(new TphPickerView.OnPickListener() {
             @Override
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                if (position > 0) {
-                    String selectedKodeBlok = kodeBlokList.get(position);
-                    loadTPHData(selectedKodeBlok);
-                } else {
-                    clearTPHSpinner();
-                }
+            public void onPicked(String kodeBlok) {
+                loadTPHData(kodeBlok);
             }
 
             @Override
-            public void onNothingSelected(AdapterView<?> parent) {
-                clearTPHSpinner();
+            public void onCleared() {
+                clearTPHPicker();
             }
         });
 
-        spinnerTPH.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+        pickerTPH.setOnPickListener(new TphPickerView.OnPickListener() {
             @Override
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                boolean isSelected = position > 0;
-                btnCheckGeofence.setEnabled(isSelected);
-
-                if (isSelected) {
-                    loadSelectedTPHLocation();
-                } else {
-                    hideGeofenceStatus();
-                }
+            public void onPicked(String noTPH) {
+                btnCheckGeofence.setEnabled(true);
+                loadSelectedTPHLocation();
             }
 
             @Override
-            public void onNothingSelected(AdapterView<?> parent) {
+            public void onCleared() {
                 btnCheckGeofence.setEnabled(false);
                 hideGeofenceStatus();
             }
@@ -178,35 +245,116 @@ public class MainActivity extends AppCompatActivity implements LocationListener
 
     private void startLocationUpdates() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 2000, 5, this);
-            locationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, 2000, 5, this);
+            applySamplingPolicy();
 
             // Get last known location immediately
             Location lastKnownGPS = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
             Location lastKnownNetwork = locationManager.getLastKnownLocation(LocationManager.NETWORK_PROVIDER);
 
-            if (lastKnownGPS != null) {
-                currentLocation = lastKnownGPS;
+            // Usually too old to pass the filter, in which case the first live fix decides
+            if (lastKnownGPS != null && acceptFix(lastKnownGPS)) {
                 updateLocationInfo();
-            } else if (lastKnownNetwork != null) {
-                currentLocation = lastKnownNetwork;
+            } else if (lastKnownNetwork != null && acceptFix(lastKnownNetwork)) {
                 updateLocationInfo();
             }
         }
     }
 
+    private void applySamplingPolicy() {
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        String provider = samplingPolicy.getProvider() == LocationSamplingPolicy.Provider.GPS
+                ? LocationManager.GPS_PROVIDER : LocationManager.NETWORK_PROVIDER;
+        if (!locationManager.isProviderEnabled(provider)) {
+            // Better a fix of the wrong kind than none at all
+            provider = provider.equals(LocationManager.GPS_PROVIDER)
+                    ? LocationManager.NETWORK_PROVIDER : LocationManager.GPS_PROVIDER;
+        }
+        locationManager.removeUpdates(this);
+        locationManager.requestLocationUpdates(provider, samplingPolicy.getIntervalMillis(),
+                samplingPolicy.getMinDistanceMeters(), this);
+        Log.d("LOCATION", "Sampling " + samplingPolicy.getTier() + " via " + provider + " every " +
+                samplingPolicy.getIntervalMillis() + " ms");
+    }
+
+    // Distance to the edge of the selected TPH, or of the nearest one when none is selected
+    private double boundaryDistance(Location location) {
+        if (tphLocationSet) {
+            return GeoMath.haversine(location.getLatitude(), location.getLongitude(),
+                    tphLatitude, tphLongitude) - tphRadius;
+        }
+        TphPoints points = tphPoints;
+        if (points != null && points.index.nearest(location.getLatitude(), location.getLongitude(),
+                nearestId, nearestDistance) > 0) {
+            return nearestDistance[0] - points.engine.radiusOf(nearestId[0]);
+        }
+        return Double.NaN;
+    }
+
+    // Runs the fix through the filter; on success the location carries the smoothed position
+    // and becomes currentLocation. Ages use the elapsed-realtime clock, which the user
+    // cannot set.
+    private boolean acceptFix(Location location) {
+        long fixTime = location.getElapsedRealtimeNanos() / 1_000_000;
+        long now = SystemClock.elapsedRealtime();
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : Float.NaN;
+        float speed = location.hasSpeed() ? location.getSpeed() : Float.NaN;
+        boolean gps = LocationManager.GPS_PROVIDER.equals(location.getProvider());
+        if (trace != null) {
+            trace.fix(now, (int) Math.min(now - fixTime, Integer.MAX_VALUE), location.getLatitude(),
+                    location.getLongitude(), accuracy, speed, gps);
+        }
+        if (!fixFilter.accept(location.getLatitude(), location.getLongitude(), accuracy, speed, gps,
+                fixTime, now)) {
+            return false;
+        }
+        location.setLatitude(fixFilter.getLatitude());
+        location.setLongitude(fixFilter.getLongitude());
+        location.setAccuracy((float) fixFilter.getAccuracyMeters());
+        currentLocation = location;
+        return true;
+    }
+
+    private FixFilter.Verdict geofenceVerdict() {
+        return fixFilter.classify(tphLatitude, tphLongitude, tphRadius, SystemClock.elapsedRealtime());
+    }
+
     // Location listener methods
     @Override
     public void onLocationChanged(Location location) {
-        currentLocation = location;
+        FIXES.increment();
+        // Elapsed realtime, as acceptFix uses: getTime() is GPS or network wall-clock time,
+        // which can jump and differs between providers, and would skew the policy's windows
+        // and the engine's dwell timer whenever the provider changes
+        long fixTime = location.getElapsedRealtimeNanos() / 1_000_000;
+        // The raw fix, ahead of the filter: the policy's own NETWORK tiers deliver fixes the
+        // filter may well reject, and it must still see them to move back to GPS
+        if (samplingPolicy.onFix(location.getLatitude(), location.getLongitude(), location.getAccuracy(),
+                location.hasSpeed() ? location.getSpeed() : Float.NaN, fixTime,
+                boundaryDistance(location))) {
+            applySamplingPolicy();
+        }
+
+        if (!acceptFix(location)) {
+            FIXES_REJECTED.increment();
+            return;
+        }
         updateLocationInfo();
 
         if (tphLocationSet) {
             updateDistanceInfo();
         }
 
-        Log.d("LOCATION", "New location: " + location.getLatitude() + ", " + location.getLongitude() +
-                " Accuracy: " + location.getAccuracy() + "m");
+        TphPoints points = tphPoints;
+        if (points != null) {
+            long start = System.nanoTime();
+            points.engine.onFix(location.getLatitude(), location.getLongitude(), fixTime);
+            DECISION_TIME.recordSince(start);
+            FIX_TO_DECISION.record(SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos());
+        }
+        // After the engine, so fences just entered already show as inside
+        radarView.onFix(currentLocation.getLatitude(), currentLocation.getLongitude(), currentLocation.getAccuracy());
     }
 
     @Override
@@ -220,43 +368,33 @@ public class MainActivity extends AppCompatActivity implements LocationListener
     }
 
     private void loadSelectedTPHLocation() {
-        int kodeBlokPos = spinnerKodeBlok.getSelectedItemPosition();
-        int tphPos = spinnerTPH.getSelectedItemPosition();
-
-        if (kodeBlokPos > 0 && tphPos > 0) {
-            String selectedKodeBlok = kodeBlokList.get(kodeBlokPos);
-            String selectedTPH = tphList.get(tphPos);
-
-            Cursor cursor = dbHelper.getTPHData(selectedKodeBlok, selectedTPH);
-            if (cursor.moveToFirst()) {
-                String coordinate = cursor.getString(cursor.getColumnIndexOrThrow("coordinate"));
-                String company = cursor.getString(cursor.getColumnIndexOrThrow("company"));
-
-                // Parse coordinate (format: "latitude,longitude,")
-                if (coordinate != null && !coordinate.isEmpty()) {
-                    String[] coords = coordinate.split(",");
-                    if (coords.length >= 2) {
-                        try {
-                            tphLatitude = Double.parseDouble(coords[0].trim());
-                            tphLongitude = Double.parseDouble(coords[1].trim());
-                            tphLocationSet = true;
-
-                            Toast.makeText(this, "TPH location loaded successfully", Toast.LENGTH_SHORT).show();
-
-                        } catch (NumberFormatException e) {
-                            Toast.makeText(this, "Invalid coordinate format", Toast.LENGTH_SHORT).show();
-                            tphLocationSet = false;
-                        }
-                    } else {
-                        Toast.makeText(this, "Coordinate data incomplete", Toast.LENGTH_SHORT).show();
-                        tphLocationSet = false;
+        String selectedKodeBlok = pickerKodeBlok.getPicked();
+        String selectedTPH = pickerTPH.getPicked();
+
+        if (selectedKodeBlok != null && selectedTPH != null) {
+            cancel(locationTask);
+            locationTask = repository.loadTPHLocation(selectedKodeBlok, selectedTPH, location -> {
+                // Coordinates are parsed at sync time; null means the source text was unusable
+                if (location != null) {
+                    tphLatitude = location.latitude;
+                    tphLongitude = location.longitude;
+                    tphRadius = Double.isNaN(location.radius) ? GEOFENCE_RADIUS : location.radius;
+                    tphBlock = location.block;
+                    tphLocationSet = true;
+                    if (trace != null) {
+                        trace.fence(SystemClock.elapsedRealtime(), tphLatitude, tphLongitude,
+                                (float) tphRadius);
                     }
+                    // A new target: sample densely until the policy has a fix against it
+                    samplingPolicy.reset();
+                    applySamplingPolicy();
+
+                    Toast.makeText(this, "TPH location loaded successfully", Toast.LENGTH_SHORT).show();
                 } else {
-                    Toast.makeText(this, "No coordinate data found", Toast.LENGTH_SHORT).show();
+                    Toast.makeText(this, "Invalid coordinate format", Toast.LENGTH_SHORT).show();
                     tphLocationSet = false;
                 }
-            }
-            cursor.close();
+            });
         }
     }
 
@@ -272,45 +410,182 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         }
 
         // Calculate distance using Haversine formula for better accuracy
-        double distance = calculateDistance(
+        double distance = GeoMath.haversine(
                 currentLocation.getLatitude(), currentLocation.getLongitude(),
                 tphLatitude, tphLongitude
         );
 
-        boolean isWithinRange = distance <= GEOFENCE_RADIUS;
+        FixFilter.Verdict verdict = geofenceVerdict();
+        if (trace != null) {
+            trace.decision(SystemClock.elapsedRealtime(), verdict, (float) distance);
+        }
+        // Queued for the log's writer thread; the check-in is on disk within milliseconds
+        checkInScheduler.record(CheckIn.create(System.currentTimeMillis(), pickerKodeBlok.getPicked(),
+                pickerTPH.getPicked(), verdict, currentLocation.getLatitude(), currentLocation.getLongitude(),
+                currentLocation.getAccuracy(), distance, tphRadius));
 
         // Show geofence status
         geofenceStatusCard.setVisibility(View.VISIBLE);
 
-        if (isWithinRange) {
+        if (verdict == FixFilter.Verdict.INSIDE) {
             textGeofenceStatus.setText("INSIDE GEOFENCE AREA");
             textGeofenceStatus.setTextColor(getResources().getColor(android.R.color.holo_green_dark));
             textDistanceInfo.setText(String.format("📍 Distance: %.1f meters (Within %.0f m radius)",
-                    distance, GEOFENCE_RADIUS));
-        } else {
+                    distance, tphRadius) + blockStatus());
+        } else if (verdict == FixFilter.Verdict.OUTSIDE) {
             textGeofenceStatus.setText("OUTSIDE GEOFENCE AREA");
             textGeofenceStatus.setTextColor(getResources().getColor(android.R.color.holo_red_dark));
             textDistanceInfo.setText(String.format("📍 Distance: %.1f meters (Outside %.0f m radius)",
-                    distance, GEOFENCE_RADIUS));
+                    distance, tphRadius) + blockStatus());
+        } else {
+            // Too close to the edge for the current accuracy, or the last good fix is stale
+            textGeofenceStatus.setText("UNCERTAIN - WAIT FOR BETTER GPS");
+            textGeofenceStatus.setTextColor(getResources().getColor(android.R.color.holo_orange_dark));
+            textDistanceInfo.setText(String.format("📍 Distance: %.1f ± %.0f meters (%.0f m radius)",
+                    distance, currentLocation.getAccuracy(), tphRadius) + blockStatus());
         }
 
         // Show validation result as toast
-        String status = isWithinRange ? "VALID - Inside area" : "INVALID - Outside area";
+        String status = verdict == FixFilter.Verdict.INSIDE ? "VALID - Inside area"
+                : verdict == FixFilter.Verdict.OUTSIDE ? "INVALID - Outside area" : "UNCERTAIN - Near the edge";
         Toast.makeText(this, status + " (Distance: " + String.format("%.1f", distance) + "m)", Toast.LENGTH_LONG).show();
     }
 
-    // Calculate distance using Haversine formula (more accurate than simple lat/lng calculation)
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371000; // Earth's radius in meters
+    // Block membership is shown alongside the TPH verdict; the TPH radius still decides
+    private String blockStatus() {
+        if (tphBlock == null) return "";
+        FixFilter.Verdict verdict = fixFilter.classify(tphBlock, SystemClock.elapsedRealtime());
+        return verdict == FixFilter.Verdict.INSIDE ? "\n🧱 Inside block"
+                : verdict == FixFilter.Verdict.OUTSIDE ? "\n🧱 Outside block" : "\n🧱 Near the block edge";
+    }
+
+    private void findNearestTPH() {
+        if (currentLocation == null) {
+            Toast.makeText(this, "⏳ Getting GPS location...", Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        TphPoints points = tphPoints;
+        if (points == null) {
+            Toast.makeText(this, "TPH locations are still loading...", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        double lat = currentLocation.getLatitude();
+        double lng = currentLocation.getLongitude();
+        int[] ids = nearestId;
+        double[] distances = nearestDistance;
+        if (points.index.nearest(lat, lng, ids, distances) == 0) {
+            Toast.makeText(this, "No TPH with coordinates found", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Each TPH by its own radius, as the engine decides entries
+        int insideCount = points.engine.countContaining(lat, lng);
+
+        String kodeBlok = points.kodeBlok[ids[0]];
+        String noTPH = points.noTPH[ids[0]];
+        selectTPH(kodeBlok, noTPH);
+
+        Toast.makeText(this, String.format("Nearest TPH: %s / %s (%.1f m), inside %d geofence(s)",
+                kodeBlok, noTPH, distances[0], insideCount), Toast.LENGTH_LONG).show();
+    }
+
+    // Moves both pickers to the given TPH; the TPH picker is set once its index has loaded
+    private void selectTPH(String kodeBlok, String noTPH) {
+        if (kodeBlokAdapter.getIndex().find(kodeBlok) < 0) return;
+
+        pendingTPHSelection = noTPH;
+        if (kodeBlok.equals(pickerKodeBlok.getPicked())) {
+            loadTPHData(kodeBlok);
+        } else {
+            pickerKodeBlok.pick(kodeBlok);
+        }
+    }
+
+    private void loadSpatialIndex() {
+        repository.execute(() -> {
+            // The mapped snapshot avoids a table scan on every start; the first start after
+            // an upgrade writes it
+            TphSnapshot snapshot = dbHelper.getSnapshot();
+            if (snapshot == null) snapshot = dbHelper.refreshSnapshot();
+            return snapshot != null ? buildPoints(snapshot) : buildPointsFromTable();
+        }, points -> {
+            tphPoints = points;
+            radarView.setFrame(points.radar);
+        });
+    }
+
+    private TphPoints buildPoints(TphSnapshot snapshot) {
+        int count = 0;
+        for (int p = 0; p < snapshot.getPointCount(); p++) {
+            if (!Double.isNaN(snapshot.getLatitude(p))) count++;
+        }
+        String[] kodeBlok = new String[count];
+        String[] noTPH = new String[count];
+        double[] lat = new double[count];
+        double[] lng = new double[count];
+        double[] radius = new double[count];
+
+        int i = 0;
+        for (int b = 0; b < snapshot.getBlockCount(); b++) {
+            String block = snapshot.getKodeBlok(b);
+            for (int p = snapshot.getBlockStart(b); p < snapshot.getBlockStart(b + 1); p++) {
+                if (Double.isNaN(snapshot.getLatitude(p))) continue;
+                kodeBlok[i] = block;
+                noTPH[i] = snapshot.getNoTPH(p);
+                lat[i] = snapshot.getLatitude(p);
+                lng[i] = snapshot.getLongitude(p);
+                radius[i] = snapshot.getRadius(p);
+                i++;
+            }
+        }
+        return buildPoints(kodeBlok, noTPH, lat, lng, radius);
+    }
+
+    private TphPoints buildPointsFromTable() {
+        Cursor cursor = dbHelper.getAllLocations();
+        int count = cursor.getCount();
+        String[] kodeBlok = new String[count];
+        String[] noTPH = new String[count];
+        double[] lat = new double[count];
+        double[] lng = new double[count];
+        double[] radius = new double[count];
+
+        int i = 0;
+        while (cursor.moveToNext()) {
+            kodeBlok[i] = cursor.getString(0);
+            noTPH[i] = cursor.getString(1);
+            lat[i] = cursor.getDouble(2);
+            lng[i] = cursor.getDouble(3);
+            radius[i] = cursor.isNull(4) ? Double.NaN : cursor.getDouble(4);
+            i++;
+        }
+        cursor.close();
+        return buildPoints(kodeBlok, noTPH, lat, lng, radius);
+    }
 
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    private TphPoints buildPoints(String[] kodeBlok, String[] noTPH, double[] lat, double[] lng, double[] radius) {
+        TphSpatialIndex index = new TphSpatialIndex(lat, lng);
+        GeofenceEngine engine = new GeofenceEngine(lat, lng, radius, index, GEOFENCE_RADIUS);
+        engine.addListener((fenceId, transition, distance, time) ->
+                onGeofenceTransition(fenceId, kodeBlok[fenceId], noTPH[fenceId], transition, distance));
+        return new TphPoints(kodeBlok, noTPH, index, engine, new RadarFrame(lat, lng, index, engine));
+    }
 
-        return R * c;
+    // Called on the main thread from onLocationChanged
+    private void onGeofenceTransition(int fenceId, String kodeBlok, String noTPH,
+                                      GeofenceEngine.Transition transition, double distance) {
+        TRANSITIONS.increment();
+        if (trace != null) {
+            trace.transition(SystemClock.elapsedRealtime(), fenceId, transition, (float) distance);
+        }
+        Log.d("GEOFENCE", transition + " " + kodeBlok + "/" + noTPH + " at " + String.format("%.1f", distance) + "m");
+
+        if (transition == GeofenceEngine.Transition.ENTER) {
+            Toast.makeText(this, "➡️ Entered TPH " + kodeBlok + " / " + noTPH, Toast.LENGTH_SHORT).show();
+        } else if (transition == GeofenceEngine.Transition.EXIT) {
+            Toast.makeText(this, "⬅️ Left TPH " + kodeBlok + " / " + noTPH, Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void updateLocationInfo() {
@@ -327,199 +602,151 @@ public class MainActivity extends AppCompatActivity implements LocationListener
     private void updateDistanceInfo() {
         if (currentLocation == null || !tphLocationSet) return;
 
-        double distance = calculateDistance(
+        double distance = GeoMath.haversine(
                 currentLocation.getLatitude(), currentLocation.getLongitude(),
                 tphLatitude, tphLongitude
         );
-        boolean isWithinRange = distance <= GEOFENCE_RADIUS;
+        FixFilter.Verdict verdict = geofenceVerdict();
 
         if (geofenceStatusCard.getVisibility() == View.VISIBLE) {
             textDistanceInfo.setText(String.format("📍 Distance: %.1f meters %s",
                     distance,
-                    isWithinRange ? "(Inside area)" : "(Outside area)"));
+                    verdict == FixFilter.Verdict.INSIDE ? "(Inside area)"
+                            : verdict == FixFilter.Verdict.OUTSIDE ? "(Outside area)" : "(Uncertain)"));
         }
     }
 
     private void hideGeofenceStatus() {
+        cancel(locationTask);
         geofenceStatusCard.setVisibility(View.GONE);
+        if (tphLocationSet && trace != null) {
+            trace.fence(SystemClock.elapsedRealtime(), Double.NaN, Double.NaN, 0);
+        }
         tphLocationSet = false;
         tphLatitude = 0.0;
         tphLongitude = 0.0;
+        tphRadius = GEOFENCE_RADIUS;
+        tphBlock = null;
     }
 
     private void syncData() {
-        showProgress(true);
-        setButtonsEnabled(false);
-
-        new Thread(() -> {
-            try {
-                runOnUiThread(() -> progressText.setText("Connecting to server..."));
-
-                URL url = new URL(API_URL);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-                conn.setConnectTimeout(15000);
-                conn.setReadTimeout(30000);
-
-                runOnUiThread(() -> progressText.setText("Downloading data..."));
-
-                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String inputLine;
-
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                in.close();
-
-                runOnUiThread(() -> progressText.setText("Processing data..."));
-                JSONArray jsonArray = new JSONArray(response.toString());
-
-                runOnUiThread(() -> progressText.setText("Clearing old data..."));
-                dbHelper.clearData();
-
-                runOnUiThread(() -> progressText.setText("Saving to database..."));
-
-                for (int i = 0; i < jsonArray.length(); i++) {
-                    JSONObject obj = jsonArray.getJSONObject(i);
-                    String company = obj.optString("company");
-                    String location = obj.optString("location");
-                    String kodeBlok = obj.optString("kodeBlok");
-                    String noTPH = obj.optString("noTPH");
-                    String coordinate = obj.optString("coordinate");
-
-                    dbHelper.insertData(company, location, kodeBlok, noTPH, coordinate);
+        if (!syncScheduler.syncNow()) {
+            Toast.makeText(this, "Sync already in progress", Toast.LENGTH_SHORT).show();
+        }
+    }
 
-                    if (i % 100 == 0) {
-                        final int progress = i;
-                        runOnUiThread(() ->
-                                progressText.setText("Saving... (" + progress + "/" + jsonArray.length() + ")")
-                        );
-                    }
+    private void onSyncStatus(SyncStatus status) {
+        switch (status.getState()) {
+            case RUNNING:
+                if (!syncing) {
+                    syncing = true;
+                    showProgress(true);
+                    setButtonsEnabled(false);
                 }
+                progressText.setText((status.getRecords() == 0 ? "Connecting to server..."
+                        : "Saving... (" + status.getRecords() + " records)") + estateProgress(status));
+                break;
+            case SUCCEEDED:
+            case FAILED:
+                // Outcomes of syncs that finished before this screen existed are not news
+                if (!syncing) break;
+                syncing = false;
+                showProgress(false);
+                setButtonsEnabled(true);
+                Toast.makeText(this, syncMessage(status), Toast.LENGTH_LONG).show();
+                break;
+            default:
+                break;
+        }
+    }
 
-                final int totalRecords = jsonArray.length();
-                runOnUiThread(() -> {
-                    showProgress(false);
-                    setButtonsEnabled(true);
-                    loadKodeBlokData();
-                    Toast.makeText(MainActivity.this, "Sync successful! " + totalRecords + " records loaded", Toast.LENGTH_LONG).show();
-                });
+    // Empty for a single estate
+    private static String estateProgress(SyncStatus status) {
+        List<EstateSyncStatus> estates = status.getEstates();
+        if (estates.size() < 2) return "";
+        int done = 0;
+        StringBuilder failed = new StringBuilder();
+        for (EstateSyncStatus estate : estates) {
+            if (estate.getState() == SyncStatus.State.SUCCEEDED) done++;
+            if (estate.getState() == SyncStatus.State.FAILED) failed.append(failed.length() == 0 ? "" : ", ")
+                    .append(estate.getEstate());
+        }
+        return "\n" + done + " of " + estates.size() + " estates done"
+                + (failed.length() > 0 ? ", failed: " + failed : "");
+    }
 
-            } catch (Exception e) {
-                Log.e("SYNC", "Error during sync", e);
-                runOnUiThread(() -> {
-                    showProgress(false);
-                    setButtonsEnabled(true);
-                    Toast.makeText(MainActivity.this, "Sync failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
-            }
-        }).start();
+    private static String syncMessage(SyncStatus status) {
+        if (status.getState() == SyncStatus.State.FAILED) {
+            return "Sync failed: " + status.getError();
+        }
+        switch (status.getResult().getMode()) {
+            case NOT_MODIFIED:
+                return "Data is already up to date";
+            case DELTA:
+                return "Sync successful! " + status.getRecords() + " records updated";
+            default:
+                return "Sync successful! " + status.getRecords() + " records loaded";
+        }
     }
 
     private void checkDataAndSetupUI() {
-        if (dbHelper.hasData()) {
-            dropdownContainer.setVisibility(View.VISIBLE);
-            btnShowAll.setVisibility(View.VISIBLE);
-            loadKodeBlokData();
-            Toast.makeText(this, "📍 Data available! Select Kode Blok and TPH", Toast.LENGTH_SHORT).show();
-        } else {
-            dropdownContainer.setVisibility(View.GONE);
-            btnShowAll.setVisibility(View.GONE);
-            hideGeofenceStatus();
-            Toast.makeText(this, "No data available. Please sync data first", Toast.LENGTH_SHORT).show();
-        }
+        repository.hasData(hasData -> {
+            if (hasData) {
+                dropdownContainer.setVisibility(View.VISIBLE);
+                btnShowAll.setVisibility(View.VISIBLE);
+                radarView.setVisibility(View.VISIBLE);
+                loadKodeBlokData();
+                loadSpatialIndex();
+                Toast.makeText(this, "📍 Data available! Select Kode Blok and TPH", Toast.LENGTH_SHORT).show();
+            } else {
+                dropdownContainer.setVisibility(View.GONE);
+                btnShowAll.setVisibility(View.GONE);
+                radarView.setVisibility(View.GONE);
+                hideGeofenceStatus();
+                Toast.makeText(this, "No data available. Please sync data first", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void loadKodeBlokData() {
-        kodeBlokList.clear();
-        kodeBlokList.add("-- Select Kode Blok --");
-
-        Cursor cursor = dbHelper.getDistinctKodeBlok();
-        if (cursor.moveToFirst()) {
-            do {
-                String kodeBlok = cursor.getString(0);
-                if (kodeBlok != null && !kodeBlok.isEmpty()) {
-                    kodeBlokList.add(kodeBlok);
-                }
-            } while (cursor.moveToNext());
-        }
-        cursor.close();
-
-        kodeBlokAdapter.notifyDataSetChanged();
-        clearTPHSpinner();
+        cancel(kodeBlokTask);
+        kodeBlokTask = repository.loadKodeBlokIndex(index -> {
+            kodeBlokAdapter.setIndex(index);
+            pickerKodeBlok.clearPick();
+            clearTPHPicker();
+        });
     }
 
     private void loadTPHData(String kodeBlok) {
-        tphList.clear();
-        tphList.add("-- Select No TPH --");
-
-        Cursor cursor = dbHelper.getTPHByKodeBlok(kodeBlok);
-        if (cursor.moveToFirst()) {
-            do {
-                String noTPH = cursor.getString(0);
-                if (noTPH != null && !noTPH.isEmpty()) {
-                    tphList.add(noTPH);
-                }
-            } while (cursor.moveToNext());
-        }
-        cursor.close();
+        cancel(tphTask);
+        tphTask = repository.loadTPHIndex(kodeBlok, index -> {
+            tphAdapter.setIndex(index);
+            pickerTPH.clearPick();
+            pickerTPH.setEnabled(true);
+            btnCheckGeofence.setEnabled(false);
+            hideGeofenceStatus();
 
-        tphAdapter.notifyDataSetChanged();
-        spinnerTPH.setEnabled(true);
-        btnCheckGeofence.setEnabled(false);
+            if (pendingTPHSelection != null) {
+                int i = index.find(pendingTPHSelection);
+                pendingTPHSelection = null;
+                if (i >= 0) {
+                    pickerTPH.pick(index.get(i));
+                }
+            }
+        });
     }
 
-    private void clearTPHSpinner() {
-        tphList.clear();
-        tphList.add("-- Select Kode Blok first --");
-        tphAdapter.notifyDataSetChanged();
-        spinnerTPH.setEnabled(false);
+    private void clearTPHPicker() {
+        cancel(tphTask);
+        tphAdapter.setIndex(PrefixIndex.EMPTY);
+        pickerTPH.clearPick();
+        pickerTPH.setEnabled(false);
         btnCheckGeofence.setEnabled(false);
         hideGeofenceStatus();
     }
 
     private void showAllData() {
-        Cursor cursor = dbHelper.getAllData();
-        StringBuilder sb = new StringBuilder();
-        int count = 0;
-
-        if (cursor.moveToFirst()) {
-            sb.append("📊 ALL TPH DATA\n═══════════════\n\n");
-
-            do {
-                String company = cursor.getString(cursor.getColumnIndexOrThrow("company"));
-                String location = cursor.getString(cursor.getColumnIndexOrThrow("location"));
-                String kodeBlok = cursor.getString(cursor.getColumnIndexOrThrow("kodeBlok"));
-                String noTPH = cursor.getString(cursor.getColumnIndexOrThrow("noTPH"));
-                String coordinate = cursor.getString(cursor.getColumnIndexOrThrow("coordinate"));
-
-                count++;
-                sb.append("📌 #").append(count).append("\n");
-                sb.append("Company: ").append(company).append("\n");
-                sb.append("Location: ").append(location).append("\n");
-                sb.append("Kode Blok: ").append(kodeBlok).append("\n");
-                sb.append("No TPH: ").append(noTPH).append("\n");
-                sb.append("Coordinate: ").append(coordinate).append("\n");
-                sb.append("─────────────────\n\n");
-
-                if (count >= 20) {
-                    sb.append("... and ").append(cursor.getCount() - 20).append(" more records\n\n");
-                    break;
-                }
-            } while (cursor.moveToNext());
-
-            sb.append("📊 Total: ").append(cursor.getCount()).append(" records");
-        }
-
-        cursor.close();
-
-        // Show data in alert dialog instead of textResult
-        new androidx.appcompat.app.AlertDialog.Builder(this)
-                .setTitle("All TPH Data")
-                .setMessage(sb.toString())
-                .setPositiveButton("OK", null)
-                .show();
+        startActivity(new Intent(this, TphBrowserActivity.class));
     }
 
     private void showProgress(boolean show) {
@@ -532,12 +759,47 @@ public class MainActivity extends AppCompatActivity implements LocationListener
     private void setButtonsEnabled(boolean enabled) {
         btnSync.setEnabled(enabled);
         btnShowAll.setEnabled(enabled);
-        btnCheckGeofence.setEnabled(enabled && spinnerTPH.getSelectedItemPosition() > 0);
+        btnCheckGeofence.setEnabled(enabled && pickerTPH.getPicked() != null);
+    }
+
+    private static void cancel(TphRepository.Task task) {
+        if (task != null) task.cancel();
+    }
+
+    private static class TphPoints {
+        final String[] kodeBlok;
+        final String[] noTPH;
+        final TphSpatialIndex index;
+        final GeofenceEngine engine;
+        // Main thread only, like the engine
+        final RadarFrame radar;
+
+        TphPoints(String[] kodeBlok, String[] noTPH, TphSpatialIndex index, GeofenceEngine engine,
+                  RadarFrame radar) {
+            this.kodeBlok = kodeBlok;
+            this.noTPH = noTPH;
+            this.index = index;
+            this.engine = engine;
+            this.radar = radar;
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // The process may be killed in the background; keep what was recorded so far
+        if (trace != null) trace.flush();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        syncScheduler.removeListener(syncListener);
+        repository.close();
+        if (trace != null) {
+            trace.close();
+            trace = null;
+        }
         if (locationManager != null) {
             locationManager.removeUpdates(this);
         }
@@ -0,0 +1,69 @@
+package com.example.geofenceapp;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.DateFormat;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.geofenceapp.metrics.Metrics;
+
+import java.io.File;
+
+// Debug screen listing every counter and latency histogram, refreshed every second while
+// visible. Reached by long-pressing Sync in debug builds.
+public class MetricsActivity extends AppCompatActivity {
+    private static final long REFRESH_MILLIS = 1000;
+
+    private TextView textMetrics;
+    private TextView textSince;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            // Snapshots are cheap: a copy of a few hundred longs per histogram
+            textSince.setText("Since " + DateFormat.format("yyyy-MM-dd HH:mm:ss", Metrics.getResetAtMillis()));
+            textMetrics.setText(Metrics.format());
+            handler.postDelayed(this, REFRESH_MILLIS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        textMetrics = findViewById(R.id.textMetrics);
+        textSince = findViewById(R.id.textMetricsSince);
+        findViewById(R.id.btnMetricsReset).setOnClickListener(v -> {
+            Metrics.reset();
+            handler.removeCallbacks(refresh);
+            refresh.run();
+        });
+        findViewById(R.id.btnMetricsDump).setOnClickListener(v -> dump());
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refresh.run();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        handler.removeCallbacks(refresh);
+    }
+
+    private void dump() {
+        GeofenceApp app = (GeofenceApp) getApplication();
+        app.getMetricsExecutor().execute(() -> {
+            File file = app.dumpMetrics();
+            runOnUiThread(() -> Toast.makeText(this, file != null
+                    ? "Written to " + file.getName() : "❌ Could not write metrics", Toast.LENGTH_SHORT).show());
+        });
+    }
+}
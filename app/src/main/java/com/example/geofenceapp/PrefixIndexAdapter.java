@@ -0,0 +1,109 @@
+package com.example.geofenceapp;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import com.example.geofenceapp.service.PrefixIndex;
+
+// Suggestions for a TphPickerView: a window [start, end) onto a PrefixIndex. Filtering
+// runs on the Filter thread but is only two binary searches, and the list shown is never a
+// copy of the values, so a keystroke costs the same on an estate of any size.
+class PrefixIndexAdapter extends BaseAdapter implements Filterable {
+    // One filter result; the index it was computed on travels with it
+    private static final class Run {
+        final PrefixIndex index;
+        final int start;
+        final int end;
+
+        Run(PrefixIndex index, int start, int end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final LayoutInflater inflater;
+    // Read by the filter thread
+    private volatile PrefixIndex index = PrefixIndex.EMPTY;
+    private int start;
+    private int end;
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            PrefixIndex snapshot = index;
+            CharSequence prefix = constraint == null ? "" : constraint;
+            int from = snapshot.start(prefix);
+            int to = snapshot.end(prefix);
+            FilterResults results = new FilterResults();
+            results.values = new Run(snapshot, from, to);
+            results.count = to - from;
+            return results;
+        }
+
+        @Override
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            Run run = (Run) results.values;
+            // The list was replaced while this filter ran
+            if (run.index != index) return;
+            start = run.start;
+            end = run.end;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public CharSequence convertResultToString(Object resultValue) {
+            return (String) resultValue;
+        }
+    };
+
+    PrefixIndexAdapter(Context context) {
+        inflater = LayoutInflater.from(context);
+    }
+
+    // Shows every value until the next filter
+    void setIndex(PrefixIndex index) {
+        this.index = index;
+        start = 0;
+        end = index.size();
+        notifyDataSetChanged();
+    }
+
+    PrefixIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public int getCount() {
+        return end - start;
+    }
+
+    @Override
+    public String getItem(int position) {
+        return index.get(start + position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return start + position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = convertView != null ? (TextView) convertView
+                : (TextView) inflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false);
+        view.setText(getItem(position));
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
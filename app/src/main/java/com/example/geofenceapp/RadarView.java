@@ -0,0 +1,160 @@
+package com.example.geofenceapp;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.example.geofenceapp.geo.RadarFrame;
+import com.example.geofenceapp.metrics.Counter;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+
+// North-up minimap of the TPH points and fence radii around the current fix. Geometry is
+// projected once per fix into RadarFrame's float buffers; onDraw only hands those to a few
+// batched drawPoints/drawLines calls and allocates nothing, so it stays well inside a frame
+// with thousands of points in range. Tapping cycles through RANGES_METERS.
+public class RadarView extends View {
+    static final int[] RANGES_METERS = {100, 250, 500, 1000};
+
+    // Recording the frame on the main thread; the GPU side is not visible from here
+    private static final Histogram DRAW_TIME = Metrics.histogram("radar.draw");
+    private static final Counter FRAMES = Metrics.counter("radar.frames");
+
+    private final Paint backgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint ringPaint = new Paint();
+    private final Paint insideRingPaint = new Paint();
+    private final Paint pointPaint = new Paint();
+    private final Paint selfPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint accuracyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float selfRadius;
+
+    private RadarFrame frame;
+    private int rangeIndex = 1;
+    private String rangeLabel;
+    private boolean hasFix;
+    private double fixLat;
+    private double fixLng;
+    private float accuracyMeters;
+    // Size of the view in pixels, set in onSizeChanged
+    private float centerX;
+    private float centerY;
+    private float radiusPixels;
+
+    public RadarView(Context context) {
+        this(context, null);
+    }
+
+    public RadarView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+
+        backgroundPaint.setColor(Color.rgb(16, 32, 24));
+        gridPaint.setColor(Color.argb(96, 120, 220, 140));
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(density);
+        // Hairlines and square points are the cheapest primitives to rasterize
+        ringPaint.setColor(Color.argb(160, 120, 200, 255));
+        ringPaint.setStrokeWidth(0);
+        insideRingPaint.setColor(Color.rgb(120, 255, 120));
+        insideRingPaint.setStrokeWidth(2 * density);
+        pointPaint.setColor(Color.rgb(255, 210, 80));
+        pointPaint.setStrokeWidth(4 * density);
+        pointPaint.setStrokeCap(Paint.Cap.SQUARE);
+        selfPaint.setColor(Color.WHITE);
+        accuracyPaint.setColor(Color.argb(48, 255, 255, 255));
+        labelPaint.setColor(Color.argb(200, 200, 255, 210));
+        labelPaint.setTextSize(12 * density);
+        selfRadius = 4 * density;
+
+        updateRangeLabel();
+        setOnClickListener(v -> {
+            rangeIndex = (rangeIndex + 1) % RANGES_METERS.length;
+            updateRangeLabel();
+            project();
+        });
+    }
+
+    // The points to show; null clears them. Main thread.
+    public void setFrame(RadarFrame frame) {
+        this.frame = frame;
+        project();
+    }
+
+    // Main thread, on every accepted fix
+    public void onFix(double lat, double lng, float accuracyMeters) {
+        this.hasFix = true;
+        this.fixLat = lat;
+        this.fixLng = lng;
+        this.accuracyMeters = accuracyMeters;
+        project();
+    }
+
+    public int getRangeMeters() {
+        return RANGES_METERS[rangeIndex];
+    }
+
+    private void updateRangeLabel() {
+        rangeLabel = getRangeMeters() + " m";
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        centerX = w / 2f;
+        centerY = h / 2f;
+        radiusPixels = Math.min(w, h) / 2f;
+        project();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // Square, as wide as it is allowed to be
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        setMeasuredDimension(width, resolveSize(width, heightMeasureSpec));
+    }
+
+    private float pixelsPerMeter() {
+        return radiusPixels / getRangeMeters();
+    }
+
+    private void project() {
+        if (frame != null && hasFix && radiusPixels > 0) {
+            frame.update(fixLat, fixLng, getRangeMeters(), centerX, centerY, pixelsPerMeter());
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        long start = System.nanoTime();
+        canvas.drawCircle(centerX, centerY, radiusPixels, backgroundPaint);
+        canvas.drawCircle(centerX, centerY, radiusPixels / 2, gridPaint);
+        canvas.drawCircle(centerX, centerY, radiusPixels - gridPaint.getStrokeWidth(), gridPaint);
+        canvas.drawLine(centerX, centerY - radiusPixels, centerX, centerY + radiusPixels, gridPaint);
+        canvas.drawLine(centerX - radiusPixels, centerY, centerX + radiusPixels, centerY, gridPaint);
+        canvas.drawText(rangeLabel, centerX + 4, centerY - radiusPixels + labelPaint.getTextSize(), labelPaint);
+
+        if (hasFix) {
+            RadarFrame f = frame;
+            if (f != null) {
+                canvas.save();
+                canvas.clipRect(centerX - radiusPixels, centerY - radiusPixels,
+                        centerX + radiusPixels, centerY + radiusPixels);
+                canvas.drawLines(f.getRings(), 0, f.getRingFloats(), ringPaint);
+                canvas.drawLines(f.getInsideRings(), 0, f.getInsideRingFloats(), insideRingPaint);
+                canvas.drawPoints(f.getPoints(), 0, f.getPointCount() * 2, pointPaint);
+                canvas.restore();
+            }
+            canvas.drawCircle(centerX, centerY, Math.min(accuracyMeters * pixelsPerMeter(), radiusPixels),
+                    accuracyPaint);
+            canvas.drawCircle(centerX, centerY, selfRadius, selfPaint);
+        }
+        DRAW_TIME.recordSince(start);
+        FRAMES.increment();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.geofenceapp;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import com.example.geofenceapp.service.DatabaseHelper;
+import com.example.geofenceapp.service.TphPage;
+import com.example.geofenceapp.service.TphPager;
+import com.example.geofenceapp.service.TphRepository;
+
+// Scrollable view of every synced TPH row. The list only binds the rows on screen and the
+// pager keeps a few pages around them, so the first page paints straight away and memory
+// stays flat on a table of any size.
+public class TphBrowserActivity extends AppCompatActivity implements TphPager.Listener {
+    // Typing restarts the search only once it pauses
+    private static final long SEARCH_DELAY_MILLIS = 300;
+
+    private TphRepository repository;
+    private TphPager pager;
+    private RowAdapter adapter;
+    private TextView textStatus;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private String pendingQuery;
+    private final Runnable applySearch = () -> pager.setQuery(pendingQuery);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_tph_browser);
+
+        DatabaseHelper dbHelper = ((GeofenceApp) getApplication()).getDatabaseHelper();
+        repository = new TphRepository(dbHelper);
+        pager = new TphPager(dbHelper::getPage, repository.getExecutor(), handler::post, this);
+
+        textStatus = findViewById(R.id.textBrowserStatus);
+        RecyclerView recycler = findViewById(R.id.recyclerTph);
+        recycler.setLayoutManager(new LinearLayoutManager(this));
+        recycler.setHasFixedSize(true);
+        adapter = new RowAdapter();
+        recycler.setAdapter(adapter);
+
+        EditText editSearch = findViewById(R.id.editSearch);
+        editSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                pendingQuery = s.toString().trim();
+                handler.removeCallbacks(applySearch);
+                handler.postDelayed(applySearch, SEARCH_DELAY_MILLIS);
+            }
+        });
+
+        pager.setQuery(null);
+    }
+
+    @Override
+    public void onReset() {
+        adapter.notifyDataSetChanged();
+        textStatus.setText("Loading...");
+    }
+
+    @Override
+    public void onRowsInserted(int start, int count) {
+        adapter.notifyItemRangeInserted(start, count);
+        updateStatus();
+    }
+
+    @Override
+    public void onRowsChanged(int start, int count) {
+        adapter.notifyItemRangeChanged(start, count);
+    }
+
+    @Override
+    public void onLoadFailed(Exception e) {
+        Log.e("BROWSER", "Page load failed", e);
+        textStatus.setText("❌ Could not load data: " + e.getMessage());
+    }
+
+    private void updateStatus() {
+        int count = pager.getCount();
+        String suffix = pager.getQuery() == null ? "" : " matching \"" + pager.getQuery() + "\"";
+        if (!pager.isComplete()) {
+            textStatus.setText(count + "+ records" + suffix);
+        } else if (count == 0) {
+            textStatus.setText("No records" + suffix);
+        } else {
+            textStatus.setText(count + " records" + suffix);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(applySearch);
+        pager.close();
+        repository.close();
+    }
+
+    private static class RowHolder extends RecyclerView.ViewHolder {
+        final TextView title;
+        final TextView detail;
+
+        RowHolder(View view) {
+            super(view);
+            title = view.findViewById(R.id.textRowTitle);
+            detail = view.findViewById(R.id.textRowDetail);
+        }
+    }
+
+    private class RowAdapter extends RecyclerView.Adapter<RowHolder> {
+        @Override
+        public RowHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RowHolder(LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_tph_row, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(RowHolder holder, int position) {
+            TphPage page = pager.getPage(position);
+            int i = pager.offsetOf(position);
+            if (page == null || i >= page.size()) {
+                // Rebound through onRowsChanged once the page is back
+                holder.title.setText("#" + (position + 1));
+                holder.detail.setText("Loading...");
+                return;
+            }
+            holder.title.setText("#" + (position + 1) + "  " + page.getKodeBlok(i) + " / " + page.getNoTPH(i));
+            holder.detail.setText(page.getCompany(i) + " · " + page.getLocation(i) + " · " + page.getCoordinate(i));
+        }
+
+        @Override
+        public int getItemCount() {
+            return pager.getCount();
+        }
+    }
+}
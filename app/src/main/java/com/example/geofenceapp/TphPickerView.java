@@ -0,0 +1,145 @@
+package com.example.geofenceapp;
+
+import androidx.appcompat.widget.AppCompatAutoCompleteTextView;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.AttributeSet;
+import android.widget.ListAdapter;
+
+import com.example.geofenceapp.service.PrefixIndex;
+
+// Type-ahead field for a kode blok or noTPH, fed by a PrefixIndexAdapter. Suggestions are
+// refiltered once typing pauses rather than on every keystroke. A value counts as picked
+// when it is chosen from the list, typed exactly and confirmed, or set through pick();
+// editing the text afterwards clears it again.
+public class TphPickerView extends AppCompatAutoCompleteTextView {
+    public interface OnPickListener {
+        void onPicked(String value);
+
+        void onCleared();
+    }
+
+    static final long FILTER_DELAY_MILLIS = 150;
+
+    private String picked;
+    private OnPickListener listener;
+    private Runnable pendingFilter;
+
+    public TphPickerView(Context context) {
+        super(context);
+        init();
+    }
+
+    public TphPickerView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public TphPickerView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        setOnItemClickListener((parent, view, position, id) ->
+                notifyPicked((String) parent.getItemAtPosition(position)));
+        setOnEditorActionListener((v, actionId, event) -> {
+            pickTyped();
+            return false;
+        });
+        setOnClickListener(v -> filterNow());
+        addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (picked != null && !picked.contentEquals(s)) {
+                    picked = null;
+                    if (listener != null) listener.onCleared();
+                }
+            }
+        });
+    }
+
+    public void setOnPickListener(OnPickListener listener) {
+        this.listener = listener;
+    }
+
+    // Null until a value is picked
+    public String getPicked() {
+        return picked;
+    }
+
+    // Picks value as if it had been chosen from the list
+    public void pick(String value) {
+        picked = value;
+        setText(value, false);
+        setSelection(value.length());
+        if (listener != null) listener.onPicked(value);
+    }
+
+    // Empties the field without telling the listener
+    public void clearPick() {
+        picked = null;
+        setText("", false);
+    }
+
+    private void notifyPicked(String value) {
+        picked = value;
+        if (listener != null) listener.onPicked(value);
+    }
+
+    // Confirming typed text picks the value it matches exactly, ignoring case
+    private void pickTyped() {
+        ListAdapter adapter = getAdapter();
+        if (picked != null || !(adapter instanceof PrefixIndexAdapter)) return;
+        PrefixIndex index = ((PrefixIndexAdapter) adapter).getIndex();
+        int i = index.find(getText());
+        if (i >= 0) {
+            dismissDropDown();
+            pick(index.get(i));
+        }
+    }
+
+    @Override
+    protected void performFiltering(CharSequence text, int keyCode) {
+        removeCallbacks(pendingFilter);
+        CharSequence snapshot = text.toString();
+        pendingFilter = () -> super.performFiltering(snapshot, keyCode);
+        postDelayed(pendingFilter, FILTER_DELAY_MILLIS);
+    }
+
+    // Tapping the field lists the matches straight away
+    private void filterNow() {
+        if (!isEnabled()) return;
+        removeCallbacks(pendingFilter);
+        super.performFiltering(getText(), 0);
+    }
+
+    // An empty field lists every value
+    @Override
+    public boolean enoughToFilter() {
+        return true;
+    }
+
+    @Override
+    protected void onFocusChanged(boolean focused, int direction, Rect previouslyFocusedRect) {
+        super.onFocusChanged(focused, direction, previouslyFocusedRect);
+        if (focused && getWindowVisibility() == VISIBLE) filterNow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(pendingFilter);
+        super.onDetachedFromWindow();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.geofenceapp.service;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// App-wide owner of the check-in log. Check-ins are stored write-behind on their own
+// thread, and each one makes sure an upload job is pending: it waits for any network and
+// a short delay, so a round of check-ins at one TPH goes up as one batch.
+public class CheckInScheduler {
+    private static final String TAG = "CHECKIN";
+
+    public static final String UPLOAD_URL = "http://10.100.1.26:3005/api/CheckIn/Bulk";
+
+    static final int UPLOAD_JOB_ID = 1002;
+    private static final long UPLOAD_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    public interface Listener {
+        // Called on the upload thread; error is null on success
+        void onUploaded(CheckInUploader.Result result, IOException error);
+    }
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private final CheckInLog log;
+    private final CheckInUploader uploader = new CheckInUploader(UPLOAD_URL);
+    // Separate from the writer, so a slow upload never holds check-ins back from the disk
+    private final ExecutorService uploads;
+
+    public CheckInScheduler(Context context, DatabaseHelper dbHelper) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = dbHelper;
+        this.log = new CheckInLog(dbHelper, backgroundThread("checkin-io"), CheckInLog.DEFAULT_BATCH_SIZE);
+        this.uploads = backgroundThread("checkin-upload");
+    }
+
+    private static ExecutorService backgroundThread(String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Any thread; returns without touching the disk or the job scheduler
+    public void record(CheckIn checkIn) {
+        log.record(checkIn);
+        uploads.execute(this::scheduleUpload);
+    }
+
+    // Stores what is queued, then sends everything unsent
+    void uploadNow(Listener listener) {
+        uploads.execute(() -> {
+            CheckInUploader.Result result = null;
+            IOException error = null;
+            try {
+                log.flush();
+                result = uploader.upload(dbHelper);
+                Log.d(TAG, "Uploaded " + result.getSent() + " check-ins in " + result.getBatches() +
+                        " batches, " + result.getBytesSent() + " bytes");
+            } catch (IOException e) {
+                Log.w(TAG, "Check-in upload failed", e);
+                error = e;
+            }
+            listener.onUploaded(result, error);
+        });
+    }
+
+    // A pending job is left as it is; replacing it would restart its delay on every check-in
+    private void scheduleUpload() {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == UPLOAD_JOB_ID) return;
+        }
+
+        JobInfo job = new JobInfo.Builder(UPLOAD_JOB_ID, new ComponentName(context, CheckInUploadJobService.class))
+                .setMinimumLatency(UPLOAD_DELAY_MILLIS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true)
+                .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Could not schedule check-in upload");
+        }
+    }
+}
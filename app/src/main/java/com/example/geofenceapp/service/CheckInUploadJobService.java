@@ -0,0 +1,25 @@
+package com.example.geofenceapp.service;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+import com.example.geofenceapp.GeofenceApp;
+
+// Entry point of the check-in upload scheduled by CheckInScheduler
+public class CheckInUploadJobService extends JobService {
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        CheckInScheduler scheduler = ((GeofenceApp) getApplication()).getCheckInScheduler();
+        // A failed upload is retried with the job's backoff; what went up stays marked sent
+        scheduler.uploadNow((result, error) -> jobFinished(params, error != null));
+        return true;
+    }
+
+    // Network lost. Batches are marked sent one by one, so a cut-off upload repeats at most
+    // the batch in flight, which the server recognises by its key.
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return true;
+    }
+}
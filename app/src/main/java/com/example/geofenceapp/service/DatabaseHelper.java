@@ -3,41 +3,349 @@ package com.example.geofenceapp.service;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
-public class DatabaseHelper extends SQLiteOpenHelper {
+import com.example.geofenceapp.geo.FixFilter;
+import com.example.geofenceapp.geo.PolygonFence;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DatabaseHelper extends SQLiteOpenHelper implements TphSyncTarget, CheckInStore {
     private static final String DB_NAME = "SyncDB";
-    private static final int DB_VERSION = 2; // Increment version for schema change
+    private static final int DB_VERSION = 9; // Increment version for schema change
 
     private static final String TABLE_NAME = "data_tph";
+    // Each estate's full sync stages into its own table, STAGING_TABLE_NAME + "_" + a hex key
+    private static final String STAGING_TABLE_NAME = "data_tph_staging";
     private static final String COL_ID = "id";
     private static final String COL_COMPANY = "company";
     private static final String COL_LOCATION = "location";
     private static final String COL_KODEBLOK = "kodeBlok";
     private static final String COL_NOTPH = "noTPH";
     private static final String COL_COORDINATE = "coordinate";
+    private static final String COL_LAT = "lat";
+    private static final String COL_LNG = "lng";
+    // Per-TPH fence radius in metres, NULL for the app default
+    private static final String COL_RADIUS = "radius";
+    // Block polygon text, set on whichever rows the server sent it with
+    private static final String COL_BLOCK_BOUNDARY = "blockBoundary";
+
+    // Seeks for (kodeBlok, noTPH) lookups, and covers the block list, the per-block TPH
+    // list and the coordinate lookup so none of them touch the table rows. The radius was
+    // added in version 6; older databases have the index without it.
+    private static final String INDEX_BLOK_TPH = "idx_data_tph_blok_tph";
+
+    private static final String SYNC_TABLE_NAME = "sync_state";
+    private static final String COL_ETAG = "etag";
+    private static final String COL_LAST_MODIFIED = "lastModified";
+    private static final String COL_TOKEN = "token";
+
+    // At most one row per estate, present only while a paged sync is unfinished
+    private static final String CURSOR_TABLE_NAME = "sync_cursor";
+    private static final String COL_MODE = "mode";
+    private static final String COL_SINCE = "since";
+    private static final String COL_NEXT_PAGE = "nextPage";
+    private static final String COL_RECORDS = "records";
+    // Full sync only: the last staging row id the checkpoint covers. Rows past it were
+    // flushed from a page that never got its checkpoint.
+    private static final String COL_STAGED_ID = "stagedId";
+    private static final String MODE_FULL = "full";
+    private static final String MODE_DELTA = "delta";
+
+    // Every check-in ever made on this phone; kept after upload as the local audit trail,
+    // and left alone by clearData
+    private static final String CHECKIN_TABLE_NAME = "checkin_log";
+    private static final String COL_UUID = "uuid";
+    private static final String COL_TIME = "time";
+    private static final String COL_VERDICT = "verdict";
+    private static final String COL_ACCURACY = "accuracy";
+    private static final String COL_DISTANCE = "distance";
+    private static final String COL_SENT = "sent";
+    // Only unsent rows are indexed, so it stays as small as the upload backlog
+    private static final String INDEX_CHECKIN_UNSENT = "idx_checkin_log_unsent";
+    static final String QUERY_UNSENT_CHECKINS = "SELECT " + COL_UUID + ", " + COL_TIME + ", " + COL_KODEBLOK + ", " +
+            COL_NOTPH + ", " + COL_VERDICT + ", " + COL_LAT + ", " + COL_LNG + ", " + COL_ACCURACY + ", " +
+            COL_DISTANCE + ", " + COL_RADIUS + " FROM " + CHECKIN_TABLE_NAME + " WHERE " + COL_SENT +
+            " = 0 ORDER BY " + COL_ID + " LIMIT ?";
+
+    static final String QUERY_DISTINCT_KODE_BLOK = "SELECT DISTINCT " + COL_KODEBLOK + " FROM " + TABLE_NAME +
+            " ORDER BY " + COL_KODEBLOK;
+    static final String QUERY_TPH_BY_KODE_BLOK = "SELECT " + COL_NOTPH + ", " + COL_LAT + ", " + COL_LNG +
+            ", " + COL_RADIUS + " FROM " + TABLE_NAME + " WHERE " + COL_KODEBLOK + " = ? ORDER BY " + COL_NOTPH;
+    static final String QUERY_TPH_DATA = "SELECT " + COL_LAT + ", " + COL_LNG + " FROM " + TABLE_NAME +
+            " WHERE " + COL_KODEBLOK + " = ? AND " + COL_NOTPH + " = ?";
+    // Keyset pages for the data browser: a rowid seek past the last id shown, so a page deep
+    // in the table costs the same as the first. A search filters the same walk, so a rare
+    // match may scan further to fill its page.
+    static final String QUERY_PAGE = "SELECT " + COL_ID + ", " + COL_COMPANY + ", " + COL_LOCATION + ", " +
+            COL_KODEBLOK + ", " + COL_NOTPH + ", " + COL_COORDINATE + " FROM " + TABLE_NAME +
+            " WHERE " + COL_ID + " > ? ORDER BY " + COL_ID + " LIMIT ?";
+    static final String QUERY_PAGE_SEARCH = "SELECT " + COL_ID + ", " + COL_COMPANY + ", " + COL_LOCATION + ", " +
+            COL_KODEBLOK + ", " + COL_NOTPH + ", " + COL_COORDINATE + " FROM " + TABLE_NAME +
+            " WHERE " + COL_ID + " > ? AND (" + COL_KODEBLOK + " LIKE ? ESCAPE '\\' OR " +
+            COL_NOTPH + " LIKE ? ESCAPE '\\') ORDER BY " + COL_ID + " LIMIT ?";
+
+    // Latest boundary sent for the block; only a few rows per block carry one
+    static final String QUERY_BLOCK_BOUNDARY = "SELECT " + COL_BLOCK_BOUNDARY + " FROM " + TABLE_NAME +
+            " WHERE " + COL_KODEBLOK + " = ? AND " + COL_BLOCK_BOUNDARY + " IS NOT NULL ORDER BY " +
+            COL_ID + " DESC LIMIT 1";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    // Mapped copy of the table under files/, rebuilt after each sync; see TphSnapshot
+    private static final String SNAPSHOT_FILE = "tph.snapshot";
+
+    // Query latencies; methods returning a Cursor are timed up to the first window fill
+    private static final Histogram PAGE_TIME = Metrics.histogram("db.page");
+    private static final Histogram DISTINCT_KODE_BLOK_TIME = Metrics.histogram("db.distinctKodeBlok");
+    private static final Histogram TPH_BY_KODE_BLOK_TIME = Metrics.histogram("db.tphByKodeBlok");
+    private static final Histogram BLOCK_BOUNDARY_TIME = Metrics.histogram("db.blockBoundary");
+    private static final Histogram ALL_LOCATIONS_TIME = Metrics.histogram("db.allLocations");
+    private static final Histogram HAS_DATA_TIME = Metrics.histogram("db.hasData");
+    private static final Histogram TPH_DATA_TIME = Metrics.histogram("db.tphData");
+    private static final Histogram SYNC_CURSOR_TIME = Metrics.histogram("db.syncCursor");
+    private static final Histogram SNAPSHOT_REBUILD_TIME = Metrics.histogram("db.snapshotRebuild");
+    // Making room for an estate's new rows: staging setup, the swap, or clearData
+    private static final Histogram CLEAR_TIME = Metrics.histogram("sync.clear");
+
+    private final Context context;
+
+    // Every write path deletes the snapshot before it touches the table and rebuilds it
+    // once done, so a crash mid-sync leaves no snapshot rather than a stale one. The data
+    // version is bumped on both sides of a write; a rebuild that raced with one is dropped.
+    private final Object snapshotLock = new Object();
+    private final Object rebuildLock = new Object();
+    private TphSnapshot snapshot;
+    private boolean snapshotOpened;
+    private int openWriters;
+    private long dataVersion;
+
+    private final TphCatalog.Loader tableLoader = new TphCatalog.Loader() {
+        @Override
+        public List<String> loadKodeBlok() {
+            List<String> values = new ArrayList<>();
+            Cursor cursor = getDistinctKodeBlok();
+            try {
+                while (cursor.moveToNext()) {
+                    String value = cursor.getString(0);
+                    if (value != null && !value.isEmpty()) {
+                        values.add(value);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return values;
+        }
+
+        @Override
+        public TphCatalog.Block loadBlock(String kodeBlok) {
+            Cursor cursor = getTPHByKodeBlok(kodeBlok);
+            try {
+                int count = cursor.getCount();
+                String[] noTPH = new String[count];
+                double[] lat = new double[count];
+                double[] lng = new double[count];
+                double[] radius = null;
+                int n = 0;
+                while (cursor.moveToNext()) {
+                    String value = cursor.getString(0);
+                    if (value == null || value.isEmpty()) continue;
+                    noTPH[n] = value;
+                    lat[n] = cursor.isNull(1) ? Double.NaN : cursor.getDouble(1);
+                    lng[n] = cursor.isNull(2) ? Double.NaN : cursor.getDouble(2);
+                    if (!cursor.isNull(3)) {
+                        if (radius == null) {
+                            radius = new double[count];
+                            Arrays.fill(radius, Double.NaN);
+                        }
+                        radius[n] = cursor.getDouble(3);
+                    }
+                    n++;
+                }
+                if (n < count) {
+                    noTPH = Arrays.copyOf(noTPH, n);
+                    lat = Arrays.copyOf(lat, n);
+                    lng = Arrays.copyOf(lng, n);
+                    if (radius != null) radius = Arrays.copyOf(radius, n);
+                }
+                return new TphCatalog.Block(kodeBlok, noTPH, lat, lng, radius,
+                        PolygonFence.parse(getBlockBoundary(kodeBlok)));
+            } finally {
+                cursor.close();
+            }
+        }
+    };
+
+    // Invalidated by every write path below, so readers never see rows older than the table.
+    // Loads come from the snapshot when there is one, otherwise from the table.
+    private final TphCatalog catalog = new TphCatalog(new TphCatalog.Loader() {
+        @Override
+        public List<String> loadKodeBlok() {
+            TphSnapshot current = getSnapshot();
+            return current != null ? current.loadKodeBlok() : tableLoader.loadKodeBlok();
+        }
+
+        @Override
+        public TphCatalog.Block loadBlock(String kodeBlok) {
+            TphSnapshot current = getSnapshot();
+            return current != null ? current.loadBlock(kodeBlok) : tableLoader.loadBlock(kodeBlok);
+        }
+    });
 
     public DatabaseHelper(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
+        this.context = context.getApplicationContext();
+        // WAL lets the pickers keep reading the live table while a sync writes the staging one
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    // Cached block list and per-block TPH arrays; see TphCatalog
+    public TphCatalog getCatalog() {
+        return catalog;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String createTable = "CREATE TABLE " + TABLE_NAME + " (" +
+        createTphTable(db, TABLE_NAME);
+        createIndexes(db);
+        createSyncStateTable(db);
+        createSyncCursorTable(db);
+        createCheckInTable(db);
+    }
+
+    private void createTphTable(SQLiteDatabase db, String table) {
+        String createTable = "CREATE TABLE " + table + " (" +
                 COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COL_COMPANY + " TEXT, " +
                 COL_LOCATION + " TEXT, " +
                 COL_KODEBLOK + " TEXT, " +
                 COL_NOTPH + " TEXT, " +
-                COL_COORDINATE + " TEXT)";
+                COL_COORDINATE + " TEXT, " +
+                COL_LAT + " REAL, " +
+                COL_LNG + " REAL, " +
+                COL_RADIUS + " REAL, " +
+                COL_BLOCK_BOUNDARY + " TEXT)";
         db.execSQL(createTable);
     }
 
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_BLOK_TPH + " ON " + TABLE_NAME + " (" +
+                COL_KODEBLOK + ", " + COL_NOTPH + ", " + COL_LAT + ", " + COL_LNG + ", " + COL_RADIUS + ")");
+    }
+
+    private void createSyncStateTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SYNC_TABLE_NAME + " (" +
+                COL_COMPANY + " TEXT NOT NULL, " +
+                COL_LOCATION + " TEXT NOT NULL, " +
+                COL_ETAG + " TEXT, " +
+                COL_LAST_MODIFIED + " TEXT, " +
+                COL_TOKEN + " TEXT, " +
+                "PRIMARY KEY (" + COL_COMPANY + ", " + COL_LOCATION + "))");
+    }
+
+    private void createSyncCursorTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + CURSOR_TABLE_NAME + " (" +
+                COL_COMPANY + " TEXT NOT NULL, " +
+                COL_LOCATION + " TEXT NOT NULL, " +
+                COL_MODE + " TEXT NOT NULL, " +
+                COL_SINCE + " TEXT, " +
+                COL_NEXT_PAGE + " TEXT NOT NULL, " +
+                COL_ETAG + " TEXT, " +
+                COL_LAST_MODIFIED + " TEXT, " +
+                COL_TOKEN + " TEXT, " +
+                COL_RECORDS + " INTEGER NOT NULL, " +
+                COL_STAGED_ID + " INTEGER, " +
+                "PRIMARY KEY (" + COL_COMPANY + ", " + COL_LOCATION + "))");
+    }
+
+    private void createCheckInTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + CHECKIN_TABLE_NAME + " (" +
+                COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_UUID + " TEXT NOT NULL UNIQUE, " +
+                COL_TIME + " INTEGER NOT NULL, " +
+                COL_KODEBLOK + " TEXT, " +
+                COL_NOTPH + " TEXT, " +
+                COL_VERDICT + " TEXT NOT NULL, " +
+                COL_LAT + " REAL, " +
+                COL_LNG + " REAL, " +
+                COL_ACCURACY + " REAL, " +
+                COL_DISTANCE + " REAL, " +
+                COL_RADIUS + " REAL, " +
+                COL_SENT + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX " + INDEX_CHECKIN_UNSENT + " ON " + CHECKIN_TABLE_NAME + " (" + COL_ID +
+                ") WHERE " + COL_SENT + " = 0");
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldV, int newV) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        onCreate(db);
+        dropStagingTables(db);
+        if (oldV < 2) {
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + SYNC_TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + CURSOR_TABLE_NAME);
+            onCreate(db);
+            return;
+        }
+        if (oldV < 3) {
+            createSyncStateTable(db);
+        }
+        if (oldV < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_LAT + " REAL");
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_LNG + " REAL");
+            backfillLocations(db);
+        }
+        if (oldV < 5) {
+            createSyncCursorTable(db);
+        }
+        if (oldV < 6) {
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_RADIUS + " REAL");
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL_BLOCK_BOUNDARY + " TEXT");
+            // Rebuilt to cover the radius too
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_BLOK_TPH);
+            createIndexes(db);
+        }
+        // Version 7 stages each estate in its own table. The staging tables were dropped
+        // above, taking any interrupted full sync with them.
+        db.delete(CURSOR_TABLE_NAME, COL_MODE + " = ?", new String[]{MODE_FULL});
+        if (oldV < 8) {
+            createCheckInTable(db);
+        }
+        // Before version 5 the table was created above with the column already in it
+        if (oldV >= 5 && oldV < 9) {
+            db.execSQL("ALTER TABLE " + CURSOR_TABLE_NAME + " ADD COLUMN " + COL_STAGED_ID + " INTEGER");
+        }
+    }
+
+    // Parses the existing coordinate text into the lat/lng columns
+    private void backfillLocations(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_NAME + " SET " +
+                COL_LAT + " = ?, " + COL_LNG + " = ? WHERE " + COL_ID + " = ?");
+        Cursor cursor = db.rawQuery("SELECT " + COL_ID + ", " + COL_COORDINATE + " FROM " + TABLE_NAME, null);
+        while (cursor.moveToNext()) {
+            String coordinate = cursor.getString(1);
+            double lat = CoordinateParser.parseLatitude(coordinate);
+            double lng = CoordinateParser.parseLongitude(coordinate);
+            if (Double.isNaN(lat) || Double.isNaN(lng)) continue;
+
+            update.bindDouble(1, lat);
+            update.bindDouble(2, lng);
+            update.bindLong(3, cursor.getLong(0));
+            update.executeUpdateDelete();
+        }
+        cursor.close();
+        update.close();
     }
 
     public void insertData(String company, String location, String kodeBlok, String noTPH, String coordinate) {
@@ -48,47 +356,659 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_KODEBLOK, kodeBlok);
         values.put(COL_NOTPH, noTPH);
         values.put(COL_COORDINATE, coordinate);
-        db.insert(TABLE_NAME, null, values);
+        double lat = CoordinateParser.parseLatitude(coordinate);
+        double lng = CoordinateParser.parseLongitude(coordinate);
+        if (!Double.isNaN(lat) && !Double.isNaN(lng)) {
+            values.put(COL_LAT, lat);
+            values.put(COL_LNG, lng);
+        }
+        beginWrite();
+        try {
+            db.insert(TABLE_NAME, null, values);
+        } finally {
+            // One row at a time: the next loadSpatialIndex or sync rebuilds the snapshot
+            endWrite(false);
+        }
+    }
+
+    // Bulk insert in chunked transactions; returns the number of rows written
+    public int insertAll(Iterable<TphRecord> records) {
+        return insertAll(records, DEFAULT_BATCH_SIZE, false);
+    }
+
+    public int insertAll(Iterable<TphRecord> records, int batchSize, boolean rebuildIndexes) {
+        TphBatchWriter writer = newBatchWriter(batchSize, rebuildIndexes);
+        try {
+            for (TphRecord record : records) {
+                writer.write(record);
+            }
+            writer.close();
+        } catch (RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        return writer.getWrittenCount();
+    }
+
+    // Streaming variant of insertAll for callers that produce records one at a time
+    public TphBatchWriter newBatchWriter(int batchSize, boolean rebuildIndexes) {
+        TphBatchWriter writer = new TphBatchWriter(getWritableDatabase(), TABLE_NAME, insertSql(TABLE_NAME),
+                batchSize, rebuildIndexes);
+        beginWrite();
+        // Chunks are committed as they fill, so even an aborted load changes the table
+        writer.setOnRelease(() -> endWrite(true));
+        return writer;
+    }
+
+    // Starts a sync of one estate into its own empty staging table. The live table is
+    // untouched until the writer is committed, at which point the staged rows replace that
+    // estate's rows in one transaction; other estates keep theirs.
+    public TphBatchWriter newStagingWriter(String company, String location, int batchSize) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String staging = stagingTable(company, location);
+        long start = System.nanoTime();
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TABLE IF EXISTS " + staging);
+            createTphTable(db, staging);
+            db.delete(CURSOR_TABLE_NAME, COL_COMPANY + " = ? AND " + COL_LOCATION + " = ? AND " +
+                    COL_MODE + " = ?", new String[]{company, location, MODE_FULL});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        CLEAR_TIME.recordSince(start);
+        return new SyncWriter(db, company, location, true, batchSize, null, 0);
+    }
+
+    // Applies changed rows to the live table, matching on company/location/kodeBlok/noTPH
+    public TphBatchWriter newDeltaWriter(int batchSize) {
+        return new SyncWriter(getWritableDatabase(), null, null, false, batchSize, null, 0);
+    }
+
+    @Override
+    public TphRecordSink openFull(String company, String location) {
+        return newStagingWriter(company, location, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public TphRecordSink openDelta() {
+        return newDeltaWriter(DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public SyncCursor getSyncCursor(String company, String location) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COL_MODE + ", " + COL_SINCE + ", " + COL_NEXT_PAGE + ", " +
+                        COL_ETAG + ", " + COL_LAST_MODIFIED + ", " + COL_TOKEN + ", " + COL_RECORDS +
+                        " FROM " + CURSOR_TABLE_NAME + " WHERE " + COL_COMPANY + " = ? AND " + COL_LOCATION + " = ?",
+                new String[]{company, location});
+        SyncCursor syncCursor = null;
+        if (cursor.moveToFirst()) {
+            syncCursor = new SyncCursor(company, location, MODE_DELTA.equals(cursor.getString(0)),
+                    cursor.getString(1), new SyncWatermark(cursor.getString(3), cursor.getString(4),
+                    cursor.getString(5)), cursor.getString(2), cursor.getInt(6));
+        }
+        cursor.close();
+        SYNC_CURSOR_TIME.recordSince(start);
+        return syncCursor;
+    }
+
+    // A full sync continues into the staging table it left behind, if that is still there,
+    // minus any rows flushed after its last checkpoint
+    @Override
+    public TphRecordSink resume(SyncCursor cursor) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        long stagedId = 0;
+        if (!cursor.isDelta()) {
+            String staging = stagingTable(cursor.getCompany(), cursor.getLocation());
+            if (!tableExists(db, staging)) {
+                clearSyncCursor(cursor.getCompany(), cursor.getLocation());
+                return null;
+            }
+            stagedId = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + COL_STAGED_ID + "), 0) FROM " +
+                    CURSOR_TABLE_NAME + " WHERE " + COL_COMPANY + " = ? AND " + COL_LOCATION + " = ?",
+                    new String[]{cursor.getCompany(), cursor.getLocation()});
+            db.delete(staging, COL_ID + " > ?", new String[]{Long.toString(stagedId)});
+        }
+        return new SyncWriter(db, cursor.getCompany(), cursor.getLocation(), !cursor.isDelta(),
+                DEFAULT_BATCH_SIZE, cursor, stagedId);
+    }
+
+    @Override
+    public void clearSyncCursor(String company, String location) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.delete(CURSOR_TABLE_NAME, COL_COMPANY + " = ? AND " + COL_LOCATION + " = ?",
+                new String[]{company, location});
+    }
+
+    // Writer behind openFull/openDelta. Each checkpoint saves the cursor in the transaction
+    // that commits the page, so committed rows and the cursor pointing past them always agree.
+    // Rows are committed in chunks as they arrive, so no transaction stays open while the
+    // rest of a page is read off the network. Replaying a staged page would duplicate its
+    // rows, so staged rows past the last checkpoint are deleted again on abort and resume;
+    // replaying a delta page is harmless.
+    private class SyncWriter extends TphBatchWriter {
+        private final String company;
+        private final String location;
+        private final boolean full;
+        private SyncCursor cursor;
+        // See COL_STAGED_ID
+        private long stagedId;
+
+        // The estate is only needed for a full sync; cursor is the last checkpoint when
+        // resuming, otherwise null
+        SyncWriter(SQLiteDatabase db, String company, String location, boolean full, int batchSize,
+                   SyncCursor cursor, long stagedId) {
+            this(db, company, location, full ? stagingTable(company, location) : TABLE_NAME, full, batchSize,
+                    cursor, stagedId);
+        }
+
+        private SyncWriter(SQLiteDatabase db, String company, String location, String table, boolean full,
+                           int batchSize, SyncCursor cursor, long stagedId) {
+            super(db, table, insertSql(table), batchSize, false);
+            this.company = company;
+            this.location = location;
+            this.full = full;
+            this.cursor = cursor;
+            this.stagedId = stagedId;
+            if (!full) {
+                String key = COL_COMPANY + " = ? AND " + COL_LOCATION + " = ? AND " +
+                        COL_KODEBLOK + " = ? AND " + COL_NOTPH + " = ?";
+                // A row sent without the block boundary keeps the one it had
+                enableUpsert(
+                        "UPDATE " + TABLE_NAME + " SET " + COL_COORDINATE + " = ?, " +
+                                COL_LAT + " = ?, " + COL_LNG + " = ?, " + COL_RADIUS + " = ?, " +
+                                COL_BLOCK_BOUNDARY + " = COALESCE(?, " + COL_BLOCK_BOUNDARY + ") WHERE " + key,
+                        "DELETE FROM " + TABLE_NAME + " WHERE " + key);
+                beginWrite();
+                setOnRelease(() -> endWrite(true));
+            }
+        }
+
+        @Override
+        protected void onCheckpoint(SQLiteDatabase db, SyncCursor cursor) {
+            ContentValues values = new ContentValues();
+            values.put(COL_COMPANY, cursor.getCompany());
+            values.put(COL_LOCATION, cursor.getLocation());
+            values.put(COL_MODE, cursor.isDelta() ? MODE_DELTA : MODE_FULL);
+            values.put(COL_SINCE, cursor.getSince());
+            values.put(COL_NEXT_PAGE, cursor.getNextPage());
+            values.put(COL_ETAG, cursor.getWatermark().getEtag());
+            values.put(COL_LAST_MODIFIED, cursor.getWatermark().getLastModified());
+            values.put(COL_TOKEN, cursor.getWatermark().getToken());
+            values.put(COL_RECORDS, cursor.getRecords());
+            if (full) {
+                stagedId = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + COL_ID + "), 0) FROM " +
+                        stagingTable(company, location), null);
+                values.put(COL_STAGED_ID, stagedId);
+            }
+            db.insertWithOnConflict(CURSOR_TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void commit() {
+            super.commit();
+            if (full) {
+                beginWrite();
+                try {
+                    swapStaging(company, location, cursor);
+                } finally {
+                    endWrite(true);
+                }
+            } else if (cursor != null) {
+                // Not atomic with the last page, but a leftover delta cursor only replays it
+                clearSyncCursor(cursor.getCompany(), cursor.getLocation());
+            }
+        }
+
+        // Checkpointed pages stay for resume; a staging table without one is useless
+        @Override
+        public void abort() {
+            super.abort();
+            if (!full) return;
+            if (cursor == null) {
+                discardStaging(company, location);
+            } else {
+                getWritableDatabase().delete(stagingTable(company, location), COL_ID + " > ?",
+                        new String[]{Long.toString(stagedId)});
+            }
+        }
+    }
+
+    // When the live table holds no other estate the staging table simply takes its place;
+    // otherwise only this estate's rows are replaced
+    private void swapStaging(String company, String location, SyncCursor cursor) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String staging = stagingTable(company, location);
+        String[] estate = {company, location};
+        long start = System.nanoTime();
+        db.beginTransaction();
+        try {
+            if (queryBoolean(db, "SELECT EXISTS (SELECT 1 FROM " + TABLE_NAME + " WHERE " + COL_COMPANY +
+                    " IS NOT ? OR " + COL_LOCATION + " IS NOT ?)", estate)) {
+                db.delete(TABLE_NAME, COL_COMPANY + " = ? AND " + COL_LOCATION + " = ?", estate);
+                String columns = COL_COMPANY + ", " + COL_LOCATION + ", " + COL_KODEBLOK + ", " + COL_NOTPH + ", " +
+                        COL_COORDINATE + ", " + COL_LAT + ", " + COL_LNG + ", " + COL_RADIUS + ", " +
+                        COL_BLOCK_BOUNDARY;
+                db.execSQL("INSERT INTO " + TABLE_NAME + " (" + columns + ") SELECT " + columns +
+                        " FROM " + staging + " ORDER BY " + COL_ID);
+                db.execSQL("DROP TABLE " + staging);
+            } else {
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+                db.execSQL("ALTER TABLE " + staging + " RENAME TO " + TABLE_NAME);
+                createIndexes(db);
+            }
+            if (cursor != null) {
+                db.delete(CURSOR_TABLE_NAME, COL_COMPANY + " = ? AND " + COL_LOCATION + " = ?",
+                        new String[]{cursor.getCompany(), cursor.getLocation()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        CLEAR_TIME.recordSince(start);
+    }
+
+    private static boolean tableExists(SQLiteDatabase db, String table) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{table});
+        boolean exists = cursor.moveToFirst();
+        cursor.close();
+        return exists;
+    }
+
+    @Override
+    public void insertCheckIns(List<CheckIn> checkIns) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + CHECKIN_TABLE_NAME + " (" +
+                COL_UUID + ", " + COL_TIME + ", " + COL_KODEBLOK + ", " + COL_NOTPH + ", " + COL_VERDICT + ", " +
+                COL_LAT + ", " + COL_LNG + ", " + COL_ACCURACY + ", " + COL_DISTANCE + ", " + COL_RADIUS +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (CheckIn checkIn : checkIns) {
+                insert.clearBindings();
+                insert.bindString(1, checkIn.getId());
+                insert.bindLong(2, checkIn.getTimeMillis());
+                bindStringOrNull(insert, 3, checkIn.getKodeBlok());
+                bindStringOrNull(insert, 4, checkIn.getNoTPH());
+                insert.bindString(5, checkIn.getVerdict().name());
+                bindDoubleOrNull(insert, 6, checkIn.getLatitude());
+                bindDoubleOrNull(insert, 7, checkIn.getLongitude());
+                bindDoubleOrNull(insert, 8, checkIn.getAccuracy());
+                bindDoubleOrNull(insert, 9, checkIn.getDistance());
+                bindDoubleOrNull(insert, 10, checkIn.getRadius());
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    @Override
+    public List<CheckIn> getUnsentCheckIns(int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_UNSENT_CHECKINS, new String[]{Integer.toString(limit)});
+        try {
+            List<CheckIn> checkIns = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                checkIns.add(new CheckIn(cursor.getString(0), cursor.getLong(1), cursor.getString(2),
+                        cursor.getString(3), FixFilter.Verdict.valueOf(cursor.getString(4)), doubleOrNaN(cursor, 5),
+                        doubleOrNaN(cursor, 6), doubleOrNaN(cursor, 7), doubleOrNaN(cursor, 8),
+                        doubleOrNaN(cursor, 9)));
+            }
+            return checkIns;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void markCheckInsSent(List<CheckIn> checkIns) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement update = db.compileStatement("UPDATE " + CHECKIN_TABLE_NAME + " SET " + COL_SENT +
+                " = 1 WHERE " + COL_UUID + " = ?");
+        db.beginTransaction();
+        try {
+            for (CheckIn checkIn : checkIns) {
+                update.bindString(1, checkIn.getId());
+                update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+        }
+    }
+
+    // Check-ins not yet uploaded, for the status line
+    public int countUnsentCheckIns() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + CHECKIN_TABLE_NAME + " WHERE " + COL_SENT + " = 0",
+                null);
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bindDoubleOrNull(SQLiteStatement statement, int index, double value) {
+        if (Double.isNaN(value)) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+
+    private static double doubleOrNaN(Cursor cursor, int index) {
+        return cursor.isNull(index) ? Double.NaN : cursor.getDouble(index);
+    }
+
+    private static boolean queryBoolean(SQLiteDatabase db, String sql, String[] args) {
+        Cursor cursor = db.rawQuery(sql, args);
+        boolean value = cursor.moveToFirst() && cursor.getInt(0) != 0;
+        cursor.close();
+        return value;
+    }
+
+    private void discardStaging(String company, String location) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.execSQL("DROP TABLE IF EXISTS " + stagingTable(company, location));
+    }
+
+    // Hex of the UTF-8 estate key, so any company/location makes a valid, distinct name
+    static String stagingTable(String company, String location) {
+        StringBuilder name = new StringBuilder(STAGING_TABLE_NAME).append('_');
+        for (byte b : (company + '\0' + location).getBytes(StandardCharsets.UTF_8)) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return name.toString();
+    }
+
+    // Also drops the single staging table of versions before per-estate staging
+    private static void dropStagingTables(SQLiteDatabase db) {
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND (name = ? OR " +
+                "name LIKE ? ESCAPE '\\')", new String[]{STAGING_TABLE_NAME, likePrefix(STAGING_TABLE_NAME + "_")});
+        while (cursor.moveToNext()) {
+            tables.add(cursor.getString(0));
+        }
+        cursor.close();
+        for (String table : tables) {
+            db.execSQL("DROP TABLE IF EXISTS " + table);
+        }
+    }
+
+    private static String insertSql(String table) {
+        return "INSERT INTO " + table + " (" +
+                COL_COMPANY + ", " + COL_LOCATION + ", " + COL_KODEBLOK + ", " +
+                COL_NOTPH + ", " + COL_COORDINATE + ", " + COL_LAT + ", " + COL_LNG + ", " +
+                COL_RADIUS + ", " + COL_BLOCK_BOUNDARY + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    // Validators from the last successful sync, or null if this estate was never synced
+    public SyncWatermark getSyncWatermark(String company, String location) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COL_ETAG + ", " + COL_LAST_MODIFIED + ", " + COL_TOKEN +
+                        " FROM " + SYNC_TABLE_NAME + " WHERE " + COL_COMPANY + " = ? AND " + COL_LOCATION + " = ?",
+                new String[]{company, location});
+        SyncWatermark watermark = null;
+        if (cursor.moveToFirst()) {
+            watermark = new SyncWatermark(cursor.getString(0), cursor.getString(1), cursor.getString(2));
+        }
+        cursor.close();
+        return watermark;
+    }
+
+    public void saveSyncWatermark(String company, String location, SyncWatermark watermark) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COL_COMPANY, company);
+        values.put(COL_LOCATION, location);
+        values.put(COL_ETAG, watermark.getEtag());
+        values.put(COL_LAST_MODIFIED, watermark.getLastModified());
+        values.put(COL_TOKEN, watermark.getToken());
+        db.insertWithOnConflict(SYNC_TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
     }
 
     public void clearData() {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_NAME, null, null);
+        beginWrite();
+        long start = System.nanoTime();
+        try {
+            db.delete(TABLE_NAME, null, null);
+            // Without rows a conditional request could come back 304 and leave the table empty
+            db.delete(SYNC_TABLE_NAME, null, null);
+            db.delete(CURSOR_TABLE_NAME, null, null);
+            dropStagingTables(db);
+            CLEAR_TIME.recordSince(start);
+        } finally {
+            endWrite(false);
+        }
+    }
+
+    private File snapshotFile() {
+        return new File(context.getFilesDir(), SNAPSHOT_FILE);
+    }
+
+    // Mapped snapshot of the table, or null when there is none yet or a write is open.
+    // Only maps an existing file; does disk I/O on first call, so keep it off the main thread.
+    public TphSnapshot getSnapshot() {
+        synchronized (snapshotLock) {
+            if (snapshot == null && !snapshotOpened && openWriters == 0) {
+                snapshotOpened = true;
+                File file = snapshotFile();
+                if (file.exists()) {
+                    try {
+                        snapshot = TphSnapshot.open(file);
+                    } catch (IOException e) {
+                        Log.w("SNAPSHOT", "Discarding unreadable snapshot", e);
+                        file.delete();
+                    }
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    // Writes a snapshot of the table as it is now and maps it. Returns null while a write
+    // is open; a rebuild overtaken by a write is thrown away, as that write rebuilds again.
+    public TphSnapshot refreshSnapshot() {
+        synchronized (rebuildLock) {
+            long version;
+            synchronized (snapshotLock) {
+                if (openWriters > 0) return null;
+                version = dataVersion;
+            }
+
+            long start = System.nanoTime();
+            TphSnapshotWriter writer = new TphSnapshotWriter();
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = db.rawQuery("SELECT " + COL_KODEBLOK + ", " + COL_NOTPH + ", " + COL_LAT + ", " +
+                    COL_LNG + ", " + COL_RADIUS + " FROM " + TABLE_NAME, null);
+            try {
+                while (cursor.moveToNext()) {
+                    writer.add(cursor.getString(0), cursor.getString(1),
+                            cursor.isNull(2) ? Double.NaN : cursor.getDouble(2),
+                            cursor.isNull(3) ? Double.NaN : cursor.getDouble(3),
+                            cursor.isNull(4) ? Double.NaN : cursor.getDouble(4));
+                }
+            } finally {
+                cursor.close();
+            }
+            // In id order, so the latest boundary of each block wins as in QUERY_BLOCK_BOUNDARY
+            cursor = db.rawQuery("SELECT " + COL_KODEBLOK + ", " + COL_BLOCK_BOUNDARY + " FROM " + TABLE_NAME +
+                    " WHERE " + COL_BLOCK_BOUNDARY + " IS NOT NULL ORDER BY " + COL_ID, null);
+            try {
+                while (cursor.moveToNext()) {
+                    writer.setBoundary(cursor.getString(0), PolygonFence.parse(cursor.getString(1)));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            File file = snapshotFile();
+            File temp = new File(file.getPath() + ".tmp");
+            try {
+                writer.writeTo(temp, System.currentTimeMillis());
+                SNAPSHOT_REBUILD_TIME.recordSince(start);
+                synchronized (snapshotLock) {
+                    if (openWriters == 0 && dataVersion == version && temp.renameTo(file)) {
+                        snapshot = TphSnapshot.open(file);
+                        snapshotOpened = true;
+                    }
+                    return snapshot;
+                }
+            } catch (IOException e) {
+                // Readers fall back to the table until the next rebuild
+                Log.w("SNAPSHOT", "Could not write snapshot", e);
+                return null;
+            } finally {
+                temp.delete();
+            }
+        }
+    }
+
+    private void beginWrite() {
+        synchronized (snapshotLock) {
+            openWriters++;
+            dataVersion++;
+            snapshot = null;
+            snapshotOpened = true;
+            snapshotFile().delete();
+        }
+    }
+
+    private void endWrite(boolean rebuild) {
+        synchronized (snapshotLock) {
+            openWriters--;
+            dataVersion++;
+        }
+        catalog.invalidate();
+        if (rebuild) refreshSnapshot();
     }
 
+    // Not timed: forcing the cursor here would step the whole table before the caller reads a row
     public Cursor getAllData() {
         SQLiteDatabase db = this.getReadableDatabase();
         return db.rawQuery("SELECT * FROM " + TABLE_NAME, null);
     }
 
+    // Up to limit rows after afterId; query, when given, is a kodeBlok or noTPH prefix
+    public TphPage getPage(String query, long afterId, int limit) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = query == null
+                ? db.rawQuery(QUERY_PAGE, new String[]{Long.toString(afterId), Integer.toString(limit)})
+                : db.rawQuery(QUERY_PAGE_SEARCH, new String[]{Long.toString(afterId), likePrefix(query),
+                likePrefix(query), Integer.toString(limit)});
+        try {
+            int count = cursor.getCount();
+            long[] id = new long[count];
+            String[] company = new String[count];
+            String[] location = new String[count];
+            String[] kodeBlok = new String[count];
+            String[] noTPH = new String[count];
+            String[] coordinate = new String[count];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                id[i] = cursor.getLong(0);
+                company[i] = cursor.getString(1);
+                location[i] = cursor.getString(2);
+                kodeBlok[i] = cursor.getString(3);
+                noTPH[i] = cursor.getString(4);
+                coordinate[i] = cursor.getString(5);
+            }
+            return new TphPage(id, company, location, kodeBlok, noTPH, coordinate);
+        } finally {
+            cursor.close();
+            PAGE_TIME.recordSince(start);
+        }
+    }
+
+    private static String likePrefix(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
     // Get distinct kodeBlok for dropdown
     public Cursor getDistinctKodeBlok() {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery("SELECT DISTINCT " + COL_KODEBLOK + " FROM " + TABLE_NAME + " ORDER BY " + COL_KODEBLOK, null);
+        long start = System.nanoTime();
+        return timed(db.rawQuery(QUERY_DISTINCT_KODE_BLOK, null), DISTINCT_KODE_BLOK_TIME, start);
     }
 
     // Get data by kodeBlok for TPH dropdown
     public Cursor getTPHByKodeBlok(String kodeBlok) {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery("SELECT " + COL_NOTPH + ", " + COL_COORDINATE + " FROM " + TABLE_NAME +
-                " WHERE " + COL_KODEBLOK + " = ? ORDER BY " + COL_NOTPH, new String[]{kodeBlok});
+        long start = System.nanoTime();
+        return timed(db.rawQuery(QUERY_TPH_BY_KODE_BLOK, new String[]{kodeBlok}), TPH_BY_KODE_BLOK_TIME, start);
+    }
+
+    // Boundary text of the block, or null when the server never sent one
+    public String getBlockBoundary(String kodeBlok) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(QUERY_BLOCK_BOUNDARY, new String[]{kodeBlok});
+        String boundary = cursor.moveToFirst() ? cursor.getString(0) : null;
+        cursor.close();
+        BLOCK_BOUNDARY_TIME.recordSince(start);
+        return boundary;
+    }
+
+    // kodeBlok, noTPH, lat, lng, radius of every TPH with a usable coordinate, for the
+    // spatial index; radius is NULL for the default
+    public Cursor getAllLocations() {
+        long start = System.nanoTime();
+        SQLiteDatabase db = this.getReadableDatabase();
+        return timed(db.rawQuery("SELECT " + COL_KODEBLOK + ", " + COL_NOTPH + ", " + COL_LAT + ", " + COL_LNG +
+                ", " + COL_RADIUS + " FROM " + TABLE_NAME + " WHERE " + COL_LAT + " IS NOT NULL AND " + COL_LNG + " IS NOT NULL", null),
+                ALL_LOCATIONS_TIME, start);
     }
 
     // Check if database has data
     public boolean hasData() {
+        TphSnapshot current = getSnapshot();
+        if (current != null && current.getPointCount() > 0) return true;
+        long start = System.nanoTime();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_NAME, null);
+        Cursor cursor = db.rawQuery("SELECT EXISTS (SELECT 1 FROM " + TABLE_NAME + ")", null);
         cursor.moveToFirst();
-        int count = cursor.getInt(0);
+        boolean exists = cursor.getInt(0) != 0;
         cursor.close();
-        return count > 0;
+        HAS_DATA_TIME.recordSince(start);
+        return exists;
     }
 
-    // Get specific TPH data
+    // Whether any row of this estate is stored
+    public boolean hasData(String company, String location) {
+        return queryBoolean(getReadableDatabase(), "SELECT EXISTS (SELECT 1 FROM " + TABLE_NAME + " WHERE " +
+                COL_COMPANY + " = ? AND " + COL_LOCATION + " = ?)", new String[]{company, location});
+    }
+
+    // Get lat/lng of a specific TPH; both are NULL when its coordinate could not be parsed
     public Cursor getTPHData(String kodeBlok, String noTPH) {
+        long start = System.nanoTime();
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery("SELECT * FROM " + TABLE_NAME +
-                        " WHERE " + COL_KODEBLOK + " = ? AND " + COL_NOTPH + " = ?",
-                new String[]{kodeBlok, noTPH});
+        return timed(db.rawQuery(QUERY_TPH_DATA, new String[]{kodeBlok, noTPH}), TPH_DATA_TIME, start);
+    }
+
+    // rawQuery only compiles the statement; getCount() runs it. The first window fill of a
+    // SQLiteCursor steps through every row to count them, so this is only for queries whose
+    // callers read or count the whole result anyway; it then costs nothing extra.
+    private static Cursor timed(Cursor cursor, Histogram histogram, long start) {
+        cursor.getCount();
+        histogram.recordSince(start);
+        return cursor;
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.example.geofenceapp.service;
+
+import android.content.Context;
+
+import com.example.geofenceapp.metrics.Metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+// One JSON line per dump appended to files/metrics/yyyyMMdd.jsonl, the last KEEP_DAYS files
+// kept. Each line holds the totals since the last reset, not the change since the line
+// before. Pull a day with
+//   adb exec-out run-as com.example.geofenceapp cat files/metrics/20261018.jsonl > 20261018.jsonl
+public final class MetricsFiles {
+    static final int KEEP_DAYS = 7;
+    private static final String SUFFIX = ".jsonl";
+
+    private MetricsFiles() {
+    }
+
+    // Does disk I/O: call it off the main thread. Returns the file written to.
+    public static File dump(Context context, Map<String, String> device) throws IOException {
+        File dir = new File(context.getFilesDir(), "metrics");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        long now = System.currentTimeMillis();
+        File file = new File(dir, new SimpleDateFormat("yyyyMMdd", Locale.ROOT).format(new Date(now)) + SUFFIX);
+        byte[] line = (Metrics.toJson(now, device) + "\n").getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(line);
+        }
+        prune(dir);
+        return file;
+    }
+
+    // Names sort by date, so everything before the newest KEEP_DAYS goes
+    private static void prune(File dir) {
+        String[] names = dir.list((d, name) -> name.endsWith(SUFFIX));
+        if (names == null || names.length <= KEEP_DAYS) return;
+        Arrays.sort(names);
+        for (int i = 0; i < names.length - KEEP_DAYS; i++) {
+            new File(dir, names[i]).delete();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.geofenceapp.service;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+import com.example.geofenceapp.GeofenceApp;
+
+// Entry point of the periodic sync scheduled by SyncScheduler
+public class SyncJobService extends JobService {
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        SyncScheduler scheduler = ((GeofenceApp) getApplication()).getSyncScheduler();
+        scheduler.runScheduled(status ->
+                jobFinished(params, status.getState() == SyncStatus.State.FAILED));
+        return true;
+    }
+
+    // Constraints were lost. The run is cancelled rather than left going without the job,
+    // and the rescheduled job resumes from the last checkpointed page.
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        ((GeofenceApp) getApplication()).getSyncScheduler().stopScheduled();
+        return true;
+    }
+}
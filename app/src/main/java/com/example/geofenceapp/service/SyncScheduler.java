@@ -0,0 +1,164 @@
+package com.example.geofenceapp.service;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// App-wide owner of the TPH sync. Every trigger goes through one SyncRunner, so a button
+// press during an overnight run joins it instead of downloading twice. The periodic run is
+// a JobScheduler job that waits for an idle, charging device on an unmetered network;
+// status changes reach listeners on the main thread. Each run downloads every configured
+// estate through MultiEstateSync, a few at a time, with the sync thread as the only writer.
+public class SyncScheduler {
+    private static final String TAG = "SYNC";
+
+    public static final String API_URL = "http://10.100.1.26:3005/api/TPH/GetItemByCompanyLocation";
+    public static final String COMPANY = "A06";
+    public static final String LOCATION = "21";
+    // Concurrent downloads; more mostly adds contention on a slow link
+    static final int DOWNLOAD_PARALLELISM = MultiEstateSync.DEFAULT_PARALLELISM;
+
+    static final int PERIODIC_JOB_ID = 1001;
+    // Several chances per night; the constraints keep it off the field day
+    private static final long PERIOD_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    private final Context context;
+    private final SyncRunner runner;
+    private final MultiEstateSync sync;
+    private volatile List<Estate> estates = Collections.singletonList(new Estate(COMPANY, LOCATION));
+
+    public SyncScheduler(Context context, DatabaseHelper dbHelper) {
+        this.context = context.getApplicationContext();
+        TphSyncClient client = new TphSyncClient(API_URL);
+        ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "tph-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Idle download threads go away between runs
+        ThreadPoolExecutor downloads = new ThreadPoolExecutor(DOWNLOAD_PARALLELISM, DOWNLOAD_PARALLELISM,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "tph-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+        downloads.allowCoreThreadTimeOut(true);
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        this.sync = new MultiEstateSync(new MultiEstateSync.Job() {
+            @Override
+            public TphSyncClient.Result download(Estate estate, TphSyncTarget target,
+                                                 TphSyncClient.ProgressListener progress) throws Exception {
+                String company = estate.getCompany();
+                String location = estate.getLocation();
+                // Without local rows there is nothing to apply a delta to, so force a full download
+                SyncWatermark since = dbHelper.hasData(company, location)
+                        ? dbHelper.getSyncWatermark(company, location) : null;
+
+                // Records are streamed from the connection into the database as they arrive.
+                // A full download goes to a staging table that only replaces the estate's
+                // rows once it has completed; a delta only touches the rows that changed.
+                // Pages are committed as they arrive, so a dropped link resumes where it stopped.
+                return client.sync(company, location, since, target, progress);
+            }
+
+            @Override
+            public void onDownloaded(Estate estate, TphSyncClient.Result result) {
+                if (result.getMode() != TphSyncClient.Mode.NOT_MODIFIED) {
+                    dbHelper.saveSyncWatermark(estate.getCompany(), estate.getLocation(), result.getWatermark());
+                }
+                Log.d(TAG, estate + " " + result.getMode() + " sync, " + result.getRecordCount() + " records, " +
+                        result.getBytesReceived() + " bytes" + (result.isResumed() ? ", resumed" : ""));
+            }
+        }, dbHelper, downloads, DOWNLOAD_PARALLELISM);
+
+        // One estate failing fails the run, so the periodic job retries it; the others are
+        // already stored and come back as not modified
+        this.runner = new SyncRunner(progress -> MultiEstateSync.combine(sync.run(estates, progress)),
+                worker, mainHandler::post);
+    }
+
+    // Estates every later run downloads; a run in progress keeps the list it started with
+    public void setEstates(List<Estate> estates) {
+        if (estates.isEmpty()) throw new IllegalArgumentException("At least one estate is required");
+        this.estates = Collections.unmodifiableList(new ArrayList<>(estates));
+    }
+
+    public List<Estate> getEstates() {
+        return estates;
+    }
+
+    // Sync button; returns false if a sync was already running and this joined it
+    public boolean syncNow() {
+        return runner.request(SyncStatus.Trigger.MANUAL, null);
+    }
+
+    void runScheduled(SyncRunner.Listener onDone) {
+        runner.request(SyncStatus.Trigger.PERIODIC, onDone);
+    }
+
+    // The periodic job was withdrawn: its run must not carry on without the job. Open sinks
+    // are aborted, checkpointed pages stay for the rescheduled job to resume. A run the sync
+    // button started is left alone.
+    void stopScheduled() {
+        SyncStatus status = runner.getStatus();
+        if (status.isRunning() && status.getTrigger() == SyncStatus.Trigger.PERIODIC) {
+            sync.cancel();
+        }
+    }
+
+    public SyncStatus getStatus() {
+        return runner.getStatus();
+    }
+
+    public void addListener(SyncRunner.Listener listener) {
+        runner.addListener(listener);
+    }
+
+    public void removeListener(SyncRunner.Listener listener) {
+        runner.removeListener(listener);
+    }
+
+    // Idempotent; rescheduling an existing job would restart its period
+    public void schedulePeriodic() {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == PERIODIC_JOB_ID) return;
+        }
+
+        JobInfo job = new JobInfo.Builder(PERIODIC_JOB_ID, new ComponentName(context, SyncJobService.class))
+                .setPeriodic(PERIOD_MILLIS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPersisted(true)
+                .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Could not schedule periodic sync");
+        }
+    }
+
+    public void cancelPeriodic() {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        scheduler.cancel(PERIODIC_JOB_ID);
+    }
+}
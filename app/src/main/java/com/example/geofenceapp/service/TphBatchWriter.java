@@ -0,0 +1,220 @@
+package com.example.geofenceapp.service;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+// Bulk loader for TPH rows. One compiled INSERT is rebound for every row and rows are
+// committed in chunks, so a large sync costs one journal commit per chunk instead of per row.
+public class TphBatchWriter implements TphRecordSink, Closeable {
+    private final SQLiteDatabase db;
+    private final String table;
+    private final SQLiteStatement insert;
+    private final int batchSize;
+    private final List<String> droppedIndexes = new ArrayList<>();
+
+    // Only set in upsert mode, where rows are matched on company/location/kodeBlok/noTPH
+    private SQLiteStatement update;
+    private SQLiteStatement delete;
+
+    private int pending = 0;
+    private int written = 0;
+    private int commits = 0;
+    private boolean closed = false;
+    // Runs once the writer is released, whether it was committed or aborted
+    private Runnable onRelease;
+
+    // insertSql binds company, location, kodeBlok, noTPH, coordinate, lat, lng, radius, blockBoundary
+    TphBatchWriter(SQLiteDatabase db, String table, String insertSql, int batchSize, boolean rebuildIndexes) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.db = db;
+        this.table = table;
+        this.batchSize = batchSize;
+
+        // Maintaining indexes row by row is slower than building them once after the load
+        if (rebuildIndexes) {
+            dropIndexes();
+        }
+        this.insert = db.compileStatement(insertSql);
+    }
+
+    // updateSql binds coordinate, lat, lng, radius, blockBoundary, company, location, kodeBlok, noTPH;
+    // deleteSql binds company, location, kodeBlok, noTPH
+    void enableUpsert(String updateSql, String deleteSql) {
+        update = db.compileStatement(updateSql);
+        delete = db.compileStatement(deleteSql);
+    }
+
+    void setOnRelease(Runnable onRelease) {
+        this.onRelease = onRelease;
+    }
+
+    @Override
+    public void write(TphRecord record) {
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (record.isDeleted() && delete == null) return;
+
+        if (pending == 0) {
+            db.beginTransaction();
+        }
+
+        if (record.isDeleted()) {
+            delete.clearBindings();
+            bindKey(delete, 1, record);
+            delete.executeUpdateDelete();
+        } else if (update == null || !updateExisting(record)) {
+            insert.clearBindings();
+            bindKey(insert, 1, record);
+            bindLocation(insert, 5, record);
+            insert.executeInsert();
+        }
+
+        written++;
+        if (++pending >= batchSize) {
+            commitChunk();
+        }
+    }
+
+    private boolean updateExisting(TphRecord record) {
+        update.clearBindings();
+        bindLocation(update, 1, record);
+        bindKey(update, 6, record);
+        return update.executeUpdateDelete() > 0;
+    }
+
+    // Commits whatever is pending in the current chunk
+    @Override
+    public void flush() {
+        if (pending > 0) {
+            commitChunk();
+        }
+    }
+
+    public int getWrittenCount() {
+        return written;
+    }
+
+    // Transactions committed so far, not counting the index rebuild
+    int getCommitCount() {
+        return commits;
+    }
+
+    // Commits the pending rows; onCheckpoint runs inside the same transaction
+    @Override
+    public void checkpoint(SyncCursor cursor) {
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (pending == 0) {
+            db.beginTransaction();
+        }
+        onCheckpoint(db, cursor);
+        commitChunk();
+    }
+
+    protected void onCheckpoint(SQLiteDatabase db, SyncCursor cursor) {
+    }
+
+    @Override
+    public void commit() {
+        release();
+    }
+
+    // Rolls back the rows of the current, uncommitted chunk
+    @Override
+    public void abort() {
+        if (pending > 0) {
+            db.endTransaction();
+            written -= pending;
+            pending = 0;
+        }
+        release();
+    }
+
+    @Override
+    public void close() {
+        commit();
+    }
+
+    private void release() {
+        if (closed) return;
+        flush();
+        closed = true;
+        insert.close();
+        if (update != null) update.close();
+        if (delete != null) delete.close();
+        restoreIndexes();
+        if (onRelease != null) onRelease.run();
+    }
+
+    private static void bindKey(SQLiteStatement statement, int first, TphRecord record) {
+        bind(statement, first, record.getCompany());
+        bind(statement, first + 1, record.getLocation());
+        bind(statement, first + 2, record.getKodeBlok());
+        bind(statement, first + 3, record.getNoTPH());
+    }
+
+    // Coordinates are parsed once here so readers never have to split the text again
+    private static void bindLocation(SQLiteStatement statement, int first, TphRecord record) {
+        bind(statement, first, record.getCoordinate());
+        if (record.hasLocation()) {
+            statement.bindDouble(first + 1, record.getLatitude());
+            statement.bindDouble(first + 2, record.getLongitude());
+        } else {
+            statement.bindNull(first + 1);
+            statement.bindNull(first + 2);
+        }
+        if (Double.isNaN(record.getRadius())) {
+            statement.bindNull(first + 3);
+        } else {
+            statement.bindDouble(first + 3, record.getRadius());
+        }
+        bind(statement, first + 4, record.getBlockBoundary());
+    }
+
+    private static void bind(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private void commitChunk() {
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        pending = 0;
+        commits++;
+    }
+
+    private void dropIndexes() {
+        Cursor cursor = db.rawQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index'" +
+                " AND tbl_name = ? AND sql IS NOT NULL", new String[]{table});
+        List<String> names = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            names.add(cursor.getString(0));
+            droppedIndexes.add(cursor.getString(1));
+        }
+        cursor.close();
+
+        for (String name : names) {
+            db.execSQL("DROP INDEX IF EXISTS " + name);
+        }
+    }
+
+    private void restoreIndexes() {
+        if (droppedIndexes.isEmpty()) return;
+        db.beginTransaction();
+        try {
+            for (String sql : droppedIndexes) {
+                db.execSQL(sql);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        droppedIndexes.clear();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.geofenceapp.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.geofenceapp.geo.PolygonFence;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs DatabaseHelper queries on a small background pool and delivers results on the
+// main thread. Every call returns a Task; cancelling it (e.g. when the picker selection
+// changes again) guarantees its callback will not run. Cursors never leave the worker.
+public class TphRepository {
+    private static final String TAG = "TphRepository";
+    private static final int THREADS = 2;
+    private static final int QUEUE_CAPACITY = 32;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public static class Task {
+        private volatile boolean cancelled = false;
+        private Future<?> future;
+
+        // Call from the main thread; the callback is skipped even if the query already finished
+        public void cancel() {
+            cancelled = true;
+            if (future != null) future.cancel(false);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    public static class TphLocation {
+        public final double latitude;
+        public final double longitude;
+        // NaN for the app default
+        public final double radius;
+        // Boundary of the TPH's block, or null
+        public final PolygonFence block;
+
+        TphLocation(double latitude, double longitude, double radius, PolygonFence block) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = radius;
+            this.block = block;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+    private volatile boolean closed = false;
+
+    public TphRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(() -> {
+                    android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, "tph-db-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public DatabaseHelper getDatabaseHelper() {
+        return dbHelper;
+    }
+
+    // For callers that deliver their own results, such as the data browser's pager
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    // Runs arbitrary work off the main thread; failures are logged and the callback skipped
+    public <T> Task execute(Callable<T> work, Callback<T> callback) {
+        Task task = new Task();
+        try {
+            task.future = executor.submit(() -> {
+                if (task.cancelled) return;
+                T result;
+                try {
+                    result = work.call();
+                } catch (Exception e) {
+                    Log.e(TAG, "Query failed", e);
+                    return;
+                }
+                mainHandler.post(() -> {
+                    if (!task.cancelled && !closed) callback.onResult(result);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Query queue full, dropping request", e);
+            task.cancelled = true;
+        }
+        return task;
+    }
+
+    public Task hasData(Callback<Boolean> callback) {
+        return execute(dbHelper::hasData, callback);
+    }
+
+    // The lists and locations below come from the catalog, which only queries on a miss
+    public Task loadKodeBlok(Callback<List<String>> callback) {
+        return execute(() -> dbHelper.getCatalog().getKodeBlok(), callback);
+    }
+
+    public Task loadTPHNumbers(String kodeBlok, Callback<List<String>> callback) {
+        return execute(() -> dbHelper.getCatalog().getBlock(kodeBlok).getNoTPHList(), callback);
+    }
+
+    // Prefix indexes for the type-ahead pickers, built once per sync by the catalog
+    public Task loadKodeBlokIndex(Callback<PrefixIndex> callback) {
+        return execute(() -> dbHelper.getCatalog().getKodeBlokIndex(), callback);
+    }
+
+    public Task loadTPHIndex(String kodeBlok, Callback<PrefixIndex> callback) {
+        return execute(() -> dbHelper.getCatalog().getBlock(kodeBlok).getNoTPHIndex(), callback);
+    }
+
+    // Result is null when the TPH has no usable coordinate
+    public Task loadTPHLocation(String kodeBlok, String noTPH, Callback<TphLocation> callback) {
+        return execute(() -> {
+            TphCatalog.Block block = dbHelper.getCatalog().getBlock(kodeBlok);
+            int i = block.indexOf(noTPH);
+            if (i < 0 || !block.hasLocation(i)) return null;
+            return new TphLocation(block.getLatitude(i), block.getLongitude(i), block.getRadius(i),
+                    block.getBoundary());
+        }, callback);
+    }
+
+    // Stops the workers; pending callbacks are dropped
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+}
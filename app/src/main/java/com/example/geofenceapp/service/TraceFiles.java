@@ -0,0 +1,44 @@
+package com.example.geofenceapp.service;
+
+import android.content.Context;
+
+import com.example.geofenceapp.geo.TraceWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+// One trace file per day under files/traces, the last KEEP_DAYS kept. To replay a
+// complaint, pull the day with
+//   adb exec-out run-as com.example.geofenceapp cat files/traces/20261018.gft > 20261018.gft
+// and run ./gradlew :core:replayTrace -Ptrace=$PWD/20261018.gft
+public final class TraceFiles {
+    static final int KEEP_DAYS = 7;
+    private static final String SUFFIX = ".gft";
+
+    private TraceFiles() {
+    }
+
+    // Does disk I/O: call it on the io executor
+    public static TraceWriter openToday(Context context, Executor io) throws IOException {
+        File dir = new File(context.getFilesDir(), "traces");
+        String name = new SimpleDateFormat("yyyyMMdd", Locale.ROOT).format(new Date()) + SUFFIX;
+        TraceWriter writer = TraceWriter.open(new File(dir, name), io);
+        prune(dir);
+        return writer;
+    }
+
+    // Names sort by date, so everything before the newest KEEP_DAYS goes
+    private static void prune(File dir) {
+        String[] names = dir.list((d, name) -> name.endsWith(SUFFIX));
+        if (names == null || names.length <= KEEP_DAYS) return;
+        Arrays.sort(names);
+        for (int i = 0; i < names.length - KEEP_DAYS; i++) {
+            new File(dir, names[i]).delete();
+        }
+    }
+}
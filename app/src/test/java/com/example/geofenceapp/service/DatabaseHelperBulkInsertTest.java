@@ -0,0 +1,131 @@
+package com.example.geofenceapp.service;
+
+import android.database.Cursor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperBulkInsertTest {
+    private static final int ROWS = 50_001;
+    // insertData commits every row, so a smaller sample keeps the run short
+    private static final int ROW_BY_ROW_SAMPLE = 2_000;
+
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        dbHelper.clearData();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void insertAllWritesEveryRow() {
+        int written = dbHelper.insertAll(records(1234), 100, true);
+
+        assertEquals(1234, written);
+        assertEquals(1234, count());
+    }
+
+    // Rows per second of insertData, one row per call, against a TphBatchWriter loading the
+    // same rows, both on the real schema. Wall-clock rates depend on the machine, so they go
+    // to a report (build/reports/bulk-insert/bulk-insert.json) rather than into an assertion.
+    @Test
+    public void measuresRowByRowAgainstBatchWriter() throws IOException, JSONException {
+        List<TphRecord> sample = records(ROW_BY_ROW_SAMPLE);
+        long start = System.nanoTime();
+        for (TphRecord r : sample) {
+            dbHelper.insertData(r.getCompany(), r.getLocation(), r.getKodeBlok(), r.getNoTPH(), r.getCoordinate());
+        }
+        long rowByRowNanos = System.nanoTime() - start;
+        assertEquals(ROW_BY_ROW_SAMPLE, count());
+
+        dbHelper.clearData();
+        List<TphRecord> all = records(ROWS);
+        start = System.nanoTime();
+        TphBatchWriter writer = dbHelper.newBatchWriter(DatabaseHelper.DEFAULT_BATCH_SIZE, true);
+        for (TphRecord record : all) {
+            writer.write(record);
+        }
+        writer.commit();
+        long batchedNanos = System.nanoTime() - start;
+        assertEquals(ROWS, count());
+
+        double rowByRowRate = rowsPerSecond(ROW_BY_ROW_SAMPLE, rowByRowNanos);
+        double batchedRate = rowsPerSecond(ROWS, batchedNanos);
+        writeReport(new File(System.getProperty("bulkInsert.report", "build/reports/bulk-insert/bulk-insert.json")),
+                new JSONObject()
+                        .put("time", System.currentTimeMillis())
+                        .put("batchSize", DatabaseHelper.DEFAULT_BATCH_SIZE)
+                        .put("rowByRowRows", ROW_BY_ROW_SAMPLE)
+                        .put("rowByRowRowsPerSecond", (long) rowByRowRate)
+                        .put("batchedRows", ROWS)
+                        .put("batchedRowsPerSecond", (long) batchedRate)
+                        .put("speedup", batchedRate / rowByRowRate));
+    }
+
+    @Test
+    public void batchWriterCommitsOncePerChunk() {
+        TphBatchWriter writer = dbHelper.newBatchWriter(DatabaseHelper.DEFAULT_BATCH_SIZE, true);
+        for (TphRecord record : records(ROWS)) {
+            writer.write(record);
+        }
+        writer.commit();
+
+        assertEquals(ROWS, writer.getWrittenCount());
+        assertEquals(ROWS, count());
+        assertEquals((ROWS + DatabaseHelper.DEFAULT_BATCH_SIZE - 1) / DatabaseHelper.DEFAULT_BATCH_SIZE,
+                writer.getCommitCount());
+    }
+
+    private int count() {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM data_tph", null);
+        cursor.moveToFirst();
+        int count = cursor.getInt(0);
+        cursor.close();
+        return count;
+    }
+
+    private static double rowsPerSecond(int rows, long nanos) {
+        return rows / (nanos / 1e9);
+    }
+
+    private static void writeReport(File report, JSONObject json) throws IOException, JSONException {
+        File dir = report.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(report), StandardCharsets.UTF_8)) {
+            out.write(json.toString(2));
+        }
+    }
+
+    private static List<TphRecord> records(int n) {
+        List<TphRecord> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(new TphRecord("A06", "21", "B" + (i / 50), String.valueOf(i % 50),
+                    "-1." + i + ",103." + i + ","));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.geofenceapp.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperCatalogTest {
+    private DatabaseHelper dbHelper;
+    private TphCatalog catalog;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        dbHelper.insertAll(Arrays.asList(
+                new TphRecord("A06", "21", "B01", "002", "-1.2,103.2,"),
+                new TphRecord("A06", "21", "B01", "001", "garbage"),
+                new TphRecord("A06", "21", "B02", "001", "-1.3,103.3,")));
+        catalog = dbHelper.getCatalog();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void loadsBlocksFromTable() {
+        assertEquals(Arrays.asList("B01", "B02"), catalog.getKodeBlok());
+
+        TphCatalog.Block block = catalog.getBlock("B01");
+        assertEquals(Arrays.asList("001", "002"), block.getNoTPHList());
+        assertFalse(block.hasLocation(0));
+        assertEquals(-1.2, block.getLatitude(1), 0.0);
+        assertEquals(103.2, block.getLongitude(1), 0.0);
+        assertEquals(0, catalog.getBlock("B99").size());
+    }
+
+    @Test
+    public void radiusAndBlockBoundaryRoundTrip() {
+        TphBatchWriter delta = dbHelper.newDeltaWriter(10);
+        delta.write(new TphRecord("A06", "21", "B01", "002", "-1.2,103.2,", false, 45,
+                "-1.0,103.0;-1.0,103.5;-1.5,103.5;-1.5,103.0"));
+        delta.commit();
+        TphCatalog.Block block = catalog.getBlock("B01");
+        assertEquals(45, block.getRadius(1), 0.0);
+        assertTrue(Double.isNaN(block.getRadius(0)));
+        assertEquals(4, block.getBoundary().getVertexCount());
+        assertTrue(block.getBoundary().contains(-1.2, 103.2));
+
+        // A later update without the boundary keeps the stored one
+        delta = dbHelper.newDeltaWriter(10);
+        delta.write(new TphRecord("A06", "21", "B01", "002", "-1.25,103.2,"));
+        delta.commit();
+        block = catalog.getBlock("B01");
+        assertTrue(Double.isNaN(block.getRadius(1)));
+        assertNotNull(block.getBoundary());
+        assertNull(catalog.getBlock("B02").getBoundary());
+    }
+
+    @Test
+    public void everyWritePathInvalidates() {
+        catalog.getBlock("B01");
+        long generation = catalog.getGeneration();
+
+        TphBatchWriter delta = dbHelper.newDeltaWriter(10);
+        delta.write(new TphRecord("A06", "21", "B01", "003", "-1.4,103.4,"));
+        delta.commit();
+        assertTrue(catalog.getGeneration() > generation);
+        assertEquals(3, catalog.getBlock("B01").size());
+
+        generation = catalog.getGeneration();
+        TphBatchWriter full = dbHelper.newStagingWriter("A06", "21", 10);
+        full.write(new TphRecord("A06", "21", "B03", "001", "-1.5,103.5,"));
+        full.commit();
+        assertTrue(catalog.getGeneration() > generation);
+        assertEquals(Collections.singletonList("B03"), catalog.getKodeBlok());
+
+        generation = catalog.getGeneration();
+        dbHelper.clearData();
+        assertTrue(catalog.getGeneration() > generation);
+        assertTrue(catalog.getKodeBlok().isEmpty());
+    }
+
+    @Test
+    public void snapshotFollowsTheTable() {
+        TphSnapshot snapshot = dbHelper.getSnapshot();
+        assertNotNull(snapshot);
+        assertEquals(3, snapshot.getPointCount());
+        assertEquals(Arrays.asList("B01", "B02"), snapshot.loadKodeBlok());
+
+        // Gone while a write is open, rebuilt once it commits
+        TphBatchWriter delta = dbHelper.newDeltaWriter(10);
+        assertNull(dbHelper.getSnapshot());
+        assertNull(dbHelper.refreshSnapshot());
+        delta.write(new TphRecord("A06", "21", "B01", "003", "-1.4,103.4,", false, 30, null));
+        delta.commit();
+        snapshot = dbHelper.getSnapshot();
+        assertEquals(4, snapshot.getPointCount());
+        assertEquals(30, dbHelper.getCatalog().getBlock("B01").getRadius(2), 0.0);
+
+        // Rows added one at a time leave the table to answer until the next rebuild
+        dbHelper.insertData("A06", "21", "B04", "001", "-1.6,103.6,");
+        assertNull(dbHelper.getSnapshot());
+        assertEquals(Arrays.asList("B01", "B02", "B04"), catalog.getKodeBlok());
+        assertEquals(5, dbHelper.refreshSnapshot().getPointCount());
+
+        dbHelper.clearData();
+        assertNull(dbHelper.getSnapshot());
+        assertFalse(dbHelper.hasData());
+    }
+
+    @Test
+    public void abortedStagingSyncKeepsCache() {
+        catalog.getKodeBlok();
+        long generation = catalog.getGeneration();
+
+        TphBatchWriter full = dbHelper.newStagingWriter("A06", "21", 10);
+        full.write(new TphRecord("A06", "21", "B03", "001", "-1.5,103.5,"));
+        full.abort();
+
+        assertEquals(generation, catalog.getGeneration());
+        assertEquals(Arrays.asList("B01", "B02"), catalog.getKodeBlok());
+    }
+}
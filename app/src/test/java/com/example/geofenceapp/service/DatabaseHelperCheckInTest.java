@@ -0,0 +1,67 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.FixFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperCheckInTest {
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    private static CheckIn checkIn(String id, long time) {
+        return new CheckIn(id, time, "B01", "001", FixFilter.Verdict.INSIDE, -1.25, 103.5, 6, 12.5, Double.NaN);
+    }
+
+    @Test
+    public void storedOnceAndUploadedInOrder() {
+        dbHelper.insertCheckIns(Arrays.asList(checkIn("a", 1), checkIn("b", 2), checkIn("c", 3)));
+        // A batch written again after a crash adds nothing
+        dbHelper.insertCheckIns(Arrays.asList(checkIn("b", 2), checkIn("d", 4)));
+        assertEquals(4, dbHelper.countUnsentCheckIns());
+
+        List<CheckIn> unsent = dbHelper.getUnsentCheckIns(2);
+        assertEquals(2, unsent.size());
+        CheckIn first = unsent.get(0);
+        assertEquals("a", first.getId());
+        assertEquals(1, first.getTimeMillis());
+        assertEquals(FixFilter.Verdict.INSIDE, first.getVerdict());
+        assertEquals(103.5, first.getLongitude(), 0.0);
+        assertEquals(6, first.getAccuracy(), 0.0);
+        assertTrue(Double.isNaN(first.getRadius()));
+
+        dbHelper.markCheckInsSent(unsent);
+        List<String> rest = new ArrayList<>();
+        for (CheckIn checkIn : dbHelper.getUnsentCheckIns(10)) {
+            rest.add(checkIn.getId());
+        }
+        assertEquals(Arrays.asList("c", "d"), rest);
+    }
+
+    @Test
+    public void clearingTheTphDataKeepsTheLog() {
+        dbHelper.insertCheckIns(Arrays.asList(checkIn("a", 1), checkIn("b", 2)));
+        dbHelper.clearData();
+        assertEquals(2, dbHelper.countUnsentCheckIns());
+    }
+}
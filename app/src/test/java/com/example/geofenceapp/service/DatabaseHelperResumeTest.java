@@ -0,0 +1,240 @@
+package com.example.geofenceapp.service;
+
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperResumeTest {
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        dbHelper.insertAll(Collections.singletonList(new TphRecord("A06", "21", "OLD", "001", "-1.0,103.0,")));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void checkpointedPagesSurviveAbortAndResume() {
+        SyncCursor start = new SyncCursor("A06", "21", false, null,
+                new SyncWatermark("\"v1\"", null, "7"), null, 0);
+        TphRecordSink sink = dbHelper.openFull("A06", "21");
+        write(sink, 0, 3);
+        sink.checkpoint(start.advance("3", 3));
+        write(sink, 3, 5);
+        sink.abort();
+
+        SyncCursor saved = dbHelper.getSyncCursor("A06", "21");
+        assertEquals("3", saved.getNextPage());
+        assertEquals(3, saved.getRecords());
+        assertFalse(saved.isDelta());
+        assertEquals("\"v1\"", saved.getWatermark().getEtag());
+        assertEquals("7", saved.getWatermark().getToken());
+        assertEquals(1, count());
+
+        sink = dbHelper.resume(saved);
+        write(sink, 3, 5);
+        sink.commit();
+
+        assertEquals(5, count());
+        assertNull(dbHelper.getSyncCursor("A06", "21"));
+    }
+
+    @Test
+    public void uncheckpointedRowsAreNeverStaged() {
+        TphBatchWriter writer = dbHelper.newStagingWriter("A06", "21", 2);
+        write(writer, 0, 5);
+        writer.abort();
+
+        SyncCursor cursor = new SyncCursor("A06", "21", false, null,
+                new SyncWatermark(null, null, null), "5", 5);
+        assertNull(dbHelper.resume(cursor));
+        assertEquals(1, count());
+    }
+
+    @Test
+    public void freshFullSyncForgetsOldCursor() {
+        TphRecordSink sink = dbHelper.openFull("A06", "21");
+        write(sink, 0, 2);
+        sink.checkpoint(new SyncCursor("A06", "21", false, null,
+                new SyncWatermark(null, null, null), "2", 2));
+        sink.abort();
+
+        dbHelper.openFull("A06", "21").abort();
+
+        assertNull(dbHelper.getSyncCursor("A06", "21"));
+    }
+
+    @Test
+    public void deltaCursorIsClearedOnCommit() {
+        TphRecordSink sink = dbHelper.openDelta();
+        write(sink, 0, 2);
+        sink.checkpoint(new SyncCursor("A06", "21", true, "7",
+                new SyncWatermark(null, null, "8"), "2", 2));
+        assertEquals("7", dbHelper.getSyncCursor("A06", "21").getSince());
+
+        write(sink, 2, 3);
+        sink.commit();
+
+        assertNull(dbHelper.getSyncCursor("A06", "21"));
+        assertEquals(4, count());
+    }
+
+    @Test
+    public void fullSyncReplacesOnlyItsEstate() {
+        // Two estates staging at once, as a multi-estate sync does
+        TphRecordSink other = dbHelper.openFull("A07", "01");
+        TphRecordSink own = dbHelper.openFull("A06", "21");
+        other.write(new TphRecord("A07", "01", "C01", "001", "-2.1,104.1,"));
+        other.write(new TphRecord("A07", "01", "C01", "002", "-2.2,104.2,"));
+        other.flush();
+        write(own, 0, 1);
+        own.flush();
+        other.commit();
+        assertEquals(3, count());
+        assertTrue(dbHelper.hasData("A07", "01"));
+
+        own.commit();
+        assertEquals(3, count());
+        assertEquals(Arrays.asList("B01", "C01"), dbHelper.getCatalog().getKodeBlok());
+
+        dbHelper.openFull("A07", "01").commit();
+        assertFalse(dbHelper.hasData("A07", "01"));
+        assertEquals(1, count());
+    }
+
+    @Test
+    public void flushedRowsPastTheCheckpointAreDroppedOnResume() {
+        SyncCursor start = new SyncCursor("A06", "21", false, null,
+                new SyncWatermark(null, null, null), null, 0);
+        TphRecordSink sink = dbHelper.openFull("A06", "21");
+        write(sink, 0, 3);
+        sink.checkpoint(start.advance("3", 3));
+        write(sink, 3, 5);
+        // Committed without a checkpoint, then the process dies before abort
+        sink.flush();
+
+        sink = dbHelper.resume(dbHelper.getSyncCursor("A06", "21"));
+        write(sink, 3, 5);
+        sink.commit();
+
+        assertEquals(5, count());
+    }
+
+    @Test
+    public void stagedPageIsCommittedInChunks() {
+        SyncCursor start = new SyncCursor("A06", "21", false, null,
+                new SyncWatermark(null, null, null), null, 0);
+        TphBatchWriter writer = dbHelper.newStagingWriter("A06", "21", 2);
+        write(writer, 0, 2);
+        writer.checkpoint(start.advance("2", 2));
+        write(writer, 2, 6);
+        // Nothing holds the database while the rest of the page is downloaded
+        assertFalse(dbHelper.getWritableDatabase().inTransaction());
+        writer.abort();
+
+        // The two chunks after the checkpoint went with the aborted page
+        TphRecordSink sink = dbHelper.resume(dbHelper.getSyncCursor("A06", "21"));
+        write(sink, 2, 4);
+        sink.commit();
+        assertEquals(4, count());
+    }
+
+    @Test
+    public void failedEstateKeepsOthersRowsOnTheSharedConnection() throws Exception {
+        // A07/01 checkpoints and commits while A06/21 is in the middle of a page, then A06/21
+        // fails; every write goes through one writer thread and one connection
+        CountDownLatch midPage = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        ExecutorService downloads = Executors.newCachedThreadPool();
+        MultiEstateSync sync = new MultiEstateSync(new MultiEstateSync.Job() {
+            @Override
+            public TphSyncClient.Result download(Estate estate, TphSyncTarget target,
+                                                 TphSyncClient.ProgressListener progress) throws Exception {
+                String company = estate.getCompany();
+                String location = estate.getLocation();
+                SyncCursor cursor = new SyncCursor(company, location, false, null,
+                        new SyncWatermark(null, null, null), null, 0);
+                TphRecordSink sink = target.openFull(company, location);
+                writeEstate(sink, company, location, 0, 3);
+                sink.checkpoint(cursor.advance("3", 3));
+                writeEstate(sink, company, location, 3, 5);
+                if (location.equals("01")) {
+                    assertTrue(midPage.await(5, TimeUnit.SECONDS));
+                    sink.checkpoint(cursor.advance("5", 5));
+                    sink.commit();
+                    committed.countDown();
+                    return new TphSyncClient.Result(TphSyncClient.Mode.FULL, 5, null, false, 0);
+                }
+                midPage.countDown();
+                assertTrue(committed.await(5, TimeUnit.SECONDS));
+                sink.abort();
+                throw new IOException("Server returned HTTP 500");
+            }
+
+            @Override
+            public void onDownloaded(Estate estate, TphSyncClient.Result result) {
+            }
+        }, dbHelper, downloads, 2);
+        // One record per batch, so A06/21's page really is half written when A07/01 commits
+        sync.setQueue(4, 1);
+        List<EstateSyncStatus> statuses;
+        try {
+            statuses = sync.run(Arrays.asList(new Estate("A06", "21"), new Estate("A07", "01")), null);
+        } finally {
+            downloads.shutdownNow();
+        }
+
+        assertEquals(SyncStatus.State.FAILED, statuses.get(0).getState());
+        assertEquals(SyncStatus.State.SUCCEEDED, statuses.get(1).getState());
+        assertTrue(dbHelper.hasData("A07", "01"));
+        assertEquals(6, count());
+        assertNull(dbHelper.getSyncCursor("A07", "01"));
+
+        // A06/21 kept its checkpointed page and nothing after it
+        TphRecordSink sink = dbHelper.resume(dbHelper.getSyncCursor("A06", "21"));
+        write(sink, 3, 5);
+        sink.commit();
+        assertEquals(10, count());
+    }
+
+    private static void writeEstate(TphRecordSink sink, String company, String location, int from, int to) {
+        for (int i = from; i < to; i++) {
+            sink.write(new TphRecord(company, location, "B01", String.format("%03d", i), "-1.1,103.1,"));
+        }
+    }
+
+    private static void write(TphRecordSink sink, int from, int to) {
+        for (int i = from; i < to; i++) {
+            sink.write(new TphRecord("A06", "21", "B01", String.format("%03d", i), "-1.1,103.1,"));
+        }
+    }
+
+    private int count() {
+        Cursor cursor = dbHelper.getAllData();
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.geofenceapp.service;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperSchemaTest {
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+    }
+
+    @After
+    public void tearDown() {
+        if (dbHelper != null) dbHelper.close();
+    }
+
+    @Test
+    public void lookupsAreIndexSeeks() {
+        dbHelper = new DatabaseHelper(context);
+        dbHelper.insertAll(Arrays.asList(
+                new TphRecord("A06", "21", "B01", "001", "-1.1,103.1,"),
+                new TphRecord("A06", "21", "B01", "002", "-1.2,103.2,"),
+                new TphRecord("A06", "21", "B02", "001", "-1.3,103.3,")));
+
+        assertCoveringIndex(plan(DatabaseHelper.QUERY_DISTINCT_KODE_BLOK));
+        assertSeek(plan(DatabaseHelper.QUERY_TPH_BY_KODE_BLOK, "B01"));
+        assertSeek(plan(DatabaseHelper.QUERY_TPH_DATA, "B01", "002"));
+    }
+
+    @Test
+    public void pagesAreKeysetSeeks() {
+        dbHelper = new DatabaseHelper(context);
+        dbHelper.insertAll(Arrays.asList(
+                new TphRecord("A06", "21", "B01", "001", "-1.1,103.1,"),
+                new TphRecord("A06", "21", "B01", "002", "-1.2,103.2,"),
+                new TphRecord("A06", "21", "B02", "001", "-1.3,103.3,"),
+                new TphRecord("A06", "21", "C_1", "010", "-1.4,103.4,")));
+
+        TphPage first = dbHelper.getPage(null, 0, 3);
+        assertEquals(3, first.size());
+        TphPage rest = dbHelper.getPage(null, first.getLastId(), 3);
+        assertEquals(1, rest.size());
+        assertEquals("C_1", rest.getKodeBlok(0));
+
+        TphPage search = dbHelper.getPage("00", 0, 10);
+        assertEquals(3, search.size());
+        assertEquals(1, dbHelper.getPage("b02", 0, 10).size());
+        // LIKE wildcards in the search text are literal
+        assertEquals(0, dbHelper.getPage("B_", 0, 10).size());
+        assertEquals(1, dbHelper.getPage("C_", 0, 10).size());
+
+        String plan = plan(DatabaseHelper.QUERY_PAGE, "2", "50");
+        assertTrue(plan, plan.startsWith("SEARCH") && plan.contains("INTEGER PRIMARY KEY"));
+        plan = plan(DatabaseHelper.QUERY_PAGE_SEARCH, "2", "B%", "B%", "50");
+        assertTrue(plan, plan.startsWith("SEARCH") && plan.contains("INTEGER PRIMARY KEY"));
+    }
+
+    @Test
+    public void coordinatesAreStoredAsNumbers() {
+        dbHelper = new DatabaseHelper(context);
+        dbHelper.insertAll(Arrays.asList(
+                new TphRecord("A06", "21", "B01", "001", " -1.25 , 103.5 ,"),
+                new TphRecord("A06", "21", "B01", "002", "garbage")));
+
+        Cursor cursor = dbHelper.getTPHData("B01", "001");
+        assertTrue(cursor.moveToFirst());
+        assertEquals(-1.25, cursor.getDouble(0), 0.0);
+        assertEquals(103.5, cursor.getDouble(1), 0.0);
+        cursor.close();
+
+        cursor = dbHelper.getTPHData("B01", "002");
+        assertTrue(cursor.moveToFirst());
+        assertTrue(cursor.isNull(0));
+        cursor.close();
+    }
+
+    @Test
+    public void upgradeFromVersion3KeepsData() {
+        context.deleteDatabase("SyncDB");
+        SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath("SyncDB"), null);
+        old.execSQL("CREATE TABLE data_tph (id INTEGER PRIMARY KEY AUTOINCREMENT, company TEXT, " +
+                "location TEXT, kodeBlok TEXT, noTPH TEXT, coordinate TEXT)");
+        old.execSQL("CREATE TABLE sync_state (company TEXT NOT NULL, location TEXT NOT NULL, etag TEXT, " +
+                "lastModified TEXT, token TEXT, PRIMARY KEY (company, location))");
+        old.execSQL("INSERT INTO data_tph (company, location, kodeBlok, noTPH, coordinate) " +
+                "VALUES ('A06', '21', 'B01', '001', '-1.5,103.25,')");
+        old.setVersion(3);
+        old.close();
+
+        dbHelper = new DatabaseHelper(context);
+        Cursor cursor = dbHelper.getTPHData("B01", "001");
+        assertTrue(cursor.moveToFirst());
+        assertEquals(-1.5, cursor.getDouble(0), 0.0);
+        assertEquals(103.25, cursor.getDouble(1), 0.0);
+        cursor.close();
+
+        assertSeek(plan(DatabaseHelper.QUERY_TPH_DATA, "B01", "001"));
+        assertSeek(plan(DatabaseHelper.QUERY_TPH_BY_KODE_BLOK, "B01"));
+        // Created by the upgrade to version 8
+        assertEquals(0, dbHelper.countUnsentCheckIns());
+    }
+
+    @Test
+    public void unsentCheckInsComeFromThePartialIndex() {
+        dbHelper = new DatabaseHelper(context);
+        String plan = plan(DatabaseHelper.QUERY_UNSENT_CHECKINS, "500");
+        assertTrue(plan, plan.contains("idx_checkin_log_unsent"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    private String plan(String sql, String... args) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        int detail = cursor.getColumnIndexOrThrow("detail");
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(detail)).append('\n');
+        }
+        cursor.close();
+        return plan.toString();
+    }
+
+    private static void assertCoveringIndex(String plan) {
+        assertTrue(plan, plan.contains("COVERING INDEX idx_data_tph_blok_tph"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    private static void assertSeek(String plan) {
+        assertTrue(plan, plan.startsWith("SEARCH"));
+        assertCoveringIndex(plan);
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.geofenceapp.service;
+
+import android.app.Application;
+import android.database.Cursor;
+
+import com.example.geofenceapp.geo.GeofenceEngine;
+import com.example.geofenceapp.geo.RadarFrame;
+import com.example.geofenceapp.geo.TphSpatialIndex;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+import com.example.geofenceapp.testdata.SyntheticEstate;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+// End-to-end scale run. A SyntheticEstate of each size is served by a local stand-in for the
+// TPH API, synced through MultiEstateSync into DatabaseHelper the way SyncScheduler does it,
+// and read back the way the pickers, the geofence engine and the radar read it. Sync wall
+// time, peak heap, database and snapshot size and the lookup latencies of every size go to
+// one JSON report, app/build/reports/scale/scale-report.json (or -Dscale.report). Far too
+// slow for every build, so it only runs when sizes are given:
+// ./gradlew :app:testDebugUnitTest --tests '*ScaleSuiteTest' -Pscale.sizes=10000,100000,1000000
+@RunWith(RobolectricTestRunner.class)
+public class ScaleSuiteTest {
+    private static final String COMPANY = "A06";
+    private static final String LOCATION = "21";
+    private static final String PATH = "/api/TPH/GetItemByCompanyLocation";
+    private static final long SEED = 42;
+
+    private static final int KODE_BLOK_LOADS = 5;
+    private static final int BLOCK_LOADS = 200;
+    private static final int LOOKUPS = 1000;
+    private static final int PAGES = 100;
+    private static final int WALKS = 3;
+    private static final int WALK_FIXES = 1800;
+    private static final double GEOFENCE_RADIUS = 30.0;
+    private static final int RADAR_RANGE_METERS = 250;
+
+    // The picker lists as the repository builds them, cold each time
+    private static final Histogram KODE_BLOK_LIST_TIME = Metrics.histogram("scale.kodeBlokList");
+    private static final Histogram BLOCK_LOAD_TIME = Metrics.histogram("scale.blockLoad");
+    private static final Histogram INDEX_BUILD_TIME = Metrics.histogram("scale.indexBuild");
+    private static final Histogram FIX_TIME = Metrics.histogram("scale.fix");
+
+    @Test
+    public void syncAndLookUpAtEachSize() throws Exception {
+        String sizes = System.getProperty("scale.sizes", "");
+        Assume.assumeFalse("Pass -Pscale.sizes to run the scale suite", sizes.isEmpty());
+        File report = new File(System.getProperty("scale.report", "build/reports/scale/scale-report.json"));
+
+        JSONObject json = new JSONObject()
+                .put("time", System.currentTimeMillis())
+                .put("seed", SEED)
+                .put("maxHeapBytes", Runtime.getRuntime().maxMemory())
+                .put("pageSize", TphSyncClient.DEFAULT_PAGE_SIZE);
+        JSONArray runs = new JSONArray();
+        json.put("runs", runs);
+        try {
+            for (String size : sizes.split(",")) {
+                JSONObject run = new JSONObject();
+                runs.put(run);
+                try {
+                    measure(new SyntheticEstate(COMPANY, LOCATION, Integer.parseInt(size.trim()), SEED), run);
+                } catch (Throwable t) {
+                    // The report still shows how far it got; larger sizes would only fail the same way
+                    run.put("error", t.toString());
+                    throw t;
+                }
+            }
+        } finally {
+            writeReport(report, json);
+        }
+    }
+
+    private void measure(SyntheticEstate estate, JSONObject run) throws Exception {
+        run.put("rows", estate.size()).put("blocks", estate.getBlockCount());
+        Application context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase("SyncDB");
+        File pages = new File(context.getCacheDir(), "scale-pages");
+        StandInServer server = new StandInServer(estate, pages);
+        DatabaseHelper dbHelper = new DatabaseHelper(context);
+        try {
+            Metrics.reset();
+            HeapSampler heap = new HeapSampler();
+            long start = System.nanoTime();
+            TphSyncClient.Result result = sync(dbHelper, server.url());
+            long syncNanos = System.nanoTime() - start;
+            heap.stop();
+
+            assertEquals(estate.size(), result.getRecordCount());
+            run.put("syncMillis", syncNanos / 1_000_000)
+                    .put("rowsPerSecond", (long) (estate.size() * 1e9 / syncNanos))
+                    .put("bytesReceived", result.getBytesReceived())
+                    .put("heapBaselineBytes", heap.baseline)
+                    .put("heapPeakBytes", heap.peak)
+                    .put("dbBytes", context.getDatabasePath("SyncDB").length())
+                    .put("walBytes", new File(context.getDatabasePath("SyncDB").getPath() + "-wal").length())
+                    .put("snapshotBytes", new File(context.getFilesDir(), "tph.snapshot").length());
+
+            TphSnapshot snapshot = dbHelper.getSnapshot();
+            assertNotNull(snapshot);
+            assertEquals(estate.size(), snapshot.getPointCount());
+            lookUp(estate, dbHelper);
+            track(estate, snapshot);
+
+            // Everything recorded since the reset: sync.*, db.*, radar.* and scale.*
+            run.put("metrics", new JSONObject(Metrics.toJson(System.currentTimeMillis(),
+                    new LinkedHashMap<String, String>())));
+        } finally {
+            dbHelper.close();
+            server.stop();
+        }
+    }
+
+    private static TphSyncClient.Result sync(DatabaseHelper dbHelper, String url) throws Exception {
+        TphSyncClient client = new TphSyncClient(url);
+        ExecutorService downloads = Executors.newSingleThreadExecutor();
+        MultiEstateSync sync = new MultiEstateSync(new MultiEstateSync.Job() {
+            @Override
+            public TphSyncClient.Result download(Estate estate, TphSyncTarget target,
+                                                 TphSyncClient.ProgressListener progress) throws Exception {
+                return client.sync(estate.getCompany(), estate.getLocation(), null, target, progress);
+            }
+
+            @Override
+            public void onDownloaded(Estate estate, TphSyncClient.Result result) {
+                dbHelper.saveSyncWatermark(estate.getCompany(), estate.getLocation(), result.getWatermark());
+            }
+        }, dbHelper, downloads, 1);
+        try {
+            return MultiEstateSync.combine(sync.run(Collections.singletonList(new Estate(COMPANY, LOCATION)), null));
+        } finally {
+            downloads.shutdown();
+        }
+    }
+
+    // The picker and lookup paths MainActivity and TphRepository use, at random blocks
+    private static void lookUp(SyntheticEstate estate, DatabaseHelper dbHelper) {
+        Random random = new Random(SEED);
+        TphCatalog catalog = dbHelper.getCatalog();
+        for (int i = 0; i < KODE_BLOK_LOADS; i++) {
+            catalog.invalidate();
+            long start = System.nanoTime();
+            assertEquals(estate.getBlockCount(), catalog.getKodeBlokIndex().size());
+            KODE_BLOK_LIST_TIME.recordSince(start);
+
+            close(dbHelper.getDistinctKodeBlok());
+        }
+        for (int i = 0; i < BLOCK_LOADS; i++) {
+            int block = random.nextInt(estate.getBlockCount());
+            String kodeBlok = estate.kodeBlok(block);
+            long start = System.nanoTime();
+            TphCatalog.Block loaded = catalog.getBlock(kodeBlok);
+            loaded.getNoTPHIndex();
+            BLOCK_LOAD_TIME.recordSince(start);
+            assertEquals(estate.getBlockStart(block + 1) - estate.getBlockStart(block), loaded.size());
+
+            close(dbHelper.getTPHByKodeBlok(kodeBlok));
+            dbHelper.getBlockBoundary(kodeBlok);
+        }
+        for (int i = 0; i < LOOKUPS; i++) {
+            int tph = random.nextInt(estate.size());
+            Cursor cursor = dbHelper.getTPHData(estate.kodeBlokOf(tph), estate.noTPH(tph));
+            assertEquals(1, cursor.getCount());
+            cursor.close();
+        }
+        for (int i = 0; i < PAGES; i++) {
+            String prefix = estate.kodeBlok(random.nextInt(estate.getBlockCount()));
+            dbHelper.getPage(null, random.nextInt(estate.size()), 50);
+            dbHelper.getPage(prefix.substring(0, prefix.length() - 1), 0, 50);
+        }
+    }
+
+    // Builds the index from the snapshot as MainActivity does, then walks a few blocks through
+    // the engine and the radar
+    private static void track(SyntheticEstate estate, TphSnapshot snapshot) {
+        long start = System.nanoTime();
+        int count = 0;
+        for (int p = 0; p < snapshot.getPointCount(); p++) {
+            if (!Double.isNaN(snapshot.getLatitude(p))) count++;
+        }
+        double[] lat = new double[count];
+        double[] lng = new double[count];
+        double[] radius = new double[count];
+        for (int p = 0, i = 0; p < snapshot.getPointCount(); p++) {
+            if (Double.isNaN(snapshot.getLatitude(p))) continue;
+            lat[i] = snapshot.getLatitude(p);
+            lng[i] = snapshot.getLongitude(p);
+            radius[i] = snapshot.getRadius(p);
+            i++;
+        }
+        TphSpatialIndex index = new TphSpatialIndex(lat, lng);
+        GeofenceEngine engine = new GeofenceEngine(lat, lng, radius, index, GEOFENCE_RADIUS);
+        RadarFrame radar = new RadarFrame(lat, lng, index, engine);
+        INDEX_BUILD_TIME.recordSince(start);
+
+        Random random = new Random(SEED);
+        for (int w = 0; w < WALKS; w++) {
+            SyntheticEstate.Trace trace = estate.walk(random.nextInt(estate.getBlockCount()), WALK_FIXES,
+                    w * 3_600_000L, random.nextLong());
+            for (int f = 0; f < trace.size(); f++) {
+                long fixStart = System.nanoTime();
+                engine.onFix(trace.lat[f], trace.lng[f], trace.timeMillis[f]);
+                FIX_TIME.recordSince(fixStart);
+                radar.update(trace.lat[f], trace.lng[f], RADAR_RANGE_METERS, 240, 240, 240f / RADAR_RANGE_METERS);
+            }
+            engine.reset();
+        }
+    }
+
+    private static void close(Cursor cursor) {
+        while (cursor.moveToNext()) {
+            cursor.getString(0);
+        }
+        cursor.close();
+    }
+
+    private static void writeReport(File report, JSONObject json) throws IOException, JSONException {
+        File dir = report.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(report), StandardCharsets.UTF_8)) {
+            out.write(json.toString(2));
+        }
+    }
+
+    // Samples the used heap every few milliseconds until stopped. The baseline is taken after a
+    // collection; the peak includes garbage not yet collected, so it is an upper bound.
+    private static final class HeapSampler implements Runnable {
+        final long baseline;
+        volatile long peak;
+        private volatile boolean running = true;
+        private final Thread thread = new Thread(this, "heap-sampler");
+
+        HeapSampler() {
+            System.gc();
+            baseline = used();
+            peak = baseline;
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private static long used() {
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                peak = Math.max(peak, used());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            peak = Math.max(peak, used());
+        }
+    }
+
+    // Serves the estate a page of DEFAULT_PAGE_SIZE rows at a time with the headers the real
+    // API sends. Pages are generated and gzipped to disk beforehand, so neither the generator
+    // nor the compression is counted in the sync time or the heap.
+    private static final class StandInServer {
+        private final File dir;
+        private final int pageCount;
+        private final HttpServer server;
+
+        StandInServer(SyntheticEstate estate, File dir) throws IOException {
+            this.dir = dir;
+            deleteAll(dir);
+            if (!dir.mkdirs()) throw new IOException("Could not create " + dir);
+            int pageSize = TphSyncClient.DEFAULT_PAGE_SIZE;
+            this.pageCount = Math.max(1, (estate.size() + pageSize - 1) / pageSize);
+            for (int page = 0; page < pageCount; page++) {
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+                        new FileOutputStream(pageFile(page)), 8192), StandardCharsets.UTF_8))) {
+                    estate.writeJson(out, page * pageSize, Math.min(estate.size(), (page + 1) * pageSize));
+                }
+            }
+
+            String etag = "\"scale-" + estate.size() + "-" + SEED + "\"";
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext(PATH, exchange -> serve(exchange, etag));
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+        }
+
+        private File pageFile(int page) {
+            return new File(dir, page + ".json.gz");
+        }
+
+        private void serve(HttpExchange exchange, String etag) throws IOException {
+            String token = null;
+            String query = exchange.getRequestURI().getRawQuery();
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("PageToken=")) token = parameter.substring("PageToken=".length());
+            }
+            int page = token == null ? 0 : Integer.parseInt(token);
+            if (page < 0 || page >= pageCount) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set(TphSyncClient.HEADER_SYNC_TOKEN, etag);
+            if (page + 1 < pageCount) {
+                exchange.getResponseHeaders().set(TphSyncClient.HEADER_NEXT_PAGE, Integer.toString(page + 1));
+            }
+            File file = pageFile(page);
+            exchange.sendResponseHeaders(200, file.length());
+            try (InputStream in = new FileInputStream(file); OutputStream out = exchange.getResponseBody()) {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+
+        void stop() {
+            server.stop(0);
+            deleteAll(dir);
+        }
+
+        private static void deleteAll(File dir) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.geofenceapp.service;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class TphRepositoryTest {
+    private DatabaseHelper dbHelper;
+    private TphRepository repository;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(RuntimeEnvironment.getApplication());
+        dbHelper.insertAll(Arrays.asList(
+                new TphRecord("A06", "21", "B01", "001", "-1.1,103.1,"),
+                new TphRecord("A06", "21", "B01", "002", "garbage"),
+                new TphRecord("A06", "21", "B02", "001", "-1.3,103.3,")));
+        repository = new TphRepository(dbHelper);
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+        dbHelper.close();
+    }
+
+    @Test
+    public void resultsArriveOnMainThread() {
+        AtomicReference<List<String>> blocks = new AtomicReference<>();
+        AtomicReference<Thread> deliveredOn = new AtomicReference<>();
+        repository.loadKodeBlok(result -> {
+            deliveredOn.set(Thread.currentThread());
+            blocks.set(result);
+        });
+
+        await(blocks);
+        assertEquals(Arrays.asList("B01", "B02"), blocks.get());
+        assertSame(Looper.getMainLooper().getThread(), deliveredOn.get());
+    }
+
+    @Test
+    public void unusableCoordinateYieldsNull() {
+        AtomicReference<TphRepository.TphLocation> good = new AtomicReference<>();
+        AtomicReference<Boolean> badDelivered = new AtomicReference<>();
+        repository.loadTPHLocation("B01", "001", good::set);
+        repository.loadTPHLocation("B01", "002", location -> badDelivered.set(location == null));
+
+        await(good);
+        await(badDelivered);
+        assertEquals(-1.1, good.get().latitude, 0.0);
+        assertEquals(103.1, good.get().longitude, 0.0);
+        assertTrue(badDelivered.get());
+    }
+
+    @Test
+    public void cancelledTaskNeverCallsBack() {
+        List<String> delivered = new ArrayList<>();
+        TphRepository.Task stale = repository.loadTPHNumbers("B01", result -> delivered.add("B01"));
+        stale.cancel();
+        AtomicReference<List<String>> latest = new AtomicReference<>();
+        repository.loadTPHNumbers("B02", latest::set);
+
+        await(latest);
+        // Let any straggling worker finish and post before checking
+        sleep(100);
+        ShadowLooper.idleMainLooper();
+        assertTrue(stale.isCancelled());
+        assertTrue(delivered.isEmpty());
+        assertEquals(Arrays.asList("001"), latest.get());
+    }
+
+    // Workers post to the paused main looper; drain it until the callback has run
+    private static void await(AtomicReference<?> ref) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ref.get() == null) {
+            assertTrue("Timed out waiting for callback", System.currentTimeMillis() < deadline);
+            sleep(5);
+            ShadowLooper.idleMainLooper();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
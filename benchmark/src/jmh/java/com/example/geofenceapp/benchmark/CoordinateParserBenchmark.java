@@ -0,0 +1,51 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.service.CoordinateParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Coordinate text parsing: CoordinateParser against the split-based parsing it replaced
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateParserBenchmark {
+    private String[] coordinates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        coordinates = new String[1024];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = SyntheticData.coordinate(i);
+        }
+    }
+
+    @Benchmark
+    public void coordinateParser(Blackhole blackhole) {
+        String coordinate = coordinates[next++ & 1023];
+        blackhole.consume(CoordinateParser.parseLatitude(coordinate));
+        blackhole.consume(CoordinateParser.parseLongitude(coordinate));
+    }
+
+    @Benchmark
+    public void stringSplit(Blackhole blackhole) {
+        String[] parts = coordinates[next++ & 1023].split(",");
+        blackhole.consume(Double.parseDouble(parts[0].trim()));
+        blackhole.consume(Double.parseDouble(parts[1].trim()));
+    }
+}
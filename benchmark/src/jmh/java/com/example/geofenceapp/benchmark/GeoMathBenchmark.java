@@ -0,0 +1,82 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.geo.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares the GeoMath distance kernels over one fix and N TPH points
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoMathBenchmark {
+    @Param({"1000", "100000"})
+    public int points;
+
+    private double[] lats;
+    private double[] lngs;
+    private double[] distances;
+    private int[] inside;
+    private final double lat = -1.05;
+    private final double lng = 103.05;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lats = new double[points];
+        lngs = new double[points];
+        for (int i = 0; i < points; i++) {
+            lats[i] = -1.0 - random.nextDouble() * 0.1;
+            lngs[i] = 103.0 + random.nextDouble() * 0.1;
+        }
+        distances = new double[points];
+        inside = new int[points];
+    }
+
+    @Benchmark
+    public void haversineScalar(Blackhole blackhole) {
+        for (int i = 0; i < points; i++) {
+            blackhole.consume(GeoMath.haversine(lat, lng, lats[i], lngs[i]));
+        }
+    }
+
+    @Benchmark
+    public double[] haversineBatch() {
+        GeoMath.haversine(lat, lng, lats, lngs, distances, points);
+        return distances;
+    }
+
+    @Benchmark
+    public void fastScalar(Blackhole blackhole) {
+        for (int i = 0; i < points; i++) {
+            blackhole.consume(GeoMath.fastDistance(lat, lng, lats[i], lngs[i]));
+        }
+    }
+
+    @Benchmark
+    public double[] fastBatch() {
+        GeoMath.fastDistance(lat, lng, lats, lngs, distances, points);
+        return distances;
+    }
+
+    @Benchmark
+    public int radiusTestBatch() {
+        return GeoMath.withinRadius(lat, lng, lats, lngs, points, 30, inside);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.geo.PolygonFence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Point-in-block checks against a polygon with N vertices: the grid lookup against plain
+// ray casting over every edge. Queries are spread over the bounding box, so none are
+// answered by the bounding-box test alone.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolygonFenceBenchmark {
+    @Param({"100", "500", "2000"})
+    public int vertices;
+
+    private double[][] ring;
+    private PolygonFence fence;
+    private double[] queryLat;
+    private double[] queryLng;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ring = SyntheticData.blockBoundary(vertices, 3);
+        fence = new PolygonFence(ring[0], ring[1]);
+        Random random = new Random(11);
+        queryLat = new double[4096];
+        queryLng = new double[4096];
+        for (int i = 0; i < 4096; i++) {
+            queryLat[i] = fence.getMinLatitude()
+                    + random.nextDouble() * (fence.getMaxLatitude() - fence.getMinLatitude());
+            queryLng[i] = fence.getMinLongitude()
+                    + random.nextDouble() * (fence.getMaxLongitude() - fence.getMinLongitude());
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        int i = next++ & 4095;
+        return fence.contains(queryLat[i], queryLng[i]);
+    }
+
+    @Benchmark
+    public boolean containsBruteForce() {
+        int i = next++ & 4095;
+        return fence.containsBruteForce(queryLat[i], queryLng[i]);
+    }
+
+    @Benchmark
+    public double distanceToBoundary() {
+        int i = next++ & 4095;
+        return fence.distanceToBoundary(queryLat[i], queryLng[i]);
+    }
+
+    // The check FixFilter makes for an uncertain block verdict
+    @Benchmark
+    public boolean isNearBoundary() {
+        int i = next++ & 4095;
+        return fence.isNearBoundary(queryLat[i], queryLng[i], 15);
+    }
+
+    @Benchmark
+    public PolygonFence build() {
+        return new PolygonFence(ring[0], ring[1]);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.service.PrefixIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// One picker keystroke: the prefix index against the copy-and-scan an ArrayAdapter filter
+// does over the same values.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefixIndexBenchmark {
+    @Param({"500", "10000"})
+    public int values;
+
+    private List<String> names;
+    private PrefixIndex index;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        names = new ArrayList<>(values);
+        for (int i = 0; i < values; i++) {
+            names.add(SyntheticData.kodeBlok(i * SyntheticData.TPH_PER_BLOCK));
+        }
+        index = new PrefixIndex(names);
+        // What a user types on the way to one block name
+        prefixes = new String[]{"b", "B1", "b12", "B123", "B9", "b4", "B45", "B456"};
+    }
+
+    private String nextPrefix() {
+        String prefix = prefixes[next];
+        next = (next + 1) % prefixes.length;
+        return prefix;
+    }
+
+    @Benchmark
+    public int lookup() {
+        String prefix = nextPrefix();
+        return index.end(prefix) - index.start(prefix);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        String prefix = nextPrefix().toLowerCase(Locale.ROOT);
+        List<String> matches = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            if (name.toLowerCase(Locale.ROOT).startsWith(prefix)) matches.add(name);
+        }
+        return matches.size();
+    }
+
+    @Benchmark
+    public PrefixIndex build() {
+        return new PrefixIndex(names);
+    }
+}
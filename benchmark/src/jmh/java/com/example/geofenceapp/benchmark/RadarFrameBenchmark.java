@@ -0,0 +1,73 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.geo.GeoMath;
+import com.example.geofenceapp.geo.GeofenceEngine;
+import com.example.geofenceapp.geo.RadarFrame;
+import com.example.geofenceapp.geo.TphSpatialIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Per-fix cost of the radar: query the points in range and project them and their rings
+// into the draw buffers. The estate is a jittered 10 m grid, so `range` sets how many points
+// are on screen: about 300 at 100 m, 2,000 at 250 m and 7,800 at 500 m. Run with -prof gc to
+// see that a steady update allocates nothing.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadarFrameBenchmark {
+    private static final double LAT = -1.0;
+    private static final double LNG = 103.0;
+
+    @Param({"100", "250", "500"})
+    public int range;
+
+    private RadarFrame frame;
+    private double[][] fixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // 2 km square
+        int side = 200;
+        int n = side * side;
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        Random random = new Random(3);
+        double lngPerMeter = 1 / GeoMath.metersPerDegreeLng(LAT);
+        for (int i = 0; i < n; i++) {
+            lat[i] = LAT + ((i / side - side / 2) * 10 + random.nextGaussian() * 2) / GeoMath.METERS_PER_DEGREE_LAT;
+            lng[i] = LNG + ((i % side - side / 2) * 10 + random.nextGaussian() * 2) * lngPerMeter;
+        }
+        TphSpatialIndex index = new TphSpatialIndex(lat, lng);
+        GeofenceEngine engine = new GeofenceEngine(lat, lng, index, 30.0);
+        frame = new RadarFrame(lat, lng, index, engine);
+        // A walk near the middle
+        fixes = new double[1024][];
+        for (int i = 0; i < fixes.length; i++) {
+            fixes[i] = new double[]{LAT + random.nextGaussian() * 0.0005, LNG + random.nextGaussian() * 0.0005};
+        }
+    }
+
+    @Benchmark
+    public int update() {
+        double[] fix = fixes[next++ & 1023];
+        // A 1080 px wide view
+        return frame.update(fix[0], fix[1], range, 540, 540, 540f / range);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.geofenceapp.benchmark;
+
+import java.util.Random;
+
+// Deterministic estate-like data shared by the benchmarks
+final class SyntheticData {
+    static final int TPH_PER_BLOCK = 50;
+
+    private SyntheticData() {
+    }
+
+    static String kodeBlok(int i) {
+        return "B" + (i / TPH_PER_BLOCK);
+    }
+
+    static String noTPH(int i) {
+        return String.format("%03d", i % TPH_PER_BLOCK);
+    }
+
+    static double latitude(int i) {
+        return -1.0 - (i / TPH_PER_BLOCK % 40) * 0.004 - (i % 7) * 0.0003;
+    }
+
+    static double longitude(int i) {
+        return 103.0 + (i / (TPH_PER_BLOCK * 40)) * 0.004 + (i % 11) * 0.0003;
+    }
+
+    static String coordinate(int i) {
+        return latitude(i) + "," + longitude(i) + ",";
+    }
+
+    // GetItemByCompanyLocation payload with n records
+    static String payload(int n) {
+        StringBuilder json = new StringBuilder(n * 110).append('[');
+        for (int i = 0; i < n; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"company\":\"A06\",\"location\":\"21\",\"kodeBlok\":\"").append(kodeBlok(i))
+                    .append("\",\"noTPH\":\"").append(noTPH(i))
+                    .append("\",\"coordinate\":\"").append(coordinate(i)).append("\"}");
+        }
+        return json.append(']').toString();
+    }
+
+    // Ragged ring of n vertices around (-1.0, 103.0), roughly 1 km across, as {lat, lng}
+    static double[][] blockBoundary(int n, long seed) {
+        Random random = new Random(seed);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n;
+            double r = 0.003 + random.nextDouble() * 0.002;
+            lat[i] = -1.0 + r * Math.sin(angle);
+            lng[i] = 103.0 + r * Math.cos(angle);
+        }
+        return new double[][]{lat, lng};
+    }
+
+    static double[][] queries(int n, long seed) {
+        Random random = new Random(seed);
+        double[][] queries = new double[n][];
+        for (int i = 0; i < n; i++) {
+            int near = random.nextInt(Integer.MAX_VALUE);
+            queries[i] = new double[]{latitude(near % 100_000) + random.nextGaussian() * 0.0002,
+                    longitude(near % 100_000) + random.nextGaussian() * 0.0002};
+        }
+        return queries;
+    }
+}
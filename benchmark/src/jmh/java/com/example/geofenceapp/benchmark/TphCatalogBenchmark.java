@@ -0,0 +1,122 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.service.CoordinateParser;
+import com.example.geofenceapp.service.TphCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Kode blok + noTPH lookups as the spinners issue them. The loader stands in for the
+// per-block query and re-parses the coordinate text like the uncached path used to;
+// SQLite itself is not part of the measurement.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TphCatalogBenchmark {
+    @Param({"10000", "100000"})
+    public int points;
+
+    private String[] blockNames;
+    private String[][] blockTph;
+    private String[][] blockCoordinates;
+    private TphCatalog.Loader loader;
+    private TphCatalog cached;
+    private TphCatalog evicting;
+    private String[] lookupBlock;
+    private String[] lookupTph;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int blocks = (points + SyntheticData.TPH_PER_BLOCK - 1) / SyntheticData.TPH_PER_BLOCK;
+        blockNames = new String[blocks];
+        blockTph = new String[blocks][];
+        blockCoordinates = new String[blocks][];
+        for (int b = 0; b < blocks; b++) {
+            int first = b * SyntheticData.TPH_PER_BLOCK;
+            int size = Math.min(SyntheticData.TPH_PER_BLOCK, points - first);
+            blockNames[b] = SyntheticData.kodeBlok(first);
+            blockTph[b] = new String[size];
+            blockCoordinates[b] = new String[size];
+            for (int i = 0; i < size; i++) {
+                blockTph[b][i] = SyntheticData.noTPH(first + i);
+                blockCoordinates[b][i] = SyntheticData.coordinate(first + i);
+            }
+        }
+
+        loader = new TphCatalog.Loader() {
+            @Override
+            public List<String> loadKodeBlok() {
+                return new ArrayList<>(Arrays.asList(blockNames));
+            }
+
+            @Override
+            public TphCatalog.Block loadBlock(String kodeBlok) {
+                int b = Integer.parseInt(kodeBlok.substring(1));
+                String[] coordinates = blockCoordinates[b];
+                double[] lat = new double[coordinates.length];
+                double[] lng = new double[coordinates.length];
+                for (int i = 0; i < coordinates.length; i++) {
+                    lat[i] = CoordinateParser.parseLatitude(coordinates[i]);
+                    lng[i] = CoordinateParser.parseLongitude(coordinates[i]);
+                }
+                return new TphCatalog.Block(kodeBlok, blockTph[b].clone(), lat, lng);
+            }
+        };
+        cached = new TphCatalog(loader, points);
+        // Holds a tenth of the estate, so most random lookups miss and evict
+        evicting = new TphCatalog(loader, points / 10);
+
+        Random random = new Random(11);
+        lookupBlock = new String[4096];
+        lookupTph = new String[4096];
+        for (int i = 0; i < 4096; i++) {
+            int point = random.nextInt(points);
+            lookupBlock[i] = SyntheticData.kodeBlok(point);
+            lookupTph[i] = SyntheticData.noTPH(point);
+        }
+    }
+
+    @Benchmark
+    public double uncachedLookup() {
+        return locate(loader.loadBlock(lookupBlock[next & 4095]));
+    }
+
+    @Benchmark
+    public double cachedLookup() {
+        return locate(cached.getBlock(lookupBlock[next & 4095]));
+    }
+
+    @Benchmark
+    public double evictingLookup() {
+        return locate(evicting.getBlock(lookupBlock[next & 4095]));
+    }
+
+    @Benchmark
+    public int blockList() {
+        return cached.getKodeBlok().size();
+    }
+
+    private double locate(TphCatalog.Block block) {
+        int i = block.indexOf(lookupTph[next++ & 4095]);
+        return block.getLatitude(i) + block.getLongitude(i);
+    }
+}
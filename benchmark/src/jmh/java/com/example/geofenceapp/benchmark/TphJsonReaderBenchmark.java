@@ -0,0 +1,56 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.service.TphJsonReader;
+import com.example.geofenceapp.service.TphRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Streaming ingest of a synthetic N-record sync payload, from bytes to records
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TphJsonReaderBenchmark {
+    @Param({"10000", "100000"})
+    public int records;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = SyntheticData.payload(records).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int ingest(Blackhole blackhole) throws IOException {
+        int count = 0;
+        try (TphJsonReader reader = new TphJsonReader(
+                new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8))) {
+            TphRecord record;
+            while ((record = reader.next()) != null) {
+                blackhole.consume(record);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.service.TphCatalog;
+import com.example.geofenceapp.service.TphSnapshot;
+import com.example.geofenceapp.service.TphSnapshotWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Cold start from the snapshot: map the file, list the blocks and load the first one, which
+// is all the pickers need before the first screen. write is what each sync pays for it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TphSnapshotBenchmark {
+    @Param({"10000", "100000"})
+    public int points;
+
+    private File file;
+    private File scratch;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("tph", ".snapshot");
+        scratch = File.createTempFile("tph", ".snapshot");
+        writer().writeTo(file, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        scratch.delete();
+    }
+
+    private TphSnapshotWriter writer() {
+        TphSnapshotWriter writer = new TphSnapshotWriter();
+        for (int i = 0; i < points; i++) {
+            writer.add(SyntheticData.kodeBlok(i), SyntheticData.noTPH(i),
+                    SyntheticData.latitude(i), SyntheticData.longitude(i), Double.NaN);
+        }
+        return writer;
+    }
+
+    @Benchmark
+    public TphCatalog.Block openAndFirstBlock() throws IOException {
+        TphSnapshot snapshot = TphSnapshot.open(file);
+        return snapshot.loadBlock(snapshot.loadKodeBlok().get(0));
+    }
+
+    @Benchmark
+    public File write() throws IOException {
+        writer().writeTo(scratch, 0);
+        return scratch;
+    }
+}
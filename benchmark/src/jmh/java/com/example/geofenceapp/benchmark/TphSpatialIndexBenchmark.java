@@ -0,0 +1,77 @@
+package com.example.geofenceapp.benchmark;
+
+import com.example.geofenceapp.geo.GeofenceEngine;
+import com.example.geofenceapp.geo.TphSpatialIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Spatial lookups and per-fix geofence evaluation over N TPH points
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TphSpatialIndexBenchmark {
+    @Param({"10000", "100000"})
+    public int points;
+
+    private double[] lat;
+    private double[] lng;
+    private TphSpatialIndex index;
+    private GeofenceEngine engine;
+    private double[][] queries;
+    private int next;
+
+    private final int[] ids = new int[16];
+    private final double[] distances = new double[16];
+
+    @Setup
+    public void setUp() {
+        lat = new double[points];
+        lng = new double[points];
+        for (int i = 0; i < points; i++) {
+            lat[i] = SyntheticData.latitude(i);
+            lng[i] = SyntheticData.longitude(i);
+        }
+        index = new TphSpatialIndex(lat, lng);
+        engine = new GeofenceEngine(lat, lng, index, 30.0);
+        queries = SyntheticData.queries(4096, 7);
+    }
+
+    @Benchmark
+    public int nearest() {
+        double[] q = queries[next++ & 4095];
+        return index.nearest(q[0], q[1], ids, distances);
+    }
+
+    @Benchmark
+    public int withinRadius() {
+        double[] q = queries[next++ & 4095];
+        return index.withinRadius(q[0], q[1], 30.0, ids, distances);
+    }
+
+    @Benchmark
+    public int geofenceFix() {
+        double[] q = queries[next++ & 4095];
+        engine.onFix(q[0], q[1], next * 2000L);
+        return engine.getInsideCount();
+    }
+
+    @Benchmark
+    public TphSpatialIndex build() {
+        return new TphSpatialIndex(lat, lng);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.geofenceapp.geo;
+
+// Cleans up raw fixes before they reach a geofence decision. A fix is rejected when its
+// accuracy is too poor, when it is stale or out of order, when it is a network fix while
+// GPS is delivering, or when reaching it would need an impossible speed. Accepted fixes
+// feed a one-dimensional Kalman filter on position whose variance grows with time at the
+// current speed, so a single noisy fix moves the estimate only as much as its accuracy
+// deserves. classify() then answers inside, outside or uncertain with the estimate's own
+// error margin instead of flipping on every fix. No allocation per fix; not thread-safe.
+public class FixFilter {
+    public enum Verdict {
+        INSIDE, OUTSIDE, UNCERTAIN
+    }
+
+    public static final float DEFAULT_MAX_ACCURACY_METERS = 40;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 10_000;
+    // Network fixes are ignored for this long after an accepted GPS fix
+    static final long GPS_PREFERENCE_MILLIS = 20_000;
+    // Faster than anything in an estate; such a jump is a multipath or cell-tower glitch
+    static final double MAX_SPEED = 40;
+    // Process noise when the fix has no speed, roughly a brisk walk
+    static final double DEFAULT_SPEED = 2;
+    // Error margin in standard deviations of the estimate
+    static final double CONFIDENCE_SIGMAS = 1.5;
+
+    private final float maxAccuracyMeters;
+    private final long maxAgeMillis;
+
+    private boolean hasEstimate = false;
+    private double lat;
+    private double lng;
+    // Variance of the estimate in square metres
+    private double variance;
+    private long timeMillis;
+    // Only meaningful once hasGps; a sentinel time would overflow the subtraction in accept()
+    private boolean hasGps = false;
+    private long lastGpsMillis;
+
+    private int accepted;
+    private int rejectedAccuracy;
+    private int rejectedAge;
+    private int rejectedProvider;
+    private int rejectedJump;
+
+    public FixFilter() {
+        this(DEFAULT_MAX_ACCURACY_METERS, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public FixFilter(float maxAccuracyMeters, long maxAgeMillis) {
+        this.maxAccuracyMeters = maxAccuracyMeters;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    // speed is NaN when the fix has none. Returns whether the estimate was updated.
+    public boolean accept(double fixLat, double fixLng, float accuracyMeters, float speed, boolean gps,
+                          long fixTimeMillis, long nowMillis) {
+        if (!(accuracyMeters > 0) || accuracyMeters > maxAccuracyMeters) {
+            rejectedAccuracy++;
+            return false;
+        }
+        if (nowMillis - fixTimeMillis > maxAgeMillis || (hasEstimate && fixTimeMillis <= timeMillis)) {
+            rejectedAge++;
+            return false;
+        }
+        if (!gps && hasGps && fixTimeMillis - lastGpsMillis < GPS_PREFERENCE_MILLIS) {
+            rejectedProvider++;
+            return false;
+        }
+
+        double fixVariance = (double) accuracyMeters * accuracyMeters;
+        if (!hasEstimate) {
+            hasEstimate = true;
+            lat = fixLat;
+            lng = fixLng;
+            variance = fixVariance;
+        } else {
+            double seconds = (fixTimeMillis - timeMillis) / 1000.0;
+            double distance = GeoMath.fastDistance(lat, lng, fixLat, fixLng);
+            // Both positions may be off by their accuracy before the move counts as a jump
+            double slack = Math.sqrt(variance) + accuracyMeters;
+            if (distance - slack > MAX_SPEED * seconds) {
+                rejectedJump++;
+                return false;
+            }
+
+            double q = Float.isNaN(speed) ? DEFAULT_SPEED : Math.max(speed, 0.5);
+            variance += seconds * q * q;
+            double gain = variance / (variance + fixVariance);
+            lat += gain * (fixLat - lat);
+            lng += gain * (fixLng - lng);
+            variance *= 1 - gain;
+        }
+        timeMillis = fixTimeMillis;
+        if (gps) {
+            hasGps = true;
+            lastGpsMillis = fixTimeMillis;
+        }
+        accepted++;
+        return true;
+    }
+
+    // UNCERTAIN until a fix has been accepted, or when the estimate is older than maxAge
+    public Verdict classify(double fenceLat, double fenceLng, double radiusMeters, long nowMillis) {
+        if (!hasEstimate || nowMillis - timeMillis > maxAgeMillis) return Verdict.UNCERTAIN;
+        double distance = GeoMath.haversine(lat, lng, fenceLat, fenceLng);
+        double margin = CONFIDENCE_SIGMAS * Math.sqrt(variance);
+        if (distance + margin <= radiusMeters) return Verdict.INSIDE;
+        if (distance - margin > radiusMeters) return Verdict.OUTSIDE;
+        return Verdict.UNCERTAIN;
+    }
+
+    // The same for a block boundary: INSIDE or OUTSIDE only when the estimate is further
+    // from every edge than its error margin
+    public Verdict classify(PolygonFence fence, long nowMillis) {
+        if (!hasEstimate || nowMillis - timeMillis > maxAgeMillis) return Verdict.UNCERTAIN;
+        boolean inside = fence.contains(lat, lng);
+        double margin = CONFIDENCE_SIGMAS * Math.sqrt(variance);
+        if (fence.isNearBoundary(lat, lng, margin)) return Verdict.UNCERTAIN;
+        return inside ? Verdict.INSIDE : Verdict.OUTSIDE;
+    }
+
+    public boolean hasEstimate() {
+        return hasEstimate;
+    }
+
+    public double getLatitude() {
+        return lat;
+    }
+
+    public double getLongitude() {
+        return lng;
+    }
+
+    // One standard deviation of the estimate, in metres
+    public double getAccuracyMeters() {
+        return Math.sqrt(variance);
+    }
+
+    // Time of the last accepted fix
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public int getAcceptedCount() {
+        return accepted;
+    }
+
+    public int getRejectedAccuracyCount() {
+        return rejectedAccuracy;
+    }
+
+    public int getRejectedAgeCount() {
+        return rejectedAge;
+    }
+
+    public int getRejectedProviderCount() {
+        return rejectedProvider;
+    }
+
+    public int getRejectedJumpCount() {
+        return rejectedJump;
+    }
+
+    public void reset() {
+        hasEstimate = false;
+        hasGps = false;
+    }
+}
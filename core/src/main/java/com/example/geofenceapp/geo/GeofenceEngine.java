@@ -0,0 +1,191 @@
+package com.example.geofenceapp.geo;
+
+// Evaluates every location fix against all TPH fences and reports enter/dwell/exit
+// transitions. A fence is entered inside its radius but only exited beyond radius +
+// exitMarginMeters, so GPS jitter around the boundary does not flap. Each TPH may have
+// its own radius; NaN falls back to the default one.
+// Candidates come from the spatial index into buffers allocated up front, which only grow
+// when a fix finds more fences in range than any before it, so onFix does not allocate in
+// steady state. Not thread-safe: feed fixes from one thread.
+public class GeofenceEngine {
+    public enum Transition {
+        ENTER, DWELL, EXIT
+    }
+
+    public interface Listener {
+        void onTransition(int fenceId, Transition transition, double distanceMeters, long timeMillis);
+    }
+
+    public static final double DEFAULT_EXIT_MARGIN_METERS = 10.0;
+    public static final long DEFAULT_DWELL_MILLIS = 60_000;
+    private static final int INITIAL_CANDIDATES = 256;
+
+    private static final byte OUTSIDE = 0;
+    private static final byte INSIDE = 1;
+    private static final byte DWELLING = 2;
+
+    private final double[] lat;
+    private final double[] lng;
+    private final TphSpatialIndex index;
+    // Per fence, or null when every fence uses radiusMeters
+    private final double[] radius;
+    private final double radiusMeters;
+    // Largest radius of any fence, for the spatial query
+    private final double maxRadiusMeters;
+    private final double exitMarginMeters;
+    private final long dwellMillis;
+
+    private final byte[] state;
+    private final long[] enteredAt;
+    // Fences currently inside or dwelling, in no particular order
+    private final int[] active;
+    private int activeCount = 0;
+
+    // Grown when a query finds more, since the index returns fences in scan order and
+    // cutting the list short could drop the one the fix is in
+    private int[] candidateIds = new int[INITIAL_CANDIDATES];
+    private double[] candidateDistances = new double[INITIAL_CANDIDATES];
+
+    private Listener[] listeners = new Listener[0];
+
+    public GeofenceEngine(double[] lat, double[] lng, TphSpatialIndex index, double radiusMeters) {
+        this(lat, lng, null, index, radiusMeters, DEFAULT_EXIT_MARGIN_METERS, DEFAULT_DWELL_MILLIS);
+    }
+
+    public GeofenceEngine(double[] lat, double[] lng, double[] radius, TphSpatialIndex index,
+                          double radiusMeters) {
+        this(lat, lng, radius, index, radiusMeters, DEFAULT_EXIT_MARGIN_METERS, DEFAULT_DWELL_MILLIS);
+    }
+
+    public GeofenceEngine(double[] lat, double[] lng, TphSpatialIndex index, double radiusMeters,
+                          double exitMarginMeters, long dwellMillis) {
+        this(lat, lng, null, index, radiusMeters, exitMarginMeters, dwellMillis);
+    }
+
+    // lat/lng must be the arrays the index was built from; radius may be null
+    public GeofenceEngine(double[] lat, double[] lng, double[] radius, TphSpatialIndex index,
+                          double radiusMeters, double exitMarginMeters, long dwellMillis) {
+        if (index.size() != lat.length) throw new IllegalArgumentException("index does not match fences");
+        if (radius != null && radius.length != lat.length) {
+            throw new IllegalArgumentException("radius does not match fences");
+        }
+        this.lat = lat;
+        this.lng = lng;
+        this.radius = radius;
+        this.index = index;
+        this.radiusMeters = radiusMeters;
+        double max = radiusMeters;
+        if (radius != null) {
+            for (double r : radius) {
+                if (r > max) max = r;
+            }
+        }
+        this.maxRadiusMeters = max;
+        this.exitMarginMeters = exitMarginMeters;
+        this.dwellMillis = dwellMillis;
+        state = new byte[lat.length];
+        enteredAt = new long[lat.length];
+        active = new int[lat.length];
+    }
+
+    public void addListener(Listener listener) {
+        Listener[] updated = new Listener[listeners.length + 1];
+        System.arraycopy(listeners, 0, updated, 0, listeners.length);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public void removeListener(Listener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                Listener[] updated = new Listener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    public void onFix(double fixLat, double fixLng, long timeMillis) {
+        // Exits and dwells first, measured exactly against the fences we are already in
+        for (int i = activeCount - 1; i >= 0; i--) {
+            int fence = active[i];
+            double d = GeoMath.haversine(fixLat, fixLng, lat[fence], lng[fence]);
+            if (d > radiusOf(fence) + exitMarginMeters) {
+                state[fence] = OUTSIDE;
+                active[i] = active[--activeCount];
+                emit(fence, Transition.EXIT, d, timeMillis);
+            } else if (state[fence] == INSIDE && timeMillis - enteredAt[fence] >= dwellMillis) {
+                state[fence] = DWELLING;
+                emit(fence, Transition.DWELL, d, timeMillis);
+            }
+        }
+
+        // Entries from the spatial pre-filter
+        int found = findCandidates(fixLat, fixLng);
+        for (int i = 0; i < found; i++) {
+            int fence = candidateIds[i];
+            if (state[fence] != OUTSIDE || candidateDistances[i] > radiusOf(fence)) continue;
+            state[fence] = INSIDE;
+            enteredAt[fence] = timeMillis;
+            active[activeCount++] = fence;
+            emit(fence, Transition.ENTER, candidateDistances[i], timeMillis);
+            if (dwellMillis <= 0) {
+                state[fence] = DWELLING;
+                emit(fence, Transition.DWELL, candidateDistances[i], timeMillis);
+            }
+        }
+    }
+
+    public double radiusOf(int fenceId) {
+        if (radius == null) return radiusMeters;
+        double r = radius[fenceId];
+        return r > 0 ? r : radiusMeters;
+    }
+
+    // Fences whose own radius contains the point, whatever their state. Same thread as onFix.
+    public int countContaining(double pointLat, double pointLng) {
+        int found = findCandidates(pointLat, pointLng);
+        int count = 0;
+        for (int i = 0; i < found; i++) {
+            if (candidateDistances[i] <= radiusOf(candidateIds[i])) count++;
+        }
+        return count;
+    }
+
+    // Every fence within the largest radius, into candidateIds/candidateDistances
+    private int findCandidates(double pointLat, double pointLng) {
+        int found = index.withinRadius(pointLat, pointLng, maxRadiusMeters, candidateIds, candidateDistances);
+        if (found > candidateIds.length) {
+            int capacity = Integer.highestOneBit(found) << 1;
+            candidateIds = new int[capacity];
+            candidateDistances = new double[capacity];
+            found = index.withinRadius(pointLat, pointLng, maxRadiusMeters, candidateIds, candidateDistances);
+        }
+        return found;
+    }
+
+    public boolean isInside(int fenceId) {
+        return state[fenceId] != OUTSIDE;
+    }
+
+    public int getInsideCount() {
+        return activeCount;
+    }
+
+    // Forgets all fence state without emitting exits
+    public void reset() {
+        for (int i = 0; i < activeCount; i++) {
+            state[active[i]] = OUTSIDE;
+        }
+        activeCount = 0;
+    }
+
+    private void emit(int fence, Transition transition, double distance, long timeMillis) {
+        Listener[] current = listeners;
+        for (Listener listener : current) {
+            listener.onTransition(fence, transition, distance, timeMillis);
+        }
+    }
+}
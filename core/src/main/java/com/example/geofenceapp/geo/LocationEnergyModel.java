@@ -0,0 +1,33 @@
+package com.example.geofenceapp.geo;
+
+// Rough energy cost of a location request, for comparing sampling strategies offline.
+// Figures are typical of mid-range phones: the GPS receiver draws about 200 mW while on
+// and stays on between fixes up to GPS_HOT_INTERVAL_MILLIS apart; sparser fixes each pay
+// a hot start. A network fix is a Wi-Fi scan plus cell lookup.
+public final class LocationEnergyModel {
+    static final double GPS_ACTIVE_WATTS = 0.2;
+    static final long GPS_HOT_INTERVAL_MILLIS = 10_000;
+    static final double GPS_HOT_START_SECONDS = 6;
+    static final double NETWORK_FIX_JOULES = 0.5;
+    static final double BATTERY_VOLTS = 3.85;
+
+    private LocationEnergyModel() {
+    }
+
+    // Joules spent holding a request of this provider and interval for durationMillis
+    public static double joules(LocationSamplingPolicy.Provider provider, long intervalMillis, long durationMillis) {
+        if (durationMillis <= 0) return 0;
+        double fixes = (double) durationMillis / intervalMillis;
+        if (provider == LocationSamplingPolicy.Provider.NETWORK) {
+            return fixes * NETWORK_FIX_JOULES;
+        }
+        if (intervalMillis <= GPS_HOT_INTERVAL_MILLIS) {
+            return GPS_ACTIVE_WATTS * durationMillis / 1000.0;
+        }
+        return fixes * GPS_ACTIVE_WATTS * GPS_HOT_START_SECONDS;
+    }
+
+    public static double milliampHours(double joules) {
+        return joules / BATTERY_VOLTS / 3.6;
+    }
+}
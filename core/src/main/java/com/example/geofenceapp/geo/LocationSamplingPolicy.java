@@ -0,0 +1,163 @@
+package com.example.geofenceapp.geo;
+
+// Decides how often, and from which provider, location fixes are requested. The interval
+// follows the time it would take to reach the nearest relevant fence boundary at the
+// current speed: coarse network fixes when kilometres away, GPS every couple of seconds
+// near a boundary, and a slow network poll once the device has not moved for a while.
+// Feed it every fix; it only reports a change when re-registering is worth it.
+// Not thread-safe: feed fixes from one thread.
+public class LocationSamplingPolicy {
+    public enum Provider {
+        GPS, NETWORK
+    }
+
+    public enum Tier {
+        // Close to a boundary: every fix can flip a fence
+        NEAR,
+        // Heading for a fence; GPS at an interval that shrinks with distance
+        APPROACH,
+        // Kilometres away; network fixes are accurate enough
+        FAR,
+        // Not moving; poll slowly until a fix shows movement
+        STATIONARY
+    }
+
+    static final double NEAR_METERS = 100;
+    static final double FAR_METERS = 1000;
+    static final long NEAR_INTERVAL_MILLIS = 2000;
+    static final long MAX_APPROACH_INTERVAL_MILLIS = 60_000;
+    static final long MIN_FAR_INTERVAL_MILLIS = 10_000;
+    static final long MAX_FAR_INTERVAL_MILLIS = 120_000;
+    static final long STATIONARY_INTERVAL_MILLIS = 300_000;
+    // Standing at a TPH still needs a timely exit, so GPS stays on but slowly
+    static final long STATIONARY_NEAR_INTERVAL_MILLIS = 30_000;
+    static final long STATIONARY_AFTER_MILLIS = 120_000;
+    static final double STATIONARY_RADIUS_METERS = 20;
+    static final float FAR_MIN_DISTANCE_METERS = 50;
+    static final float STATIONARY_MIN_DISTANCE_METERS = 25;
+
+    // Time to the boundary is estimated at no less than walking pace, and fix speeds above
+    // a fast motorbike are treated as noise
+    static final double MIN_SPEED = 1.4;
+    static final double MAX_SPEED = 25;
+    // The interval has to move by more than this factor before updates are re-registered
+    static final double INTERVAL_HYSTERESIS = 1.5;
+
+    private Tier tier = Tier.NEAR;
+    private Provider provider = Provider.GPS;
+    private long intervalMillis = NEAR_INTERVAL_MILLIS;
+    private float minDistanceMeters = 0;
+
+    private boolean hasLast = false;
+    private double lastLat, lastLng;
+    private long lastTime;
+    // Where the device has been since anchorTime, within STATIONARY_RADIUS_METERS
+    private double anchorLat, anchorLng;
+    private long anchorTime;
+
+    // speed is NaN when the fix has none; boundaryMeters is the distance to the nearest
+    // relevant fence edge (negative inside) or NaN when there are no fences.
+    // Returns true when the request changed and updates should be re-registered.
+    public boolean onFix(double lat, double lng, float accuracyMeters, float speed, long timeMillis,
+                         double boundaryMeters) {
+        double metersPerLng = GeoMath.metersPerDegreeLng(lat);
+        double moving = speed;
+        if (Float.isNaN(speed)) {
+            moving = 0;
+            if (hasLast && timeMillis > lastTime) {
+                moving = Math.sqrt(GeoMath.fastDistanceSquared(lastLat, lastLng, lat, lng, metersPerLng))
+                        * 1000.0 / (timeMillis - lastTime);
+            }
+        }
+        moving = Math.min(Math.max(moving, 0), MAX_SPEED);
+
+        double stationaryRadius = Math.max(STATIONARY_RADIUS_METERS, accuracyMeters);
+        if (!hasLast || GeoMath.fastDistanceSquared(anchorLat, anchorLng, lat, lng, metersPerLng)
+                > stationaryRadius * stationaryRadius) {
+            anchorLat = lat;
+            anchorLng = lng;
+            anchorTime = timeMillis;
+        }
+        hasLast = true;
+        lastLat = lat;
+        lastLng = lng;
+        lastTime = timeMillis;
+
+        boolean stationary = timeMillis - anchorTime >= STATIONARY_AFTER_MILLIS;
+        // The boundary may be as close as the fix is wrong
+        double distance = Double.isNaN(boundaryMeters) ? Double.POSITIVE_INFINITY
+                : Math.max(0, Math.abs(boundaryMeters) - accuracyMeters);
+        double speedForEta = Math.max(moving, MIN_SPEED);
+
+        Tier nextTier;
+        Provider nextProvider;
+        long nextInterval;
+        float nextMinDistance;
+        if (stationary) {
+            nextTier = Tier.STATIONARY;
+            boolean near = distance < NEAR_METERS;
+            nextProvider = near ? Provider.GPS : Provider.NETWORK;
+            nextInterval = near ? STATIONARY_NEAR_INTERVAL_MILLIS : STATIONARY_INTERVAL_MILLIS;
+            nextMinDistance = STATIONARY_MIN_DISTANCE_METERS;
+        } else if (distance < NEAR_METERS) {
+            nextTier = Tier.NEAR;
+            nextProvider = Provider.GPS;
+            nextInterval = NEAR_INTERVAL_MILLIS;
+            nextMinDistance = 0;
+        } else if (distance < FAR_METERS) {
+            // A third of the time until the near zone, so it is not overshot between fixes
+            nextTier = Tier.APPROACH;
+            nextProvider = Provider.GPS;
+            nextInterval = clamp((long) ((distance - NEAR_METERS) / speedForEta / 3 * 1000),
+                    NEAR_INTERVAL_MILLIS, MAX_APPROACH_INTERVAL_MILLIS);
+            nextMinDistance = 0;
+        } else {
+            nextTier = Tier.FAR;
+            nextProvider = Provider.NETWORK;
+            nextInterval = Double.isInfinite(distance) ? MAX_FAR_INTERVAL_MILLIS
+                    : clamp((long) ((distance - FAR_METERS) / speedForEta / 2 * 1000),
+                    MIN_FAR_INTERVAL_MILLIS, MAX_FAR_INTERVAL_MILLIS);
+            nextMinDistance = FAR_MIN_DISTANCE_METERS;
+        }
+
+        boolean changed = nextTier != tier || nextProvider != provider
+                || nextInterval * INTERVAL_HYSTERESIS < intervalMillis
+                || nextInterval > intervalMillis * INTERVAL_HYSTERESIS;
+        if (!changed) return false;
+
+        tier = nextTier;
+        provider = nextProvider;
+        intervalMillis = nextInterval;
+        minDistanceMeters = nextMinDistance;
+        return true;
+    }
+
+    // Back to dense GPS sampling, e.g. after a new TPH is selected
+    public void reset() {
+        tier = Tier.NEAR;
+        provider = Provider.GPS;
+        intervalMillis = NEAR_INTERVAL_MILLIS;
+        minDistanceMeters = 0;
+        hasLast = false;
+    }
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    public Provider getProvider() {
+        return provider;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public float getMinDistanceMeters() {
+        return minDistanceMeters;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.min(Math.max(value, min), max);
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.geofenceapp.geo;
+
+import java.util.Arrays;
+
+// A block boundary as a simple polygon in lat/lng, treated as planar (blocks are a few
+// hundred metres across). contains() first rejects points outside the bounding box, then
+// looks up a precomputed grid over it: most cells lie wholly inside or outside the polygon
+// and answer directly. Only cells crossed by an edge keep their edge list; for those the
+// inside state of the cell centre is precomputed, and the segment from the point to the
+// centre is tested against the cell's few edges, each crossing flipping the answer. A centre
+// lying on (or within rounding of) one of its cell's edges has no trustworthy state, which
+// happens readily with vertices rounded to a few decimals; such cells fall back to ray casting.
+// Immutable and safe to share between threads; contains() does not allocate.
+public final class PolygonFence {
+    private static final byte OUT = 0;
+    private static final byte IN = 1;
+    private static final byte EDGE_CENTRE_OUT = 2;
+    private static final byte EDGE_CENTRE_IN = 3;
+    private static final byte EDGE_CENTRE_ON = 4;
+    // How close, in cells, a centre may come to an edge before the cell falls back
+    private static final double CENTRE_ON_EDGE = 1e-6;
+
+    private static final int MAX_GRID = 128;
+
+    private final double[] lat;
+    private final double[] lng;
+    private final double minLat, maxLat, minLng, maxLng;
+
+    private final int grid;
+    private final double cellLat;
+    private final double cellLng;
+    private final byte[] cellState;
+    // Edges crossing each cell, CSR style: cellEdges[cellStart[c] .. cellStart[c + 1])
+    private final int[] cellStart;
+    private final int[] cellEdges;
+
+    // The ring may repeat the first vertex at the end
+    public PolygonFence(double[] lat, double[] lng) {
+        if (lat.length != lng.length) throw new IllegalArgumentException("lat and lng differ in length");
+        int n = lat.length;
+        if (n > 1 && lat[0] == lat[n - 1] && lng[0] == lng[n - 1]) n--;
+        if (n < 3) throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+
+        this.lat = new double[n];
+        this.lng = new double[n];
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY, maxLng = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN(lat[i]) || Double.isNaN(lng[i])) {
+                throw new IllegalArgumentException("Vertex " + i + " has no coordinate");
+            }
+            this.lat[i] = lat[i];
+            this.lng[i] = lng[i];
+            minLat = Math.min(minLat, lat[i]);
+            maxLat = Math.max(maxLat, lat[i]);
+            minLng = Math.min(minLng, lng[i]);
+            maxLng = Math.max(maxLng, lng[i]);
+        }
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLng = minLng;
+        this.maxLng = maxLng;
+
+        // About four cells per vertex, so a boundary cell holds only a handful of edges
+        grid = (int) Math.min(MAX_GRID, Math.max(1, Math.ceil(2 * Math.sqrt(n))));
+        cellLat = Math.max(maxLat - minLat, 1e-12) / grid;
+        cellLng = Math.max(maxLng - minLng, 1e-12) / grid;
+
+        int cells = grid * grid;
+        int[] counts = new int[cells + 1];
+        forEachEdgeCell(counts, null, null);
+        cellStart = new int[cells + 1];
+        for (int c = 0; c < cells; c++) cellStart[c + 1] = cellStart[c] + counts[c];
+        cellEdges = new int[cellStart[cells]];
+        forEachEdgeCell(null, cellStart.clone(), cellEdges);
+
+        // Cell centres are classified a row at a time: the edges cross the row's centre line
+        // at a few longitudes, and a centre is inside when an odd number lie east of it
+        cellState = new byte[cells];
+        double[] crossings = new double[n];
+        for (int row = 0; row < grid; row++) {
+            double centreLat = minLat + (row + 0.5) * cellLat;
+            int count = 0;
+            for (int a = n - 1, b = 0; b < n; a = b++) {
+                if ((this.lat[b] > centreLat) != (this.lat[a] > centreLat)) {
+                    crossings[count++] = (this.lng[a] - this.lng[b]) * (centreLat - this.lat[b])
+                            / (this.lat[a] - this.lat[b]) + this.lng[b];
+                }
+            }
+            Arrays.sort(crossings, 0, count);
+            int east = count;
+            int k = 0;
+            for (int col = 0; col < grid; col++) {
+                double centreLng = minLng + (col + 0.5) * cellLng;
+                while (k < count && crossings[k] <= centreLng) {
+                    k++;
+                    east--;
+                }
+                boolean centreInside = (east & 1) == 1;
+                int c = row * grid + col;
+                boolean crossed = cellStart[c + 1] > cellStart[c];
+                if (!crossed) {
+                    cellState[c] = centreInside ? IN : OUT;
+                } else if (centreOnEdge(c, centreLat, centreLng)) {
+                    cellState[c] = EDGE_CENTRE_ON;
+                } else {
+                    cellState[c] = centreInside ? EDGE_CENTRE_IN : EDGE_CENTRE_OUT;
+                }
+            }
+        }
+    }
+
+    // "lat,lng;lat,lng;..." with each vertex in the format of the TPH coordinate field;
+    // null when there are fewer than 3 usable vertices
+    public static PolygonFence parse(String text) {
+        if (text == null) return null;
+        String[] parts = text.split(";");
+        double[] lat = new double[parts.length];
+        double[] lng = new double[parts.length];
+        int n = 0;
+        for (String part : parts) {
+            String[] values = part.split(",");
+            if (values.length < 2) {
+                if (part.trim().isEmpty()) continue;
+                return null;
+            }
+            try {
+                lat[n] = Double.parseDouble(values[0].trim());
+                lng[n] = Double.parseDouble(values[1].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (Double.isNaN(lat[n]) || Double.isNaN(lng[n])) return null;
+            n++;
+        }
+        if (n < 3) return null;
+        try {
+            return new PolygonFence(Arrays.copyOf(lat, n), Arrays.copyOf(lng, n));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public boolean contains(double pointLat, double pointLng) {
+        if (!(pointLat >= minLat && pointLat <= maxLat && pointLng >= minLng && pointLng <= maxLng)) {
+            return false;
+        }
+        int row = Math.min((int) ((pointLat - minLat) / cellLat), grid - 1);
+        int col = Math.min((int) ((pointLng - minLng) / cellLng), grid - 1);
+        int c = row * grid + col;
+        byte state = cellState[c];
+        if (state == IN) return true;
+        if (state == OUT) return false;
+        if (state == EDGE_CENTRE_ON) return rayCast(pointLat, pointLng);
+
+        double centreLat = minLat + (row + 0.5) * cellLat;
+        double centreLng = minLng + (col + 0.5) * cellLng;
+        boolean inside = state == EDGE_CENTRE_IN;
+        for (int k = cellStart[c], end = cellStart[c + 1]; k < end; k++) {
+            int a = cellEdges[k];
+            int b = a + 1 == lat.length ? 0 : a + 1;
+            if (crosses(pointLng, pointLat, centreLng, centreLat, lng[a], lat[a], lng[b], lat[b])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    // Plain even-odd ray casting over every edge, without the grid; for reference and benchmarks
+    public boolean containsBruteForce(double pointLat, double pointLng) {
+        if (!(pointLat >= minLat && pointLat <= maxLat && pointLng >= minLng && pointLng <= maxLng)) {
+            return false;
+        }
+        return rayCast(pointLat, pointLng);
+    }
+
+    // Metres from the point to the nearest edge, inside or out. Visits every edge.
+    public double distanceToBoundary(double pointLat, double pointLng) {
+        double metersPerLng = GeoMath.metersPerDegreeLng(pointLat);
+        double best = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < lat.length; a++) {
+            best = Math.min(best, edgeDistanceSquared(a, pointLat, pointLng, metersPerLng));
+        }
+        return Math.sqrt(best);
+    }
+
+    // Whether some edge is within the given metres of the point. Only the edges listed in
+    // the grid cells around the point are measured, so this stays cheap for small margins.
+    public boolean isNearBoundary(double pointLat, double pointLng, double meters) {
+        double metersPerLng = GeoMath.metersPerDegreeLng(pointLat);
+        double dLat = meters / GeoMath.METERS_PER_DEGREE_LAT;
+        double dLng = meters / metersPerLng;
+        if (!(pointLat + dLat >= minLat && pointLat - dLat <= maxLat
+                && pointLng + dLng >= minLng && pointLng - dLng <= maxLng)) {
+            return false;
+        }
+        int firstRow = clampCell((pointLat - dLat - minLat) / cellLat);
+        int lastRow = clampCell((pointLat + dLat - minLat) / cellLat);
+        int firstCol = clampCell((pointLng - dLng - minLng) / cellLng);
+        int lastCol = clampCell((pointLng + dLng - minLng) / cellLng);
+        double limit = meters * meters;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int c = row * grid + col;
+                for (int k = cellStart[c], end = cellStart[c + 1]; k < end; k++) {
+                    if (edgeDistanceSquared(cellEdges[k], pointLat, pointLng, metersPerLng) <= limit) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Squared metres from the point to edge a..a+1, on a local flat projection
+    private double edgeDistanceSquared(int a, double pointLat, double pointLng, double metersPerLng) {
+        int b = a + 1 == lat.length ? 0 : a + 1;
+        double ax = (lng[a] - pointLng) * metersPerLng;
+        double ay = (lat[a] - pointLat) * GeoMath.METERS_PER_DEGREE_LAT;
+        double bx = (lng[b] - pointLng) * metersPerLng;
+        double by = (lat[b] - pointLat) * GeoMath.METERS_PER_DEGREE_LAT;
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+        double x = ax + t * dx;
+        double y = ay + t * dy;
+        return x * x + y * y;
+    }
+
+    public int getVertexCount() {
+        return lat.length;
+    }
+
+    public double getLatitude(int vertex) {
+        return lat[vertex];
+    }
+
+    public double getLongitude(int vertex) {
+        return lng[vertex];
+    }
+
+    public double getMinLatitude() {
+        return minLat;
+    }
+
+    public double getMaxLatitude() {
+        return maxLat;
+    }
+
+    public double getMinLongitude() {
+        return minLng;
+    }
+
+    public double getMaxLongitude() {
+        return maxLng;
+    }
+
+    // Cells an edge crosses, and so how much work contains() does near the boundary
+    public int getBoundaryCellCount() {
+        int count = 0;
+        for (byte state : cellState) {
+            if (state >= EDGE_CENTRE_OUT) count++;
+        }
+        return count;
+    }
+
+    private boolean rayCast(double pointLat, double pointLng) {
+        boolean inside = false;
+        int n = lat.length;
+        for (int a = n - 1, b = 0; b < n; a = b++) {
+            if ((lat[b] > pointLat) != (lat[a] > pointLat)
+                    && pointLng < (lng[a] - lng[b]) * (pointLat - lat[b]) / (lat[a] - lat[b]) + lng[b]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    // Registers every edge with the cells it passes through, row band by row band: either
+    // counting (counts != null) or filling edges at the positions in next
+    private void forEachEdgeCell(int[] counts, int[] next, int[] edges) {
+        // Edges are widened by a hair so one lying on a cell border is listed in both cells
+        double slackLat = cellLat * 1e-9;
+        double slackLng = cellLng * 1e-9;
+        int n = lat.length;
+        for (int a = 0; a < n; a++) {
+            int b = a + 1 == n ? 0 : a + 1;
+            double lowLat = Math.min(lat[a], lat[b]);
+            double highLat = Math.max(lat[a], lat[b]);
+            int firstRow = clampCell((lowLat - slackLat - minLat) / cellLat);
+            int lastRow = clampCell((highLat + slackLat - minLat) / cellLat);
+            for (int row = firstRow; row <= lastRow; row++) {
+                // The part of the edge within this band of latitudes
+                double bandLow = Math.max(lowLat, minLat + row * cellLat);
+                double bandHigh = Math.min(highLat, minLat + (row + 1) * cellLat);
+                double lng1, lng2;
+                if (lat[a] == lat[b]) {
+                    lng1 = lng[a];
+                    lng2 = lng[b];
+                } else {
+                    lng1 = lng[a] + (lng[b] - lng[a]) * (bandLow - lat[a]) / (lat[b] - lat[a]);
+                    lng2 = lng[a] + (lng[b] - lng[a]) * (bandHigh - lat[a]) / (lat[b] - lat[a]);
+                }
+                int firstCol = clampCell((Math.min(lng1, lng2) - slackLng - minLng) / cellLng);
+                int lastCol = clampCell((Math.max(lng1, lng2) + slackLng - minLng) / cellLng);
+                for (int col = firstCol; col <= lastCol; col++) {
+                    int c = row * grid + col;
+                    if (counts != null) {
+                        counts[c]++;
+                    } else {
+                        edges[next[c]++] = a;
+                    }
+                }
+            }
+        }
+    }
+
+    // Whether one of cell c's edges passes within CENTRE_ON_EDGE cells of its centre,
+    // measured in cell units so tall and wide cells are treated alike
+    private boolean centreOnEdge(int c, double centreLat, double centreLng) {
+        for (int k = cellStart[c], end = cellStart[c + 1]; k < end; k++) {
+            int a = cellEdges[k];
+            int b = a + 1 == lat.length ? 0 : a + 1;
+            double ax = (lng[a] - centreLng) / cellLng;
+            double ay = (lat[a] - centreLat) / cellLat;
+            double dx = (lng[b] - centreLng) / cellLng - ax;
+            double dy = (lat[b] - centreLat) / cellLat - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double x = ax + t * dx;
+            double y = ay + t * dy;
+            if (x * x + y * y <= CENTRE_ON_EDGE * CENTRE_ON_EDGE) return true;
+        }
+        return false;
+    }
+
+    private int clampCell(double position) {
+        return Math.max(0, Math.min(grid - 1, (int) Math.floor(position)));
+    }
+
+    // Whether segment p-q crosses segment a-b. A vertex lying exactly on p-q counts as
+    // being on one fixed side, so the two edges meeting there are counted consistently.
+    private static boolean crosses(double px, double py, double qx, double qy,
+                                   double ax, double ay, double bx, double by) {
+        boolean aSide = orient(px, py, qx, qy, ax, ay) > 0;
+        boolean bSide = orient(px, py, qx, qy, bx, by) > 0;
+        if (aSide == bSide) return false;
+        boolean pSide = orient(ax, ay, bx, by, px, py) > 0;
+        boolean qSide = orient(ax, ay, bx, by, qx, qy) > 0;
+        return pSide != qSide;
+    }
+
+    private static double orient(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+}
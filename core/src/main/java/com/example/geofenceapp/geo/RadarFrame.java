@@ -0,0 +1,136 @@
+package com.example.geofenceapp.geo;
+
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+
+// Screen geometry of the TPH points around a position, for the radar view. update() runs
+// once per fix: it asks the index for the points in range and projects them, north up,
+// into flat float buffers in view pixels, laid out for Canvas.drawPoints and drawLines.
+// Each fence radius becomes RING_SEGMENTS line segments, fences the engine has us inside
+// going to their own buffer. Buffers only ever grow, so once they fit the estate neither
+// update() nor drawing allocates, and a frame is a handful of batched draw calls.
+public class RadarFrame {
+    public static final int RING_SEGMENTS = 24;
+    // Rings smaller than this are left to the point itself
+    static final float MIN_RING_PIXELS = 2f;
+
+    private static final Histogram PROJECT_TIME = Metrics.histogram("radar.project");
+
+    // Unit circle, RING_SEGMENTS + 1 entries so segment k runs from k to k + 1
+    private static final float[] COS = new float[RING_SEGMENTS + 1];
+    private static final float[] SIN = new float[RING_SEGMENTS + 1];
+
+    static {
+        for (int k = 0; k <= RING_SEGMENTS; k++) {
+            double angle = 2 * Math.PI * k / RING_SEGMENTS;
+            COS[k] = (float) Math.cos(angle);
+            SIN[k] = (float) Math.sin(angle);
+        }
+    }
+
+    private final double[] lat;
+    private final double[] lng;
+    private final TphSpatialIndex index;
+    private final GeofenceEngine engine;
+
+    private int[] ids = new int[256];
+    private double[] distances = new double[256];
+    private float[] points = new float[512];
+    private float[] rings = new float[4096];
+    private float[] insideRings = new float[4 * RING_SEGMENTS * 4];
+    private int pointCount;
+    private int ringFloats;
+    private int insideRingFloats;
+
+    // engine supplies each fence's radius and whether we are inside it
+    public RadarFrame(double[] lat, double[] lng, TphSpatialIndex index, GeofenceEngine engine) {
+        this.lat = lat;
+        this.lng = lng;
+        this.index = index;
+        this.engine = engine;
+    }
+
+    // Projects every point within rangeMeters of the center so that the center lands on
+    // (centerX, centerY) and a meter is pixelsPerMeter pixels. Returns the point count.
+    public int update(double centerLat, double centerLng, double rangeMeters,
+                      float centerX, float centerY, float pixelsPerMeter) {
+        long start = System.nanoTime();
+        int found = index.withinRadius(centerLat, centerLng, rangeMeters, ids, distances);
+        if (found > ids.length) {
+            int capacity = Integer.highestOneBit(found) << 1;
+            ids = new int[capacity];
+            distances = new double[capacity];
+            found = index.withinRadius(centerLat, centerLng, rangeMeters, ids, distances);
+        }
+
+        double xPerDegree = GeoMath.metersPerDegreeLng(centerLat) * pixelsPerMeter;
+        double yPerDegree = GeoMath.METERS_PER_DEGREE_LAT * pixelsPerMeter;
+        points = ensure(points, found * 2);
+        pointCount = 0;
+        ringFloats = 0;
+        insideRingFloats = 0;
+        for (int i = 0; i < found; i++) {
+            int id = ids[i];
+            float x = centerX + (float) ((lng[id] - centerLng) * xPerDegree);
+            float y = centerY - (float) ((lat[id] - centerLat) * yPerDegree);
+            points[pointCount * 2] = x;
+            points[pointCount * 2 + 1] = y;
+            pointCount++;
+
+            float r = (float) (engine.radiusOf(id) * pixelsPerMeter);
+            if (r < MIN_RING_PIXELS) continue;
+            if (engine.isInside(id)) {
+                insideRings = ensure(insideRings, insideRingFloats + RING_SEGMENTS * 4);
+                insideRingFloats = ring(insideRings, insideRingFloats, x, y, r);
+            } else {
+                rings = ensure(rings, ringFloats + RING_SEGMENTS * 4);
+                ringFloats = ring(rings, ringFloats, x, y, r);
+            }
+        }
+        PROJECT_TIME.recordSince(start);
+        return pointCount;
+    }
+
+    private static int ring(float[] out, int at, float x, float y, float r) {
+        for (int k = 0; k < RING_SEGMENTS; k++) {
+            out[at++] = x + r * COS[k];
+            out[at++] = y + r * SIN[k];
+            out[at++] = x + r * COS[k + 1];
+            out[at++] = y + r * SIN[k + 1];
+        }
+        return at;
+    }
+
+    private static float[] ensure(float[] buffer, int size) {
+        if (size <= buffer.length) return buffer;
+        float[] grown = new float[Math.max(size, buffer.length * 2)];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        return grown;
+    }
+
+    // x, y pairs; the first getPointCount() * 2 floats are valid
+    public float[] getPoints() {
+        return points;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    // Line segments as x0, y0, x1, y1; the first getRingFloats() floats are valid
+    public float[] getRings() {
+        return rings;
+    }
+
+    public int getRingFloats() {
+        return ringFloats;
+    }
+
+    public float[] getInsideRings() {
+        return insideRings;
+    }
+
+    public int getInsideRingFloats() {
+        return insideRingFloats;
+    }
+}
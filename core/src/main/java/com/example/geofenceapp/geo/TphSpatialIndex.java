@@ -0,0 +1,187 @@
+package com.example.geofenceapp.geo;
+
+// Immutable uniform-grid index over TPH points for nearest and radius queries.
+// Points are bucketed into square cells of roughly cellMeters and stored cell by cell
+// in flat arrays, so a query only visits the few cells around the position and never
+// allocates. Results are point positions in the arrays the index was built from.
+public class TphSpatialIndex {
+    public static final double DEFAULT_CELL_METERS = 100.0;
+
+    // Keeps sparse, spread-out estates from producing a huge mostly empty grid
+    private static final int MIN_CELLS = 1024;
+    private static final int CELLS_PER_POINT = 4;
+
+    private final int size;
+    private final double minLat;
+    private final double minLng;
+    private final double cellLat;
+    private final double cellLng;
+    // Smallest real extent of a cell in meters, used to bound ring distances
+    private final double ringMeters;
+    private final int rows;
+    private final int cols;
+
+    // Points of cell c are at positions cellStart[c] .. cellStart[c + 1] - 1
+    private final int[] cellStart;
+    private final int[] ids;
+    private final double[] lats;
+    private final double[] lngs;
+
+    public TphSpatialIndex(double[] lat, double[] lng) {
+        this(lat, lng, DEFAULT_CELL_METERS);
+    }
+
+    public TphSpatialIndex(double[] lat, double[] lng, double cellMeters) {
+        if (lat.length != lng.length) throw new IllegalArgumentException("lat and lng differ in length");
+        if (cellMeters <= 0) throw new IllegalArgumentException("cellMeters must be positive");
+        size = lat.length;
+
+        double loLat = Double.POSITIVE_INFINITY, hiLat = Double.NEGATIVE_INFINITY;
+        double loLng = Double.POSITIVE_INFINITY, hiLng = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            loLat = Math.min(loLat, lat[i]);
+            hiLat = Math.max(hiLat, lat[i]);
+            loLng = Math.min(loLng, lng[i]);
+            hiLng = Math.max(hiLng, lng[i]);
+        }
+        if (size == 0) {
+            loLat = hiLat = loLng = hiLng = 0;
+        }
+        minLat = loLat;
+        minLng = loLng;
+
+        // Cells are sized for the middle of the data; fine for estates spanning a few degrees
+        double metersPerLng = Math.max(GeoMath.metersPerDegreeLng((loLat + hiLat) / 2), 1.0);
+        int maxCells = Math.max(MIN_CELLS, size * CELLS_PER_POINT);
+        double cell = cellMeters;
+        int r, c;
+        while (true) {
+            r = (int) ((hiLat - loLat) * GeoMath.METERS_PER_DEGREE_LAT / cell) + 1;
+            c = (int) ((hiLng - loLng) * metersPerLng / cell) + 1;
+            if ((long) r * c <= maxCells) break;
+            cell *= 2;
+        }
+        cellLat = cell / GeoMath.METERS_PER_DEGREE_LAT;
+        cellLng = cell / metersPerLng;
+        double maxAbsLat = Math.max(Math.abs(loLat), Math.abs(hiLat));
+        ringMeters = Math.min(cell, cellLng * GeoMath.metersPerDegreeLng(maxAbsLat));
+        rows = r;
+        cols = c;
+
+        // Counting sort of points by cell
+        int[] cellOf = new int[size];
+        cellStart = new int[rows * cols + 1];
+        for (int i = 0; i < size; i++) {
+            cellOf[i] = row(lat[i]) * cols + col(lng[i]);
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int i = 0; i < rows * cols; i++) {
+            cellStart[i + 1] += cellStart[i];
+        }
+
+        int[] fill = new int[rows * cols];
+        ids = new int[size];
+        lats = new double[size];
+        lngs = new double[size];
+        for (int i = 0; i < size; i++) {
+            int slot = cellStart[cellOf[i]] + fill[cellOf[i]]++;
+            ids[slot] = i;
+            lats[slot] = lat[i];
+            lngs[slot] = lng[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Writes up to outIds.length points within radiusMeters into outIds/outDistances,
+    // unordered, and returns how many were found in total
+    public int withinRadius(double lat, double lng, double radiusMeters, int[] outIds, double[] outDistances) {
+        if (size == 0) return 0;
+        int rowFrom = row(lat - radiusMeters / GeoMath.METERS_PER_DEGREE_LAT);
+        int rowTo = row(lat + radiusMeters / GeoMath.METERS_PER_DEGREE_LAT);
+        double lngSpan = radiusMeters / Math.max(GeoMath.metersPerDegreeLng(lat), 1.0);
+        int colFrom = col(lng - lngSpan);
+        int colTo = col(lng + lngSpan);
+
+        // Cheap squared-distance rejection first; the 1% slack is far above the approximation
+        // error at geofence radii, so only points that pass pay for the exact distance
+        double metersPerLng = GeoMath.metersPerDegreeLng(lat);
+        double limit = radiusMeters * 1.01 + 1.0;
+        double limitSquared = limit * limit;
+
+        int found = 0;
+        for (int r = rowFrom; r <= rowTo; r++) {
+            for (int c = colFrom; c <= colTo; c++) {
+                int cell = r * cols + c;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    if (GeoMath.fastDistanceSquared(lat, lng, lats[i], lngs[i], metersPerLng) > limitSquared) continue;
+                    double d = GeoMath.haversine(lat, lng, lats[i], lngs[i]);
+                    if (d <= radiusMeters) {
+                        if (found < outIds.length) {
+                            outIds[found] = ids[i];
+                            outDistances[found] = d;
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // Writes the k = outIds.length nearest points, closest first, and returns how many were found
+    public int nearest(double lat, double lng, int[] outIds, double[] outDistances) {
+        int k = Math.min(outIds.length, size);
+        if (k == 0) return 0;
+
+        int centerRow = row(lat);
+        int centerCol = col(lng);
+        int maxRing = Math.max(Math.max(centerRow, rows - 1 - centerRow), Math.max(centerCol, cols - 1 - centerCol));
+        int found = 0;
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Nothing in this ring can be closer than the (ring - 1) cells between it and the query
+            if (found == k && outDistances[k - 1] <= (ring - 1) * ringMeters) break;
+
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+                boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(2 * ring, 1);
+                for (int c = centerCol - ring; c <= centerCol + ring; c += step) {
+                    if (c < 0 || c >= cols) continue;
+                    int cell = r * cols + c;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        double d = GeoMath.haversine(lat, lng, lats[i], lngs[i]);
+                        found = insertSorted(ids[i], d, found, k, outIds, outDistances);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int insertSorted(int id, double d, int count, int k, int[] outIds, double[] outDistances) {
+        if (count == k && d >= outDistances[k - 1]) return count;
+        int i = count == k ? k - 1 : count;
+        while (i > 0 && outDistances[i - 1] > d) {
+            outIds[i] = outIds[i - 1];
+            outDistances[i] = outDistances[i - 1];
+            i--;
+        }
+        outIds[i] = id;
+        outDistances[i] = d;
+        return count == k ? k : count + 1;
+    }
+
+    private int row(double lat) {
+        int r = (int) Math.floor((lat - minLat) / cellLat);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    private int col(double lng) {
+        int c = (int) Math.floor((lng - minLng) / cellLng);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+}
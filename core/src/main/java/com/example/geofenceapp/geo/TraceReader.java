@@ -0,0 +1,166 @@
+package com.example.geofenceapp.geo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a trace written by TraceWriter through a memory-mapped file. next() advances to
+// the following record and returns its type; the getters describe the current record and
+// are only meaningful for the fields of that type. A record cut short by a crash ends the
+// trace quietly; an unknown record type is an error, since nothing after it can be framed.
+public class TraceReader {
+    public static final int END = 0;
+    public static final int FIX = TraceWriter.FIX;
+    public static final int FENCE = TraceWriter.FENCE;
+    public static final int DECISION = TraceWriter.DECISION;
+    public static final int TRANSITION = TraceWriter.TRANSITION;
+
+    private static final FixFilter.Verdict[] VERDICTS = FixFilter.Verdict.values();
+    private static final GeofenceEngine.Transition[] TRANSITIONS = GeofenceEngine.Transition.values();
+
+    private final MappedByteBuffer buffer;
+    private boolean truncated = false;
+
+    private long timeMillis;
+    private int ageMillis;
+    private double lat;
+    private double lng;
+    private float accuracy;
+    private float speed;
+    private boolean gps;
+    private float radius;
+    private FixFilter.Verdict verdict;
+    private int fenceId;
+    private GeofenceEngine.Transition transition;
+    private float distance;
+
+    public TraceReader(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < 6 || buffer.getInt() != TraceWriter.MAGIC) {
+            throw new IOException(file + " is not a geofence trace");
+        }
+        short version = buffer.getShort();
+        if (version != TraceWriter.VERSION) {
+            throw new IOException(file + " has unsupported trace version " + version);
+        }
+    }
+
+    public int next() throws IOException {
+        if (!buffer.hasRemaining()) return END;
+        int start = buffer.position();
+        byte type = buffer.get();
+        int size;
+        switch (type) {
+            case TraceWriter.FIX:
+                size = TraceWriter.FIX_SIZE;
+                break;
+            case TraceWriter.FENCE:
+                size = TraceWriter.FENCE_SIZE;
+                break;
+            case TraceWriter.DECISION:
+                size = TraceWriter.DECISION_SIZE;
+                break;
+            case TraceWriter.TRANSITION:
+                size = TraceWriter.TRANSITION_SIZE;
+                break;
+            default:
+                throw new IOException("Unknown trace record " + type + " at offset " + start);
+        }
+        if (buffer.remaining() < size) {
+            truncated = true;
+            buffer.position(buffer.limit());
+            return END;
+        }
+
+        timeMillis = buffer.getLong();
+        switch (type) {
+            case TraceWriter.FIX:
+                ageMillis = buffer.getInt();
+                lat = buffer.getDouble();
+                lng = buffer.getDouble();
+                accuracy = buffer.getFloat();
+                speed = buffer.getFloat();
+                gps = buffer.get() != 0;
+                break;
+            case TraceWriter.FENCE:
+                lat = buffer.getDouble();
+                lng = buffer.getDouble();
+                radius = buffer.getFloat();
+                break;
+            case TraceWriter.DECISION:
+                verdict = VERDICTS[ordinal(buffer.get(), VERDICTS.length, start)];
+                distance = buffer.getFloat();
+                break;
+            default:
+                fenceId = buffer.getInt();
+                transition = TRANSITIONS[ordinal(buffer.get(), TRANSITIONS.length, start)];
+                distance = buffer.getFloat();
+                break;
+        }
+        return type;
+    }
+
+    private static int ordinal(byte value, int count, int offset) throws IOException {
+        if (value < 0 || value >= count) throw new IOException("Corrupt trace record at offset " + offset);
+        return value;
+    }
+
+    // Whether the trace ended in the middle of a record
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public int getAgeMillis() {
+        return ageMillis;
+    }
+
+    public double getLatitude() {
+        return lat;
+    }
+
+    public double getLongitude() {
+        return lng;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public boolean isGps() {
+        return gps;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    public FixFilter.Verdict getVerdict() {
+        return verdict;
+    }
+
+    public int getFenceId() {
+        return fenceId;
+    }
+
+    public GeofenceEngine.Transition getTransition() {
+        return transition;
+    }
+
+    public float getDistance() {
+        return distance;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.geofenceapp.geo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Reruns recorded traces through FixFilter as fast as the JVM allows. Every decision the
+// device recorded is compared with what the filter now says at the same moment, so a
+// change to the filter can be checked against real field days before it ships, and the
+// per-fix cost is measured on the way. Run with
+//   ./gradlew :core:replayTrace -Ptrace=20261018.gft[,20261019.gft...]
+public class TraceReplay {
+
+    public static class Report {
+        private int fixes;
+        private int accepted;
+        private int fences;
+        private int transitions;
+        private int verdictChanges;
+        private int decisions;
+        private int mismatches;
+        private boolean truncated;
+        private long elapsedNanos;
+        private long p50Nanos;
+        private long p99Nanos;
+        private long maxNanos;
+
+        public int getFixCount() {
+            return fixes;
+        }
+
+        public int getAcceptedCount() {
+            return accepted;
+        }
+
+        public int getFenceCount() {
+            return fences;
+        }
+
+        // Engine transitions the device recorded; not replayed, the fence set is not in the trace
+        public int getTransitionCount() {
+            return transitions;
+        }
+
+        // How often the replayed verdict against the current fence changed
+        public int getVerdictChangeCount() {
+            return verdictChanges;
+        }
+
+        public int getDecisionCount() {
+            return decisions;
+        }
+
+        // Recorded decisions the replay disagrees with
+        public int getMismatchCount() {
+            return mismatches;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        // Time spent in the filter, excluding reading the trace
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getFixesPerSecond() {
+            return elapsedNanos == 0 ? 0 : fixes * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "fixes=%d accepted=%d fences=%d verdictChanges=%d decisions=%d mismatches=%d " +
+                            "transitions=%d%s%nper fix: p50=%dns p99=%dns max=%dns, %.0f fixes/s",
+                    fixes, accepted, fences, verdictChanges, decisions, mismatches, transitions,
+                    truncated ? " (truncated)" : "", p50Nanos, p99Nanos, maxNanos, getFixesPerSecond());
+        }
+    }
+
+    private TraceReplay() {
+    }
+
+    public static Report replay(TraceReader reader, FixFilter filter) throws IOException {
+        Report report = new Report();
+        long[] latencies = new long[1024];
+        boolean hasFence = false;
+        double fenceLat = 0, fenceLng = 0, radius = 0;
+        FixFilter.Verdict last = null;
+
+        int type;
+        while ((type = reader.next()) != TraceReader.END) {
+            long time = reader.getTimeMillis();
+            switch (type) {
+                case TraceReader.FIX: {
+                    long start = System.nanoTime();
+                    if (filter.accept(reader.getLatitude(), reader.getLongitude(), reader.getAccuracy(),
+                            reader.getSpeed(), reader.isGps(), time - reader.getAgeMillis(), time)) {
+                        report.accepted++;
+                    }
+                    FixFilter.Verdict verdict = hasFence
+                            ? filter.classify(fenceLat, fenceLng, radius, time) : null;
+                    long nanos = System.nanoTime() - start;
+
+                    if (report.fixes == latencies.length) latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    latencies[report.fixes++] = nanos;
+                    report.elapsedNanos += nanos;
+                    if (verdict != null && last != null && verdict != last) report.verdictChanges++;
+                    last = verdict;
+                    break;
+                }
+                case TraceReader.FENCE:
+                    report.fences++;
+                    hasFence = !Double.isNaN(reader.getLatitude()) && !Double.isNaN(reader.getLongitude());
+                    fenceLat = reader.getLatitude();
+                    fenceLng = reader.getLongitude();
+                    radius = reader.getRadius();
+                    last = null;
+                    break;
+                case TraceReader.DECISION:
+                    report.decisions++;
+                    FixFilter.Verdict replayed = hasFence
+                            ? filter.classify(fenceLat, fenceLng, radius, time) : FixFilter.Verdict.UNCERTAIN;
+                    if (replayed != reader.getVerdict()) report.mismatches++;
+                    break;
+                case TraceReader.TRANSITION:
+                    report.transitions++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        report.truncated = reader.isTruncated();
+
+        if (report.fixes > 0) {
+            Arrays.sort(latencies, 0, report.fixes);
+            report.p50Nanos = latencies[(report.fixes - 1) / 2];
+            report.p99Nanos = latencies[(int) ((report.fixes - 1) * 0.99)];
+            report.maxNanos = latencies[report.fixes - 1];
+        }
+        return report;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: TraceReplay <trace file>...");
+            System.exit(2);
+        }
+        for (String path : args) {
+            Report report = replay(new TraceReader(new File(path)), new FixFilter());
+            System.out.println(path);
+            System.out.println(report);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.geofenceapp.geo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+
+// Append-only binary log of fixes, fence selections, geofence decisions and transitions,
+// so a field complaint can be replayed on a desk with TraceReplay. Records are packed into
+// one of two direct buffers on the caller's thread without allocating; a full buffer is
+// handed to the io executor for a channel write while the other fills. If the disk falls
+// a whole buffer behind, records are dropped and counted rather than blocking the UI.
+// Record from one thread; the io executor must run tasks in order (single thread).
+//
+// File layout, big-endian: int MAGIC, short VERSION, then records of a type byte and a
+// fixed payload (see TraceReader). Appending to an existing trace skips the header.
+public class TraceWriter {
+    public static final int MAGIC = 0x47465452; // "GFTR"
+    public static final short VERSION = 1;
+
+    static final byte FIX = 1;
+    static final byte FENCE = 2;
+    static final byte DECISION = 3;
+    static final byte TRANSITION = 4;
+
+    static final int FIX_SIZE = 8 + 4 + 8 + 8 + 4 + 4 + 1;
+    static final int FENCE_SIZE = 8 + 8 + 8 + 4;
+    static final int DECISION_SIZE = 8 + 1 + 4;
+    static final int TRANSITION_SIZE = 8 + 4 + 1 + 4;
+    private static final int MAX_RECORD = 1 + FIX_SIZE;
+
+    static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    private final FileChannel channel;
+    private final Executor io;
+
+    private ByteBuffer active;
+    // Null while its contents are being written out
+    private ByteBuffer spare;
+    private ByteBuffer draining;
+    private final Runnable drain = this::drain;
+    private volatile IOException error;
+    private boolean closed = false;
+    private long records = 0;
+    private long dropped = 0;
+
+    // Opens (or creates) the file for appending. Does disk I/O: call it off the main thread.
+    public static TraceWriter open(File file, Executor io) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        FileChannel channel = new FileOutputStream(file, true).getChannel();
+        try {
+            return new TraceWriter(channel, io, DEFAULT_BUFFER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    TraceWriter(FileChannel channel, Executor io, int bufferSize) throws IOException {
+        if (bufferSize < MAX_RECORD) throw new IllegalArgumentException("bufferSize too small");
+        this.channel = channel;
+        this.io = io;
+        active = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.BIG_ENDIAN);
+        spare = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.BIG_ENDIAN);
+        if (channel.size() == 0) {
+            active.putInt(MAGIC).putShort(VERSION);
+        }
+    }
+
+    // timeMillis is when the fix arrived and ageMillis how old it already was then; accuracy
+    // and speed are NaN when the fix has none
+    public void fix(long timeMillis, int ageMillis, double lat, double lng, float accuracy, float speed,
+                    boolean gps) {
+        if (!reserve(1 + FIX_SIZE)) return;
+        active.put(FIX).putLong(timeMillis).putInt(ageMillis).putDouble(lat).putDouble(lng)
+                .putFloat(accuracy).putFloat(speed).put((byte) (gps ? 1 : 0));
+    }
+
+    // The fence later decisions refer to; NaN coordinates clear it
+    public void fence(long timeMillis, double lat, double lng, float radiusMeters) {
+        if (!reserve(1 + FENCE_SIZE)) return;
+        active.put(FENCE).putLong(timeMillis).putDouble(lat).putDouble(lng).putFloat(radiusMeters);
+    }
+
+    public void decision(long timeMillis, FixFilter.Verdict verdict, float distanceMeters) {
+        if (!reserve(1 + DECISION_SIZE)) return;
+        active.put(DECISION).putLong(timeMillis).put((byte) verdict.ordinal()).putFloat(distanceMeters);
+    }
+
+    public void transition(long timeMillis, int fenceId, GeofenceEngine.Transition transition,
+                           float distanceMeters) {
+        if (!reserve(1 + TRANSITION_SIZE)) return;
+        active.put(TRANSITION).putLong(timeMillis).putInt(fenceId).put((byte) transition.ordinal())
+                .putFloat(distanceMeters);
+    }
+
+    // Hands buffered records to the io executor, e.g. when the app goes to the background
+    public void flush() {
+        if (!closed && active.position() > 0) swap();
+    }
+
+    // Writes what is left and closes the file on the io executor; later records are ignored
+    public void close() {
+        if (closed) return;
+        closed = true;
+        final ByteBuffer last = active;
+        io.execute(() -> {
+            try {
+                last.flip();
+                while (last.hasRemaining()) channel.write(last);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    if (error == null) error = e;
+                }
+            }
+        });
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    // The first write failure, after which nothing more is recorded
+    public IOException getError() {
+        return error;
+    }
+
+    private boolean reserve(int size) {
+        if (closed || error != null || (active.remaining() < size && !swap())) {
+            dropped++;
+            return false;
+        }
+        records++;
+        return true;
+    }
+
+    private boolean swap() {
+        synchronized (this) {
+            if (spare == null) return false;
+            draining = active;
+            active = spare;
+            spare = null;
+        }
+        draining.flip();
+        io.execute(drain);
+        return true;
+    }
+
+    private void drain() {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = draining;
+        }
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            buffer.clear();
+            synchronized (this) {
+                draining = null;
+                spare = buffer;
+            }
+        }
+    }
+}
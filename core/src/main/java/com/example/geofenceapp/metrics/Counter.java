@@ -0,0 +1,33 @@
+package com.example.geofenceapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Monotonic event count; safe to bump from any thread without allocating
+public final class Counter {
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public void add(long n) {
+        value.addAndGet(n);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    void reset() {
+        value.set(0);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.geofenceapp.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Process-wide registry of counters and latency histograms. Like Log it is static, so any
+// layer can be instrumented without threading a registry through constructors: code looks
+// its metric up once into a static final field and records into that. Names are dotted,
+// area first ("sync.connect", "db.page", "geo.fixToDecision").
+public final class Metrics {
+    private static final Object lock = new Object();
+    private static final Map<String, Counter> counters = new LinkedHashMap<>();
+    private static final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private static long resetAtMillis = System.currentTimeMillis();
+
+    private Metrics() {
+    }
+
+    // The same instance for the same name
+    public static Counter counter(String name) {
+        synchronized (lock) {
+            Counter counter = counters.get(name);
+            if (counter == null) {
+                counter = new Counter(name);
+                counters.put(name, counter);
+            }
+            return counter;
+        }
+    }
+
+    public static Histogram histogram(String name) {
+        synchronized (lock) {
+            Histogram histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new Histogram(name);
+                histograms.put(name, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    public static List<Counter> getCounters() {
+        synchronized (lock) {
+            return new ArrayList<>(counters.values());
+        }
+    }
+
+    // Snapshots of every histogram, in registration order
+    public static List<Histogram.Snapshot> snapshotHistograms() {
+        List<Histogram> all;
+        synchronized (lock) {
+            all = new ArrayList<>(histograms.values());
+        }
+        List<Histogram.Snapshot> snapshots = new ArrayList<>(all.size());
+        for (Histogram histogram : all) {
+            snapshots.add(histogram.snapshot());
+        }
+        return snapshots;
+    }
+
+    // Start of the window the current values cover
+    public static long getResetAtMillis() {
+        synchronized (lock) {
+            return resetAtMillis;
+        }
+    }
+
+    // Zeroes every metric; they stay registered
+    public static void reset() {
+        synchronized (lock) {
+            for (Counter counter : counters.values()) {
+                counter.reset();
+            }
+            for (Histogram histogram : histograms.values()) {
+                histogram.reset();
+            }
+            resetAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    // Table for the debug screen: counters, then one line per histogram that has data
+    public static String format() {
+        StringBuilder out = new StringBuilder();
+        for (Counter counter : getCounters()) {
+            out.append(String.format(Locale.ROOT, "%-24s %d%n", counter.getName(), counter.get()));
+        }
+        out.append(String.format(Locale.ROOT, "%n%-24s %7s %9s %9s %9s %9s%n",
+                "latency (ms)", "count", "p50", "p90", "p99", "max"));
+        for (Histogram.Snapshot snapshot : snapshotHistograms()) {
+            if (snapshot.getCount() == 0) continue;
+            out.append(String.format(Locale.ROOT, "%-24s %7d %9.3f %9.3f %9.3f %9.3f%n", snapshot.getName(),
+                    snapshot.getCount(), millis(snapshot.getPercentileNanos(0.5)),
+                    millis(snapshot.getPercentileNanos(0.9)), millis(snapshot.getPercentileNanos(0.99)),
+                    millis(snapshot.getMaxNanos())));
+        }
+        return out.toString();
+    }
+
+    // One JSON object per call, for the dump file: {"time":..,"since":..,"device":{..},
+    // "counters":{name:value},"histograms":{name:{"count","mean","p50","p90","p99","max"}}}
+    // with latencies in microseconds. device holds whatever properties the caller passes.
+    public static String toJson(long timeMillis, Map<String, String> device) {
+        StringBuilder json = new StringBuilder(1024).append("{\"time\":").append(timeMillis)
+                .append(",\"since\":").append(getResetAtMillis()).append(",\"device\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : device.entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            quote(json, entry.getKey()).append(':');
+            quote(json, entry.getValue());
+        }
+        json.append("},\"counters\":{");
+        first = true;
+        for (Counter counter : getCounters()) {
+            if (!first) json.append(',');
+            first = false;
+            quote(json, counter.getName()).append(':').append(counter.get());
+        }
+        json.append("},\"histograms\":{");
+        first = true;
+        for (Histogram.Snapshot snapshot : snapshotHistograms()) {
+            if (snapshot.getCount() == 0) continue;
+            if (!first) json.append(',');
+            first = false;
+            quote(json, snapshot.getName()).append(":{\"count\":").append(snapshot.getCount())
+                    .append(",\"mean\":").append(snapshot.getMeanNanos() / 1000)
+                    .append(",\"p50\":").append(snapshot.getPercentileNanos(0.5) / 1000)
+                    .append(",\"p90\":").append(snapshot.getPercentileNanos(0.9) / 1000)
+                    .append(",\"p99\":").append(snapshot.getPercentileNanos(0.99) / 1000)
+                    .append(",\"max\":").append(snapshot.getMaxNanos() / 1000).append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static StringBuilder quote(StringBuilder json, String value) {
+        json.append('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.FixFilter;
+
+import java.util.UUID;
+
+// One harvest check-in: the geofence verdict for a TPH at the moment the harvester asked.
+// The id is made on the phone and travels with the upload, so the server can drop a
+// check-in it already has when a batch is sent twice.
+public final class CheckIn {
+    private final String id;
+    private final long timeMillis;
+    private final String kodeBlok;
+    private final String noTPH;
+    private final FixFilter.Verdict verdict;
+    private final double latitude;
+    private final double longitude;
+    private final double accuracy;
+    private final double distance;
+    private final double radius;
+
+    public CheckIn(String id, long timeMillis, String kodeBlok, String noTPH, FixFilter.Verdict verdict,
+                   double latitude, double longitude, double accuracy, double distance, double radius) {
+        if (id == null || verdict == null) throw new IllegalArgumentException("id and verdict are required");
+        this.id = id;
+        this.timeMillis = timeMillis;
+        this.kodeBlok = kodeBlok;
+        this.noTPH = noTPH;
+        this.verdict = verdict;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.distance = distance;
+        this.radius = radius;
+    }
+
+    // A new check-in with a random id; distances and accuracy in meters
+    public static CheckIn create(long timeMillis, String kodeBlok, String noTPH, FixFilter.Verdict verdict,
+                                 double latitude, double longitude, double accuracy, double distance,
+                                 double radius) {
+        return new CheckIn(UUID.randomUUID().toString(), timeMillis, kodeBlok, noTPH, verdict,
+                latitude, longitude, accuracy, distance, radius);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public String getKodeBlok() {
+        return kodeBlok;
+    }
+
+    public String getNoTPH() {
+        return noTPH;
+    }
+
+    public FixFilter.Verdict getVerdict() {
+        return verdict;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+}
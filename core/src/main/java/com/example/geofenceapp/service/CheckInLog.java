@@ -0,0 +1,102 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.metrics.Counter;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Write-behind log of check-ins. record() only queues, so the UI thread never waits on the
+// disk; the writer executor stores whatever has queued up since its last pass in one
+// transaction. While one batch commits the next one gathers, so a burst of check-ins costs
+// a handful of commits rather than one each. A batch the store refuses is kept and tried
+// again on the next record() or flush().
+public class CheckInLog {
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    private static final Counter RECORDED = Metrics.counter("checkin.recorded");
+    private static final Counter WRITE_FAILURES = Metrics.counter("checkin.writeFailures");
+    // Per batch; recorded over commits is the mean batch size
+    private static final Histogram COMMIT_TIME = Metrics.histogram("checkin.commit");
+    private static final Counter COMMITS = Metrics.counter("checkin.commits");
+
+    private final CheckInStore store;
+    private final Executor writer;
+    private final int batchSize;
+    private final Queue<CheckIn> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Writer thread only: the batch that failed to commit, oldest first
+    private List<CheckIn> pending;
+    private volatile RuntimeException lastFailure;
+
+    // writer must run one task at a time, in order
+    public CheckInLog(CheckInStore store, Executor writer, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.store = store;
+        this.writer = writer;
+        this.batchSize = batchSize;
+    }
+
+    // Any thread; returns at once
+    public void record(CheckIn checkIn) {
+        queue.add(checkIn);
+        RECORDED.increment();
+        if (scheduled.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                // Cleared first, so a record() from here on schedules another pass
+                scheduled.set(false);
+                writeQueued();
+            });
+        }
+    }
+
+    // Blocks until everything recorded before the call is stored. Throws when the store is
+    // failing; the check-ins stay queued.
+    public void flush() throws IOException {
+        FutureTask<Boolean> task = new FutureTask<>(this::writeQueued);
+        writer.execute(task);
+        try {
+            if (!task.get()) throw new IOException("Could not store check-ins", lastFailure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for check-ins to be stored");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not store check-ins", e.getCause());
+        }
+    }
+
+    // Writer thread: commits until the queue is empty, or returns false at the first failure
+    private boolean writeQueued() {
+        while (true) {
+            if (pending == null) {
+                List<CheckIn> batch = new ArrayList<>(Math.min(batchSize, 16));
+                CheckIn checkIn;
+                while (batch.size() < batchSize && (checkIn = queue.poll()) != null) {
+                    batch.add(checkIn);
+                }
+                if (batch.isEmpty()) return true;
+                pending = batch;
+            }
+            try {
+                long start = System.nanoTime();
+                store.insertCheckIns(pending);
+                COMMIT_TIME.recordSince(start);
+                COMMITS.increment();
+                pending = null;
+            } catch (RuntimeException e) {
+                WRITE_FAILURES.increment();
+                lastFailure = e;
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.geofenceapp.service;
+
+import java.util.List;
+
+// Where CheckInLog keeps check-ins and CheckInUploader finds the ones still to send
+public interface CheckInStore {
+    // In one transaction; a check-in whose id is already stored is skipped
+    void insertCheckIns(List<CheckIn> checkIns);
+
+    // Oldest first
+    List<CheckIn> getUnsentCheckIns(int limit);
+
+    void markCheckInsSent(List<CheckIn> checkIns);
+}
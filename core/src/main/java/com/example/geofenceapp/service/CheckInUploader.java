@@ -0,0 +1,241 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.metrics.Counter;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+// Sends unsent check-ins to the server in gzipped JSON batches, oldest first, and marks each
+// batch sent once the server has taken it. Every check-in carries its own id and every batch
+// an Idempotency-Key derived from those ids, so a batch whose answer was lost is sent again
+// unchanged and the server can recognise it.
+public class CheckInUploader {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final Histogram UPLOAD_TIME = Metrics.histogram("checkin.upload");
+    private static final Counter UPLOADED = Metrics.counter("checkin.uploaded");
+    private static final Counter UPLOAD_BYTES = Metrics.counter("checkin.uploadBytes");
+    private static final Counter RETRIES = Metrics.counter("checkin.uploadRetries");
+
+    public static class Result {
+        private final int sent;
+        private final int batches;
+        private final long bytesSent;
+
+        Result(int sent, int batches, long bytesSent) {
+            this.sent = sent;
+            this.batches = batches;
+            this.bytesSent = bytesSent;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+
+        public int getBatches() {
+            return batches;
+        }
+
+        // Request bodies as sent, after compression, without retries
+        public long getBytesSent() {
+            return bytesSent;
+        }
+    }
+
+    private final String url;
+    private int connectTimeout = 15000;
+    private int readTimeout = 30000;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxAttempts = 5;
+    private long initialBackoffMillis = 1000;
+    private long maxBackoffMillis = 30000;
+    private final Random jitter = new Random();
+    private TphSyncClient.Sleeper sleeper = Thread::sleep;
+
+    public CheckInUploader(String url) {
+        this.url = url;
+    }
+
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    // Attempts per batch
+    public void setRetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be positive");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    void setSleeper(TphSyncClient.Sleeper sleeper) {
+        this.sleeper = sleeper;
+    }
+
+    // Uploads until nothing unsent is left. Batches sent before a failure stay marked sent.
+    public Result upload(CheckInStore store) throws IOException {
+        int sent = 0;
+        int batches = 0;
+        long bytes = 0;
+        List<CheckIn> batch;
+        while (!(batch = store.getUnsentCheckIns(batchSize)).isEmpty()) {
+            byte[] body = gzip(toJson(batch));
+            String key = idempotencyKey(batch);
+            long start = System.nanoTime();
+            post(body, key);
+            UPLOAD_TIME.recordSince(start);
+            store.markCheckInsSent(batch);
+            UPLOADED.add(batch.size());
+            UPLOAD_BYTES.add(body.length);
+            sent += batch.size();
+            batches++;
+            bytes += body.length;
+        }
+        return new Result(sent, batches, bytes);
+    }
+
+    private void post(byte[] body, String key) throws IOException {
+        int attempt = 0;
+        while (true) {
+            try {
+                send(body, key);
+                return;
+            } catch (IOException e) {
+                if (e instanceof TphSyncClient.HttpStatusException
+                        && !((TphSyncClient.HttpStatusException) e).isTransient()) throw e;
+                if (++attempt >= maxAttempts) throw e;
+                RETRIES.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void send(byte[] body, String key) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setRequestMethod("POST");
+            conn.setConnectTimeout(connectTimeout);
+            conn.setReadTimeout(readTimeout);
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(body.length);
+            conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            conn.setRequestProperty("Content-Encoding", "gzip");
+            conn.setRequestProperty("Idempotency-Key", key);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+            int status = conn.getResponseCode();
+            if (status < 200 || status >= 300) throw new TphSyncClient.HttpStatusException(status);
+            // Drained so the connection can be reused
+            try (InputStream in = conn.getInputStream()) {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) >= 0) {
+                    // nothing to keep
+                }
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    // Exponential with jitter, as for the TPH download
+    private void backoff(int attempt) throws IOException {
+        long delay = initialBackoffMillis << Math.min(attempt - 1, 20);
+        delay = Math.min(delay, maxBackoffMillis);
+        delay = delay / 2 + (long) (jitter.nextDouble() * (delay / 2));
+        try {
+            sleeper.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted", e);
+        }
+    }
+
+    // The same check-ins always give the same key
+    static String idempotencyKey(List<CheckIn> batch) {
+        StringBuilder ids = new StringBuilder(batch.size() * 37);
+        for (CheckIn checkIn : batch) {
+            ids.append(checkIn.getId()).append('\n');
+        }
+        return UUID.nameUUIDFromBytes(ids.toString().getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    // {"checkIns":[{"id","time","kodeBlok","noTPH","verdict","lat","lng","accuracy",
+    // "distance","radius"}]}; unknown numbers are null, time is epoch millis
+    static String toJson(List<CheckIn> batch) {
+        StringBuilder json = new StringBuilder(batch.size() * 200).append("{\"checkIns\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            CheckIn checkIn = batch.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"id\":");
+            quote(json, checkIn.getId());
+            json.append(",\"time\":").append(checkIn.getTimeMillis()).append(",\"kodeBlok\":");
+            quote(json, checkIn.getKodeBlok());
+            json.append(",\"noTPH\":");
+            quote(json, checkIn.getNoTPH());
+            json.append(",\"verdict\":\"").append(checkIn.getVerdict().name()).append('"');
+            number(json.append(",\"lat\":"), checkIn.getLatitude());
+            number(json.append(",\"lng\":"), checkIn.getLongitude());
+            number(json.append(",\"accuracy\":"), checkIn.getAccuracy());
+            number(json.append(",\"distance\":"), checkIn.getDistance());
+            number(json.append(",\"radius\":"), checkIn.getRadius());
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void number(StringBuilder json, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.append("null");
+        } else {
+            json.append(value);
+        }
+    }
+
+    private static void quote(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static byte[] gzip(String json) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length() / 4);
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            out.write(json);
+        }
+        return bytes.toByteArray();
+    }
+}
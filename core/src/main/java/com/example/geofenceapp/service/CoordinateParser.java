@@ -0,0 +1,33 @@
+package com.example.geofenceapp.service;
+
+// Parses the "latitude,longitude," text the TPH API uses for coordinates.
+// Invalid or missing parts come back as NaN rather than throwing.
+public final class CoordinateParser {
+    private CoordinateParser() {
+    }
+
+    public static double parseLatitude(String coordinate) {
+        if (coordinate == null) return Double.NaN;
+        int comma = coordinate.indexOf(',');
+        return parse(coordinate, 0, comma < 0 ? coordinate.length() : comma);
+    }
+
+    public static double parseLongitude(String coordinate) {
+        if (coordinate == null) return Double.NaN;
+        int first = coordinate.indexOf(',');
+        if (first < 0) return Double.NaN;
+        int second = coordinate.indexOf(',', first + 1);
+        return parse(coordinate, first + 1, second < 0 ? coordinate.length() : second);
+    }
+
+    private static double parse(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        if (start == end) return Double.NaN;
+        try {
+            return Double.parseDouble(text.substring(start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
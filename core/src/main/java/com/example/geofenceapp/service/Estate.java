@@ -0,0 +1,41 @@
+package com.example.geofenceapp.service;
+
+// One company/location the TPH list is downloaded for
+public final class Estate {
+    private final String company;
+    private final String location;
+
+    public Estate(String company, String location) {
+        if (company == null || location == null) {
+            throw new IllegalArgumentException("company and location are required");
+        }
+        this.company = company;
+        this.location = location;
+    }
+
+    public String getCompany() {
+        return company;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Estate)) return false;
+        Estate other = (Estate) o;
+        return company.equals(other.company) && location.equals(other.location);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * company.hashCode() + location.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return company + "/" + location;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.geofenceapp.service;
+
+// Progress or outcome of one estate within a multi-estate sync
+public class EstateSyncStatus {
+    private final Estate estate;
+    private final SyncStatus.State state;
+    private final int records;
+    private final TphSyncClient.Result result;
+    private final String error;
+
+    EstateSyncStatus(Estate estate, SyncStatus.State state, int records, TphSyncClient.Result result,
+                     String error) {
+        this.estate = estate;
+        this.state = state;
+        this.records = records;
+        this.result = result;
+        this.error = error;
+    }
+
+    public Estate getEstate() {
+        return estate;
+    }
+
+    // IDLE while queued behind the parallelism limit
+    public SyncStatus.State getState() {
+        return state;
+    }
+
+    // Records written so far while running, or in total once finished
+    public int getRecords() {
+        return records;
+    }
+
+    // Set when the state is SUCCEEDED
+    public TphSyncClient.Result getResult() {
+        return result;
+    }
+
+    // Set when the state is FAILED
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return estate + " " + state + ", records=" + records + (error != null ? ", error=" + error : "");
+    }
+}
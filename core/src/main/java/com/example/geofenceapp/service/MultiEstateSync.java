@@ -0,0 +1,445 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.metrics.Counter;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Syncs several estates at once. Up to `parallelism` downloads run on the download executor,
+// each parsing its own response, while the thread that calls run() becomes the only one that
+// touches the database: every call a download makes on its TphSyncTarget is queued to it.
+// Records travel in batches through a bounded queue, so a slow disk holds the downloads back
+// instead of letting parsed rows pile up in memory. All estates share one connection, so no
+// task leaves a transaction open for the next one to nest into: each batch is flushed once
+// written, and a sink that fails is rolled back at once. A failing estate is reported on its
+// own and the others carry on.
+public class MultiEstateSync {
+    public static final int DEFAULT_PARALLELISM = 3;
+    // Batches in flight between the downloads and the writer
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    // How often a blocked producer or waiter checks whether the writer has gone
+    private static final long POLL_MILLIS = 100;
+
+    // Writer side, per batch of records and per commit
+    private static final Histogram INSERT_TIME = Metrics.histogram("sync.insert");
+    private static final Histogram COMMIT_TIME = Metrics.histogram("sync.commit");
+    // Times a download found the queue full, i.e. parsing outran the database
+    private static final Counter WRITER_STALLS = Metrics.counter("sync.writerStalls");
+
+    public interface Job {
+        // Runs on a download thread; every call made on target runs on the writer thread
+        TphSyncClient.Result download(Estate estate, TphSyncTarget target,
+                                      TphSyncClient.ProgressListener progress) throws Exception;
+
+        // Runs on the writer thread once estate has downloaded, e.g. to store its watermark.
+        // Throwing marks the estate failed.
+        void onDownloaded(Estate estate, TphSyncClient.Result result);
+    }
+
+    public interface Listener {
+        // Called on the writer thread, once per change of any estate
+        void onEstate(EstateSyncStatus status);
+    }
+
+    // Thrown to the downloads once the writer has stopped
+    private static class StoppedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StoppedException() {
+            super("Sync stopped");
+        }
+    }
+
+    private final Job job;
+    private final TphSyncTarget target;
+    private final Executor downloads;
+    private final int parallelism;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile Run current;
+
+    public MultiEstateSync(Job job, TphSyncTarget target, Executor downloads, int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+        this.job = job;
+        this.target = target;
+        this.downloads = downloads;
+        this.parallelism = parallelism;
+    }
+
+    public void setQueue(int capacity, int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        this.queueCapacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    // Blocks until every estate has finished, writing to the target on the calling thread.
+    // Returns the final status of each estate in the order given, duplicates dropped;
+    // listener may be null.
+    public List<EstateSyncStatus> run(List<Estate> estates, Listener listener) throws InterruptedException {
+        Run run = new Run(new ArrayList<>(new LinkedHashSet<>(estates)), listener);
+        current = run;
+        try {
+            return run.execute();
+        } finally {
+            current = null;
+        }
+    }
+
+    // Stops the run in progress, if any, from any thread. The writer aborts every open sink,
+    // so checkpointed pages stay for the next run to resume, and run() returns with the
+    // estates that had not finished marked failed. Downloads stop at their next write.
+    public void cancel() {
+        Run run = current;
+        if (run != null) run.cancel();
+    }
+
+    // Sums the estates into one result, or throws naming every estate that failed
+    public static TphSyncClient.Result combine(List<EstateSyncStatus> statuses) throws IOException {
+        TphSyncClient.Mode mode = TphSyncClient.Mode.NOT_MODIFIED;
+        int records = 0;
+        boolean resumed = false;
+        long bytes = 0;
+        StringBuilder failures = null;
+        int failed = 0;
+        for (EstateSyncStatus status : statuses) {
+            TphSyncClient.Result result = status.getResult();
+            if (result == null) {
+                failed++;
+                failures = (failures == null ? new StringBuilder() : failures.append("; "))
+                        .append(status.getEstate()).append(": ").append(status.getError());
+                continue;
+            }
+            // FULL outranks DELTA outranks NOT_MODIFIED
+            if (result.getMode().ordinal() < mode.ordinal()) mode = result.getMode();
+            records += result.getRecordCount();
+            resumed |= result.isResumed();
+            bytes += result.getBytesReceived();
+        }
+        if (failures != null) {
+            throw new IOException(failed + " of " + statuses.size() + " estates failed: " + failures);
+        }
+        // Watermarks are per estate and stored by the job
+        return new TphSyncClient.Result(mode, records, null, resumed, bytes);
+    }
+
+    private class Run implements TphSyncTarget {
+        private final List<Estate> estates;
+        private final Listener listener;
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicInteger next = new AtomicInteger();
+        private volatile boolean stopped;
+        private volatile boolean cancelled;
+        // Writer thread only
+        private final Map<Estate, EstateSyncStatus> statuses = new LinkedHashMap<>();
+        // Sinks opened and not yet committed or aborted, for cancel
+        private final Set<TphRecordSink> open = new LinkedHashSet<>();
+        private int finished;
+
+        Run(List<Estate> estates, Listener listener) {
+            this.estates = estates;
+            this.listener = listener;
+        }
+
+        List<EstateSyncStatus> execute() throws InterruptedException {
+            for (Estate estate : estates) {
+                statuses.put(estate, new EstateSyncStatus(estate, SyncStatus.State.IDLE, 0, null, null));
+            }
+            try {
+                int workers = Math.min(parallelism, estates.size());
+                for (int i = 0; i < workers; i++) {
+                    downloads.execute(this::downloadAll);
+                }
+                while (finished < estates.size() && !cancelled) {
+                    queue.take().run();
+                }
+                if (cancelled) abortOpen();
+            } finally {
+                stopped = true;
+                queue.clear();
+            }
+            return new ArrayList<>(statuses.values());
+        }
+
+        void cancel() {
+            cancelled = true;
+            // Wakes the writer if it is waiting; a full queue means it is busy and will see the flag
+            queue.offer(() -> {
+            });
+        }
+
+        // Writer thread, once cancelled
+        private void abortOpen() {
+            for (TphRecordSink sink : open) {
+                try {
+                    sink.abort();
+                } catch (RuntimeException ignored) {
+                    // Nothing more to roll back; the estate is reported cancelled either way
+                }
+            }
+            open.clear();
+            for (Estate estate : estates) {
+                SyncStatus.State state = statuses.get(estate).getState();
+                if (state != SyncStatus.State.SUCCEEDED && state != SyncStatus.State.FAILED) {
+                    update(estate, SyncStatus.State.FAILED, statuses.get(estate).getRecords(), "Sync cancelled");
+                }
+            }
+        }
+
+        // Writer thread
+        private TphRecordSink opened(TphRecordSink sink) {
+            if (sink != null) open.add(sink);
+            return sink;
+        }
+
+        // Download thread: takes estates off the list until none are left
+        private void downloadAll() {
+            try {
+                int i;
+                while (!stopped && (i = next.getAndIncrement()) < estates.size()) {
+                    download(estates.get(i));
+                }
+            } catch (StoppedException ignored) {
+                // run() has returned or thrown; nobody is waiting for the rest
+            }
+        }
+
+        private void download(Estate estate) {
+            enqueue(() -> update(estate, SyncStatus.State.RUNNING, 0, null));
+            TphSyncClient.Result result = null;
+            Throwable error = null;
+            try {
+                result = job.download(estate, this,
+                        records -> enqueue(() -> update(estate, SyncStatus.State.RUNNING, records, null)));
+            } catch (StoppedException e) {
+                throw e;
+            } catch (Throwable e) {
+                // Whatever went wrong, run() must still hear that this estate is done
+                error = e;
+            }
+            TphSyncClient.Result done = result;
+            Throwable failure = error;
+            enqueue(() -> finish(estate, done, failure));
+        }
+
+        // Writer thread
+        private void finish(Estate estate, TphSyncClient.Result result, Throwable error) {
+            finished++;
+            if (result != null) {
+                try {
+                    job.onDownloaded(estate, result);
+                    update(estate, SyncStatus.State.SUCCEEDED, result.getRecordCount(), result, null);
+                    return;
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+            update(estate, SyncStatus.State.FAILED, statuses.get(estate).getRecords(), null,
+                    SyncRunner.message(error));
+        }
+
+        private void update(Estate estate, SyncStatus.State state, int records, String error) {
+            update(estate, state, records, null, error);
+        }
+
+        private void update(Estate estate, SyncStatus.State state, int records, TphSyncClient.Result result,
+                            String error) {
+            EstateSyncStatus status = new EstateSyncStatus(estate, state, records, result, error);
+            statuses.put(estate, status);
+            if (listener != null) listener.onEstate(status);
+        }
+
+        // Blocks while the queue is full, which is what holds a fast download back
+        void enqueue(Runnable task) {
+            if (stopped) throw new StoppedException();
+            if (queue.offer(task)) return;
+            WRITER_STALLS.increment();
+            try {
+                while (!queue.offer(task, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (stopped) throw new StoppedException();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StoppedException();
+            }
+        }
+
+        // Runs task on the writer thread and waits for its result
+        <T> T call(Callable<T> task) {
+            FutureTask<T> future = new FutureTask<>(task);
+            enqueue(future);
+            try {
+                while (true) {
+                    try {
+                        return future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        if (stopped && !future.isDone()) throw new StoppedException();
+                    }
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StoppedException();
+            }
+        }
+
+        @Override
+        public TphRecordSink openFull(String company, String location) {
+            return new QueuedSink(this, call(() -> opened(target.openFull(company, location))));
+        }
+
+        @Override
+        public TphRecordSink openDelta() {
+            return new QueuedSink(this, call(() -> opened(target.openDelta())));
+        }
+
+        @Override
+        public SyncCursor getSyncCursor(String company, String location) {
+            return call(() -> target.getSyncCursor(company, location));
+        }
+
+        @Override
+        public TphRecordSink resume(SyncCursor cursor) {
+            TphRecordSink sink = call(() -> opened(target.resume(cursor)));
+            return sink != null ? new QueuedSink(this, sink) : null;
+        }
+
+        @Override
+        public void clearSyncCursor(String company, String location) {
+            call(() -> {
+                target.clearSyncCursor(company, location);
+                return null;
+            });
+        }
+    }
+
+    // Download-side view of a sink that lives on the writer thread. Writes and checkpoints are
+    // queued without waiting; a failure on the writer is thrown from the next call instead.
+    // commit and abort wait, so the download only reports success once the rows are in.
+    private class QueuedSink implements TphRecordSink {
+        private final Run run;
+        private final TphRecordSink sink;
+        private TphRecord[] batch = new TphRecord[batchSize];
+        private int size;
+        private volatile RuntimeException failure;
+
+        QueuedSink(Run run, TphRecordSink sink) {
+            this.run = run;
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(TphRecord record) {
+            check();
+            batch[size++] = record;
+            if (size == batch.length) flush();
+        }
+
+        @Override
+        public void checkpoint(SyncCursor cursor) {
+            check();
+            flush();
+            run.enqueue(() -> {
+                if (failure != null) return;
+                try {
+                    sink.checkpoint(cursor);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        @Override
+        public void commit() {
+            check();
+            flush();
+            run.call(() -> {
+                if (failure != null) throw failure;
+                long start = System.nanoTime();
+                try {
+                    sink.commit();
+                } catch (RuntimeException e) {
+                    fail(e);
+                    throw e;
+                }
+                run.open.remove(sink);
+                COMMIT_TIME.recordSince(start);
+                return null;
+            });
+        }
+
+        // Unsent records are dropped with the rest of the page
+        @Override
+        public void abort() {
+            size = 0;
+            run.call(() -> {
+                // A failed sink was already rolled back
+                if (failure == null) sink.abort();
+                run.open.remove(sink);
+                return null;
+            });
+        }
+
+        private void check() {
+            RuntimeException e = failure;
+            if (e != null) throw e;
+        }
+
+        @Override
+        public void flush() {
+            if (size == 0) return;
+            TphRecord[] records = batch;
+            int n = size;
+            batch = new TphRecord[batchSize];
+            size = 0;
+            run.enqueue(() -> {
+                if (failure != null) return;
+                try {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < n; i++) {
+                        sink.write(records[i]);
+                    }
+                    sink.flush();
+                    INSERT_TIME.recordSince(start);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        // Writer thread. Rolls the sink back now rather than when its download next calls in,
+        // so the transaction it may have left open does not take other estates' writes with it.
+        private void fail(RuntimeException e) {
+            failure = e;
+            run.open.remove(sink);
+            try {
+                sink.abort();
+            } catch (RuntimeException ignored) {
+                // The first failure is the one reported
+            }
+        }
+    }
+}
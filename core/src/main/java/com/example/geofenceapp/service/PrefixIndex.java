@@ -0,0 +1,96 @@
+package com.example.geofenceapp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Case-insensitive prefix lookup over a fixed set of values for the type-ahead pickers.
+// The values are sorted once when the index is built; everything starting with a prefix
+// is then one contiguous run [start, end), found with two binary searches and no
+// allocation, so a keystroke costs O(log n) however many TPH the estate has.
+public final class PrefixIndex {
+    public static final PrefixIndex EMPTY = new PrefixIndex(Collections.<String>emptyList());
+
+    private final String[] values;
+
+    // Nulls are dropped; the input is not modified
+    public PrefixIndex(Collection<String> values) {
+        List<String> sorted = new ArrayList<>(values.size());
+        for (String value : values) {
+            if (value != null) sorted.add(value);
+        }
+        // Ties broken case-sensitively so the order does not depend on the input order
+        Collections.sort(sorted, (a, b) -> {
+            int c = String.CASE_INSENSITIVE_ORDER.compare(a, b);
+            return c != 0 ? c : a.compareTo(b);
+        });
+        this.values = sorted.toArray(new String[0]);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    // Values in case-insensitive order
+    public String get(int i) {
+        return values[i];
+    }
+
+    // First position whose value starts with prefix, or where it would be
+    public int start(CharSequence prefix) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(values[mid], prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // One past the last position whose value starts with prefix
+    public int end(CharSequence prefix) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(values[mid], prefix) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Position of the value equal to text ignoring case, or -1
+    public int find(CharSequence text) {
+        int end = end(text);
+        for (int i = start(text); i < end; i++) {
+            if (values[i].length() == text.length()) return i;
+        }
+        return -1;
+    }
+
+    // Compares the first prefix.length() chars of value with prefix ignoring case, in the
+    // order of String.CASE_INSENSITIVE_ORDER; a shorter value sorts first
+    private static int comparePrefix(String value, CharSequence prefix) {
+        int n = Math.min(value.length(), prefix.length());
+        for (int i = 0; i < n; i++) {
+            char a = value.charAt(i);
+            char b = prefix.charAt(i);
+            if (a == b) continue;
+            a = Character.toUpperCase(a);
+            b = Character.toUpperCase(b);
+            if (a == b) continue;
+            a = Character.toLowerCase(a);
+            b = Character.toLowerCase(b);
+            if (a != b) return a - b;
+        }
+        return value.length() < prefix.length() ? -1 : 0;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.geofenceapp.service;
+
+// Where a paged sync of one company/location stands. Saved together with each committed
+// page so an interrupted download continues from the next page instead of the first.
+public class SyncCursor {
+    private final String company;
+    private final String location;
+    private final boolean delta;
+    private final String since;
+    private final SyncWatermark watermark;
+    private final String nextPage;
+    private final int records;
+
+    public SyncCursor(String company, String location, boolean delta, String since,
+                      SyncWatermark watermark, String nextPage, int records) {
+        this.company = company;
+        this.location = location;
+        this.delta = delta;
+        this.since = since;
+        this.watermark = watermark;
+        this.nextPage = nextPage;
+        this.records = records;
+    }
+
+    public String getCompany() {
+        return company;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    // Whether the pages are a delta applied to the live rows rather than a staged snapshot
+    public boolean isDelta() {
+        return delta;
+    }
+
+    // UpdatedSince value of the original request, repeated on every page
+    public String getSince() {
+        return since;
+    }
+
+    // Validators of the snapshot being downloaded; stored once the last page is in
+    public SyncWatermark getWatermark() {
+        return watermark;
+    }
+
+    // Server page token to request next
+    public String getNextPage() {
+        return nextPage;
+    }
+
+    // Records committed so far
+    public int getRecords() {
+        return records;
+    }
+
+    public SyncCursor advance(String nextPage, int records) {
+        return new SyncCursor(company, location, delta, since, watermark, nextPage, records);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.geofenceapp.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Runs the sync job with a single-flight guarantee and publishes its progress. A request
+// that arrives while a sync is running joins that run instead of starting a second one,
+// whichever trigger either came from. Listeners receive every status change on the
+// callback executor, typically the main thread.
+public class SyncRunner {
+
+    public interface Job {
+        TphSyncClient.Result run(Progress progress) throws Exception;
+    }
+
+    // Overall record count, or the status of one estate of a multi-estate run
+    public interface Progress extends TphSyncClient.ProgressListener, MultiEstateSync.Listener {
+    }
+
+    public interface Listener {
+        void onStatus(SyncStatus status);
+    }
+
+    private final Job job;
+    private final Executor worker;
+    private final Executor callbacks;
+
+    private final Object lock = new Object();
+    private SyncStatus status = SyncStatus.IDLE;
+    private Listener[] listeners = new Listener[0];
+    // Completion callbacks of the requests that joined the current run
+    private Listener[] waiters = new Listener[0];
+    // Per-estate statuses of the current run, in the order first reported
+    private final Map<Estate, EstateSyncStatus> estates = new LinkedHashMap<>();
+
+    public SyncRunner(Job job, Executor worker, Executor callbacks) {
+        this.job = job;
+        this.worker = worker;
+        this.callbacks = callbacks;
+    }
+
+    // Starts a sync unless one is running. onDone (may be null) receives the final status of
+    // the run this request ended up in. Returns false if it joined a run already in flight.
+    public boolean request(SyncStatus.Trigger trigger, Listener onDone) {
+        synchronized (lock) {
+            if (onDone != null) waiters = append(waiters, onDone);
+            if (status.isRunning()) return false;
+            estates.clear();
+            publish(new SyncStatus(SyncStatus.State.RUNNING, trigger, 0, null, null, now(), estateList()));
+        }
+        worker.execute(() -> run(trigger));
+        return true;
+    }
+
+    public SyncStatus getStatus() {
+        synchronized (lock) {
+            return status;
+        }
+    }
+
+    // The listener is immediately sent the current status
+    public void addListener(Listener listener) {
+        SyncStatus current;
+        synchronized (lock) {
+            listeners = append(listeners, listener);
+            current = status;
+        }
+        callbacks.execute(() -> listener.onStatus(current));
+    }
+
+    public void removeListener(Listener listener) {
+        synchronized (lock) {
+            Listener[] old = listeners;
+            for (int i = 0; i < old.length; i++) {
+                if (old[i] == listener) {
+                    Listener[] next = new Listener[old.length - 1];
+                    System.arraycopy(old, 0, next, 0, i);
+                    System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+                    listeners = next;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void run(SyncStatus.Trigger trigger) {
+        TphSyncClient.Result result = null;
+        String error = null;
+        try {
+            // TphSyncClient already reports only every thousand records
+            result = job.run(new Progress() {
+                @Override
+                public void onProgress(int records) {
+                    synchronized (lock) {
+                        publish(new SyncStatus(SyncStatus.State.RUNNING, trigger, records, null, null, now(),
+                                estateList()));
+                    }
+                }
+
+                // The run's record count is the sum over its estates
+                @Override
+                public void onEstate(EstateSyncStatus estate) {
+                    synchronized (lock) {
+                        estates.put(estate.getEstate(), estate);
+                        int records = 0;
+                        for (EstateSyncStatus each : estates.values()) {
+                            records += each.getRecords();
+                        }
+                        publish(new SyncStatus(SyncStatus.State.RUNNING, trigger, records, null, null, now(),
+                                estateList()));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            error = message(e);
+        }
+
+        SyncStatus done;
+        Listener[] finished;
+        synchronized (lock) {
+            done = result != null
+                    ? new SyncStatus(SyncStatus.State.SUCCEEDED, trigger, result.getRecordCount(), result, null,
+                    now(), estateList())
+                    : new SyncStatus(SyncStatus.State.FAILED, trigger, 0, null, error, now(), estateList());
+            publish(done);
+            finished = waiters;
+            waiters = new Listener[0];
+        }
+        for (Listener waiter : finished) {
+            callbacks.execute(() -> waiter.onStatus(done));
+        }
+    }
+
+    // Called with the lock held
+    private List<EstateSyncStatus> estateList() {
+        return estates.isEmpty() ? Collections.<EstateSyncStatus>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(estates.values()));
+    }
+
+    // Called with the lock held so listeners see changes in order
+    private void publish(SyncStatus next) {
+        status = next;
+        for (Listener listener : listeners) {
+            callbacks.execute(() -> listener.onStatus(next));
+        }
+    }
+
+    static String message(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static Listener[] append(Listener[] array, Listener listener) {
+        Listener[] next = new Listener[array.length + 1];
+        System.arraycopy(array, 0, next, 0, array.length);
+        next[array.length] = listener;
+        return next;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+}
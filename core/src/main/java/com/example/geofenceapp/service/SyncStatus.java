@@ -0,0 +1,83 @@
+package com.example.geofenceapp.service;
+
+import java.util.Collections;
+import java.util.List;
+
+// Snapshot of the background sync as published by SyncRunner
+public class SyncStatus {
+    public enum State {
+        IDLE, RUNNING, SUCCEEDED, FAILED
+    }
+
+    public enum Trigger {
+        // Sync button; runs at once, whatever the network or battery
+        MANUAL,
+        // Scheduled run once the device is idle, charging and on an unmetered network
+        PERIODIC
+    }
+
+    public static final SyncStatus IDLE = new SyncStatus(State.IDLE, null, 0, null, null, 0,
+            Collections.<EstateSyncStatus>emptyList());
+
+    private final State state;
+    private final Trigger trigger;
+    private final int records;
+    private final TphSyncClient.Result result;
+    private final String error;
+    private final long timeMillis;
+    private final List<EstateSyncStatus> estates;
+
+    SyncStatus(State state, Trigger trigger, int records, TphSyncClient.Result result, String error,
+               long timeMillis, List<EstateSyncStatus> estates) {
+        this.state = state;
+        this.trigger = trigger;
+        this.records = records;
+        this.result = result;
+        this.error = error;
+        this.timeMillis = timeMillis;
+        this.estates = estates;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+
+    // Records written so far while running, or in total once finished
+    public int getRecords() {
+        return records;
+    }
+
+    // Set when the state is SUCCEEDED
+    public TphSyncClient.Result getResult() {
+        return result;
+    }
+
+    // Set when the state is FAILED
+    public String getError() {
+        return error;
+    }
+
+    // When the state was entered
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    // Latest status of each estate of the run, in sync order; empty until the job reports one
+    public List<EstateSyncStatus> getEstates() {
+        return estates;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncStatus{" + state + ", trigger=" + trigger + ", records=" + records +
+                (error != null ? ", error=" + error : "") + "}";
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.geofenceapp.service;
+
+// Per company/location validators remembered from the last successful sync
+public class SyncWatermark {
+    private final String etag;
+    private final String lastModified;
+    private final String token;
+
+    public SyncWatermark(String etag, String lastModified, String token) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.token = token;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    // Server change token, sent back as UpdatedSince to ask for a delta
+    public String getToken() {
+        return token;
+    }
+
+    public boolean isEmpty() {
+        return etag == null && lastModified == null && token == null;
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.PolygonFence;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Read-through cache of the block list and per-block TPH arrays. The data only changes on
+// sync, so after the first lookup a picker change costs a map hit instead of a query.
+// Blocks are kept in least-recently-used order and evicted once the cached TPH count
+// exceeds maxPoints. invalidate() bumps a generation counter; a load that started under an
+// older generation is returned to its caller but never stored, so a sync cannot be
+// overwritten by a read that raced with it. Safe to use from several threads.
+public class TphCatalog {
+    public static final int DEFAULT_MAX_POINTS = 50000;
+
+    public interface Loader {
+        // Distinct kode blok values in display order
+        List<String> loadKodeBlok();
+
+        // All TPH of one block, ordered by noTPH
+        Block loadBlock(String kodeBlok);
+    }
+
+    // TPH of one block as parallel arrays; lat/lng are NaN where the coordinate was unusable
+    // and radius is NaN where the TPH uses the default. boundary is the block polygon, if any.
+    public static final class Block {
+        private final String kodeBlok;
+        private final String[] noTPH;
+        private final double[] lat;
+        private final double[] lng;
+        private final double[] radius;
+        private final PolygonFence boundary;
+        private final boolean sorted;
+        private final List<String> noTPHList;
+        // Built on first use by the TPH picker
+        private volatile PrefixIndex noTPHIndex;
+
+        public Block(String kodeBlok, String[] noTPH, double[] lat, double[] lng) {
+            this(kodeBlok, noTPH, lat, lng, null, null);
+        }
+
+        // radius may be null when no TPH of the block has its own
+        public Block(String kodeBlok, String[] noTPH, double[] lat, double[] lng, double[] radius,
+                     PolygonFence boundary) {
+            if (noTPH.length != lat.length || noTPH.length != lng.length
+                    || (radius != null && radius.length != noTPH.length)) {
+                throw new IllegalArgumentException("noTPH, lat, lng and radius differ in length");
+            }
+            this.kodeBlok = kodeBlok;
+            this.noTPH = noTPH;
+            this.lat = lat;
+            this.lng = lng;
+            this.radius = radius;
+            this.boundary = boundary;
+            this.sorted = isSorted(noTPH);
+            this.noTPHList = Collections.unmodifiableList(Arrays.asList(noTPH));
+        }
+
+        public String getKodeBlok() {
+            return kodeBlok;
+        }
+
+        public int size() {
+            return noTPH.length;
+        }
+
+        public String getNoTPH(int i) {
+            return noTPH[i];
+        }
+
+        public double getLatitude(int i) {
+            return lat[i];
+        }
+
+        public double getLongitude(int i) {
+            return lng[i];
+        }
+
+        // NaN when the TPH uses the default radius
+        public double getRadius(int i) {
+            return radius == null ? Double.NaN : radius[i];
+        }
+
+        // Null when the server sent no polygon for this block
+        public PolygonFence getBoundary() {
+            return boundary;
+        }
+
+        public boolean hasLocation(int i) {
+            return !Double.isNaN(lat[i]) && !Double.isNaN(lng[i]);
+        }
+
+        // Read-only view for adapters
+        public List<String> getNoTPHList() {
+            return noTPHList;
+        }
+
+        public PrefixIndex getNoTPHIndex() {
+            PrefixIndex index = noTPHIndex;
+            if (index == null) {
+                // Two threads may both build it; either result is the same
+                index = new PrefixIndex(noTPHList);
+                noTPHIndex = index;
+            }
+            return index;
+        }
+
+        // Position of the TPH in this block, or -1
+        public int indexOf(String value) {
+            if (value == null) return -1;
+            if (sorted) {
+                int i = Arrays.binarySearch(noTPH, value);
+                return i >= 0 ? i : -1;
+            }
+            for (int i = 0; i < noTPH.length; i++) {
+                if (value.equals(noTPH[i])) return i;
+            }
+            return -1;
+        }
+
+        private static boolean isSorted(String[] values) {
+            for (int i = 1; i < values.length; i++) {
+                if (values[i - 1] == null || values[i - 1].compareTo(values[i]) >= 0) return false;
+            }
+            return values.length == 0 || values[0] != null;
+        }
+    }
+
+    private final Loader loader;
+    private final int maxPoints;
+
+    private final LinkedHashMap<String, Block> blocks = new LinkedHashMap<>(64, 0.75f, true);
+    // TPH ids repeat across blocks ("001", "002", ...), so each distinct id is stored once
+    private final Map<String, String> ids = new HashMap<>();
+    private List<String> kodeBlok;
+    private PrefixIndex kodeBlokIndex;
+    private int cachedPoints = 0;
+    private long generation = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public TphCatalog(Loader loader) {
+        this(loader, DEFAULT_MAX_POINTS);
+    }
+
+    public TphCatalog(Loader loader, int maxPoints) {
+        if (maxPoints <= 0) throw new IllegalArgumentException("maxPoints must be positive");
+        this.loader = loader;
+        this.maxPoints = maxPoints;
+    }
+
+    public List<String> getKodeBlok() {
+        long loadedAt;
+        synchronized (this) {
+            if (kodeBlok != null) {
+                hits++;
+                return kodeBlok;
+            }
+            misses++;
+            loadedAt = generation;
+        }
+
+        List<String> loaded = Collections.unmodifiableList(loader.loadKodeBlok());
+        synchronized (this) {
+            if (generation == loadedAt) {
+                kodeBlok = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    // Prefix index over getKodeBlok() for the block picker; rebuilt after invalidate()
+    public PrefixIndex getKodeBlokIndex() {
+        long builtAt;
+        synchronized (this) {
+            if (kodeBlokIndex != null) return kodeBlokIndex;
+            builtAt = generation;
+        }
+
+        PrefixIndex built = new PrefixIndex(getKodeBlok());
+        synchronized (this) {
+            if (generation == builtAt && kodeBlokIndex == null) {
+                kodeBlokIndex = built;
+            }
+            return generation == builtAt ? kodeBlokIndex : built;
+        }
+    }
+
+    public Block getBlock(String kodeBlok) {
+        long loadedAt;
+        synchronized (this) {
+            Block block = blocks.get(kodeBlok);
+            if (block != null) {
+                hits++;
+                return block;
+            }
+            misses++;
+            loadedAt = generation;
+        }
+
+        Block loaded = loader.loadBlock(kodeBlok);
+        synchronized (this) {
+            if (generation != loadedAt) return loaded;
+            // Another thread may have loaded the same block meanwhile; keep the first one
+            Block existing = blocks.get(kodeBlok);
+            if (existing != null) return existing;
+
+            intern(loaded);
+            blocks.put(kodeBlok, loaded);
+            cachedPoints += loaded.size();
+            evict();
+        }
+        return loaded;
+    }
+
+    // Drops everything; call after any write to the TPH table
+    public synchronized void invalidate() {
+        generation++;
+        blocks.clear();
+        ids.clear();
+        kodeBlok = null;
+        kodeBlokIndex = null;
+        cachedPoints = 0;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int getCachedBlockCount() {
+        return blocks.size();
+    }
+
+    public synchronized int getCachedPointCount() {
+        return cachedPoints;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TphCatalog{generation=" + generation + ", blocks=" + blocks.size() +
+                ", points=" + cachedPoints + ", hits=" + hits + ", misses=" + misses +
+                ", evictions=" + evictions + "}";
+    }
+
+    private void intern(Block block) {
+        String[] values = block.noTPH;
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value == null) continue;
+            String shared = ids.get(value);
+            if (shared == null) {
+                ids.put(value, value);
+            } else {
+                values[i] = shared;
+            }
+        }
+    }
+
+    // The most recently used block always stays, even if it alone exceeds the limit
+    private void evict() {
+        Iterator<Block> it = blocks.values().iterator();
+        while (cachedPoints > maxPoints && blocks.size() > 1) {
+            Block eldest = it.next();
+            it.remove();
+            cachedPoints -= eldest.size();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.geofenceapp.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+// Pull parser for the GetItemByCompanyLocation payload (a JSON array of flat objects).
+// Records are decoded one at a time straight from the stream, so memory use does not
+// grow with the size of the payload. Unknown keys and nested values are skipped.
+public class TphJsonReader implements Closeable {
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    private long offset = 0;
+
+    private final StringBuilder text = new StringBuilder(64);
+    private boolean started = false;
+    private boolean finished = false;
+
+    public TphJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    // Returns the next record, or null once the top-level array has been fully read
+    public TphRecord next() throws IOException {
+        if (finished) return null;
+
+        int c = nextNonWhitespace();
+        if (!started) {
+            if (c != '[') throw syntaxError("Expected '[' at start of payload");
+            started = true;
+            c = nextNonWhitespace();
+        } else if (c == ',') {
+            c = nextNonWhitespace();
+        } else if (c != ']') {
+            throw syntaxError("Expected ',' or ']' between records");
+        }
+
+        if (c == ']') {
+            finished = true;
+            return null;
+        }
+        if (c != '{') throw syntaxError("Expected '{' at start of record");
+        return readRecord();
+    }
+
+    private TphRecord readRecord() throws IOException {
+        String company = "";
+        String location = "";
+        String kodeBlok = "";
+        String noTPH = "";
+        String coordinate = "";
+        boolean deleted = false;
+        double radius = Double.NaN;
+        String blockBoundary = null;
+
+        int c = nextNonWhitespace();
+        if (c == '}') {
+            return new TphRecord(company, location, kodeBlok, noTPH, coordinate, deleted, radius, blockBoundary);
+        }
+
+        while (true) {
+            if (c != '"') throw syntaxError("Expected field name");
+            String name = readString();
+            if (nextNonWhitespace() != ':') throw syntaxError("Expected ':' after field name");
+
+            String value = readScalar();
+            if (value != null) {
+                switch (name) {
+                    case "company":
+                        company = value;
+                        break;
+                    case "location":
+                        location = value;
+                        break;
+                    case "kodeBlok":
+                        kodeBlok = value;
+                        break;
+                    case "noTPH":
+                        noTPH = value;
+                        break;
+                    case "coordinate":
+                        coordinate = value;
+                        break;
+                    case "deleted":
+                        deleted = "true".equals(value);
+                        break;
+                    case "radius":
+                        radius = parseNumber(value);
+                        break;
+                    case "blockBoundary":
+                        blockBoundary = value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            c = nextNonWhitespace();
+            if (c == '}') break;
+            if (c != ',') throw syntaxError("Expected ',' or '}' in record");
+            c = nextNonWhitespace();
+        }
+
+        return new TphRecord(company, location, kodeBlok, noTPH, coordinate, deleted, radius, blockBoundary);
+    }
+
+    // Numbers may arrive quoted; anything unparseable is NaN
+    private static double parseNumber(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Reads a value as text; JSON null and nested objects/arrays yield null
+    private String readScalar() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '"':
+                return readString();
+            case '{':
+            case '[':
+                skipNested();
+                return null;
+            case -1:
+                throw syntaxError("Unexpected end of payload");
+            default:
+                text.setLength(0);
+                text.append((char) c);
+                while (true) {
+                    c = peek();
+                    if (c == -1 || c == ',' || c == '}' || c == ']' || isWhitespace(c)) break;
+                    text.append((char) read());
+                }
+                String literal = text.toString();
+                return "null".equals(literal) ? null : literal;
+        }
+    }
+
+    private void skipNested() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            switch (c) {
+                case -1:
+                    throw syntaxError("Unexpected end of payload");
+                case '"':
+                    readString();
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Reads the rest of a string whose opening quote has already been consumed
+    private String readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) throw syntaxError("Unterminated string");
+            if (c == '"') return text.toString();
+            if (c != '\\') {
+                text.append((char) c);
+                continue;
+            }
+
+            int escaped = read();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    text.append((char) escaped);
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) throw syntaxError("Invalid unicode escape");
+                        code = (code << 4) | digit;
+                    }
+                    text.append((char) code);
+                    break;
+                default:
+                    throw syntaxError("Invalid escape sequence");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && isWhitespace(c));
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buffer[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        offset++;
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) return false;
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " (offset " + offset + ")");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.geofenceapp.service;
+
+// One keyset page of data_tph rows in id order, as parallel arrays. The next page is the
+// rows after getLastId(); a page shorter than the limit it was asked for is the last one.
+public class TphPage {
+    private final long[] id;
+    private final String[] company;
+    private final String[] location;
+    private final String[] kodeBlok;
+    private final String[] noTPH;
+    private final String[] coordinate;
+
+    public TphPage(long[] id, String[] company, String[] location, String[] kodeBlok, String[] noTPH,
+                   String[] coordinate) {
+        int n = id.length;
+        if (company.length != n || location.length != n || kodeBlok.length != n
+                || noTPH.length != n || coordinate.length != n) {
+            throw new IllegalArgumentException("Page columns differ in length");
+        }
+        this.id = id;
+        this.company = company;
+        this.location = location;
+        this.kodeBlok = kodeBlok;
+        this.noTPH = noTPH;
+        this.coordinate = coordinate;
+    }
+
+    public int size() {
+        return id.length;
+    }
+
+    public long getId(int i) {
+        return id[i];
+    }
+
+    // Key to continue after; only meaningful for a non-empty page
+    public long getLastId() {
+        return id[id.length - 1];
+    }
+
+    public String getCompany(int i) {
+        return company[i];
+    }
+
+    public String getLocation(int i) {
+        return location[i];
+    }
+
+    public String getKodeBlok(int i) {
+        return kodeBlok[i];
+    }
+
+    public String getNoTPH(int i) {
+        return noTPH[i];
+    }
+
+    public String getCoordinate(int i) {
+        return coordinate[i];
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.geofenceapp.service;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Position-addressed view of data_tph for the data browser. Pages are fetched by keyset
+// (the rows after the last id of the page before), so page k costs the same seek whether
+// it is the first or the thousandth. Only the pages nearest the last bound position stay
+// resident; the others keep just their start key and are fetched again when scrolled back
+// to, so memory stays flat however far the user scrolls.
+//
+// Loads run on the background executor and land through the delivery executor, which
+// must be the thread every other method is called on. A new query drops the results of
+// loads started under the old one.
+public class TphPager {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_RESIDENT_PAGES = 8;
+    // Key before the first row; ids are positive
+    static final long FIRST_KEY = 0;
+
+    public interface Source {
+        // Up to limit rows with id > afterId matching query (null for every row), in id order
+        TphPage load(String query, long afterId, int limit) throws Exception;
+    }
+
+    public interface Listener {
+        // The query changed and every row is gone
+        void onReset();
+
+        // count may be 0 when the last page turned out empty
+        void onRowsInserted(int start, int count);
+
+        // An evicted page came back
+        void onRowsChanged(int start, int count);
+
+        void onLoadFailed(Exception e);
+    }
+
+    private final Source source;
+    private final Executor background;
+    private final Executor delivery;
+    private final Listener listener;
+    private final int pageSize;
+    private final int maxResidentPages;
+
+    private String query;
+    private int generation;
+    // Start key of every page reached so far; pages[k] is null when not resident
+    private long[] pageKeys = new long[16];
+    private TphPage[] pages = new TphPage[16];
+    private boolean[] loading = new boolean[16];
+    private int pageCount;
+    private int rowCount;
+    private int residentCount;
+    private int focusPage;
+    private boolean complete;
+    private boolean closed;
+
+    public TphPager(Source source, Executor background, Executor delivery, Listener listener) {
+        this(source, background, delivery, listener, DEFAULT_PAGE_SIZE, DEFAULT_RESIDENT_PAGES);
+    }
+
+    public TphPager(Source source, Executor background, Executor delivery, Listener listener,
+                    int pageSize, int maxResidentPages) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+        if (maxResidentPages < 2) throw new IllegalArgumentException("maxResidentPages must be at least 2");
+        this.source = source;
+        this.background = background;
+        this.delivery = delivery;
+        this.listener = listener;
+        this.pageSize = pageSize;
+        this.maxResidentPages = maxResidentPages;
+    }
+
+    // Starts over with the rows matching query, or every row for null/empty
+    public void setQuery(String query) {
+        this.query = query == null || query.isEmpty() ? null : query;
+        generation++;
+        Arrays.fill(pages, null);
+        Arrays.fill(loading, false);
+        pageKeys[0] = FIRST_KEY;
+        pageCount = 1;
+        rowCount = 0;
+        residentCount = 0;
+        focusPage = 0;
+        complete = false;
+        listener.onReset();
+        load(0);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    // Rows known so far; grows as the end is approached until isComplete()
+    public int getCount() {
+        return rowCount;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // The page holding position, or null while it is being fetched. Also prefetches the
+    // next page once position is within half a page of the end.
+    public TphPage getPage(int position) {
+        if (position < 0 || position >= rowCount) return null;
+        int k = position / pageSize;
+        focusPage = k;
+        TphPage page = pages[k];
+        if (page == null) load(k);
+        if (!complete && position >= rowCount - pageSize / 2) {
+            load(pageCount - 1);
+        }
+        return page;
+    }
+
+    // Index of position within its page; may be past the end of a page that shrank when
+    // it was fetched again
+    public int offsetOf(int position) {
+        return position % pageSize;
+    }
+
+    int getResidentPageCount() {
+        return residentCount;
+    }
+
+    // Drops every load still in flight
+    public void close() {
+        closed = true;
+    }
+
+    private void load(int k) {
+        if (closed || loading[k]) return;
+        loading[k] = true;
+        final int loadGeneration = generation;
+        final String loadQuery = query;
+        final long afterId = pageKeys[k];
+        try {
+            background.execute(() -> {
+                TphPage page = null;
+                Exception error = null;
+                try {
+                    page = source.load(loadQuery, afterId, pageSize);
+                } catch (Exception e) {
+                    error = e;
+                }
+                deliver(loadGeneration, k, page, error);
+            });
+        } catch (RejectedExecutionException e) {
+            loading[k] = false;
+            listener.onLoadFailed(e);
+        }
+    }
+
+    private void deliver(int loadGeneration, int k, TphPage page, Exception error) {
+        delivery.execute(() -> onLoaded(loadGeneration, k, page, error));
+    }
+
+    private void onLoaded(int loadGeneration, int k, TphPage page, Exception error) {
+        if (closed || loadGeneration != generation) return;
+        loading[k] = false;
+        if (error != null) {
+            listener.onLoadFailed(error);
+            return;
+        }
+
+        boolean appended = k == pageCount - 1 && k * pageSize == rowCount;
+        if (pages[k] == null) residentCount++;
+        pages[k] = page;
+        evictAround(k);
+
+        if (!appended) {
+            listener.onRowsChanged(k * pageSize, Math.min(pageSize, rowCount - k * pageSize));
+            return;
+        }
+        rowCount += page.size();
+        if (page.size() < pageSize) {
+            complete = true;
+        } else {
+            ensureCapacity(pageCount + 1);
+            pageKeys[pageCount++] = page.getLastId();
+        }
+        listener.onRowsInserted(k * pageSize, page.size());
+    }
+
+    // Drops the resident pages farthest from the one in view until the budget is met
+    private void evictAround(int loaded) {
+        while (residentCount > maxResidentPages) {
+            int farthest = -1;
+            int farthestDistance = -1;
+            for (int j = 0; j < pageCount; j++) {
+                if (pages[j] == null || j == loaded) continue;
+                int distance = Math.abs(j - focusPage);
+                if (distance > farthestDistance) {
+                    farthest = j;
+                    farthestDistance = distance;
+                }
+            }
+            pages[farthest] = null;
+            residentCount--;
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= pageKeys.length) return;
+        int capacity = Math.max(needed, pageKeys.length * 2);
+        pageKeys = Arrays.copyOf(pageKeys, capacity);
+        pages = Arrays.copyOf(pages, capacity);
+        loading = Arrays.copyOf(loading, capacity);
+    }
+}
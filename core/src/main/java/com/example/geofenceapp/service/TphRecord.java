@@ -0,0 +1,88 @@
+package com.example.geofenceapp.service;
+
+// One TPH row as delivered by GetItemByCompanyLocation
+public class TphRecord {
+    private final String company;
+    private final String location;
+    private final String kodeBlok;
+    private final String noTPH;
+    private final String coordinate;
+    private final boolean deleted;
+    private final double latitude;
+    private final double longitude;
+    private final double radius;
+    private final String blockBoundary;
+
+    public TphRecord(String company, String location, String kodeBlok, String noTPH, String coordinate) {
+        this(company, location, kodeBlok, noTPH, coordinate, false);
+    }
+
+    public TphRecord(String company, String location, String kodeBlok, String noTPH, String coordinate,
+                     boolean deleted) {
+        this(company, location, kodeBlok, noTPH, coordinate, deleted, Double.NaN, null);
+    }
+
+    // radius is NaN for the default; blockBoundary is null unless this record carries it
+    public TphRecord(String company, String location, String kodeBlok, String noTPH, String coordinate,
+                     boolean deleted, double radius, String blockBoundary) {
+        this.company = company;
+        this.location = location;
+        this.kodeBlok = kodeBlok;
+        this.noTPH = noTPH;
+        this.coordinate = coordinate;
+        this.deleted = deleted;
+        this.latitude = CoordinateParser.parseLatitude(coordinate);
+        this.longitude = CoordinateParser.parseLongitude(coordinate);
+        this.radius = radius > 0 && !Double.isInfinite(radius) ? radius : Double.NaN;
+        this.blockBoundary = blockBoundary == null || blockBoundary.isEmpty() ? null : blockBoundary;
+    }
+
+    public String getCompany() {
+        return company;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getKodeBlok() {
+        return kodeBlok;
+    }
+
+    public String getNoTPH() {
+        return noTPH;
+    }
+
+    public String getCoordinate() {
+        return coordinate;
+    }
+
+    // NaN when the coordinate text could not be parsed
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public boolean hasLocation() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    // Fence radius of this TPH in metres, or NaN to use the app default
+    public double getRadius() {
+        return radius;
+    }
+
+    // Polygon of the whole block as "lat,lng;lat,lng;...". The server sends it on one
+    // record of each block (any will do) rather than repeating it on every TPH.
+    public String getBlockBoundary() {
+        return blockBoundary;
+    }
+
+    // Delta payloads mark removed TPH points instead of omitting them
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.geofenceapp.service;
+
+// Destination for records coming off a sync download
+public interface TphRecordSink {
+    void write(TphRecord record);
+
+    // Ends the transaction the records written so far are in without checkpointing them, so
+    // another sink on the same connection can write in between. A full sync still drops them
+    // on abort, and on resume after a crash.
+    void flush();
+
+    // Makes the records written so far durable together with the cursor to resume from.
+    // A full sync stays invisible to readers until commit.
+    void checkpoint(SyncCursor cursor);
+
+    // Makes everything written so far visible to readers and forgets the cursor
+    void commit();
+
+    // Drops whatever has not been committed or checkpointed yet
+    void abort();
+}
@@ -0,0 +1,281 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.PolygonFence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Read-only, memory-mapped copy of the TPH table written by TphSnapshotWriter after each
+// sync. Opening it maps the file and checks the section bounds; nothing is parsed, so the
+// block list and the first block are available at cold start without touching SQLite.
+// Serves as the catalog's loader when present.
+//
+// Layout, big-endian, every section int-aligned:
+//   header     int MAGIC, int VERSION, long createdAtMillis, int blocks, int points,
+//              int vertices, int strings, int stringBytes
+//   blockName  int[blocks]          string id, blocks in kodeBlok order
+//   blockStart int[blocks + 1]      points of block b are [blockStart[b], blockStart[b + 1])
+//   ringStart  int[blocks + 1]      boundary vertices of block b, none when empty
+//   tphName    int[points]          string id, noTPH order within each block
+//   lat, lng   int[points] each     degrees * 1e7, NO_COORDINATE when unusable
+//   radius     float[points]        metres, NaN for the default
+//   ringLat, ringLng int[vertices]  degrees * 1e7
+//   strOffset  int[strings + 1]     UTF-8 byte range of each string
+//   strBytes   byte[stringBytes]
+public final class TphSnapshot implements TphCatalog.Loader {
+    public static final int MAGIC = 0x4746534E; // "GFSN"
+    public static final int VERSION = 1;
+    static final int HEADER_BYTES = 36;
+    // 1e-7 degrees is about a centimetre
+    static final double FIXED_POINT = 1e7;
+    static final int NO_COORDINATE = Integer.MIN_VALUE;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final long createdAtMillis;
+    private final int blockCount;
+    private final int pointCount;
+    private final IntBuffer blockName;
+    private final IntBuffer blockStart;
+    private final IntBuffer ringStart;
+    private final IntBuffer tphName;
+    private final IntBuffer lat;
+    private final IntBuffer lng;
+    private final FloatBuffer radius;
+    private final IntBuffer ringLat;
+    private final IntBuffer ringLng;
+    private final IntBuffer stringOffset;
+    private final ByteBuffer stringBytes;
+
+    public static TphSnapshot open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new TphSnapshot(buffer, file.toString());
+    }
+
+    private TphSnapshot(ByteBuffer buffer, String name) throws IOException {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException(name + " is not a TPH snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException(name + " has unsupported snapshot version " + version);
+        }
+        createdAtMillis = buffer.getLong(8);
+        blockCount = buffer.getInt(16);
+        pointCount = buffer.getInt(20);
+        int vertexCount = buffer.getInt(24);
+        int stringCount = buffer.getInt(28);
+        int stringByteCount = buffer.getInt(32);
+        if ((blockCount | pointCount | vertexCount | stringCount | stringByteCount) < 0) {
+            throw new IOException(name + " has a corrupt header");
+        }
+        long expected = expectedSize(blockCount, pointCount, vertexCount, stringCount, stringByteCount);
+        if (buffer.capacity() != expected) {
+            throw new IOException(name + " is " + buffer.capacity() + " bytes, expected " + expected);
+        }
+
+        int offset = HEADER_BYTES;
+        blockName = ints(buffer, offset, blockCount);
+        offset += 4 * blockCount;
+        blockStart = ints(buffer, offset, blockCount + 1);
+        offset += 4 * (blockCount + 1);
+        ringStart = ints(buffer, offset, blockCount + 1);
+        offset += 4 * (blockCount + 1);
+        tphName = ints(buffer, offset, pointCount);
+        offset += 4 * pointCount;
+        lat = ints(buffer, offset, pointCount);
+        offset += 4 * pointCount;
+        lng = ints(buffer, offset, pointCount);
+        offset += 4 * pointCount;
+        radius = section(buffer, offset, 4 * pointCount).asFloatBuffer();
+        offset += 4 * pointCount;
+        ringLat = ints(buffer, offset, vertexCount);
+        offset += 4 * vertexCount;
+        ringLng = ints(buffer, offset, vertexCount);
+        offset += 4 * vertexCount;
+        stringOffset = ints(buffer, offset, stringCount + 1);
+        offset += 4 * (stringCount + 1);
+        stringBytes = section(buffer, offset, stringByteCount);
+
+        // Bounds checked once here so the getters can trust every index they read
+        checkRanges(blockStart, pointCount, name);
+        checkRanges(ringStart, vertexCount, name);
+        checkRanges(stringOffset, stringByteCount, name);
+        checkIds(blockName, stringCount, name);
+        checkIds(tphName, stringCount, name);
+    }
+
+    static long expectedSize(int blocks, int points, int vertices, int strings, int stringBytes) {
+        return HEADER_BYTES + 4L * blocks + 8L * (blocks + 1) + 16L * points + 8L * vertices
+                + 4L * (strings + 1) + stringBytes;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int offset, int bytes) {
+        ByteBuffer copy = buffer.duplicate();
+        copy.position(offset);
+        copy.limit(offset + bytes);
+        return copy.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, int offset, int count) {
+        return section(buffer, offset, 4 * count).asIntBuffer();
+    }
+
+    private static void checkRanges(IntBuffer starts, int total, String name) throws IOException {
+        int last = starts.get(0);
+        if (last != 0) throw new IOException(name + " has a corrupt section index");
+        for (int i = 1; i < starts.limit(); i++) {
+            int next = starts.get(i);
+            if (next < last) throw new IOException(name + " has a corrupt section index");
+            last = next;
+        }
+        if (last != total) throw new IOException(name + " has a corrupt section index");
+    }
+
+    private static void checkIds(IntBuffer ids, int strings, String name) throws IOException {
+        for (int i = 0; i < ids.limit(); i++) {
+            int id = ids.get(i);
+            if (id < 0 || id >= strings) throw new IOException(name + " has a corrupt string id");
+        }
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public String getKodeBlok(int block) {
+        return string(blockName.get(block));
+    }
+
+    // Points of a block are [getBlockStart(b), getBlockStart(b + 1))
+    public int getBlockStart(int block) {
+        return blockStart.get(block);
+    }
+
+    public String getNoTPH(int point) {
+        return string(tphName.get(point));
+    }
+
+    // NaN when the coordinate was unusable
+    public double getLatitude(int point) {
+        return degrees(lat.get(point));
+    }
+
+    public double getLongitude(int point) {
+        return degrees(lng.get(point));
+    }
+
+    // NaN for the default radius
+    public double getRadius(int point) {
+        return radius.get(point);
+    }
+
+    // Null when the block has no polygon
+    public PolygonFence getBoundary(int block) {
+        int start = ringStart.get(block);
+        int n = ringStart.get(block + 1) - start;
+        if (n == 0) return null;
+        double[] vertexLat = new double[n];
+        double[] vertexLng = new double[n];
+        for (int i = 0; i < n; i++) {
+            vertexLat[i] = degrees(ringLat.get(start + i));
+            vertexLng[i] = degrees(ringLng.get(start + i));
+        }
+        return new PolygonFence(vertexLat, vertexLng);
+    }
+
+    // Position of the block, or -1; blocks are in String order
+    public int indexOfBlock(String kodeBlok) {
+        int lo = 0;
+        int hi = blockCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = getKodeBlok(mid).compareTo(kodeBlok);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public List<String> loadKodeBlok() {
+        List<String> values = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            values.add(getKodeBlok(b));
+        }
+        return values;
+    }
+
+    // An unknown block loads as an empty one, as it would from the table
+    @Override
+    public TphCatalog.Block loadBlock(String kodeBlok) {
+        int b = indexOfBlock(kodeBlok);
+        if (b < 0) {
+            return new TphCatalog.Block(kodeBlok, new String[0], new double[0], new double[0]);
+        }
+        int start = blockStart.get(b);
+        int n = blockStart.get(b + 1) - start;
+        String[] noTPH = new String[n];
+        double[] blockLat = new double[n];
+        double[] blockLng = new double[n];
+        double[] blockRadius = null;
+        for (int i = 0; i < n; i++) {
+            noTPH[i] = getNoTPH(start + i);
+            blockLat[i] = getLatitude(start + i);
+            blockLng[i] = getLongitude(start + i);
+            double r = getRadius(start + i);
+            if (!Double.isNaN(r)) {
+                if (blockRadius == null) {
+                    blockRadius = new double[n];
+                    Arrays.fill(blockRadius, Double.NaN);
+                }
+                blockRadius[i] = r;
+            }
+        }
+        return new TphCatalog.Block(kodeBlok, noTPH, blockLat, blockLng, blockRadius, getBoundary(b));
+    }
+
+    private String string(int id) {
+        int start = stringOffset.get(id);
+        byte[] bytes = new byte[stringOffset.get(id + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = stringBytes.get(start + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    static int fixed(double degrees) {
+        return Double.isNaN(degrees) ? NO_COORDINATE : (int) Math.round(degrees * FIXED_POINT);
+    }
+
+    private static double degrees(int fixed) {
+        return fixed == NO_COORDINATE ? Double.NaN : fixed / FIXED_POINT;
+    }
+}
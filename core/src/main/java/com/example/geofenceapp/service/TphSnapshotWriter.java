@@ -0,0 +1,174 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.PolygonFence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Collects TPH rows in any order and writes them as a TphSnapshot. Rows are grouped by
+// block and ordered by noTPH the way the catalog lists them; rows without a kodeBlok or
+// noTPH are left out, as the catalog skips them too. Every distinct string is stored once.
+public class TphSnapshotWriter {
+    private static final class Row implements Comparable<Row> {
+        final String kodeBlok;
+        final String noTPH;
+        final int lat;
+        final int lng;
+        final float radius;
+
+        Row(String kodeBlok, String noTPH, int lat, int lng, float radius) {
+            this.kodeBlok = kodeBlok;
+            this.noTPH = noTPH;
+            this.lat = lat;
+            this.lng = lng;
+            this.radius = radius;
+        }
+
+        @Override
+        public int compareTo(Row other) {
+            int c = kodeBlok.compareTo(other.kodeBlok);
+            return c != 0 ? c : noTPH.compareTo(other.noTPH);
+        }
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<String, PolygonFence> boundaries = new HashMap<>();
+
+    // lat/lng NaN when unusable, radius NaN for the default
+    public void add(String kodeBlok, String noTPH, double lat, double lng, double radius) {
+        if (kodeBlok == null || kodeBlok.isEmpty() || noTPH == null || noTPH.isEmpty()) return;
+        boolean located = !Double.isNaN(lat) && !Double.isNaN(lng);
+        rows.add(new Row(kodeBlok, noTPH, located ? TphSnapshot.fixed(lat) : TphSnapshot.NO_COORDINATE,
+                located ? TphSnapshot.fixed(lng) : TphSnapshot.NO_COORDINATE, (float) radius));
+    }
+
+    // A later call for the same block replaces the earlier boundary
+    public void setBoundary(String kodeBlok, PolygonFence boundary) {
+        if (kodeBlok == null || boundary == null) return;
+        boundaries.put(kodeBlok, boundary);
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    // Writes and syncs file in full; callers write to a temporary name and rename it into
+    // place so a reader never maps a half-written snapshot
+    public void writeTo(File file, long createdAtMillis) throws IOException {
+        Collections.sort(rows);
+
+        List<String> blocks = new ArrayList<>();
+        List<Integer> blockStarts = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            String kodeBlok = rows.get(i).kodeBlok;
+            if (blocks.isEmpty() || !blocks.get(blocks.size() - 1).equals(kodeBlok)) {
+                blocks.add(kodeBlok);
+                blockStarts.add(i);
+            }
+        }
+        int blockCount = blocks.size();
+        int pointCount = rows.size();
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int vertexCount = 0;
+        for (String kodeBlok : blocks) {
+            intern(strings, kodeBlok);
+            PolygonFence boundary = boundaries.get(kodeBlok);
+            if (boundary != null) vertexCount += boundary.getVertexCount();
+        }
+        for (Row row : rows) {
+            intern(strings, row.noTPH);
+        }
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        int stringByteCount = 0;
+        for (String value : strings.keySet()) {
+            byte[] bytes = value.getBytes(TphSnapshot.UTF_8);
+            encoded.add(bytes);
+            stringByteCount += bytes.length;
+        }
+
+        long size = TphSnapshot.expectedSize(blockCount, pointCount, vertexCount, strings.size(), stringByteCount);
+        if (size > Integer.MAX_VALUE) throw new IOException("Snapshot too large: " + size + " bytes");
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.BIG_ENDIAN);
+        out.putInt(TphSnapshot.MAGIC).putInt(TphSnapshot.VERSION).putLong(createdAtMillis)
+                .putInt(blockCount).putInt(pointCount).putInt(vertexCount)
+                .putInt(strings.size()).putInt(stringByteCount);
+
+        for (String kodeBlok : blocks) {
+            out.putInt(strings.get(kodeBlok));
+        }
+        for (int start : blockStarts) {
+            out.putInt(start);
+        }
+        out.putInt(pointCount);
+        int vertex = 0;
+        for (String kodeBlok : blocks) {
+            out.putInt(vertex);
+            PolygonFence boundary = boundaries.get(kodeBlok);
+            if (boundary != null) vertex += boundary.getVertexCount();
+        }
+        out.putInt(vertex);
+
+        for (Row row : rows) {
+            out.putInt(strings.get(row.noTPH));
+        }
+        for (Row row : rows) {
+            out.putInt(row.lat);
+        }
+        for (Row row : rows) {
+            out.putInt(row.lng);
+        }
+        for (Row row : rows) {
+            out.putFloat(row.radius);
+        }
+
+        for (String kodeBlok : blocks) {
+            PolygonFence boundary = boundaries.get(kodeBlok);
+            if (boundary == null) continue;
+            for (int i = 0; i < boundary.getVertexCount(); i++) {
+                out.putInt(TphSnapshot.fixed(boundary.getLatitude(i)));
+            }
+        }
+        for (String kodeBlok : blocks) {
+            PolygonFence boundary = boundaries.get(kodeBlok);
+            if (boundary == null) continue;
+            for (int i = 0; i < boundary.getVertexCount(); i++) {
+                out.putInt(TphSnapshot.fixed(boundary.getLongitude(i)));
+            }
+        }
+
+        int offset = 0;
+        out.putInt(offset);
+        for (byte[] bytes : encoded) {
+            offset += bytes.length;
+            out.putInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.put(bytes);
+        }
+        out.flip();
+
+        try (FileOutputStream stream = new FileOutputStream(file); FileChannel channel = stream.getChannel()) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            stream.getFD().sync();
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, String value) {
+        if (!strings.containsKey(value)) {
+            strings.put(value, strings.size());
+        }
+    }
+}
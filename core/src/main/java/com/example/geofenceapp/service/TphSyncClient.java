@@ -0,0 +1,356 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.metrics.Counter;
+import com.example.geofenceapp.metrics.Histogram;
+import com.example.geofenceapp.metrics.Metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+// Downloads the TPH list for one company/location and streams it into a TphSyncTarget.
+// With a watermark from a previous sync the request is conditional: the server can answer
+// 304 Not Modified, or send only the changed rows when it honours UpdatedSince.
+//
+// Responses are requested gzip-compressed and in pages of PageSize records. A server that
+// pages answers with X-Next-Page, which is sent back as PageToken together with If-Match on
+// the snapshot ETag; it answers 412 if the data changed in between, and the sync restarts.
+// Each page is checkpointed into the target with its cursor, so a dropped connection is
+// retried with backoff from the page that failed, and a sync that gave up is resumed from
+// there by the next call. Servers that ignore paging simply send everything as one page.
+public class TphSyncClient {
+    public static final String HEADER_SYNC_TOKEN = "X-Sync-Token";
+    public static final String HEADER_SYNC_MODE = "X-Sync-Mode";
+    public static final String HEADER_NEXT_PAGE = "X-Next-Page";
+    public static final String SYNC_MODE_DELTA = "delta";
+
+    public static final int DEFAULT_PAGE_SIZE = 5000;
+
+    // A snapshot that keeps changing under a paged download is not worth chasing forever
+    private static final int MAX_RESTARTS = 2;
+
+    // Per request: until the status line is in
+    private static final Histogram CONNECT_TIME = Metrics.histogram("sync.connect");
+    // Per page: blocked reading the socket, then decompressing and parsing what was read
+    private static final Histogram DOWNLOAD_TIME = Metrics.histogram("sync.download");
+    private static final Histogram PARSE_TIME = Metrics.histogram("sync.parse");
+    private static final Counter RECORDS = Metrics.counter("sync.records");
+    private static final Counter BYTES = Metrics.counter("sync.bytes");
+    private static final Counter RETRIES = Metrics.counter("sync.retries");
+
+    public enum Mode {
+        FULL, DELTA, NOT_MODIFIED
+    }
+
+    public interface ProgressListener {
+        void onProgress(int records);
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    public static class Result {
+        private final Mode mode;
+        private final int recordCount;
+        private final SyncWatermark watermark;
+        private final boolean resumed;
+        private final long bytesReceived;
+
+        Result(Mode mode, int recordCount, SyncWatermark watermark, boolean resumed, long bytesReceived) {
+            this.mode = mode;
+            this.recordCount = recordCount;
+            this.watermark = watermark;
+            this.resumed = resumed;
+            this.bytesReceived = bytesReceived;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        // Includes records committed by earlier, interrupted attempts
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        // Watermark to store for the next sync
+        public SyncWatermark getWatermark() {
+            return watermark;
+        }
+
+        // Whether the download continued an interrupted sync or retried a failed page
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        // Body bytes as received, before decompression, across every attempt of this call
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+    }
+
+    // Non-2xx answers; only server errors and throttling are worth retrying
+    static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpStatusException(int status) {
+            super("Server returned HTTP " + status);
+            this.status = status;
+        }
+
+        boolean isTransient() {
+            return status >= 500 || status == 429;
+        }
+    }
+
+    private final String baseUrl;
+    private int connectTimeout = 15000;
+    private int readTimeout = 30000;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int maxAttempts = 5;
+    private long initialBackoffMillis = 1000;
+    private long maxBackoffMillis = 30000;
+    private final Random jitter = new Random();
+    private Sleeper sleeper = Thread::sleep;
+
+    public TphSyncClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    // 0 leaves paging to the server
+    public void setPageSize(int pageSize) {
+        if (pageSize < 0) throw new IllegalArgumentException("pageSize must not be negative");
+        this.pageSize = pageSize;
+    }
+
+    // Attempts per page; the budget is refilled whenever a page gets through
+    public void setRetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be positive");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    void setSleeper(Sleeper sleeper) {
+        this.sleeper = sleeper;
+    }
+
+    // Pass a null watermark to force a full download. An interrupted sync of the same
+    // estate is resumed regardless of the watermark.
+    public Result sync(String company, String location, SyncWatermark since,
+                       TphSyncTarget target, ProgressListener listener) throws IOException {
+        SyncCursor cursor = target.getSyncCursor(company, location);
+        boolean resumed = cursor != null;
+        TphRecordSink sink = null;
+        int count = cursor != null ? cursor.getRecords() : 0;
+        long bytes = 0;
+        int attempt = 0;
+        int restarts = 0;
+
+        while (true) {
+            if (cursor != null && sink == null) {
+                sink = target.resume(cursor);
+                if (sink == null) {
+                    cursor = null;
+                    count = 0;
+                }
+            }
+
+            boolean conditional = cursor == null && since != null && !since.isEmpty();
+            long connectStart = System.nanoTime();
+            HttpURLConnection conn = open(company, location, since, conditional, cursor);
+            CountingInputStream body = null;
+            try {
+                int status = conn.getResponseCode();
+                CONNECT_TIME.recordSince(connectStart);
+                if (conditional && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return new Result(Mode.NOT_MODIFIED, 0, since, resumed, bytes);
+                }
+                if (cursor != null && status >= 400 && status < 500 && status != 429) {
+                    // 412 means the snapshot changed between pages, so what we have mixes two
+                    // versions; other client errors mean the page token is no longer accepted
+                    if (++restarts > MAX_RESTARTS) throw new HttpStatusException(status);
+                    sink.abort();
+                    sink = null;
+                    target.clearSyncCursor(company, location);
+                    cursor = null;
+                    count = 0;
+                    continue;
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new HttpStatusException(status);
+                }
+
+                if (cursor == null) {
+                    boolean delta = conditional &&
+                            SYNC_MODE_DELTA.equalsIgnoreCase(conn.getHeaderField(HEADER_SYNC_MODE));
+                    SyncWatermark watermark = new SyncWatermark(conn.getHeaderField("ETag"),
+                            conn.getHeaderField("Last-Modified"), conn.getHeaderField(HEADER_SYNC_TOKEN));
+                    target.clearSyncCursor(company, location);
+                    sink = delta ? target.openDelta() : target.openFull(company, location);
+                    cursor = new SyncCursor(company, location, delta, delta ? since.getToken() : null,
+                            watermark, null, 0);
+                }
+
+                body = new CountingInputStream(conn.getInputStream());
+                InputStream in = "gzip".equalsIgnoreCase(conn.getContentEncoding())
+                        ? new GZIPInputStream(body, 8192) : body;
+                long readNanos = 0;
+                try (TphJsonReader reader = new TphJsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                    while (true) {
+                        long start = System.nanoTime();
+                        TphRecord record = reader.next();
+                        readNanos += System.nanoTime() - start;
+                        if (record == null) break;
+                        sink.write(record);
+                        count++;
+                        RECORDS.increment();
+                        if (listener != null && count % 1000 == 0) {
+                            listener.onProgress(count);
+                        }
+                    }
+                }
+                // reader.next() pulls from the socket itself, so its time less the socket's is parsing
+                DOWNLOAD_TIME.record(body.nanos);
+                PARSE_TIME.record(readNanos - body.nanos);
+
+                String nextPage = conn.getHeaderField(HEADER_NEXT_PAGE);
+                if (nextPage == null || nextPage.isEmpty()) {
+                    sink.commit();
+                    return new Result(cursor.isDelta() ? Mode.DELTA : Mode.FULL, count,
+                            cursor.getWatermark(), resumed, bytes + body.count);
+                }
+                cursor = cursor.advance(nextPage, count);
+                sink.checkpoint(cursor);
+                attempt = 0;
+            } catch (IOException e) {
+                if (sink != null) {
+                    // Checkpointed pages survive; only the page in flight is dropped
+                    sink.abort();
+                    sink = null;
+                }
+                if (cursor != null && cursor.getNextPage() == null) {
+                    // Nothing was checkpointed yet, so there is nothing to resume
+                    cursor = null;
+                }
+                count = cursor != null ? cursor.getRecords() : 0;
+                if (e instanceof HttpStatusException && !((HttpStatusException) e).isTransient()) throw e;
+                if (++attempt >= maxAttempts) throw e;
+                RETRIES.increment();
+                resumed = true;
+                backoff(attempt);
+            } catch (RuntimeException e) {
+                if (sink != null) sink.abort();
+                throw e;
+            } finally {
+                if (body != null) {
+                    bytes += body.count;
+                    BYTES.add(body.count);
+                }
+                conn.disconnect();
+            }
+        }
+    }
+
+    private HttpURLConnection open(String company, String location, SyncWatermark since,
+                                   boolean conditional, SyncCursor cursor) throws IOException {
+        String updatedSince = cursor != null ? cursor.getSince() : conditional ? since.getToken() : null;
+        HttpURLConnection conn = (HttpURLConnection) new URL(buildUrl(company, location, updatedSince,
+                cursor != null ? cursor.getNextPage() : null)).openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        // Set explicitly so the body is decoded here the same way on every platform
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        if (conditional) {
+            if (since.getEtag() != null) conn.setRequestProperty("If-None-Match", since.getEtag());
+            if (since.getLastModified() != null) conn.setRequestProperty("If-Modified-Since", since.getLastModified());
+        }
+        if (cursor != null && cursor.getWatermark().getEtag() != null) {
+            conn.setRequestProperty("If-Match", cursor.getWatermark().getEtag());
+        }
+        return conn;
+    }
+
+    // Exponential with jitter, so phones that lost the same tower do not retry in lockstep
+    private void backoff(int attempt) throws IOException {
+        long delay = initialBackoffMillis << Math.min(attempt - 1, 20);
+        delay = Math.min(delay, maxBackoffMillis);
+        delay = delay / 2 + (long) (jitter.nextDouble() * (delay / 2));
+        try {
+            sleeper.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sync interrupted", e);
+        }
+    }
+
+    private String buildUrl(String company, String location, String updatedSince, String pageToken) {
+        StringBuilder url = new StringBuilder(baseUrl)
+                .append(baseUrl.indexOf('?') >= 0 ? '&' : '?')
+                .append("Company=").append(encode(company))
+                .append("&Location=").append(encode(location));
+        if (updatedSince != null) {
+            url.append("&UpdatedSince=").append(encode(updatedSince));
+        }
+        if (pageSize > 0) {
+            url.append("&PageSize=").append(pageSize);
+        }
+        if (pageToken != null) {
+            url.append("&PageToken=").append(encode(pageToken));
+        }
+        return url.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Also times the reads; callers read in buffers of several KB, so the clock is cheap
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+        long nanos = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(buffer, offset, length);
+            nanos += System.nanoTime() - start;
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.geofenceapp.service;
+
+// Where TphSyncClient applies downloaded data
+public interface TphSyncTarget {
+    // Sink for a complete snapshot of one estate that replaces its rows on commit
+    TphRecordSink openFull(String company, String location);
+
+    // Sink for changed rows only; deleted records remove their row
+    TphRecordSink openDelta();
+
+    // Cursor of an interrupted paged sync of this estate, or null
+    SyncCursor getSyncCursor(String company, String location);
+
+    // Reopens the sink of an interrupted sync with its checkpointed pages intact, or returns
+    // null (and forgets the cursor) when those pages are gone
+    TphRecordSink resume(SyncCursor cursor);
+
+    // Forgets an interrupted sync that will not be resumed
+    void clearSyncCursor(String company, String location);
+}
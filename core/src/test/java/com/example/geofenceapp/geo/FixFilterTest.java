@@ -0,0 +1,181 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FixFilterTest {
+    private static final double FENCE_LAT = -1.05;
+    private static final double FENCE_LNG = 103.05;
+    private static final double RADIUS = 30.0;
+    // In noisy_boundary.csv the walk out starts at 300 s from 20 m at 1.3 m/s
+    private static final long CROSSING_MILLIS = 307_700;
+
+    @Test
+    public void rejectsPoorStaleAndOutOfOrderFixes() {
+        FixFilter filter = new FixFilter();
+
+        assertFalse(filter.accept(-1.0, 103.0, 60, 0, true, 1000, 1000));
+        assertFalse(filter.accept(-1.0, 103.0, Float.NaN, 0, true, 1000, 1000));
+        assertEquals(2, filter.getRejectedAccuracyCount());
+        assertFalse(filter.accept(-1.0, 103.0, 5, 0, true, 1000, 20_000));
+        assertEquals(1, filter.getRejectedAgeCount());
+        assertFalse(filter.hasEstimate());
+        assertEquals(FixFilter.Verdict.UNCERTAIN, filter.classify(-1.0, 103.0, RADIUS, 1000));
+
+        assertTrue(filter.accept(-1.0, 103.0, 5, 0, true, 2000, 2000));
+        assertFalse(filter.accept(-1.0, 103.0, 5, 0, true, 1500, 2100));
+        assertEquals(2, filter.getRejectedAgeCount());
+        assertEquals(1, filter.getAcceptedCount());
+    }
+
+    @Test
+    public void networkIgnoredWhileGpsIsFresh() {
+        FixFilter filter = new FixFilter();
+        assertTrue(filter.accept(-1.0, 103.0, 5, 0, true, 0, 0));
+
+        assertFalse(filter.accept(-1.0, 103.0, 25, Float.NaN, false, 5000, 5000));
+        assertEquals(1, filter.getRejectedProviderCount());
+        assertTrue(filter.accept(-1.0, 103.0, 25, Float.NaN, false,
+                FixFilter.GPS_PREFERENCE_MILLIS + 1000, FixFilter.GPS_PREFERENCE_MILLIS + 1000));
+    }
+
+    @Test
+    public void networkAcceptedWithoutGps() {
+        // A device with no GPS lock yet, at an elapsed-realtime clock well past zero
+        FixFilter filter = new FixFilter();
+        assertTrue(filter.accept(-1.0, 103.0, 25, Float.NaN, false, 3_600_000, 3_600_000));
+        assertTrue(filter.accept(-1.0, 103.0, 25, Float.NaN, false, 3_605_000, 3_605_000));
+
+        // And again after a reset forgets an earlier GPS fix
+        assertTrue(filter.accept(-1.0, 103.0, 5, 0, true, 3_610_000, 3_610_000));
+        filter.reset();
+        assertTrue(filter.accept(-1.0, 103.0, 25, Float.NaN, false, 3_611_000, 3_611_000));
+        assertEquals(0, filter.getRejectedProviderCount());
+    }
+
+    @Test
+    public void smoothsTowardsAccurateFixes() {
+        FixFilter filter = new FixFilter();
+        filter.accept(-1.0, 103.0, 5, 0, true, 0, 0);
+        // 10 m north with accuracy 30 barely moves an estimate that is good to 5 m
+        filter.accept(-1.0 + 10 / GeoMath.METERS_PER_DEGREE_LAT, 103.0, 30, 0, true, 1000, 1000);
+
+        double moved = GeoMath.haversine(-1.0, 103.0, filter.getLatitude(), filter.getLongitude());
+        assertTrue("moved " + moved, moved > 0 && moved < 1);
+        assertTrue(filter.getAccuracyMeters() < 5);
+    }
+
+    @Test
+    public void jumpFasterThanAVehicleIsRejected() {
+        FixFilter filter = new FixFilter();
+        filter.accept(-1.0, 103.0, 5, 0, true, 0, 0);
+
+        assertFalse(filter.accept(-1.0 + 200 / GeoMath.METERS_PER_DEGREE_LAT, 103.0, 5, 0, true, 1000, 1000));
+        assertEquals(1, filter.getRejectedJumpCount());
+        assertTrue(filter.accept(-1.0 + 20 / GeoMath.METERS_PER_DEGREE_LAT, 103.0, 5, 0, true, 2000, 2000));
+    }
+
+    @Test
+    public void blockVerdictKeepsAMarginFromEveryEdge() {
+        // A block 200 m square with its south-west corner at (-1.0, 103.0)
+        double dLat = 200 / GeoMath.METERS_PER_DEGREE_LAT;
+        double dLng = 200 / GeoMath.metersPerDegreeLng(-1.0);
+        PolygonFence block = new PolygonFence(new double[]{-1.0, -1.0, -1.0 + dLat, -1.0 + dLat},
+                new double[]{103.0, 103.0 + dLng, 103.0 + dLng, 103.0});
+        FixFilter filter = new FixFilter();
+
+        filter.accept(-1.0 + dLat / 2, 103.0 + dLng / 2, 8, 0, true, 0, 0);
+        assertEquals(FixFilter.Verdict.INSIDE, filter.classify(block, 0));
+
+        filter.reset();
+        // 5 m inside the southern edge with an 8 m fix
+        filter.accept(-1.0 + 5 / GeoMath.METERS_PER_DEGREE_LAT, 103.0 + dLng / 2, 8, 0, true, 1000, 1000);
+        assertEquals(FixFilter.Verdict.UNCERTAIN, filter.classify(block, 1000));
+
+        filter.reset();
+        filter.accept(-1.0 - 50 / GeoMath.METERS_PER_DEGREE_LAT, 103.0 + dLng / 2, 8, 0, true, 2000, 2000);
+        assertEquals(FixFilter.Verdict.OUTSIDE, filter.classify(block, 2000));
+    }
+
+    @Test
+    public void noisyTraceDoesNotFlipAndStillSeesTheExit() throws IOException {
+        List<FixTrace.Fix> fixes = FixTrace.load("noisy_boundary.csv");
+        FixFilter filter = new FixFilter();
+
+        int rawFlips = 0;
+        boolean rawInside = true;
+        int filteredOutsideBeforeCrossing = 0;
+        long firstOutside = -1;
+        int insideAfterExit = 0;
+        for (int i = 0; i < fixes.size(); i++) {
+            FixTrace.Fix f = fixes.get(i);
+            // What the activity did before: every fix decides on its own
+            boolean inside = GeoMath.haversine(f.lat, f.lng, FENCE_LAT, FENCE_LNG) <= RADIUS;
+            if (inside != rawInside) rawFlips++;
+            rawInside = inside;
+
+            feed(filter, f);
+            FixFilter.Verdict verdict = filter.classify(FENCE_LAT, FENCE_LNG, RADIUS, f.timeMillis);
+            if (f.timeMillis < CROSSING_MILLIS && verdict == FixFilter.Verdict.OUTSIDE) {
+                filteredOutsideBeforeCrossing++;
+            }
+            if (verdict == FixFilter.Verdict.OUTSIDE && firstOutside < 0) firstOutside = f.timeMillis;
+            if (firstOutside >= 0 && verdict == FixFilter.Verdict.INSIDE) insideAfterExit++;
+        }
+
+        assertTrue("raw flips " + rawFlips, rawFlips >= 20);
+        assertEquals(0, filteredOutsideBeforeCrossing);
+        assertEquals(0, insideAfterExit);
+        assertTrue("exit seen at " + firstOutside,
+                firstOutside >= CROSSING_MILLIS && firstOutside <= CROSSING_MILLIS + 15_000);
+        assertTrue(filter.getRejectedAccuracyCount() > 0);
+        assertTrue(filter.getRejectedAgeCount() > 0);
+        assertTrue(filter.getRejectedProviderCount() > 0);
+        assertEquals(1, filter.getRejectedJumpCount());
+    }
+
+    @Test
+    public void replayDoesNotAllocate() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        List<FixTrace.Fix> fixes = FixTrace.load("noisy_boundary.csv");
+        FixFilter filter = new FixFilter();
+        long thread = Thread.currentThread().getId();
+        replay(filter, fixes);
+        threads.getThreadAllocatedBytes(thread);
+
+        filter.reset();
+        long before = threads.getThreadAllocatedBytes(thread);
+        int outside = replay(filter, fixes);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(outside > 0);
+        assertEquals(0, allocated);
+    }
+
+    private static int replay(FixFilter filter, List<FixTrace.Fix> fixes) {
+        int outside = 0;
+        for (int i = 0; i < fixes.size(); i++) {
+            FixTrace.Fix f = fixes.get(i);
+            feed(filter, f);
+            if (filter.classify(FENCE_LAT, FENCE_LNG, RADIUS, f.timeMillis) == FixFilter.Verdict.OUTSIDE) {
+                outside++;
+            }
+        }
+        return outside;
+    }
+
+    private static boolean feed(FixFilter filter, FixTrace.Fix f) {
+        return filter.accept(f.lat, f.lng, f.accuracy, f.speed, "gps".equals(f.provider),
+                f.timeMillis - f.ageMillis, f.timeMillis);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.geofenceapp.geo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Recorded fixes from src/test/resources/traces: timeMillis,lat,lng,accuracy,speed,provider
+// and an optional ageMillis, how old the fix already was when timeMillis delivered it
+final class FixTrace {
+    static final class Fix {
+        final long timeMillis;
+        final double lat;
+        final double lng;
+        final float accuracy;
+        final float speed;
+        final String provider;
+        final long ageMillis;
+
+        Fix(long timeMillis, double lat, double lng, float accuracy, float speed, String provider,
+            long ageMillis) {
+            this.timeMillis = timeMillis;
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracy = accuracy;
+            this.speed = speed;
+            this.provider = provider;
+            this.ageMillis = ageMillis;
+        }
+    }
+
+    private FixTrace() {
+    }
+
+    static List<Fix> load(String name) throws IOException {
+        InputStream in = FixTrace.class.getResourceAsStream("/traces/" + name);
+        if (in == null) throw new IOException("No trace " + name);
+        List<Fix> fixes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("timeMillis")) continue;
+                String[] f = line.split(",");
+                fixes.add(new Fix(Long.parseLong(f[0]), Double.parseDouble(f[1]), Double.parseDouble(f[2]),
+                        f[3].isEmpty() ? Float.NaN : Float.parseFloat(f[3]),
+                        f[4].isEmpty() ? Float.NaN : Float.parseFloat(f[4]), f[5],
+                        f.length > 6 ? Long.parseLong(f[6]) : 0));
+            }
+        }
+        return fixes;
+    }
+}
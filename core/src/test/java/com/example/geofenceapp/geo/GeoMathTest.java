@@ -0,0 +1,62 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeoMathTest {
+    @Test
+    public void haversineMatchesKnownDistance() {
+        // One degree of latitude on the 6371 km sphere
+        assertEquals(111194.9, GeoMath.haversine(0, 103, 1, 103), 0.1);
+        assertEquals(0.0, GeoMath.haversine(-1.5, 103.2, -1.5, 103.2), 0.0);
+    }
+
+    @Test
+    public void fastDistanceStaysWithinDocumentedBound() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            double lat = (random.nextDouble() * 2 - 1) * 60;
+            double lng = random.nextDouble() * 360 - 180;
+            double lat2 = lat + (random.nextDouble() * 2 - 1) * 0.006;
+            double lng2 = lng + (random.nextDouble() * 2 - 1) * 0.006;
+
+            double exact = GeoMath.haversine(lat, lng, lat2, lng2);
+            if (exact > 1000 || exact < 1) continue;
+            assertEquals(exact, GeoMath.fastDistance(lat, lng, lat2, lng2), exact * 1e-4);
+        }
+    }
+
+    @Test
+    public void batchFunctionsAgreeWithScalar() {
+        Random random = new Random(2);
+        int n = 1_000;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = -1.0 + random.nextDouble() * 0.002;
+            lngs[i] = 103.0 + random.nextDouble() * 0.002;
+        }
+        double lat = -0.999;
+        double lng = 103.001;
+
+        double[] exact = new double[n];
+        double[] fast = new double[n];
+        int[] inside = new int[n];
+        GeoMath.haversine(lat, lng, lats, lngs, exact, n);
+        GeoMath.fastDistance(lat, lng, lats, lngs, fast, n);
+        int found = GeoMath.withinRadius(lat, lng, lats, lngs, n, 30, inside);
+
+        int expected = 0;
+        for (int i = 0; i < n; i++) {
+            double scalar = GeoMath.haversine(lat, lng, lats[i], lngs[i]);
+            assertEquals(scalar, exact[i], 1e-6);
+            assertEquals(scalar, fast[i], 0.01);
+            assertEquals(GeoMath.isWithin(lat, lng, lats[i], lngs[i], 30), fast[i] <= 30);
+            if (fast[i] <= 30) assertEquals(i, inside[expected++]);
+        }
+        assertEquals(expected, found);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GeofenceEngineTest {
+    // Two fences 200 m apart along the equator-ish latitude of the estates
+    private final double[] lat = {-1.0, -1.0};
+    private final double[] lng = {103.0, 103.0 + 200 / GeoMath.metersPerDegreeLng(-1.0)};
+
+    private GeofenceEngine engine;
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        engine = new GeofenceEngine(lat, lng, new TphSpatialIndex(lat, lng), 30, 10, 60_000);
+        engine.addListener((fence, transition, distance, time) -> events.add(fence + ":" + transition));
+    }
+
+    @Test
+    public void entersDwellsAndExits() {
+        fixAt(0, 100, 0);
+        assertTrue(events.isEmpty());
+
+        fixAt(0, 20, 2_000);
+        assertEquals("0:ENTER", events.get(0));
+        assertTrue(engine.isInside(0));
+
+        fixAt(0, 5, 62_000);
+        assertEquals("0:DWELL", events.get(1));
+
+        fixAt(0, 60, 64_000);
+        assertEquals("0:EXIT", events.get(2));
+        assertEquals(0, engine.getInsideCount());
+        assertEquals(3, events.size());
+    }
+
+    @Test
+    public void jitterAroundBoundaryDoesNotFlap() {
+        fixAt(0, 28, 0);
+        // Wanders between 25 and 38 m, inside the 10 m exit margin
+        for (int i = 1; i <= 50; i++) {
+            fixAt(0, i % 2 == 0 ? 25 : 38, i * 2_000L);
+        }
+        assertEquals("0:ENTER", events.get(0));
+        assertFalse(events.contains("0:EXIT"));
+    }
+
+    @Test
+    public void tracksSeveralFences() {
+        fixAt(0, 0, 0);
+        fixAt(1, 10, 2_000);
+        assertTrue(events.contains("0:ENTER"));
+        assertTrue(events.contains("0:EXIT"));
+        assertTrue(events.contains("1:ENTER"));
+        assertFalse(engine.isInside(0));
+        assertTrue(engine.isInside(1));
+    }
+
+    @Test
+    public void fencesUseTheirOwnRadius() {
+        // Fence 1 is a large loading area, fence 0 falls back to the default 30 m
+        engine = new GeofenceEngine(lat, lng, new double[]{Double.NaN, 80}, new TphSpatialIndex(lat, lng),
+                30, 10, 60_000);
+        engine.addListener((fence, transition, distance, time) -> events.add(fence + ":" + transition));
+
+        fixAt(0, -50, 0);
+        fixAt(1, 70, 2_000);
+        assertEquals(1, events.size());
+        assertEquals("1:ENTER", events.get(0));
+        assertEquals(30, engine.radiusOf(0), 0.0);
+
+        fixAt(1, 85, 4_000);
+        assertFalse(events.contains("1:EXIT"));
+        fixAt(1, 95, 6_000);
+        assertEquals("1:EXIT", events.get(1));
+    }
+
+    @Test
+    public void countsFencesByTheirOwnRadius() {
+        engine = new GeofenceEngine(lat, lng, new double[]{Double.NaN, 190}, new TphSpatialIndex(lat, lng),
+                30, 10, 60_000);
+        double metersPerLng = GeoMath.metersPerDegreeLng(-1.0);
+        // 20 m from fence 0 and 180 m from fence 1
+        assertEquals(2, engine.countContaining(-1.0, 103.0 + 20 / metersPerLng));
+        // Only inside the large fence 1, 140 m away
+        assertEquals(1, engine.countContaining(-1.0, 103.0 + 60 / metersPerLng));
+        assertEquals(0, engine.countContaining(-1.0, 103.0 - 100 / metersPerLng));
+        // Counting leaves the fence state alone
+        assertEquals(0, engine.getInsideCount());
+    }
+
+    @Test
+    public void entersEveryFenceWhenManyAreInRange() {
+        // 625 fences 2 m apart, more than the engine's first candidate buffer holds, all
+        // within 60 m of the middle of the grid
+        int side = 25;
+        double[] manyLat = new double[side * side];
+        double[] manyLng = new double[side * side];
+        double metersPerLng = GeoMath.metersPerDegreeLng(-1.0);
+        for (int i = 0; i < manyLat.length; i++) {
+            manyLat[i] = -1.0 + (i / side) * 2 / GeoMath.METERS_PER_DEGREE_LAT;
+            manyLng[i] = 103.0 + (i % side) * 2 / metersPerLng;
+        }
+        engine = new GeofenceEngine(manyLat, manyLng, new TphSpatialIndex(manyLat, manyLng), 60, 10, 60_000);
+        engine.addListener((fence, transition, distance, time) -> events.add(fence + ":" + transition));
+
+        double middleLat = -1.0 + 24 / GeoMath.METERS_PER_DEGREE_LAT;
+        double middleLng = 103.0 + 24 / metersPerLng;
+        assertEquals(manyLat.length, engine.countContaining(middleLat, middleLng));
+        engine.onFix(middleLat, middleLng, 0);
+        assertEquals(manyLat.length, engine.getInsideCount());
+        assertEquals(manyLat.length, events.size());
+        for (int i = 0; i < manyLat.length; i++) {
+            assertTrue(engine.isInside(i));
+        }
+    }
+
+    // Fix offsetMeters east of the given fence
+    private void fixAt(int fence, double offsetMeters, long time) {
+        engine.onFix(lat[fence], lng[fence] + offsetMeters / GeoMath.metersPerDegreeLng(lat[fence]), time);
+    }
+}
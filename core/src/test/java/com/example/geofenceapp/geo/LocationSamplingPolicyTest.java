@@ -0,0 +1,195 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class LocationSamplingPolicyTest {
+    private static final double FENCE_LAT = -1.05;
+    private static final double FENCE_LNG = 103.05;
+    private static final double RADIUS = 30.0;
+    private static final long HOUR = 3_600_000;
+
+    // Network fixes in the replay are reported no better than this
+    private static final float NETWORK_ACCURACY = 40;
+
+    @Test
+    public void tiersFollowBoundaryDistance() {
+        LocationSamplingPolicy policy = new LocationSamplingPolicy();
+
+        assertTrue(policy.onFix(-1.0, 103.0, 20, 10, 0, 5000));
+        assertEquals(LocationSamplingPolicy.Tier.FAR, policy.getTier());
+        assertEquals(LocationSamplingPolicy.Provider.NETWORK, policy.getProvider());
+        assertEquals(LocationSamplingPolicy.MAX_FAR_INTERVAL_MILLIS, policy.getIntervalMillis());
+
+        // Closing in at 10 m/s: interval shrinks with the time left to the boundary
+        assertTrue(policy.onFix(-1.0, 103.0, 5, 10, 1000, 605));
+        assertEquals(LocationSamplingPolicy.Tier.APPROACH, policy.getTier());
+        assertEquals(LocationSamplingPolicy.Provider.GPS, policy.getProvider());
+        assertEquals(16_666, policy.getIntervalMillis());
+
+        assertTrue(policy.onFix(-1.0, 103.0, 5, 10, 2000, 60));
+        assertEquals(LocationSamplingPolicy.Tier.NEAR, policy.getTier());
+        assertEquals(LocationSamplingPolicy.NEAR_INTERVAL_MILLIS, policy.getIntervalMillis());
+
+        // Inside the fence counts as near too
+        assertFalse(policy.onFix(-1.0, 103.0, 5, 1, 3000, -20));
+    }
+
+    @Test
+    public void smallIntervalChangesDoNotReRegister() {
+        LocationSamplingPolicy policy = new LocationSamplingPolicy();
+        policy.onFix(-1.0, 103.0, 5, 5, 0, 700);
+        long interval = policy.getIntervalMillis();
+
+        assertFalse(policy.onFix(-1.0, 103.0001, 5, 5, 1000, 650));
+        assertEquals(interval, policy.getIntervalMillis());
+        assertTrue(policy.onFix(-1.0, 103.0002, 5, 5, 2000, 300));
+    }
+
+    @Test
+    public void poorAccuracyCountsAsCloser() {
+        LocationSamplingPolicy policy = new LocationSamplingPolicy();
+        policy.onFix(-1.0, 103.0, 150, 1, 0, 220);
+        assertEquals(LocationSamplingPolicy.Tier.NEAR, policy.getTier());
+    }
+
+    @Test
+    public void standingStillBacksOff() {
+        LocationSamplingPolicy policy = new LocationSamplingPolicy();
+        for (long t = 0; t <= LocationSamplingPolicy.STATIONARY_AFTER_MILLIS; t += 10_000) {
+            policy.onFix(-1.0, 103.0 + (t % 20_000 == 0 ? 0 : 0.00003), 8, Float.NaN, t, 3000);
+        }
+        assertEquals(LocationSamplingPolicy.Tier.STATIONARY, policy.getTier());
+        assertEquals(LocationSamplingPolicy.Provider.NETWORK, policy.getProvider());
+        assertEquals(LocationSamplingPolicy.STATIONARY_INTERVAL_MILLIS, policy.getIntervalMillis());
+
+        // 100 m in 10 s: moving again
+        assertTrue(policy.onFix(-1.0009, 103.0, 8, Float.NaN, 130_000, 3000));
+        assertNotEquals(LocationSamplingPolicy.Tier.STATIONARY, policy.getTier());
+    }
+
+    @Test
+    public void approachAndDwellTrace() throws IOException {
+        List<FixTrace.Fix> trace = FixTrace.load("approach_and_dwell.csv");
+        Replay truth = Replay.everyFix(trace);
+        Replay adaptive = Replay.adaptive(trace);
+        Replay baseline = Replay.fixed(trace, 2000);
+        String energy = energy(adaptive, baseline);
+
+        assertTrue(truth.enterTime >= 0 && truth.exitTime > truth.enterTime);
+        assertTrue("enter late by " + (adaptive.enterTime - truth.enterTime),
+                adaptive.enterTime >= 0 && adaptive.enterTime - truth.enterTime <= 5_000);
+        assertTrue("exit late by " + (adaptive.exitTime - truth.exitTime),
+                adaptive.exitTime >= 0 && adaptive.exitTime - truth.exitTime <= 15_000);
+        assertTrue(energy, adaptive.fixesPerHour() < baseline.fixesPerHour() / 4);
+        assertTrue(energy, adaptive.joules < baseline.joules / 2);
+    }
+
+    @Test
+    public void parkedTrace() throws IOException {
+        List<FixTrace.Fix> trace = FixTrace.load("parked.csv");
+        Replay adaptive = Replay.adaptive(trace);
+        Replay baseline = Replay.fixed(trace, 2000);
+        String energy = energy(adaptive, baseline);
+
+        // Far from every fence the minimum distance already holds back fixes while parked
+        assertEquals(LocationSamplingPolicy.Provider.NETWORK, adaptive.policy.getProvider());
+        assertTrue(energy, adaptive.fixesPerHour() < 120);
+        assertTrue(energy, adaptive.joules < baseline.joules / 10);
+    }
+
+    // The replay's numbers, for the assertion messages
+    private static String energy(Replay adaptive, Replay baseline) {
+        return String.format(Locale.ROOT,
+                "adaptive %.0f fixes/h %.2f mAh, fixed 2 s GPS+network %.0f fixes/h %.2f mAh (%.0f%% saved)",
+                adaptive.fixesPerHour(), LocationEnergyModel.milliampHours(adaptive.joules),
+                baseline.fixesPerHour(), LocationEnergyModel.milliampHours(baseline.joules),
+                100 * (1 - adaptive.joules / baseline.joules));
+    }
+
+    // Plays a 1 Hz trace through a request, delivering a fix only when the request's interval
+    // and minimum distance allow it, and counting fixes, energy and fence transitions
+    private static class Replay {
+        final LocationSamplingPolicy policy = new LocationSamplingPolicy();
+        final GeofenceEngine engine;
+        final TphSpatialIndex index;
+        final double[] lat = {FENCE_LAT, FENCE_LAT + 0.0027, FENCE_LAT - 0.0018};
+        final double[] lng = {FENCE_LNG, FENCE_LNG - 0.0013, FENCE_LNG + 0.0045};
+        final int[] ids = new int[1];
+        final double[] distances = new double[1];
+        int fixes;
+        double joules;
+        long durationMillis;
+        long enterTime = -1;
+        long exitTime = -1;
+
+        Replay() {
+            index = new TphSpatialIndex(lat, lng);
+            engine = new GeofenceEngine(lat, lng, index, RADIUS);
+            engine.addListener((fenceId, transition, distance, time) -> {
+                if (fenceId != 0) return;
+                if (transition == GeofenceEngine.Transition.ENTER && enterTime < 0) enterTime = time;
+                if (transition == GeofenceEngine.Transition.EXIT && exitTime < 0) exitTime = time;
+            });
+        }
+
+        static Replay everyFix(List<FixTrace.Fix> trace) {
+            Replay replay = new Replay();
+            for (FixTrace.Fix fix : trace) {
+                replay.engine.onFix(fix.lat, fix.lng, fix.timeMillis);
+            }
+            return replay;
+        }
+
+        // Today's behaviour: GPS and network both registered at a fixed interval
+        static Replay fixed(List<FixTrace.Fix> trace, long interval) {
+            Replay replay = new Replay();
+            replay.durationMillis = trace.get(trace.size() - 1).timeMillis - trace.get(0).timeMillis;
+            replay.fixes = (int) (2 * replay.durationMillis / interval);
+            replay.joules = LocationEnergyModel.joules(LocationSamplingPolicy.Provider.GPS, interval, replay.durationMillis)
+                    + LocationEnergyModel.joules(LocationSamplingPolicy.Provider.NETWORK, interval, replay.durationMillis);
+            return replay;
+        }
+
+        static Replay adaptive(List<FixTrace.Fix> trace) {
+            Replay replay = new Replay();
+            LocationSamplingPolicy policy = replay.policy;
+            long lastDelivered = Long.MIN_VALUE / 2;
+            double lastLat = 0, lastLng = 0;
+            long previous = trace.get(0).timeMillis;
+
+            for (FixTrace.Fix fix : trace) {
+                long step = fix.timeMillis - previous;
+                previous = fix.timeMillis;
+                replay.durationMillis += step;
+                replay.joules += LocationEnergyModel.joules(policy.getProvider(), policy.getIntervalMillis(), step);
+
+                if (fix.timeMillis - lastDelivered < policy.getIntervalMillis()) continue;
+                if (policy.getMinDistanceMeters() > 0 && GeoMath.fastDistance(lastLat, lastLng, fix.lat, fix.lng)
+                        < policy.getMinDistanceMeters()) continue;
+
+                boolean network = policy.getProvider() == LocationSamplingPolicy.Provider.NETWORK;
+                float accuracy = network ? Math.max(fix.accuracy, NETWORK_ACCURACY) : fix.accuracy;
+                float speed = network ? Float.NaN : fix.speed;
+                lastDelivered = fix.timeMillis;
+                lastLat = fix.lat;
+                lastLng = fix.lng;
+                replay.fixes++;
+
+                replay.engine.onFix(fix.lat, fix.lng, fix.timeMillis);
+                replay.index.nearest(fix.lat, fix.lng, replay.ids, replay.distances);
+                policy.onFix(fix.lat, fix.lng, accuracy, speed, fix.timeMillis, replay.distances[0] - RADIUS);
+            }
+            return replay;
+        }
+
+        double fixesPerHour() {
+            return fixes * (double) HOUR / durationMillis;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PolygonFenceTest {
+    private static final double DLAT = 1 / GeoMath.METERS_PER_DEGREE_LAT;
+    private static final double DLNG = 1 / GeoMath.metersPerDegreeLng(-1.0);
+
+    // Vertices given in metres north/east of (-1.0, 103.0)
+    private static PolygonFence metres(double... northEast) {
+        double[] lat = new double[northEast.length / 2];
+        double[] lng = new double[northEast.length / 2];
+        for (int i = 0; i < lat.length; i++) {
+            lat[i] = -1.0 + northEast[2 * i] * DLAT;
+            lng[i] = 103.0 + northEast[2 * i + 1] * DLNG;
+        }
+        return new PolygonFence(lat, lng);
+    }
+
+    private static boolean containsMetres(PolygonFence fence, double north, double east) {
+        return fence.contains(-1.0 + north * DLAT, 103.0 + east * DLNG);
+    }
+
+    @Test
+    public void squareContainsItsInterior() {
+        PolygonFence square = metres(0, 0, 0, 100, 100, 100, 100, 0);
+
+        assertTrue(containsMetres(square, 50, 50));
+        assertTrue(containsMetres(square, 1, 99));
+        assertFalse(containsMetres(square, 50, 101));
+        assertFalse(containsMetres(square, -1, 50));
+        assertFalse(square.contains(Double.NaN, 103.0));
+        assertEquals(50, square.distanceToBoundary(-1.0 + 50 * DLAT, 103.0 + 50 * DLNG), 0.01);
+        assertEquals(30, square.distanceToBoundary(-1.0 + 50 * DLAT, 103.0 + 130 * DLNG), 0.01);
+    }
+
+    @Test
+    public void notchOfAConcaveBlockIsOutside() {
+        // U shape: 300 m wide, with a 100 m wide, 200 m deep notch from the north
+        PolygonFence u = metres(0, 0, 0, 300, 300, 300, 300, 200, 100, 200, 100, 100, 300, 100, 300, 0);
+
+        assertTrue(containsMetres(u, 50, 150));
+        assertTrue(containsMetres(u, 250, 50));
+        assertTrue(containsMetres(u, 250, 250));
+        assertFalse(containsMetres(u, 250, 150));
+        assertFalse(containsMetres(u, 101, 150));
+    }
+
+    @Test
+    public void gridAgreesWithRayCastingOnIrregularBlocks() {
+        Random random = new Random(17);
+        for (int polygon = 0; polygon < 20; polygon++) {
+            int n = 50 + random.nextInt(450);
+            double[] lat = new double[n];
+            double[] lng = new double[n];
+            // Star-shaped with a ragged edge, like a block following a river
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * i / n;
+                double r = 200 + random.nextDouble() * 250;
+                lat[i] = -1.0 + r * Math.sin(angle) * DLAT;
+                lng[i] = 103.0 + r * Math.cos(angle) * DLNG;
+            }
+            PolygonFence fence = new PolygonFence(lat, lng);
+            assertTrue(fence.getBoundaryCellCount() < 16 * n);
+
+            for (int i = 0; i < 20_000; i++) {
+                double pLat = -1.0 + (random.nextDouble() * 1000 - 500) * DLAT;
+                double pLng = 103.0 + (random.nextDouble() * 1000 - 500) * DLNG;
+                assertEquals("polygon " + polygon + " point " + i,
+                        fence.containsBruteForce(pLat, pLng), fence.contains(pLat, pLng));
+            }
+            for (int i = 0; i < 2000; i++) {
+                double pLat = -1.0 + (random.nextDouble() * 1000 - 500) * DLAT;
+                double pLng = 103.0 + (random.nextDouble() * 1000 - 500) * DLNG;
+                double margin = 1 + random.nextDouble() * 30;
+                assertEquals(fence.distanceToBoundary(pLat, pLng) <= margin,
+                        fence.isNearBoundary(pLat, pLng, margin));
+            }
+            // Points level with a vertex, where a ray can run through it
+            for (int i = 0; i < n; i++) {
+                assertEquals(fence.containsBruteForce(lat[i], lng[(i + 1) % n]),
+                        fence.contains(lat[i], lng[(i + 1) % n]));
+            }
+        }
+    }
+
+    @Test
+    public void gridAgreesWithRayCastingWhenCellCentresLieOnEdges() {
+        // Vertices rounded to 1e-4 degrees, as boundaries often arrive, put edges exactly
+        // through cell centres; the grid must not trust the centre's state there
+        Random random = new Random(23);
+        for (int polygon = 0; polygon < 300; polygon++) {
+            int n = 5 + random.nextInt(60);
+            double[] lat = new double[n];
+            double[] lng = new double[n];
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * i / n;
+                double r = 100 + random.nextDouble() * 300;
+                lat[i] = Math.round((-1.0 + r * Math.sin(angle) * DLAT) * 1e4) / 1e4;
+                lng[i] = Math.round((103.0 + r * Math.cos(angle) * DLNG) * 1e4) / 1e4;
+            }
+            PolygonFence fence = new PolygonFence(lat, lng);
+
+            for (int i = 0; i < 5000; i++) {
+                double pLat = -1.0 + (random.nextDouble() * 900 - 450) * DLAT;
+                double pLng = 103.0 + (random.nextDouble() * 900 - 450) * DLNG;
+                assertEquals("polygon " + polygon + " point " + i,
+                        fence.containsBruteForce(pLat, pLng), fence.contains(pLat, pLng));
+            }
+            // And close to the edges, where a wrong cell state shows
+            for (int a = 0; a < n; a++) {
+                int b = (a + 1) % n;
+                for (int k = 0; k < 20; k++) {
+                    double t = random.nextDouble();
+                    double pLat = lat[a] + t * (lat[b] - lat[a]) + (random.nextDouble() - 0.5) * 20 * DLAT;
+                    double pLng = lng[a] + t * (lng[b] - lng[a]) + (random.nextDouble() - 0.5) * 20 * DLNG;
+                    assertEquals("polygon " + polygon + " edge " + a,
+                            fence.containsBruteForce(pLat, pLng), fence.contains(pLat, pLng));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void closingVertexIsOptional() {
+        PolygonFence open = metres(0, 0, 0, 100, 100, 0);
+        PolygonFence closed = metres(0, 0, 0, 100, 100, 0, 0, 0);
+        assertEquals(3, open.getVertexCount());
+        assertEquals(3, closed.getVertexCount());
+    }
+
+    @Test
+    public void parsesBoundaryText() {
+        PolygonFence fence = PolygonFence.parse(" -1.0,103.0; -1.0, 103.01 ;-1.01,103.01,;-1.0,103.0;");
+        assertNotNull(fence);
+        assertEquals(3, fence.getVertexCount());
+        assertTrue(fence.contains(-1.001, 103.005));
+
+        assertNull(PolygonFence.parse(null));
+        assertNull(PolygonFence.parse(""));
+        assertNull(PolygonFence.parse("-1.0,103.0;-1.0,103.01"));
+        assertNull(PolygonFence.parse("-1.0,103.0;-1.0,abc;-1.01,103.01"));
+        assertNull(PolygonFence.parse("-1.0,103.0;-1.0;-1.01,103.01"));
+    }
+}
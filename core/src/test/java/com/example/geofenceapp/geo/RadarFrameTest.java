@@ -0,0 +1,73 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RadarFrameTest {
+    // 100 m north, 100 m east, 300 m west (out of range) and one at the center with its own radius
+    private static final double LAT = -1.0;
+    private static final double LNG = 103.0;
+    private static final double[] LATS = {LAT + 100 / GeoMath.METERS_PER_DEGREE_LAT, LAT, LAT, LAT};
+    private static final double[] LNGS = {LNG, LNG + 100 / GeoMath.metersPerDegreeLng(LAT),
+            LNG - 300 / GeoMath.metersPerDegreeLng(LAT), LNG};
+    private static final double[] RADII = {Double.NaN, Double.NaN, Double.NaN, 50};
+
+    @Test
+    public void projectsNorthUpAroundTheCenter() {
+        TphSpatialIndex index = new TphSpatialIndex(LATS, LNGS);
+        GeofenceEngine engine = new GeofenceEngine(LATS, LNGS, RADII, index, 30);
+        engine.onFix(LAT, LNG, 0);
+        RadarFrame frame = new RadarFrame(LATS, LNGS, index, engine);
+
+        assertEquals(3, frame.update(LAT, LNG, 200, 500, 400, 2f));
+
+        float[] points = frame.getPoints();
+        boolean north = false;
+        boolean east = false;
+        boolean center = false;
+        for (int i = 0; i < frame.getPointCount(); i++) {
+            float x = points[i * 2];
+            float y = points[i * 2 + 1];
+            north |= Math.abs(x - 500) < 0.5 && Math.abs(y - 200) < 0.5;
+            east |= Math.abs(x - 700) < 0.5 && Math.abs(y - 400) < 0.5;
+            center |= Math.abs(x - 500) < 0.5 && Math.abs(y - 400) < 0.5;
+        }
+        assertTrue(north && east && center);
+
+        // Two 30 m rings outside, the 50 m one we stand in on its own
+        assertEquals(2 * RadarFrame.RING_SEGMENTS * 4, frame.getRingFloats());
+        assertEquals(RadarFrame.RING_SEGMENTS * 4, frame.getInsideRingFloats());
+        float[] inside = frame.getInsideRings();
+        for (int i = 0; i < frame.getInsideRingFloats(); i += 2) {
+            double r = Math.hypot(inside[i] - 500, inside[i + 1] - 400);
+            assertEquals(100, r, 0.01);
+        }
+    }
+
+    @Test
+    public void buffersGrowToFitAndTinyRingsAreSkipped() {
+        int n = 3000;
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        for (int i = 0; i < n; i++) {
+            // 10 m grid, 60 x 50 around the center
+            lat[i] = LAT + (i / 60 - 25) * 10 / GeoMath.METERS_PER_DEGREE_LAT;
+            lng[i] = LNG + (i % 60 - 30) * 10 / GeoMath.metersPerDegreeLng(LAT);
+        }
+        TphSpatialIndex index = new TphSpatialIndex(lat, lng);
+        GeofenceEngine engine = new GeofenceEngine(lat, lng, index, 30);
+        RadarFrame frame = new RadarFrame(lat, lng, index, engine);
+
+        assertEquals(n, frame.update(LAT, LNG, 1000, 0, 0, 1f));
+        assertEquals(n * RadarFrame.RING_SEGMENTS * 4, frame.getRingFloats());
+        float[] points = frame.getPoints();
+        float[] rings = frame.getRings();
+
+        // Same size again reuses the buffers; at this scale a 30 m ring is under 2 px
+        assertEquals(n, frame.update(LAT, LNG, 1000, 0, 0, 0.05f));
+        assertSame(points, frame.getPoints());
+        assertSame(rings, frame.getRings());
+        assertEquals(0, frame.getRingFloats());
+    }
+}
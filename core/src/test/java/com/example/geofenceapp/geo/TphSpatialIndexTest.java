@@ -0,0 +1,106 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TphSpatialIndexTest {
+    private static final int POINTS = 100_000;
+
+    @Test
+    public void nearestAndRadiusMatchBruteForce() {
+        Random random = new Random(42);
+        double[] lat = new double[5_000];
+        double[] lng = new double[5_000];
+        fill(random, lat, lng);
+        TphSpatialIndex index = new TphSpatialIndex(lat, lng, 50);
+
+        int[] ids = new int[5];
+        double[] distances = new double[5];
+        int[] radiusIds = new int[lat.length];
+        double[] radiusDistances = new double[lat.length];
+        for (int q = 0; q < 200; q++) {
+            double qLat = -1.0 + random.nextDouble() * 0.12 - 0.01;
+            double qLng = 103.0 + random.nextDouble() * 0.12 - 0.01;
+
+            double[] all = new double[lat.length];
+            for (int i = 0; i < lat.length; i++) {
+                all[i] = GeoMath.haversine(qLat, qLng, lat[i], lng[i]);
+            }
+            double[] sorted = all.clone();
+            Arrays.sort(sorted);
+
+            assertEquals(5, index.nearest(qLat, qLng, ids, distances));
+            for (int i = 0; i < 5; i++) {
+                assertEquals(sorted[i], distances[i], 1e-9);
+                assertEquals(all[ids[i]], distances[i], 1e-9);
+            }
+
+            int expected = 0;
+            for (double d : all) {
+                if (d <= 150) expected++;
+            }
+            int found = index.withinRadius(qLat, qLng, 150, radiusIds, radiusDistances);
+            assertEquals(expected, found);
+            for (int i = 0; i < found; i++) {
+                assertTrue(radiusDistances[i] <= 150);
+            }
+        }
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        TphSpatialIndex index = new TphSpatialIndex(new double[0], new double[0]);
+        assertEquals(0, index.nearest(-1, 103, new int[3], new double[3]));
+        assertEquals(0, index.withinRadius(-1, 103, 30, new int[3], new double[3]));
+    }
+
+    // Query speed at this size is measured by TphSpatialIndexBenchmark in :benchmark
+    @Test
+    public void queriesOn100kPointsMatchBruteForce() {
+        Random random = new Random(7);
+        double[] lat = new double[POINTS];
+        double[] lng = new double[POINTS];
+        fill(random, lat, lng);
+        TphSpatialIndex index = new TphSpatialIndex(lat, lng);
+
+        int[] ids = new int[10];
+        double[] distances = new double[10];
+        int[] radiusIds = new int[POINTS];
+        double[] radiusDistances = new double[POINTS];
+        double[] all = new double[POINTS];
+        for (int q = 0; q < 50; q++) {
+            int near = random.nextInt(POINTS);
+            double qLat = lat[near] + 0.0001;
+            double qLng = lng[near];
+            for (int i = 0; i < POINTS; i++) {
+                all[i] = GeoMath.haversine(qLat, qLng, lat[i], lng[i]);
+            }
+            double[] sorted = all.clone();
+            Arrays.sort(sorted);
+
+            assertEquals(10, index.nearest(qLat, qLng, ids, distances));
+            for (int i = 0; i < 10; i++) {
+                assertEquals(sorted[i], distances[i], 1e-9);
+            }
+            int expected = 0;
+            for (double d : all) {
+                if (d <= 30) expected++;
+            }
+            assertEquals(expected, index.withinRadius(qLat, qLng, 30, radiusIds, radiusDistances));
+        }
+    }
+
+    // Clustered points over roughly a 13 x 13 km estate
+    private static void fill(Random random, double[] lat, double[] lng) {
+        for (int i = 0; i < lat.length; i++) {
+            double blockLat = -1.0 + (i / 200 % 20) * 0.005;
+            double blockLng = 103.0 + (i / 4000) * 0.005;
+            lat[i] = blockLat + random.nextDouble() * 0.004;
+            lng[i] = blockLng + random.nextDouble() * 0.004;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraceReplayTest {
+    private static final double FENCE_LAT = -1.05;
+    private static final double FENCE_LNG = 103.05;
+    private static final float RADIUS = 30;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    // Records noisy_boundary.csv the way the activity does: every raw fix, plus the status
+    // the user would have seen every 10 s
+    private File record(FixFilter onDevice) throws IOException {
+        File file = tmp.newFile("noisy.gft");
+        TraceWriter writer = TraceWriter.open(file, Runnable::run);
+        writer.fence(0, FENCE_LAT, FENCE_LNG, RADIUS);
+        List<FixTrace.Fix> fixes = FixTrace.load("noisy_boundary.csv");
+        for (int i = 0; i < fixes.size(); i++) {
+            FixTrace.Fix f = fixes.get(i);
+            writer.fix(f.timeMillis, (int) f.ageMillis, f.lat, f.lng, f.accuracy, f.speed, "gps".equals(f.provider));
+            onDevice.accept(f.lat, f.lng, f.accuracy, f.speed, "gps".equals(f.provider),
+                    f.timeMillis - f.ageMillis, f.timeMillis);
+            if (f.timeMillis % 10_000 == 0) {
+                writer.decision(f.timeMillis, onDevice.classify(FENCE_LAT, FENCE_LNG, RADIUS, f.timeMillis),
+                        (float) GeoMath.haversine(onDevice.getLatitude(), onDevice.getLongitude(),
+                                FENCE_LAT, FENCE_LNG));
+            }
+        }
+        writer.close();
+        return file;
+    }
+
+    @Test
+    public void replayReproducesRecordedDecisions() throws IOException {
+        File file = record(new FixFilter());
+
+        TraceReplay.Report report = TraceReplay.replay(new TraceReader(file), new FixFilter());
+
+        assertEquals(FixTrace.load("noisy_boundary.csv").size(), report.getFixCount());
+        assertEquals(1, report.getFenceCount());
+        assertEquals(48, report.getDecisionCount());
+        assertEquals(0, report.getMismatchCount());
+        assertTrue(report.getAcceptedCount() < report.getFixCount());
+        assertTrue(report.getFixesPerSecond() > 0);
+        assertTrue(report.getP50Nanos() <= report.getP99Nanos());
+    }
+
+    @Test
+    public void changedFilterShowsUpAsMismatches() throws IOException {
+        // A device that only trusted fixes better than 5 m, so it was often left without one
+        File file = record(new FixFilter(5, FixFilter.DEFAULT_MAX_AGE_MILLIS));
+
+        TraceReplay.Report report = TraceReplay.replay(new TraceReader(file), new FixFilter());
+
+        assertTrue(report.toString(), report.getMismatchCount() > 0);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.geofenceapp.geo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraceWriterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void recordsRoundTrip() throws IOException {
+        File file = new File(tmp.getRoot(), "traces/day.gft");
+        TraceWriter writer = TraceWriter.open(file, Runnable::run);
+        writer.fence(1000, -1.05, 103.05, 30);
+        writer.fix(2000, 150, -1.0501, 103.0502, 6.5f, Float.NaN, true);
+        writer.decision(2100, FixFilter.Verdict.UNCERTAIN, 29.5f);
+        writer.transition(2200, 7, GeofenceEngine.Transition.ENTER, 12.25f);
+        writer.close();
+        assertNull(writer.getError());
+        assertEquals(4, writer.getRecordCount());
+
+        TraceReader reader = new TraceReader(file);
+        assertEquals(TraceReader.FENCE, reader.next());
+        assertEquals(-1.05, reader.getLatitude(), 0.0);
+        assertEquals(30f, reader.getRadius(), 0f);
+        assertEquals(TraceReader.FIX, reader.next());
+        assertEquals(2000, reader.getTimeMillis());
+        assertEquals(150, reader.getAgeMillis());
+        assertEquals(103.0502, reader.getLongitude(), 0.0);
+        assertEquals(6.5f, reader.getAccuracy(), 0f);
+        assertTrue(Float.isNaN(reader.getSpeed()));
+        assertTrue(reader.isGps());
+        assertEquals(TraceReader.DECISION, reader.next());
+        assertEquals(FixFilter.Verdict.UNCERTAIN, reader.getVerdict());
+        assertEquals(TraceReader.TRANSITION, reader.next());
+        assertEquals(7, reader.getFenceId());
+        assertEquals(GeofenceEngine.Transition.ENTER, reader.getTransition());
+        assertEquals(12.25f, reader.getDistance(), 0f);
+        assertEquals(TraceReader.END, reader.next());
+        assertFalse(reader.isTruncated());
+    }
+
+    @Test
+    public void appendingKeepsOneHeader() throws IOException {
+        File file = tmp.newFile("day.gft");
+        for (int i = 0; i < 2; i++) {
+            TraceWriter writer = TraceWriter.open(file, Runnable::run);
+            writer.fix(i, 0, -1.0, 103.0, 5, 0, true);
+            writer.close();
+        }
+
+        TraceReader reader = new TraceReader(file);
+        assertEquals(TraceReader.FIX, reader.next());
+        assertEquals(TraceReader.FIX, reader.next());
+        assertEquals(1, reader.getTimeMillis());
+        assertEquals(TraceReader.END, reader.next());
+    }
+
+    @Test
+    public void recordCutShortEndsTheTrace() throws IOException {
+        File file = tmp.newFile("day.gft");
+        TraceWriter writer = TraceWriter.open(file, Runnable::run);
+        writer.fix(1, 0, -1.0, 103.0, 5, 0, true);
+        writer.fix(2, 0, -1.0, 103.0, 5, 0, true);
+        writer.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        TraceReader reader = new TraceReader(file);
+        assertEquals(TraceReader.FIX, reader.next());
+        assertEquals(TraceReader.END, reader.next());
+        assertTrue(reader.isTruncated());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File file = tmp.newFile("notes.txt");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("timeMillis,lat,lng".getBytes("UTF-8"));
+        }
+        new TraceReader(file);
+    }
+
+    @Test
+    public void dropsRecordsWhileTheDiskIsBehind() throws IOException {
+        File file = tmp.newFile("day.gft");
+        List<Runnable> pending = new ArrayList<>();
+        int bufferSize = 1 + TraceWriter.FIX_SIZE + 6;
+        TraceWriter writer = new TraceWriter(new FileOutputStream(file, true).getChannel(), pending::add,
+                bufferSize);
+
+        writer.fix(1, 0, -1.0, 103.0, 5, 0, true);
+        // Both buffers are full and the first is still queued for writing
+        writer.fix(2, 0, -1.0, 103.0, 5, 0, true);
+        writer.fix(3, 0, -1.0, 103.0, 5, 0, true);
+        assertEquals(1, writer.getDroppedCount());
+
+        for (int i = 0; i < pending.size(); i++) pending.get(i).run();
+        pending.clear();
+        writer.fix(4, 0, -1.0, 103.0, 5, 0, true);
+        writer.close();
+        for (Runnable task : pending) task.run();
+
+        TraceReader reader = new TraceReader(file);
+        long[] times = new long[3];
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TraceReader.FIX, reader.next());
+            times[i] = reader.getTimeMillis();
+        }
+        assertArrayEquals(new long[]{1, 2, 4}, times);
+        assertEquals(TraceReader.END, reader.next());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.geofenceapp.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void bucketsCoverTheRangeWithoutGaps() {
+        assertEquals(0, Histogram.bucketOf(0));
+        assertEquals(0, Histogram.bucketOf(1023));
+        assertEquals(1, Histogram.bucketOf(1024));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucketOf(Long.MAX_VALUE));
+        for (int bucket = 0; bucket < Histogram.BUCKETS - 1; bucket++) {
+            long bound = Histogram.upperBound(bucket);
+            assertEquals(bucket, Histogram.bucketOf(bound));
+            assertEquals(bucket + 1, Histogram.bucketOf(bound + 1));
+        }
+        // A bucket is never more than 1/8 wider than the values in it
+        for (int bucket = 2; bucket < Histogram.BUCKETS - 1; bucket++) {
+            long low = Histogram.upperBound(bucket - 1) + 1;
+            long width = Histogram.upperBound(bucket) - low + 1;
+            assertTrue(width * Histogram.SUB_BUCKETS <= low);
+        }
+    }
+
+    @Test
+    public void percentilesComeFromTheBuckets() {
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        histogram.record(-5);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(101, snapshot.getCount());
+        assertEquals(100_000_000L, snapshot.getMaxNanos());
+        assertEquals(5050_000_000L / 101, snapshot.getMeanNanos());
+        assertWithinBucket(50_000_000L, snapshot.getPercentileNanos(0.5));
+        assertWithinBucket(99_000_000L, snapshot.getPercentileNanos(0.99));
+        assertEquals(100_000_000L, snapshot.getPercentileNanos(1.0));
+        assertEquals(1023, snapshot.getPercentileNanos(0.0));
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual + " for " + expected, actual >= expected && actual <= expected * 9 / 8);
+    }
+
+    @Test
+    public void resetEmptiesIt() {
+        Histogram histogram = new Histogram("test");
+        histogram.record(5_000);
+        Histogram.Snapshot before = histogram.snapshot();
+        histogram.reset();
+
+        assertEquals(1, before.getCount());
+        Histogram.Snapshot after = histogram.snapshot();
+        assertEquals(0, after.getCount());
+        assertEquals(0, after.getMaxNanos());
+        assertEquals(0, after.getPercentileNanos(0.5));
+    }
+}
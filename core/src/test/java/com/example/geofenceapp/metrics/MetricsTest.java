@@ -0,0 +1,39 @@
+package com.example.geofenceapp.metrics;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    @Test
+    public void namesMapToOneInstance() {
+        assertSame(Metrics.counter("test.same"), Metrics.counter("test.same"));
+        assertSame(Metrics.histogram("test.same"), Metrics.histogram("test.same"));
+    }
+
+    @Test
+    public void reportsWhatWasRecorded() {
+        Counter counter = Metrics.counter("test.report");
+        Histogram histogram = Metrics.histogram("test.report");
+        Metrics.reset();
+        counter.add(3);
+        histogram.record(2_000_000);
+
+        String table = Metrics.format();
+        assertTrue(table, table.contains("test.report"));
+        assertTrue(table, table.matches("(?s).*test\\.report +1 +2\\.000 +2\\.000 +2\\.000 +2\\.000.*"));
+
+        String json = Metrics.toJson(42, Collections.singletonMap("model", "Pixel \"7\""));
+        assertTrue(json, json.startsWith("{\"time\":42,\"since\":"));
+        assertTrue(json, json.contains("\"device\":{\"model\":\"Pixel \\\"7\\\"\"}"));
+        assertTrue(json, json.contains("\"test.report\":3"));
+        assertTrue(json, json.contains("\"test.report\":{\"count\":1,\"mean\":2000,\"p50\":2000,\"p90\":2000," +
+                "\"p99\":2000,\"max\":2000}"));
+
+        Metrics.reset();
+        assertEquals(0, counter.get());
+        assertFalse(Metrics.toJson(43, Collections.emptyMap()).contains("\"test.report\":{"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.FixFilter;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CheckInLogTest {
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        writer.shutdownNow();
+    }
+
+    // Keeps batches as committed; a commit can be held to stand in for a slow disk
+    static class MemoryStore implements CheckInStore {
+        final List<List<CheckIn>> commits = new ArrayList<>();
+        final List<CheckIn> rows = new ArrayList<>();
+        final Set<String> sent = new HashSet<>();
+        volatile boolean failing;
+        volatile CountDownLatch hold;
+
+        @Override
+        public void insertCheckIns(List<CheckIn> checkIns) {
+            CountDownLatch latch = hold;
+            if (latch != null) {
+                try {
+                    assertTrue(latch.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            store(checkIns);
+        }
+
+        private synchronized void store(List<CheckIn> checkIns) {
+            if (failing) throw new IllegalStateException("disk full");
+            commits.add(new ArrayList<>(checkIns));
+            for (CheckIn checkIn : checkIns) {
+                boolean known = false;
+                for (CheckIn row : rows) {
+                    known |= row.getId().equals(checkIn.getId());
+                }
+                if (!known) rows.add(checkIn);
+            }
+        }
+
+        @Override
+        public synchronized List<CheckIn> getUnsentCheckIns(int limit) {
+            List<CheckIn> unsent = new ArrayList<>();
+            for (CheckIn row : rows) {
+                if (unsent.size() < limit && !sent.contains(row.getId())) unsent.add(row);
+            }
+            return unsent;
+        }
+
+        @Override
+        public synchronized void markCheckInsSent(List<CheckIn> checkIns) {
+            for (CheckIn checkIn : checkIns) {
+                sent.add(checkIn.getId());
+            }
+        }
+    }
+
+    static CheckIn checkIn(int i) {
+        return CheckIn.create(1_000L + i, "B01", String.format("%03d", i), FixFilter.Verdict.INSIDE,
+                -1.0, 103.0, 5, 12.5, Double.NaN);
+    }
+
+    @Test
+    public void burstsAreGroupCommittedInOrder() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.hold = new CountDownLatch(1);
+        CheckInLog log = new CheckInLog(store, writer, 50);
+
+        // The first commit is stuck on the disk the whole time; record() must not care
+        for (int i = 0; i < 1000; i++) {
+            log.record(checkIn(i));
+        }
+        store.hold.countDown();
+        log.flush();
+
+        assertEquals(1000, store.rows.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(String.format("%03d", i), store.rows.get(i).getNoTPH());
+        }
+        // What queued behind the stuck commit went in full batches
+        assertTrue(store.commits.size() + " commits", store.commits.size() <= 1 + 1000 / 50);
+        for (List<CheckIn> batch : store.commits) {
+            assertTrue(batch.size() <= 50);
+        }
+    }
+
+    @Test
+    public void recordsFromManyThreadsAllLand() throws Exception {
+        MemoryStore store = new MemoryStore();
+        CheckInLog log = new CheckInLog(store, writer, CheckInLog.DEFAULT_BATCH_SIZE);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            int base = t * 500;
+            callers.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    log.record(checkIn(base + i));
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        callers.shutdown();
+        log.flush();
+
+        assertEquals(2000, store.rows.size());
+    }
+
+    @Test
+    public void failedBatchIsKeptForTheNextPass() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.failing = true;
+        CheckInLog log = new CheckInLog(store, writer, 10);
+        for (int i = 0; i < 25; i++) {
+            log.record(checkIn(i));
+        }
+        try {
+            log.flush();
+            fail("flushed into a failing store");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+        assertTrue(store.rows.isEmpty());
+
+        store.failing = false;
+        log.flush();
+        assertEquals(25, store.rows.size());
+        assertEquals("000", store.rows.get(0).getNoTPH());
+        assertEquals("024", store.rows.get(24).getNoTPH());
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.FixFilter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class CheckInUploaderTest {
+    private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+
+    private HttpServer server;
+    private CheckInUploader uploader;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    // What the stand-in server has accepted, deduplicated by check-in id as the real one is
+    private final Set<String> accepted = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final List<String> keys = Collections.synchronizedList(new ArrayList<>());
+    private volatile int status = 200;
+    // Requests to store but then answer 500, as if the response was lost on the way back
+    private volatile int lostResponses;
+    private volatile long uncompressedBytes;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/CheckIn/Bulk", this::handle);
+        server.start();
+        uploader = new CheckInUploader("http://127.0.0.1:" + server.getAddress().getPort() + "/api/CheckIn/Bulk");
+        uploader.setTimeouts(2000, 2000);
+        uploader.setSleeper(sleeps::add);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        assertEquals("POST", exchange.getRequestMethod());
+        assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        byte[] body = readAll(new GZIPInputStream(exchange.getRequestBody()));
+        uncompressedBytes += body.length;
+        keys.add(exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+        int answer = status;
+        if (answer == 200) {
+            Matcher m = ID.matcher(new String(body, StandardCharsets.UTF_8));
+            while (m.find()) {
+                accepted.add(m.group(1));
+            }
+            if (lostResponses > 0) {
+                lostResponses--;
+                answer = 500;
+            }
+        }
+        exchange.sendResponseHeaders(answer, -1);
+        exchange.close();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static CheckInLogTest.MemoryStore store(int checkIns) {
+        CheckInLogTest.MemoryStore store = new CheckInLogTest.MemoryStore();
+        List<CheckIn> all = new ArrayList<>();
+        for (int i = 0; i < checkIns; i++) {
+            all.add(CheckInLogTest.checkIn(i));
+        }
+        store.insertCheckIns(all);
+        return store;
+    }
+
+    @Test
+    public void sendsEverythingInCompressedBatches() throws IOException {
+        CheckInLogTest.MemoryStore store = store(1200);
+        uploader.setBatchSize(500);
+
+        CheckInUploader.Result result = uploader.upload(store);
+
+        assertEquals(1200, result.getSent());
+        assertEquals(3, result.getBatches());
+        assertEquals(1200, accepted.size());
+        assertTrue(store.getUnsentCheckIns(10).isEmpty());
+        assertTrue(result.getBytesSent() + " of " + uncompressedBytes,
+                result.getBytesSent() < uncompressedBytes / 3);
+
+        // Nothing left, nothing sent
+        assertEquals(0, uploader.upload(store).getSent());
+        assertEquals(3, keys.size());
+    }
+
+    @Test
+    public void lostResponseIsRetriedWithTheSameKey() throws IOException {
+        CheckInLogTest.MemoryStore store = store(30);
+        uploader.setBatchSize(20);
+        lostResponses = 1;
+
+        CheckInUploader.Result result = uploader.upload(store);
+
+        assertEquals(30, result.getSent());
+        assertEquals(30, accepted.size());
+        assertEquals(3, keys.size());
+        assertEquals(keys.get(0), keys.get(1));
+        assertNotEquals(keys.get(1), keys.get(2));
+        assertEquals(1, sleeps.size());
+    }
+
+    @Test
+    public void rejectedBatchStaysUnsent() {
+        CheckInLogTest.MemoryStore store = store(5);
+        status = 400;
+        try {
+            uploader.upload(store);
+            fail("upload accepted a 400");
+        } catch (IOException e) {
+            assertEquals("Server returned HTTP 400", e.getMessage());
+        }
+        // Not worth retrying
+        assertTrue(sleeps.isEmpty());
+        assertEquals(5, store.getUnsentCheckIns(10).size());
+    }
+
+    @Test
+    public void jsonAndKeys() {
+        List<CheckIn> batch = new ArrayList<>();
+        batch.add(new CheckIn("a-1", 42, "B\"1", null, FixFilter.Verdict.OUTSIDE,
+                -1.5, 103.25, 8, 31.5, Double.NaN));
+        assertEquals("{\"checkIns\":[{\"id\":\"a-1\",\"time\":42,\"kodeBlok\":\"B\\\"1\",\"noTPH\":null," +
+                        "\"verdict\":\"OUTSIDE\",\"lat\":-1.5,\"lng\":103.25,\"accuracy\":8.0,\"distance\":31.5," +
+                        "\"radius\":null}]}",
+                CheckInUploader.toJson(batch));
+        assertEquals(CheckInUploader.idempotencyKey(batch), CheckInUploader.idempotencyKey(new ArrayList<>(batch)));
+        batch.add(CheckInLogTest.checkIn(1));
+        assertNotEquals(CheckInUploader.idempotencyKey(batch.subList(0, 1)), CheckInUploader.idempotencyKey(batch));
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.geofenceapp.service;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MultiEstateSyncTest {
+    private final ExecutorService downloads = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        downloads.shutdownNow();
+    }
+
+    // Records what reaches it and fails if anything arrives off the writer thread, or if one
+    // sink writes while another still has unflushed rows, as if in a shared transaction
+    private static class RecordingTarget implements TphSyncTarget {
+        final Thread writer = Thread.currentThread();
+        final List<String> rows = new ArrayList<>();
+        final List<String> commits = new ArrayList<>();
+        final List<String> aborts = new ArrayList<>();
+        String failOn;
+        TphRecordSink open;
+
+        private void onWriter() {
+            assertSame(writer, Thread.currentThread());
+        }
+
+        @Override
+        public TphRecordSink openFull(String company, String location) {
+            onWriter();
+            return new TphRecordSink() {
+                @Override
+                public void write(TphRecord record) {
+                    onWriter();
+                    assertTrue(open == null || open == this);
+                    open = this;
+                    if (record.getNoTPH().equals(failOn)) throw new IllegalStateException("disk full");
+                    rows.add(record.getLocation() + ":" + record.getNoTPH());
+                }
+
+                @Override
+                public void flush() {
+                    onWriter();
+                    close();
+                }
+
+                @Override
+                public void checkpoint(SyncCursor cursor) {
+                    onWriter();
+                    close();
+                }
+
+                @Override
+                public void commit() {
+                    onWriter();
+                    close();
+                    commits.add(location);
+                }
+
+                @Override
+                public void abort() {
+                    onWriter();
+                    close();
+                    aborts.add(location);
+                }
+
+                private void close() {
+                    if (open == this) open = null;
+                }
+            };
+        }
+
+        @Override
+        public TphRecordSink openDelta() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SyncCursor getSyncCursor(String company, String location) {
+            onWriter();
+            return null;
+        }
+
+        @Override
+        public TphRecordSink resume(SyncCursor cursor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clearSyncCursor(String company, String location) {
+            onWriter();
+        }
+    }
+
+    // Writes `records` rows per estate the way TphSyncClient does
+    private static TphSyncClient.Result download(Estate estate, TphSyncTarget target,
+                                                 TphSyncClient.ProgressListener progress, int records) {
+        target.getSyncCursor(estate.getCompany(), estate.getLocation());
+        TphRecordSink sink = target.openFull(estate.getCompany(), estate.getLocation());
+        try {
+            for (int i = 0; i < records; i++) {
+                sink.write(new TphRecord(estate.getCompany(), estate.getLocation(), "B01",
+                        String.format("%03d", i), "-1.0,103.0,"));
+                if ((i + 1) % 10 == 0) progress.onProgress(i + 1);
+            }
+            sink.commit();
+        } catch (RuntimeException e) {
+            sink.abort();
+            throw e;
+        }
+        return new TphSyncClient.Result(TphSyncClient.Mode.FULL, records, null, false, records * 10L);
+    }
+
+    private static List<Estate> estates(int n) {
+        List<Estate> estates = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            estates.add(new Estate("A06", String.valueOf(20 + i)));
+        }
+        return estates;
+    }
+
+    @Test
+    public void downloadsRunInParallelUpToTheLimit() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch overlap = new CountDownLatch(2);
+        List<Estate> stored = Collections.synchronizedList(new ArrayList<>());
+        MultiEstateSync sync = new MultiEstateSync(new MultiEstateSync.Job() {
+            @Override
+            public TphSyncClient.Result download(Estate estate, TphSyncTarget t,
+                                                 TphSyncClient.ProgressListener progress) throws Exception {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                overlap.countDown();
+                // Held until two downloads are in flight at once
+                assertTrue(overlap.await(5, TimeUnit.SECONDS));
+                try {
+                    return MultiEstateSyncTest.download(estate, t, progress, 25);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+
+            @Override
+            public void onDownloaded(Estate estate, TphSyncClient.Result result) {
+                assertSame(target.writer, Thread.currentThread());
+                stored.add(estate);
+            }
+        }, target, downloads, 2);
+        sync.setQueue(2, 4);
+
+        List<EstateSyncStatus> updates = new ArrayList<>();
+        List<EstateSyncStatus> statuses = sync.run(estates(5), updates::add);
+
+        assertEquals(2, peak.get());
+        assertEquals(5, statuses.size());
+        for (EstateSyncStatus status : statuses) {
+            assertEquals(SyncStatus.State.SUCCEEDED, status.getState());
+            assertEquals(25, status.getRecords());
+        }
+        assertEquals(125, target.rows.size());
+        assertEquals(5, target.commits.size());
+        assertEquals(5, stored.size());
+        // Each estate's rows reach the writer in the order they were parsed
+        List<String> first = new ArrayList<>();
+        for (String row : target.rows) {
+            if (row.startsWith("20:")) first.add(row);
+        }
+        assertEquals("20:000", first.get(0));
+        assertEquals("20:024", first.get(24));
+        // Queued, running, every tenth record, and done, for each estate
+        assertTrue(updates.size() >= 5 * 4);
+
+        TphSyncClient.Result combined = MultiEstateSync.combine(statuses);
+        assertEquals(TphSyncClient.Mode.FULL, combined.getMode());
+        assertEquals(125, combined.getRecordCount());
+        assertEquals(1250, combined.getBytesReceived());
+    }
+
+    @Test
+    public void oneFailureDoesNotStopTheOthers() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        // A write failing on the writer thread is thrown back to the download
+        target.failOn = "007";
+        MultiEstateSync sync = new MultiEstateSync(new MultiEstateSync.Job() {
+            @Override
+            public TphSyncClient.Result download(Estate estate, TphSyncTarget t,
+                                                 TphSyncClient.ProgressListener progress) throws Exception {
+                if (estate.getLocation().equals("21")) throw new IOException("Server returned HTTP 500");
+                return MultiEstateSyncTest.download(estate, t, progress, estate.getLocation().equals("22") ? 20 : 5);
+            }
+
+            @Override
+            public void onDownloaded(Estate estate, TphSyncClient.Result result) {
+            }
+        }, target, downloads, 3);
+        sync.setQueue(1, 2);
+
+        List<EstateSyncStatus> statuses = sync.run(estates(4), null);
+
+        assertEquals(SyncStatus.State.SUCCEEDED, statuses.get(0).getState());
+        assertEquals(SyncStatus.State.FAILED, statuses.get(1).getState());
+        assertEquals("Server returned HTTP 500", statuses.get(1).getError());
+        assertEquals(SyncStatus.State.FAILED, statuses.get(2).getState());
+        assertEquals("disk full", statuses.get(2).getError());
+        assertEquals(SyncStatus.State.SUCCEEDED, statuses.get(3).getState());
+        assertEquals(Arrays.asList("20", "23"), sortedCommits(target));
+        // Rolled back on the writer as soon as the write failed, and only then
+        assertEquals(Collections.singletonList("22"), target.aborts);
+
+        try {
+            MultiEstateSync.combine(statuses);
+            fail("combined a failed run");
+        } catch (IOException e) {
+            assertEquals("2 of 4 estates failed: A06/21: Server returned HTTP 500; A06/22: disk full",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void cancelAbortsOpenSinksAndFailsUnfinishedEstates() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        MultiEstateSync[] sync = new MultiEstateSync[1];
+        sync[0] = new MultiEstateSync(new MultiEstateSync.Job() {
+            @Override
+            public TphSyncClient.Result download(Estate estate, TphSyncTarget t,
+                                                 TphSyncClient.ProgressListener progress) {
+                TphRecordSink sink = t.openFull(estate.getCompany(), estate.getLocation());
+                sink.write(new TphRecord("A06", estate.getLocation(), "B01", "000", "-1.0,103.0,"));
+                // The job is withdrawn mid-page; the download only notices at a later write
+                sync[0].cancel();
+                for (int i = 1; ; i++) {
+                    sink.write(new TphRecord("A06", estate.getLocation(), "B01", String.format("%03d", i),
+                            "-1.0,103.0,"));
+                }
+            }
+
+            @Override
+            public void onDownloaded(Estate estate, TphSyncClient.Result result) {
+                fail("cancelled estates are not stored");
+            }
+        }, target, downloads, 1);
+        sync[0].setQueue(2, 2);
+
+        List<EstateSyncStatus> statuses = sync[0].run(estates(2), null);
+
+        for (EstateSyncStatus status : statuses) {
+            assertEquals(SyncStatus.State.FAILED, status.getState());
+            assertEquals("Sync cancelled", status.getError());
+        }
+        assertEquals(Collections.singletonList("20"), target.aborts);
+        assertTrue(target.commits.isEmpty());
+        // Nothing further reaches the target once run() has returned
+        int rows = target.rows.size();
+        Thread.sleep(200);
+        assertEquals(rows, target.rows.size());
+    }
+
+    private static List<String> sortedCommits(RecordingTarget target) {
+        List<String> commits = new ArrayList<>(target.commits);
+        Collections.sort(commits);
+        return commits;
+    }
+
+    @Test
+    public void runnerPublishesEachEstate() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        MultiEstateSync sync = new MultiEstateSync(new MultiEstateSync.Job() {
+            @Override
+            public TphSyncClient.Result download(Estate estate, TphSyncTarget t,
+                                                 TphSyncClient.ProgressListener progress) {
+                return MultiEstateSyncTest.download(estate, t, progress, 10);
+            }
+
+            @Override
+            public void onDownloaded(Estate estate, TphSyncClient.Result result) {
+            }
+        }, target, downloads, 2);
+        List<SyncStatus> published = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        SyncRunner runner = new SyncRunner(progress -> MultiEstateSync.combine(sync.run(estates(2), progress)),
+                Runnable::run, Runnable::run);
+        runner.addListener(published::add);
+        // Runs inline, so this thread is the writer the target expects
+        runner.request(SyncStatus.Trigger.MANUAL, s -> done.countDown());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        SyncStatus last = runner.getStatus();
+        assertEquals(SyncStatus.State.SUCCEEDED, last.getState());
+        assertEquals(20, last.getRecords());
+        assertEquals(2, last.getEstates().size());
+        assertEquals(new Estate("A06", "21"), last.getEstates().get(1).getEstate());
+        boolean sawPartial = false;
+        for (SyncStatus status : published) {
+            sawPartial |= status.isRunning() && status.getRecords() == 10;
+        }
+        assertTrue(sawPartial);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.geofenceapp.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PrefixIndexTest {
+
+    @Test
+    public void prefixIsOneContiguousRun() {
+        PrefixIndex index = new PrefixIndex(Arrays.asList("B10", "a01", "B1", null, "B02", "C01", "b11"));
+
+        assertEquals(6, index.size());
+        assertEquals("a01", index.get(0));
+        assertEquals(Arrays.asList("B1", "B10", "b11"), range(index, "b1"));
+        assertEquals(Arrays.asList("B02", "B1", "B10", "b11"), range(index, "B"));
+        assertEquals(6, range(index, "").size());
+        assertTrue(range(index, "D").isEmpty());
+        assertTrue(range(index, "B100").isEmpty());
+    }
+
+    @Test
+    public void findIsExactIgnoringCase() {
+        PrefixIndex index = new PrefixIndex(Arrays.asList("B1", "B10", "c01"));
+
+        assertEquals("B1", index.get(index.find("b1")));
+        assertEquals("c01", index.get(index.find("C01")));
+        assertEquals(-1, index.find("B"));
+        assertEquals(-1, index.find("B100"));
+        assertEquals(-1, PrefixIndex.EMPTY.find("B"));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        Random random = new Random(19);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            values.add(String.format("%s%02d", (char) ((random.nextBoolean() ? 'A' : 'a') + random.nextInt(6)),
+                    random.nextInt(100)));
+        }
+        PrefixIndex index = new PrefixIndex(values);
+
+        for (String prefix : new String[]{"", "a", "B", "c1", "D05", "e99", "F", "f100", "Z"}) {
+            int expected = 0;
+            for (String value : values) {
+                if (value.regionMatches(true, 0, prefix, 0, prefix.length())) expected++;
+            }
+            List<String> found = range(index, prefix);
+            assertEquals(prefix, expected, found.size());
+            for (String value : found) {
+                assertTrue(value, value.regionMatches(true, 0, prefix, 0, prefix.length()));
+            }
+        }
+    }
+
+    private static List<String> range(PrefixIndex index, String prefix) {
+        List<String> values = new ArrayList<>();
+        for (int i = index.start(prefix); i < index.end(prefix); i++) values.add(index.get(i));
+        return values;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.geofenceapp.service;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SyncRunnerTest {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final List<SyncStatus> published = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+    }
+
+    @Test
+    public void concurrentRequestsShareOneRun() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        SyncRunner runner = new SyncRunner(progress -> {
+            runs.incrementAndGet();
+            progress.onProgress(1000);
+            release.await();
+            return new TphSyncClient.Result(TphSyncClient.Mode.FULL, 1500, null, false, 0);
+        }, worker, Runnable::run);
+        runner.addListener(this::record);
+
+        CountDownLatch done = new CountDownLatch(2);
+        List<SyncStatus> finals = new ArrayList<>();
+        assertTrue(runner.request(SyncStatus.Trigger.PERIODIC, s -> { finals.add(s); done.countDown(); }));
+        assertFalse(runner.request(SyncStatus.Trigger.MANUAL, s -> { finals.add(s); done.countDown(); }));
+        assertTrue(runner.getStatus().isRunning());
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertSame(finals.get(0), finals.get(1));
+        assertEquals(SyncStatus.State.SUCCEEDED, finals.get(0).getState());
+        assertEquals(SyncStatus.Trigger.PERIODIC, finals.get(0).getTrigger());
+        assertEquals(1500, finals.get(0).getRecords());
+
+        synchronized (published) {
+            assertEquals(SyncStatus.State.IDLE, published.get(0).getState());
+            assertEquals(SyncStatus.State.RUNNING, published.get(1).getState());
+            assertEquals(1000, published.get(2).getRecords());
+            assertEquals(SyncStatus.State.SUCCEEDED, published.get(3).getState());
+        }
+    }
+
+    @Test
+    public void failureIsPublishedAndNextRequestRunsAgain() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        SyncRunner runner = new SyncRunner(progress -> {
+            if (runs.incrementAndGet() == 1) throw new IOException("no route to host");
+            return new TphSyncClient.Result(TphSyncClient.Mode.NOT_MODIFIED, 0, null, false, 0);
+        }, worker, Runnable::run);
+
+        assertEquals(SyncStatus.State.FAILED, await(runner, SyncStatus.Trigger.MANUAL).getState());
+        assertEquals("no route to host", runner.getStatus().getError());
+
+        assertEquals(SyncStatus.State.SUCCEEDED, await(runner, SyncStatus.Trigger.MANUAL).getState());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void removedListenerStopsReceiving() throws Exception {
+        SyncRunner runner = new SyncRunner(progress ->
+                new TphSyncClient.Result(TphSyncClient.Mode.FULL, 1, null, false, 0), worker, Runnable::run);
+        SyncRunner.Listener listener = this::record;
+        runner.addListener(listener);
+        runner.removeListener(listener);
+
+        await(runner, SyncStatus.Trigger.MANUAL);
+        synchronized (published) {
+            assertEquals(1, published.size());
+        }
+    }
+
+    private void record(SyncStatus status) {
+        synchronized (published) {
+            published.add(status);
+        }
+    }
+
+    private static SyncStatus await(SyncRunner runner, SyncStatus.Trigger trigger) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        SyncStatus[] result = new SyncStatus[1];
+        runner.request(trigger, status -> {
+            result[0] = status;
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return result[0];
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.geofenceapp.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TphCatalogTest {
+
+    // Blocks of `size` TPH numbered 001..; counts every load
+    private static class CountingLoader implements TphCatalog.Loader {
+        final int size;
+        int blockLoads = 0;
+        int listLoads = 0;
+        Runnable duringLoad;
+
+        CountingLoader(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public List<String> loadKodeBlok() {
+            listLoads++;
+            return new ArrayList<>(Arrays.asList("B01", "B02", "B03"));
+        }
+
+        @Override
+        public TphCatalog.Block loadBlock(String kodeBlok) {
+            blockLoads++;
+            if (duringLoad != null) duringLoad.run();
+            String[] noTPH = new String[size];
+            double[] lat = new double[size];
+            double[] lng = new double[size];
+            for (int i = 0; i < size; i++) {
+                noTPH[i] = new String(String.format("%03d", i + 1));
+                lat[i] = -1.0 - i * 1e-4;
+                lng[i] = i == 1 ? Double.NaN : 103.0 + i * 1e-4;
+            }
+            return new TphCatalog.Block(kodeBlok, noTPH, lat, lng);
+        }
+    }
+
+    @Test
+    public void secondLookupIsAHit() {
+        CountingLoader loader = new CountingLoader(3);
+        TphCatalog catalog = new TphCatalog(loader);
+
+        assertEquals(Arrays.asList("B01", "B02", "B03"), catalog.getKodeBlok());
+        assertSame(catalog.getKodeBlok(), catalog.getKodeBlok());
+        TphCatalog.Block block = catalog.getBlock("B01");
+        assertSame(block, catalog.getBlock("B01"));
+
+        assertEquals(1, loader.listLoads);
+        assertEquals(1, loader.blockLoads);
+        assertEquals(2, catalog.getMissCount());
+        assertEquals(3, catalog.getHitCount());
+    }
+
+    @Test
+    public void blockLookupByNoTPH() {
+        TphCatalog.Block block = new TphCatalog(new CountingLoader(3)).getBlock("B01");
+
+        assertEquals(Arrays.asList("001", "002", "003"), block.getNoTPHList());
+        assertEquals(2, block.indexOf("003"));
+        assertEquals(-1, block.indexOf("004"));
+        assertEquals(-1, block.indexOf(null));
+        assertTrue(block.hasLocation(0));
+        assertFalse(block.hasLocation(1));
+        assertEquals(-1.0002, block.getLatitude(2), 0.0);
+
+        TphCatalog.Block unsorted = new TphCatalog.Block("B09",
+                new String[]{"010", "002"}, new double[2], new double[2]);
+        assertEquals(1, unsorted.indexOf("002"));
+    }
+
+    @Test
+    public void idsAreSharedAcrossBlocks() {
+        TphCatalog catalog = new TphCatalog(new CountingLoader(3));
+        TphCatalog.Block b1 = catalog.getBlock("B01");
+        TphCatalog.Block b2 = catalog.getBlock("B02");
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(b1.getNoTPH(i), b2.getNoTPH(i));
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBlockOverLimit() {
+        CountingLoader loader = new CountingLoader(10);
+        TphCatalog catalog = new TphCatalog(loader, 25);
+
+        catalog.getBlock("B01");
+        catalog.getBlock("B02");
+        catalog.getBlock("B01");
+        catalog.getBlock("B03");
+
+        // B02 was least recently used when B03 pushed the total to 30
+        assertEquals(2, catalog.getCachedBlockCount());
+        assertEquals(20, catalog.getCachedPointCount());
+        assertEquals(1, catalog.getEvictionCount());
+        catalog.getBlock("B01");
+        assertEquals(3, loader.blockLoads);
+        catalog.getBlock("B02");
+        assertEquals(4, loader.blockLoads);
+    }
+
+    @Test
+    public void oversizedBlockIsStillCached() {
+        CountingLoader loader = new CountingLoader(10);
+        TphCatalog catalog = new TphCatalog(loader, 5);
+
+        catalog.getBlock("B01");
+        catalog.getBlock("B01");
+
+        assertEquals(1, loader.blockLoads);
+        assertEquals(1, catalog.getCachedBlockCount());
+    }
+
+    @Test
+    public void invalidateForcesReload() {
+        CountingLoader loader = new CountingLoader(3);
+        TphCatalog catalog = new TphCatalog(loader);
+        catalog.getKodeBlok();
+        catalog.getBlock("B01");
+
+        catalog.invalidate();
+
+        assertEquals(1, catalog.getGeneration());
+        assertEquals(0, catalog.getCachedBlockCount());
+        catalog.getKodeBlok();
+        catalog.getBlock("B01");
+        assertEquals(2, loader.listLoads);
+        assertEquals(2, loader.blockLoads);
+    }
+
+    @Test
+    public void pickerIndexesAreBuiltOncePerSync() {
+        CountingLoader loader = new CountingLoader(12);
+        TphCatalog catalog = new TphCatalog(loader);
+
+        PrefixIndex blocks = catalog.getKodeBlokIndex();
+        assertSame(blocks, catalog.getKodeBlokIndex());
+        assertEquals(3, blocks.end("b0") - blocks.start("b0"));
+        TphCatalog.Block block = catalog.getBlock("B01");
+        PrefixIndex tph = block.getNoTPHIndex();
+        assertSame(tph, block.getNoTPHIndex());
+        assertEquals(3, tph.end("01") - tph.start("01"));
+
+        catalog.invalidate();
+        assertNotSame(blocks, catalog.getKodeBlokIndex());
+        assertEquals(2, loader.listLoads);
+    }
+
+    @Test
+    public void loadRacingWithInvalidateIsNotStored() {
+        CountingLoader loader = new CountingLoader(3);
+        TphCatalog catalog = new TphCatalog(loader);
+        // Simulates a sync committing while the read is in flight
+        loader.duringLoad = catalog::invalidate;
+
+        assertNotNull(catalog.getBlock("B01"));
+        assertEquals(0, catalog.getCachedBlockCount());
+
+        loader.duringLoad = null;
+        catalog.getBlock("B01");
+        catalog.getBlock("B01");
+        assertEquals(2, loader.blockLoads);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.geofenceapp.service;
+
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TphJsonReaderTest {
+    @Test
+    public void readsRecordsAndSkipsUnknownFields() throws IOException {
+        String json = "[ {\"company\":\"A06\",\"location\":21,\"kodeBlok\":\"B01\",\"noTPH\":\"001\"," +
+                "\"coordinate\":\"-1.234,103.5,\",\"extra\":{\"a\":[1,2,{\"b\":\"]}\"}]},\"flag\":true}," +
+                "{\"kodeBlok\":\"B\\u00e9\\\"02\",\"noTPH\":null} ]";
+        TphJsonReader reader = new TphJsonReader(new StringReader(json));
+
+        TphRecord first = reader.next();
+        assertEquals("A06", first.getCompany());
+        assertEquals("21", first.getLocation());
+        assertEquals("B01", first.getKodeBlok());
+        assertEquals("001", first.getNoTPH());
+        assertEquals("-1.234,103.5,", first.getCoordinate());
+
+        TphRecord second = reader.next();
+        assertEquals("B\u00e9\"02", second.getKodeBlok());
+        assertEquals("", second.getNoTPH());
+        assertEquals("", second.getCompany());
+
+        assertNull(reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void readsRadiusAndBlockBoundary() throws IOException {
+        String json = "[{\"kodeBlok\":\"B01\",\"noTPH\":\"001\",\"radius\":45.5," +
+                "\"blockBoundary\":\"-1.0,103.0;-1.0,103.01;-1.01,103.01\"}," +
+                "{\"kodeBlok\":\"B01\",\"noTPH\":\"002\",\"radius\":\"abc\",\"blockBoundary\":\"\"}," +
+                "{\"kodeBlok\":\"B01\",\"noTPH\":\"003\",\"radius\":-5}]";
+        TphJsonReader reader = new TphJsonReader(new StringReader(json));
+
+        TphRecord first = reader.next();
+        assertEquals(45.5, first.getRadius(), 0.0);
+        assertEquals("-1.0,103.0;-1.0,103.01;-1.01,103.01", first.getBlockBoundary());
+        TphRecord second = reader.next();
+        assertTrue(Double.isNaN(second.getRadius()));
+        assertNull(second.getBlockBoundary());
+        assertTrue(Double.isNaN(reader.next().getRadius()));
+    }
+
+    @Test
+    public void emptyArrayYieldsNoRecords() throws IOException {
+        assertNull(new TphJsonReader(new StringReader("  []  ")).next());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedPayloadFails() throws IOException {
+        TphJsonReader reader = new TphJsonReader(new StringReader("[{\"kodeBlok\":\"B01\"},{\"kodeBl"));
+        while (reader.next() != null) {
+            // drain
+        }
+    }
+
+    @Test
+    public void streamsLargeSyntheticPayload() throws IOException {
+        int records = 200_000;
+        File file = File.createTempFile("tph", ".json");
+        file.deleteOnExit();
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.write("[");
+            for (int i = 0; i < records; i++) {
+                if (i > 0) out.write(",\n");
+                out.write("{\"company\":\"A06\",\"location\":\"21\",\"kodeBlok\":\"B" + (i / 50) +
+                        "\",\"noTPH\":\"" + (i % 50) + "\",\"coordinate\":\"-1." + i + ",103." + i + ",\"}");
+            }
+            out.write("]");
+        }
+
+        int count = 0;
+        TphRecord last = null;
+        try (TphJsonReader reader = new TphJsonReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            TphRecord record;
+            while ((record = reader.next()) != null) {
+                last = record;
+                count++;
+            }
+        }
+
+        assertEquals(records, count);
+        assertEquals("B" + ((records - 1) / 50), last.getKodeBlok());
+        assertEquals("-1." + (records - 1) + ",103." + (records - 1) + ",", last.getCoordinate());
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.geofenceapp.service;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class TphPagerTest {
+
+    // Rows with ids 1..rows in blocks of 100 TPH; counts every load
+    private static class TableSource implements TphPager.Source {
+        final int rows;
+        final List<Long> loadedAfter = new ArrayList<>();
+
+        TableSource(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public TphPage load(String query, long afterId, int limit) {
+            loadedAfter.add(afterId);
+            List<Integer> match = new ArrayList<>();
+            for (int id = (int) afterId + 1; id <= rows && match.size() < limit; id++) {
+                if (query == null || kodeBlok(id).startsWith(query)) match.add(id);
+            }
+            int n = match.size();
+            long[] ids = new long[n];
+            String[] company = new String[n];
+            String[] location = new String[n];
+            String[] kodeBlok = new String[n];
+            String[] noTPH = new String[n];
+            String[] coordinate = new String[n];
+            for (int i = 0; i < n; i++) {
+                int id = match.get(i);
+                ids[i] = id;
+                company[i] = "A06";
+                location[i] = "21";
+                kodeBlok[i] = kodeBlok(id);
+                noTPH[i] = String.format("%03d", (id - 1) % 100 + 1);
+                coordinate[i] = "-1.0,103.0,";
+            }
+            return new TphPage(ids, company, location, kodeBlok, noTPH, coordinate);
+        }
+
+        static String kodeBlok(int id) {
+            return String.format("B%02d", (id - 1) / 100 + 1);
+        }
+    }
+
+    private static class RecordingListener implements TphPager.Listener {
+        int resets;
+        int inserted;
+        int changed;
+        Exception failure;
+
+        @Override
+        public void onReset() {
+            resets++;
+        }
+
+        @Override
+        public void onRowsInserted(int start, int count) {
+            inserted += count;
+        }
+
+        @Override
+        public void onRowsChanged(int start, int count) {
+            changed += count;
+        }
+
+        @Override
+        public void onLoadFailed(Exception e) {
+            failure = e;
+        }
+    }
+
+    // Holds background work until run() so tests control when loads finish
+    private static class QueuedExecutor implements Executor {
+        final Queue<Runnable> queue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            while (!queue.isEmpty()) queue.poll().run();
+        }
+    }
+
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    public void scrollsToTheEndWithBoundedMemory() {
+        TableSource source = new TableSource(1000);
+        RecordingListener listener = new RecordingListener();
+        TphPager pager = new TphPager(source, DIRECT, DIRECT, listener, 50, 4);
+        pager.setQuery(null);
+
+        for (int position = 0; position < pager.getCount(); position++) {
+            TphPage page = pager.getPage(position);
+            assertNotNull(page);
+            assertEquals(position + 1, page.getId(pager.offsetOf(position)));
+            assertTrue(pager.getResidentPageCount() <= 4);
+        }
+
+        assertTrue(pager.isComplete());
+        assertEquals(1000, pager.getCount());
+        assertEquals(1000, listener.inserted);
+        // 20 full pages and the empty one that ends the table, each fetched once
+        assertEquals(21, source.loadedAfter.size());
+        assertEquals(Long.valueOf(1000), source.loadedAfter.get(20));
+    }
+
+    @Test
+    public void evictedPageIsFetchedAgainFromItsKey() {
+        TableSource source = new TableSource(500);
+        RecordingListener listener = new RecordingListener();
+        TphPager pager = new TphPager(source, DIRECT, DIRECT, listener, 50, 2);
+        pager.setQuery(null);
+        for (int position = 0; position < pager.getCount(); position++) pager.getPage(position);
+        source.loadedAfter.clear();
+
+        assertNull(pager.getPage(120));
+        assertEquals(1, source.loadedAfter.size());
+        assertEquals(Long.valueOf(100), source.loadedAfter.get(0));
+        assertEquals(50, listener.changed);
+        assertEquals(121, pager.getPage(120).getId(pager.offsetOf(120)));
+    }
+
+    @Test
+    public void newQueryDropsLoadsOfTheOldOne() {
+        TableSource source = new TableSource(1000);
+        RecordingListener listener = new RecordingListener();
+        QueuedExecutor background = new QueuedExecutor();
+        TphPager pager = new TphPager(source, background, DIRECT, listener, 50, 4);
+
+        pager.setQuery(null);
+        pager.setQuery("B03");
+        background.runAll();
+
+        assertEquals(2, listener.resets);
+        assertEquals(50, pager.getCount());
+        assertEquals("B03", pager.getPage(0).getKodeBlok(0));
+        assertEquals(201, pager.getPage(0).getId(0));
+
+        // Prefetched once the end of the first page is near
+        pager.getPage(30);
+        background.runAll();
+        pager.getPage(99);
+        background.runAll();
+        assertEquals(100, pager.getCount());
+        assertTrue(pager.isComplete());
+    }
+
+    @Test
+    public void failedLoadCanBeRetried() {
+        RecordingListener listener = new RecordingListener();
+        boolean[] fail = {true};
+        TableSource table = new TableSource(10);
+        TphPager pager = new TphPager((query, afterId, limit) -> {
+            if (fail[0]) throw new IllegalStateException("disk I/O error");
+            return table.load(query, afterId, limit);
+        }, DIRECT, DIRECT, listener, 50, 4);
+
+        pager.setQuery(null);
+        assertNotNull(listener.failure);
+        assertEquals(0, pager.getCount());
+
+        fail[0] = false;
+        pager.setQuery(null);
+        assertEquals(10, pager.getCount());
+        assertTrue(pager.isComplete());
+    }
+}
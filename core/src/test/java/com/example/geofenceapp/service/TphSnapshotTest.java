@@ -0,0 +1,122 @@
+package com.example.geofenceapp.service;
+
+import com.example.geofenceapp.geo.PolygonFence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TphSnapshotTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File write() throws IOException {
+        TphSnapshotWriter writer = new TphSnapshotWriter();
+        writer.add("B02", "001", -1.3, 103.3, Double.NaN);
+        writer.add("B01", "002", -1.2, 103.2, 45);
+        writer.add("B01", "001", Double.NaN, Double.NaN, Double.NaN);
+        writer.add("B01", "", -1.0, 103.0, Double.NaN);
+        writer.add(null, "009", -1.0, 103.0, Double.NaN);
+        writer.setBoundary("B01", new PolygonFence(new double[]{-1.0, -1.0, -1.5},
+                new double[]{103.0, 103.5, 103.5}));
+        writer.setBoundary("B01", new PolygonFence(new double[]{-1.0, -1.0, -1.5, -1.5},
+                new double[]{103.0, 103.5, 103.5, 103.0}));
+        assertEquals(3, writer.size());
+        File file = tmp.newFile("tph.snapshot");
+        writer.writeTo(file, 1234);
+        return file;
+    }
+
+    @Test
+    public void rowsRoundTripGroupedByBlock() throws IOException {
+        TphSnapshot snapshot = TphSnapshot.open(write());
+
+        assertEquals(1234, snapshot.getCreatedAtMillis());
+        assertEquals(2, snapshot.getBlockCount());
+        assertEquals(3, snapshot.getPointCount());
+        assertEquals(Arrays.asList("B01", "B02"), snapshot.loadKodeBlok());
+        assertEquals(1, snapshot.indexOfBlock("B02"));
+        assertEquals(-1, snapshot.indexOfBlock("B00"));
+        assertEquals(2, snapshot.getBlockStart(1));
+        // "001" is stored once and shared by both blocks
+        assertEquals("001", snapshot.getNoTPH(2));
+
+        TphCatalog.Block block = snapshot.loadBlock("B01");
+        assertEquals(Arrays.asList("001", "002"), block.getNoTPHList());
+        assertFalse(block.hasLocation(0));
+        assertEquals(-1.2, block.getLatitude(1), 1e-7);
+        assertEquals(103.2, block.getLongitude(1), 1e-7);
+        assertEquals(45, block.getRadius(1), 0.0);
+        assertTrue(Double.isNaN(block.getRadius(0)));
+        assertEquals(4, block.getBoundary().getVertexCount());
+        assertTrue(block.getBoundary().contains(-1.2, 103.2));
+
+        TphCatalog.Block other = snapshot.loadBlock("B02");
+        assertNull(other.getBoundary());
+        assertTrue(Double.isNaN(other.getRadius(0)));
+        assertEquals(0, snapshot.loadBlock("B99").size());
+    }
+
+    @Test
+    public void emptySnapshot() throws IOException {
+        File file = tmp.newFile("empty.snapshot");
+        new TphSnapshotWriter().writeTo(file, 0);
+        TphSnapshot snapshot = TphSnapshot.open(file);
+        assertEquals(0, snapshot.getPointCount());
+        assertTrue(snapshot.loadKodeBlok().isEmpty());
+        assertEquals(0, snapshot.loadBlock("B01").size());
+    }
+
+    @Test
+    public void damagedFilesAreRejected() throws IOException {
+        File file = write();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        assertUnreadable(file);
+
+        file = write();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(TphSnapshot.VERSION + 1);
+        }
+        assertUnreadable(file);
+
+        file = write();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0);
+        }
+        assertUnreadable(file);
+
+        // A block start past the points it should bound
+        file = write();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(TphSnapshot.HEADER_BYTES + 4 * 2 + 4);
+            raf.writeInt(7);
+        }
+        assertUnreadable(file);
+    }
+
+    private static void assertUnreadable(File file) {
+        try {
+            TphSnapshot.open(file);
+            fail("opened a damaged snapshot");
+        } catch (IOException expected) {
+        }
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void servesTheCatalog() throws IOException {
+        TphCatalog catalog = new TphCatalog(TphSnapshot.open(write()));
+        assertEquals(Arrays.asList("B01", "B02"), catalog.getKodeBlok());
+        assertEquals(1, catalog.getBlock("B01").indexOf("002"));
+    }
+}
@@ -0,0 +1,381 @@
+package com.example.geofenceapp.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TphSyncClientTest {
+    private HttpServer server;
+    private TphSyncClient client;
+    private final MemoryTarget target = new MemoryTarget();
+
+    // What the stand-in server currently publishes
+    private volatile int version = 1;
+    private volatile String lastQuery;
+
+    // Paged endpoint: PAGED_ROWS rows of snapshot pagedVersion, with injected disconnects
+    private static final int PAGED_ROWS = 25;
+    private TphSyncClient pagedClient;
+    private volatile int pagedVersion = 1;
+    private final List<String> pageRequests = Collections.synchronizedList(new ArrayList<>());
+    // Page token ("" for the first page) -> number of times to cut the connection mid-body
+    private final Map<String, Integer> disconnects = new ConcurrentHashMap<>();
+    private volatile boolean sawGzip;
+    private volatile long uncompressedBytes;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/TPH/GetItemByCompanyLocation", this::handle);
+        server.createContext("/paged", this::handlePaged);
+        server.start();
+        client = new TphSyncClient("http://127.0.0.1:" + server.getAddress().getPort()
+                + "/api/TPH/GetItemByCompanyLocation");
+        client.setSleeper(sleeps::add);
+        pagedClient = new TphSyncClient("http://127.0.0.1:" + server.getAddress().getPort() + "/paged");
+        pagedClient.setPageSize(10);
+        pagedClient.setTimeouts(2000, 2000);
+        pagedClient.setSleeper(sleeps::add);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fullDeltaAndNotModified() throws IOException {
+        TphSyncClient.Result full = client.sync("A06", "21", null, target, null);
+        assertEquals(TphSyncClient.Mode.FULL, full.getMode());
+        assertEquals(3, full.getRecordCount());
+        assertEquals(3, target.rows.size());
+        assertEquals("\"v1\"", full.getWatermark().getEtag());
+        assertFalse(lastQuery.contains("UpdatedSince"));
+
+        version = 2;
+        TphSyncClient.Result delta = client.sync("A06", "21", full.getWatermark(), target, null);
+        assertEquals(TphSyncClient.Mode.DELTA, delta.getMode());
+        assertTrue(lastQuery.contains("UpdatedSince=1"));
+        assertEquals(3, target.rows.size());
+        assertEquals("-1.5,103.5,", target.rows.get("A06|21|B01|002"));
+        assertNull(target.rows.get("A06|21|B01|003"));
+        assertEquals("-1.4,103.4,", target.rows.get("A06|21|B02|001"));
+
+        long start = System.nanoTime();
+        TphSyncClient.Result unchanged = client.sync("A06", "21", delta.getWatermark(), target, null);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(TphSyncClient.Mode.NOT_MODIFIED, unchanged.getMode());
+        assertEquals("\"v2\"", unchanged.getWatermark().getEtag());
+        assertEquals(3, target.rows.size());
+        assertTrue("304 took " + elapsedMs + " ms", elapsedMs < 500);
+    }
+
+    @Test
+    public void failedDownloadAbortsSink() throws IOException {
+        version = -1;
+        try {
+            client.sync("A06", "21", null, target, null);
+            fail("Expected truncated payload to fail");
+        } catch (IOException expected) {
+            assertTrue(target.aborted);
+            assertTrue(target.rows.isEmpty());
+        }
+    }
+
+    @Test
+    public void pagedSyncIsCompressedAndCheckpointed() throws IOException {
+        TphSyncClient.Result result = pagedClient.sync("A06", "21", null, target, null);
+
+        assertEquals(TphSyncClient.Mode.FULL, result.getMode());
+        assertEquals(PAGED_ROWS, result.getRecordCount());
+        assertEquals(PAGED_ROWS, target.rows.size());
+        assertEquals(Arrays.asList("", "10", "20"), pageRequests);
+        assertEquals(2, target.checkpoints);
+        assertNull(target.cursor);
+        assertFalse(result.isResumed());
+        assertTrue(sawGzip);
+        assertTrue(result.getBytesReceived() + " of " + uncompressedBytes,
+                result.getBytesReceived() < uncompressedBytes / 2);
+    }
+
+    @Test
+    public void droppedPageIsRetriedFromThatPage() throws IOException {
+        disconnects.put("10", 2);
+
+        TphSyncClient.Result result = pagedClient.sync("A06", "21", null, target, null);
+
+        assertEquals(Arrays.asList("", "10", "10", "10", "20"), pageRequests);
+        assertEquals(2, sleeps.size());
+        assertTrue(result.isResumed());
+        assertEquals(PAGED_ROWS, result.getRecordCount());
+        assertEquals(PAGED_ROWS, target.rows.size());
+        assertEquals(row(24, 1), target.rows.get("A06|21|B2|024"));
+    }
+
+    @Test
+    public void syncThatGaveUpResumesOnNextCall() throws IOException {
+        pagedClient.setRetryPolicy(2, 1, 1);
+        disconnects.put("20", 2);
+        try {
+            pagedClient.sync("A06", "21", null, target, null);
+            fail("Expected the last page to fail");
+        } catch (IOException expected) {
+            // Two pages are staged but the live rows are untouched until the snapshot is complete
+            assertTrue(target.rows.isEmpty());
+            assertEquals("20", target.cursor.getNextPage());
+            assertEquals(20, target.cursor.getRecords());
+        }
+
+        pageRequests.clear();
+        TphSyncClient.Result result = pagedClient.sync("A06", "21", null, target, null);
+
+        assertEquals(Collections.singletonList("20"), pageRequests);
+        assertTrue(result.isResumed());
+        assertEquals(PAGED_ROWS, result.getRecordCount());
+        assertEquals(PAGED_ROWS, target.rows.size());
+        assertEquals("\"p1\"", result.getWatermark().getEtag());
+    }
+
+    @Test
+    public void snapshotChangeMidSyncRestarts() throws IOException {
+        disconnects.put("10", 1);
+        pagedClient.setRetryPolicy(3, 1, 1);
+        pagedClient.setSleeper(millis -> pagedVersion = 2);
+
+        TphSyncClient.Result result = pagedClient.sync("A06", "21", null, target, null);
+
+        // The retry of page 10 hits the new snapshot, gets 412 and starts over
+        assertEquals(Arrays.asList("", "10", "10", "", "10", "20"), pageRequests);
+        assertEquals("\"p2\"", result.getWatermark().getEtag());
+        assertEquals(PAGED_ROWS, target.rows.size());
+        assertEquals(row(3, 2), target.rows.get("A06|21|B0|003"));
+    }
+
+    private void handlePaged(HttpExchange exchange) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        for (String pair : exchange.getRequestURI().getQuery().split("&")) {
+            String[] kv = pair.split("=", 2);
+            query.put(kv[0], URLDecoder.decode(kv[1], "UTF-8"));
+        }
+        String token = query.containsKey("PageToken") ? query.get("PageToken") : "";
+        pageRequests.add(token);
+        String etag = "\"p" + pagedVersion + "\"";
+
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch != null && !ifMatch.equals(etag)) {
+            exchange.sendResponseHeaders(412, -1);
+            exchange.close();
+            return;
+        }
+
+        int offset = token.isEmpty() ? 0 : Integer.parseInt(token);
+        int size = Integer.parseInt(query.get("PageSize"));
+        int end = Math.min(PAGED_ROWS, offset + size);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = offset; i < end; i++) {
+            if (i > offset) json.append(',');
+            json.append(row("B" + (i / 10), String.format("%03d", i), row(i, pagedVersion), false));
+        }
+        byte[] raw = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        uncompressedBytes += raw.length;
+
+        byte[] bytes = raw;
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept != null && accept.contains("gzip")) {
+            sawGzip = true;
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(raw);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (end < PAGED_ROWS) {
+            exchange.getResponseHeaders().set(TphSyncClient.HEADER_NEXT_PAGE, String.valueOf(end));
+        }
+
+        Integer remaining = disconnects.get(token);
+        if (remaining != null && remaining > 0) {
+            // Promise the whole body, send half of it and hang up, like a lost cell link
+            disconnects.put(token, remaining - 1);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try {
+                exchange.getResponseBody().write(bytes, 0, bytes.length / 2);
+                exchange.getResponseBody().flush();
+            } finally {
+                exchange.close();
+            }
+            return;
+        }
+
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String row(int i, int version) {
+        return "-1." + (version * 1000 + i) + ",103." + (version * 1000 + i) + ",";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        lastQuery = exchange.getRequestURI().getQuery();
+        String etag = "\"v" + version + "\"";
+        String body;
+
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        if (version == -1) {
+            body = "[{\"company\":\"A06\",\"location\":\"21\",\"kodeBlok\":\"B01\"";
+        } else if (version == 2 && lastQuery.contains("UpdatedSince=1")) {
+            exchange.getResponseHeaders().set(TphSyncClient.HEADER_SYNC_MODE, TphSyncClient.SYNC_MODE_DELTA);
+            body = "[" + row("B01", "002", "-1.5,103.5,", false) + ","
+                    + row("B01", "003", "", true) + ","
+                    + row("B02", "001", "-1.4,103.4,", false) + "]";
+        } else {
+            body = "[" + row("B01", "001", "-1.1,103.1,", false) + ","
+                    + row("B01", "002", "-1.2,103.2,", false) + ","
+                    + row("B01", "003", "-1.3,103.3,", false) + "]";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set(TphSyncClient.HEADER_SYNC_TOKEN, String.valueOf(version));
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String row(String kodeBlok, String noTPH, String coordinate, boolean deleted) {
+        return "{\"company\":\"A06\",\"location\":\"21\",\"kodeBlok\":\"" + kodeBlok + "\",\"noTPH\":\""
+                + noTPH + "\",\"coordinate\":\"" + coordinate + "\"" + (deleted ? ",\"deleted\":true" : "") + "}";
+    }
+
+    // Applies sync output to a map keyed the same way DatabaseHelper matches rows. Writes
+    // only land at checkpoint or commit, and a full sync stays staged until commit.
+    private static class MemoryTarget implements TphSyncTarget {
+        final Map<String, String> rows = new LinkedHashMap<>();
+        Map<String, String> staging;
+        SyncCursor cursor;
+        boolean aborted;
+        int checkpoints;
+
+        @Override
+        public TphRecordSink openFull(String company, String location) {
+            staging = new LinkedHashMap<>();
+            return new Sink(true);
+        }
+
+        @Override
+        public TphRecordSink openDelta() {
+            return new Sink(false);
+        }
+
+        @Override
+        public SyncCursor getSyncCursor(String company, String location) {
+            return cursor;
+        }
+
+        @Override
+        public TphRecordSink resume(SyncCursor cursor) {
+            if (!cursor.isDelta() && staging == null) {
+                this.cursor = null;
+                return null;
+            }
+            return new Sink(!cursor.isDelta());
+        }
+
+        @Override
+        public void clearSyncCursor(String company, String location) {
+            cursor = null;
+        }
+
+        private class Sink implements TphRecordSink {
+            final boolean full;
+            final List<TphRecord> pending = new ArrayList<>();
+
+            Sink(boolean full) {
+                this.full = full;
+            }
+
+            @Override
+            public void write(TphRecord record) {
+                pending.add(record);
+            }
+
+            // Flushed rows are still dropped on abort, so nothing to do
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void checkpoint(SyncCursor next) {
+                apply();
+                cursor = next;
+                checkpoints++;
+            }
+
+            @Override
+            public void commit() {
+                apply();
+                if (full) {
+                    rows.clear();
+                    rows.putAll(staging);
+                    staging = null;
+                }
+                cursor = null;
+            }
+
+            @Override
+            public void abort() {
+                pending.clear();
+                aborted = true;
+            }
+
+            private void apply() {
+                Map<String, String> into = full ? staging : rows;
+                for (TphRecord record : pending) {
+                    if (record.isDeleted()) {
+                        into.remove(key(record));
+                    } else {
+                        into.put(key(record), record.getCoordinate());
+                    }
+                }
+                pending.clear();
+            }
+        }
+
+        private static String key(TphRecord r) {
+            return r.getCompany() + "|" + r.getLocation() + "|" + r.getKodeBlok() + "|" + r.getNoTPH();
+        }
+    }
+}
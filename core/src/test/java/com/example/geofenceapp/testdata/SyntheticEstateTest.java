@@ -0,0 +1,119 @@
+package com.example.geofenceapp.testdata;
+
+import com.example.geofenceapp.geo.GeoMath;
+import com.example.geofenceapp.geo.PolygonFence;
+import com.example.geofenceapp.service.TphJsonReader;
+import com.example.geofenceapp.service.TphRecord;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SyntheticEstateTest {
+    private static String json(SyntheticEstate estate, int from, int to) throws IOException {
+        StringWriter out = new StringWriter();
+        estate.writeJson(out, from, to);
+        return out.toString();
+    }
+
+    @Test
+    public void payloadParsesBackToTheRecords() throws IOException {
+        SyntheticEstate estate = new SyntheticEstate("A06", "21", 20_000, 7);
+        TphJsonReader reader = new TphJsonReader(new StringReader(json(estate, 0, estate.size())));
+        Set<String> keys = new HashSet<>();
+        int unusable = 0;
+        int radius = 0;
+        int boundaries = 0;
+        TphRecord record;
+        for (int i = 0; (record = reader.next()) != null; i++) {
+            TphRecord expected = estate.record(i);
+            assertEquals("A06", record.getCompany());
+            assertEquals(expected.getKodeBlok(), record.getKodeBlok());
+            assertEquals(expected.getNoTPH(), record.getNoTPH());
+            assertEquals(expected.getCoordinate(), record.getCoordinate());
+            assertEquals(expected.getRadius(), record.getRadius(), 0.0);
+            assertEquals(expected.getBlockBoundary(), record.getBlockBoundary());
+            assertEquals(estate.hasUsableCoordinate(i), record.hasLocation());
+            assertTrue(keys.add(record.getKodeBlok() + "/" + record.getNoTPH()));
+            if (!record.hasLocation()) unusable++;
+            if (!Double.isNaN(record.getRadius())) radius++;
+            if (record.getBlockBoundary() != null) boundaries++;
+        }
+        assertEquals(estate.size(), keys.size());
+        assertEquals(estate.getBlockCount(), boundaries);
+        assertTrue(unusable > 50 && unusable < 150);
+        assertTrue(radius > 800 && radius < 1200);
+    }
+
+    @Test
+    public void pagesJoinUpToTheWholePayload() throws IOException {
+        SyntheticEstate estate = new SyntheticEstate("A06", "21", 1000, 3);
+        String whole = json(estate, 0, 1000);
+        String first = json(estate, 0, 400);
+        String second = json(estate, 400, 1000);
+        assertEquals(whole, first.substring(0, first.length() - 1) + "," + second.substring(1));
+        assertEquals("[]", json(estate, 1000, 1000));
+        assertEquals(whole, json(new SyntheticEstate("A06", "21", 1000, 3), 0, 1000));
+        assertNotEquals(whole, json(new SyntheticEstate("A06", "21", 1000, 4), 0, 1000));
+    }
+
+    @Test
+    public void blocksAreNumberedAndClustered() {
+        SyntheticEstate estate = new SyntheticEstate("A06", "21", 50_000, 11);
+        assertEquals("A00", estate.kodeBlok(0));
+        assertEquals("B00", estate.kodeBlok(SyntheticEstate.BLOCKS_PER_DIVISION));
+        assertEquals("AA00", estate.kodeBlok(26 * SyntheticEstate.BLOCKS_PER_DIVISION));
+
+        for (int b = 0; b < estate.getBlockCount(); b++) {
+            int start = estate.getBlockStart(b);
+            int end = estate.getBlockStart(b + 1);
+            assertTrue(end - start <= SyntheticEstate.MAX_TPH_PER_BLOCK);
+            assertTrue(b == estate.getBlockCount() - 1 || end - start >= SyntheticEstate.MIN_TPH_PER_BLOCK);
+            assertEquals("001", estate.noTPH(start));
+            assertEquals(b, estate.blockOf(end - 1));
+
+            PolygonFence boundary = PolygonFence.parse(estate.blockBoundary(start));
+            for (int i = start; i < end; i++) {
+                assertTrue(boundary.contains(estate.latitude(i), estate.longitude(i)));
+                // The next TPH in numbering order is a short walk away
+                if (i + 1 < end) {
+                    assertTrue(GeoMath.haversine(estate.latitude(i), estate.longitude(i),
+                            estate.latitude(i + 1), estate.longitude(i + 1)) < 100);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void walkVisitsTheBlock() {
+        SyntheticEstate estate = new SyntheticEstate("A06", "21", 5000, 5);
+        int block = 10;
+        SyntheticEstate.Trace trace = estate.walk(block, 1800, 1_000_000L, 1);
+        PolygonFence boundary = PolygonFence.parse(estate.blockBoundary(estate.getBlockStart(block)));
+
+        int inside = 0;
+        for (int f = 0; f < trace.size(); f++) {
+            assertEquals(1_000_000L + f * 1000L, trace.timeMillis[f]);
+            assertTrue(trace.accuracy[f] >= 3 && trace.accuracy[f] <= 12);
+            if (boundary.contains(trace.lat[f], trace.lng[f])) inside++;
+        }
+        assertTrue(inside > trace.size() * 9 / 10);
+
+        // Half an hour is enough to work through a good part of the block
+        Set<Integer> visited = new HashSet<>();
+        for (int f = 0; f < trace.size(); f++) {
+            for (int i = estate.getBlockStart(block); i < estate.getBlockStart(block + 1); i++) {
+                if (GeoMath.haversine(trace.lat[f], trace.lng[f], estate.latitude(i), estate.longitude(i)) < 15) {
+                    visited.add(i);
+                }
+            }
+        }
+        assertTrue(visited.size() >= 5);
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.geofenceapp.testdata;
+
+import com.example.geofenceapp.geo.GeoMath;
+import com.example.geofenceapp.service.TphRecord;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+// Deterministic estate of any size, in the shape GetItemByCompanyLocation returns, for scale
+// tests. Blocks of 20-80 TPH sit on a grid of BLOCK_METERS squares, a hundred blocks to a
+// division; inside a block the TPH line up along harvest paths and are numbered the way a
+// harvester walks them, up one path and down the next. A small share of rows carry the junk
+// coordinates real estates have, some a radius of their own, and the first TPH of each block
+// its boundary. Any record can be produced on its own, so a payload of a million rows is
+// streamed rather than held, and the same seed always gives the same estate.
+public final class SyntheticEstate {
+    // About 30 ha, a common planting block
+    public static final double BLOCK_METERS = 550;
+    public static final int MIN_TPH_PER_BLOCK = 20;
+    public static final int MAX_TPH_PER_BLOCK = 80;
+    public static final int BLOCKS_PER_DIVISION = 100;
+    static final double PATH_SPACING_METERS = 50;
+    static final double TPH_SPACING_METERS = 60;
+    // Kept clear along the block edge, for the roads
+    static final double EDGE_METERS = 25;
+    // How far a TPH sits from its spot on the path
+    static final double JITTER_METERS = 4;
+    static final double UNUSABLE_COORDINATE_RATE = 0.005;
+    static final double CUSTOM_RADIUS_RATE = 0.05;
+
+    private static final double ORIGIN_LAT = -1.0;
+    private static final double ORIGIN_LNG = 103.0;
+    private static final int TPH_PER_PATH = (int) ((BLOCK_METERS - 2 * EDGE_METERS) / TPH_SPACING_METERS) + 1;
+    private static final String[] UNUSABLE = {"", "-", "0", "null,null,"};
+
+    // A walk through one block: one fix a second
+    public static final class Trace {
+        public final long[] timeMillis;
+        public final double[] lat;
+        public final double[] lng;
+        public final float[] accuracy;
+
+        Trace(int size) {
+            timeMillis = new long[size];
+            lat = new double[size];
+            lng = new double[size];
+            accuracy = new float[size];
+        }
+
+        public int size() {
+            return timeMillis.length;
+        }
+    }
+
+    private final String company;
+    private final String location;
+    private final int size;
+    private final long seed;
+    // Index of the first TPH of each block, with size as the last entry
+    private final int[] blockStart;
+    private final int columns;
+    private final double metersPerDegreeLng = GeoMath.metersPerDegreeLng(ORIGIN_LAT);
+
+    public SyntheticEstate(String company, String location, int size, long seed) {
+        if (size < 0) throw new IllegalArgumentException("size must not be negative");
+        this.company = company;
+        this.location = location;
+        this.size = size;
+        this.seed = seed;
+
+        Random random = new Random(seed);
+        int[] starts = new int[size / MIN_TPH_PER_BLOCK + 2];
+        int blocks = 0;
+        for (int next = 0; next < size; blocks++) {
+            starts[blocks] = next;
+            next += MIN_TPH_PER_BLOCK + random.nextInt(MAX_TPH_PER_BLOCK - MIN_TPH_PER_BLOCK + 1);
+        }
+        starts[blocks] = size;
+        this.blockStart = Arrays.copyOf(starts, blocks + 1);
+        this.columns = Math.max(1, (int) Math.ceil(Math.sqrt(blocks)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getBlockCount() {
+        return blockStart.length - 1;
+    }
+
+    public int getBlockStart(int block) {
+        return blockStart[block];
+    }
+
+    public int blockOf(int i) {
+        int found = Arrays.binarySearch(blockStart, i);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    // "A00" to "Z99", then "AA00" and on
+    public String kodeBlok(int block) {
+        int division = block / BLOCKS_PER_DIVISION;
+        StringBuilder name = new StringBuilder();
+        for (int d = division; d >= 0; d = d / 26 - 1) {
+            name.insert(0, (char) ('A' + d % 26));
+        }
+        int number = block % BLOCKS_PER_DIVISION;
+        return name.append(number < 10 ? "0" : "").append(number).toString();
+    }
+
+    public String kodeBlokOf(int i) {
+        return kodeBlok(blockOf(i));
+    }
+
+    // "001" for the first TPH of its block
+    public String noTPH(int i) {
+        int number = i - blockStart[blockOf(i)] + 1;
+        return number < 10 ? "00" + number : number < 100 ? "0" + number : Integer.toString(number);
+    }
+
+    // Where the TPH really is, whether or not its coordinate says so
+    public double latitude(int i) {
+        return ORIGIN_LAT - south(i) / GeoMath.METERS_PER_DEGREE_LAT;
+    }
+
+    public double longitude(int i) {
+        return ORIGIN_LNG + east(i) / metersPerDegreeLng;
+    }
+
+    public boolean hasUsableCoordinate(int i) {
+        return unit(i, 1) >= UNUSABLE_COORDINATE_RATE;
+    }
+
+    // The coordinate field as sent: "lat,lng," or one of the unusable forms
+    public String coordinate(int i) {
+        if (!hasUsableCoordinate(i)) return UNUSABLE[(int) (unit(i, 2) * UNUSABLE.length)];
+        return round(latitude(i)) + "," + round(longitude(i)) + ",";
+    }
+
+    // Meters, or NaN for the app default
+    public double radius(int i) {
+        return unit(i, 3) < CUSTOM_RADIUS_RATE ? 20 + 5 * (int) (unit(i, 4) * 9) : Double.NaN;
+    }
+
+    // Only the first TPH of a block carries it: "lat,lng;..." around the block, a little ragged
+    public String blockBoundary(int i) {
+        int block = blockOf(i);
+        if (blockStart[block] != i) return null;
+        double south = (block / columns) * BLOCK_METERS;
+        double east = (block % columns) * BLOCK_METERS;
+        double[][] corners = {{0, 0}, {0, BLOCK_METERS}, {BLOCK_METERS, BLOCK_METERS}, {BLOCK_METERS, 0}};
+        Random random = new Random(seed ^ (block * 0x9E3779B97F4A7C15L));
+        StringBuilder boundary = new StringBuilder();
+        for (double[] corner : corners) {
+            // Corners only ever move outwards, so every TPH stays inside
+            double s = south + corner[0] + (corner[0] == 0 ? -1 : 1) * random.nextDouble() * 10;
+            double e = east + corner[1] + (corner[1] == 0 ? -1 : 1) * random.nextDouble() * 10;
+            if (boundary.length() > 0) boundary.append(';');
+            boundary.append(round(ORIGIN_LAT - s / GeoMath.METERS_PER_DEGREE_LAT)).append(',')
+                    .append(round(ORIGIN_LNG + e / metersPerDegreeLng));
+        }
+        return boundary.toString();
+    }
+
+    public TphRecord record(int i) {
+        return new TphRecord(company, location, kodeBlokOf(i), noTPH(i), coordinate(i), false, radius(i),
+                blockBoundary(i));
+    }
+
+    // Records from (inclusive) to to (exclusive) as a JSON array
+    public void writeJson(Writer out, int from, int to) throws IOException {
+        if (from < 0 || to > size || from > to) throw new IndexOutOfBoundsException(from + ".." + to);
+        StringBuilder json = new StringBuilder(256);
+        out.write('[');
+        for (int i = from; i < to; i++) {
+            json.setLength(0);
+            if (i > from) json.append(',');
+            json.append("{\"company\":\"").append(company)
+                    .append("\",\"location\":\"").append(location)
+                    .append("\",\"kodeBlok\":\"").append(kodeBlokOf(i))
+                    .append("\",\"noTPH\":\"").append(noTPH(i))
+                    .append("\",\"coordinate\":\"").append(coordinate(i)).append('"');
+            double radius = radius(i);
+            if (!Double.isNaN(radius)) json.append(",\"radius\":").append(radius);
+            String boundary = blockBoundary(i);
+            if (boundary != null) json.append(",\"blockBoundary\":\"").append(boundary).append('"');
+            out.append(json.append('}'));
+        }
+        out.write(']');
+    }
+
+    // Walks the block's TPH in numbering order at walking pace, stopping a while at each, with
+    // GPS noise of the reported accuracy. Starts at startMillis.
+    public Trace walk(int block, int fixes, long startMillis, long walkSeed) {
+        Random random = new Random(walkSeed);
+        Trace trace = new Trace(fixes);
+        int first = blockStart[block];
+        int count = blockStart[block + 1] - first;
+        double south = south(first);
+        double east = east(first);
+        int target = 0;
+        int stopSeconds = -1;
+        for (int f = 0; f < fixes; f++) {
+            int tph = first + target;
+            double toSouth = south(tph) - south;
+            double toEast = east(tph) - east;
+            double distance = Math.sqrt(toSouth * toSouth + toEast * toEast);
+            double step = 1.1 + random.nextDouble() * 0.4;
+            if (distance <= step) {
+                south = south(tph);
+                east = east(tph);
+                if (stopSeconds < 0) stopSeconds = 20 + random.nextInt(40);
+                if (stopSeconds-- == 0) target = (target + 1) % count;
+            } else {
+                south += toSouth / distance * step;
+                east += toEast / distance * step;
+            }
+
+            float accuracy = (float) (3 + random.nextDouble() * 9);
+            trace.timeMillis[f] = startMillis + f * 1000L;
+            trace.lat[f] = ORIGIN_LAT - (south + random.nextGaussian() * accuracy / 2) / GeoMath.METERS_PER_DEGREE_LAT;
+            trace.lng[f] = ORIGIN_LNG + (east + random.nextGaussian() * accuracy / 2) / metersPerDegreeLng;
+            trace.accuracy[f] = accuracy;
+        }
+        return trace;
+    }
+
+    // Meters south of the origin; grid rows run south
+    private double south(int i) {
+        int block = blockOf(i);
+        int j = i - blockStart[block];
+        int path = j / TPH_PER_PATH;
+        int along = j % TPH_PER_PATH;
+        // Up one path, down the next
+        if (path % 2 == 1) along = TPH_PER_PATH - 1 - along;
+        return (block / columns) * BLOCK_METERS + EDGE_METERS + along * TPH_SPACING_METERS
+                + gaussian(i, 5) * JITTER_METERS;
+    }
+
+    private double east(int i) {
+        int block = blockOf(i);
+        int path = (i - blockStart[block]) / TPH_PER_PATH;
+        return (block % columns) * BLOCK_METERS + EDGE_METERS + path * PATH_SPACING_METERS
+                + gaussian(i, 6) * JITTER_METERS;
+    }
+
+    // Uniform in [0, 1), fixed per record and stream, without keeping a Random per record
+    private double unit(int i, int stream) {
+        long z = seed + i * 0x9E3779B97F4A7C15L + stream * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    // Roughly standard normal, never beyond about 4
+    private double gaussian(int i, int stream) {
+        double sum = 0;
+        for (int k = 0; k < 6; k++) {
+            sum += unit(i, stream * 8 + k);
+        }
+        return (sum - 3) * Math.sqrt(2);
+    }
+
+    // Seven decimals, about a centimetre, as the server sends them
+    private static double round(double degrees) {
+        return Math.round(degrees * 1e7) / 1e7;
+    }
+}